@@ -0,0 +1,108 @@
+package de.craftsblock.cnet.modules.security.loadtest;
+
+import de.craftsblock.craftscore.json.Json;
+
+/**
+ * The {@link LatencyHistogram} records latencies in nanoseconds into log linear buckets: every power of two is split
+ * into 32 linear sub buckets, which bounds the relative error to about three percent while using a fixed amount of
+ * memory. Every worker thread records into its own histogram, which are merged once the run has finished.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long total;
+    private long max;
+
+    /**
+     * Records a single latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucketOf(nanos)]++;
+        total++;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Adds all latencies of another histogram to this one.
+     *
+     * @param other The histogram to merge.
+     */
+    void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Gets the latency below which the given fraction of all recorded latencies lie.
+     *
+     * @param fraction The fraction, between 0 and 1.
+     * @return The upper bound of the matching bucket in nanoseconds.
+     */
+    long percentile(double fraction) {
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) return Math.min(upperBoundOf(i), max);
+        }
+
+        return max;
+    }
+
+    /**
+     * Gets the amount of recorded latencies.
+     *
+     * @return The amount of recorded latencies.
+     */
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Serializes the percentiles of this histogram in microseconds.
+     *
+     * @return The serialized percentiles.
+     */
+    Json serialize() {
+        return Json.empty()
+                .set("p50", micros(percentile(0.5)))
+                .set("p90", micros(percentile(0.9)))
+                .set("p99", micros(percentile(0.99)))
+                .set("p999", micros(percentile(0.999)))
+                .set("max", micros(max));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1_000d;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        // The top SUB_BITS + 1 bits select the bucket, the leading one bit is implied by the exponent
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> exponent) - SUB_BUCKETS;
+        return (exponent + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << exponent) - 1;
+    }
+
+}
@@ -0,0 +1,316 @@
+package de.craftsblock.cnet.modules.security.loadtest;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import de.craftsblock.cnet.modules.security.AddonEntrypoint;
+import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.auth.AuthChainManager;
+import de.craftsblock.cnet.modules.security.auth.chains.SimpleAuthChain;
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.cnet.modules.security.auth.token.TokenAuthAdapter;
+import de.craftsblock.cnet.modules.security.auth.token.TokenManager;
+import de.craftsblock.cnet.modules.security.auth.token.TokenPermission;
+import de.craftsblock.cnet.modules.security.listeners.PreRequestListener;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.builtin.AuthFailureRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.builtin.IPRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.builtin.TokenRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.sockets.SocketManager;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import de.craftsblock.craftscore.json.Json;
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link LoadHarness} drives the complete security pipeline with simulated traffic and reports its throughput,
+ * latency percentiles, heap growth and garbage collection pauses as json. It boots the managers the same way the
+ * {@link AddonEntrypoint} does, and sends requests through the {@link PreRequestListener} using {@link StandIns}
+ * for the parts of CraftsNet which only exist in a running server.
+ * <p>
+ * The harness is run by the {@code loadTest} gradle task, the simulated traffic is described by a {@link LoadProfile}.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class LoadHarness {
+
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    private LoadHarness() {
+    }
+
+    /**
+     * Runs the harness.
+     *
+     * @param args The options of the {@link LoadProfile}.
+     * @throws Exception If the harness could not be set up or the report could not be written.
+     */
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.parse(args);
+
+        File dataFolder = Files.createTempDirectory("cnet-security-load").toFile();
+        Files.writeString(new File(dataFolder, "tokens.json").toPath(), "[]");
+        dataFolder.deleteOnExit();
+
+        Registry.boot(dataFolder, profile);
+        String[] keys = createTokens(profile);
+
+        // Clean up the rate limit state in the background, the same way a server would
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CNetSecurity Load Ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> CNetSecurity.getRateLimitManager().tick(), 1, 1, TimeUnit.SECONDS);
+
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(profile.warmup());
+        long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(profile.duration());
+
+        List<LoadWorker> workers = new ArrayList<>(profile.threads());
+        List<Thread> threads = new ArrayList<>(profile.threads());
+        for (int i = 0; i < profile.threads(); i++) {
+            LoadWorker worker = new LoadWorker(profile, keys, profile.seed() + i, measureFrom, measureUntil);
+            workers.add(worker);
+            threads.add(new Thread(worker, "CNetSecurity Load Worker #" + i));
+        }
+
+        threads.forEach(Thread::start);
+
+        // Take the heap baseline once the warmup is over
+        sleepUntil(measureFrom);
+        long heapBefore = usedHeap();
+        GcMonitor gc = GcMonitor.install();
+
+        for (Thread thread : threads) thread.join();
+        gc.uninstall();
+        long heapAfter = usedHeap();
+
+        ticker.shutdownNow();
+        SecurityClock.install(SecurityClock.system());
+
+        write(profile, report(profile, workers, heapBefore, heapAfter, gc));
+    }
+
+    /**
+     * Creates the tokens of the simulated population. Their secrets are hashed with the configured amount of
+     * bcrypt rounds, so creating them does not dominate the setup of large populations.
+     *
+     * @param profile The {@link LoadProfile} of the run.
+     * @return The keys of the created tokens.
+     */
+    private static String[] createTokens(LoadProfile profile) {
+        TokenManager manager = CNetSecurity.getTokenManager();
+        SecureRandom random = new SecureRandom();
+
+        String[] keys = new String[profile.tokens()];
+        for (int i = 0; i < keys.length; i++) {
+            char[] secret = new char[48];
+            for (int j = 0; j < secret.length; j++) secret[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+
+            Token token = Token.of(BCrypt.hashpw(new String(secret), BCrypt.gensalt(profile.bcryptRounds())));
+            token.permissions().add(new TokenPermission(".*", ".*", HttpMethod.ALL));
+            manager.put(token.id(), token);
+
+            keys[i] = "cnet_" + String.format("%016x", token.id()) + new String(secret);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Assembles the report of a finished run.
+     *
+     * @param profile    The {@link LoadProfile} of the run.
+     * @param workers    The finished {@link LoadWorker}s.
+     * @param heapBefore The used heap after the warmup.
+     * @param heapAfter  The used heap after the run.
+     * @param gc         The {@link GcMonitor} of the run.
+     * @return The report.
+     */
+    private static Json report(LoadProfile profile, List<LoadWorker> workers, long heapBefore, long heapAfter, GcMonitor gc) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        long[] outcomes = new long[StandIns.Outcome.values().length];
+        long errors = 0, allocated = 0;
+
+        for (LoadWorker worker : workers) {
+            latencies.merge(worker.getLatencies());
+            for (StandIns.Outcome outcome : StandIns.Outcome.values())
+                outcomes[outcome.ordinal()] += worker.getOutcomes(outcome);
+            errors += worker.getErrors();
+            allocated += worker.getAllocated();
+        }
+
+        long total = latencies.getTotal();
+        return Json.empty()
+                .set("profile", profile.serialize().getObject())
+                .set("requests.total", total)
+                .set("requests.allowed", outcomes[StandIns.Outcome.ALLOWED.ordinal()])
+                .set("requests.authFailed", outcomes[StandIns.Outcome.AUTH_FAILED.ordinal()])
+                .set("requests.rateLimited", outcomes[StandIns.Outcome.RATE_LIMITED.ordinal()])
+                .set("requests.errors", errors)
+                .set("throughput", total / (double) profile.duration())
+                .set("latency", latencies.serialize().getObject())
+                .set("memory.heapBefore", heapBefore)
+                .set("memory.heapAfter", heapAfter)
+                .set("memory.heapGrowth", heapAfter - heapBefore)
+                .set("memory.allocatedPerRequest", total == 0 ? 0 : allocated / total)
+                .set("gc", gc.serialize().getObject());
+    }
+
+    /**
+     * Writes the report to the console or to the report file of the profile.
+     *
+     * @param profile The {@link LoadProfile} of the run.
+     * @param report  The report to write.
+     * @throws IOException If the report file could not be written.
+     */
+    private static void write(LoadProfile profile, Json report) throws IOException {
+        if ("-".equals(profile.report())) {
+            System.out.println(report.toString(true));
+            return;
+        }
+
+        File file = new File(profile.report());
+        if (file.getParentFile() != null) Files.createDirectories(file.getParentFile().toPath());
+        report.save(file);
+        System.out.println("Wrote the load report to " + file.getAbsolutePath());
+    }
+
+    /**
+     * Gets the used heap after a full garbage collection, so that only live objects are counted.
+     *
+     * @return The used heap in bytes.
+     */
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0)
+            TimeUnit.NANOSECONDS.sleep(remaining);
+    }
+
+    /**
+     * Boots the managers of the security pipeline. This extends {@link CNetSecurity} to access its internal registry.
+     */
+    private static final class Registry extends CNetSecurity {
+
+        /**
+         * Registers the managers, the default auth chain and the built in rate limit adapters in the same order as
+         * the {@link AddonEntrypoint} does. The ip and token adapters get the limits of the profile instead of
+         * their defaults, which would reject nearly every request of a client after its first one and measure
+         * little more than the rejection path.
+         *
+         * @param dataFolder The data folder of the stand-in addon.
+         * @param profile    The {@link LoadProfile} of the run.
+         */
+        static void boot(File dataFolder, LoadProfile profile) {
+            AddonEntrypoint addon = StandIns.addon(dataFolder);
+            register(addon);
+
+            register(new AuthChainManager());
+            register(new TokenManager());
+            register(new RateLimitManager());
+            register(new SocketManager());
+
+            SimpleAuthChain chain = new SimpleAuthChain();
+            chain.append(new TokenAuthAdapter());
+            getAuthChainManager().add(chain);
+            register(chain);
+
+            RateLimitManager rater = getRateLimitManager();
+            rater.register(new IPRateLimitAdapter(addon, profile.ipLimit(), TimeUnit.MINUTES.toMillis(1)));
+
+            rater.register(new AuthFailureRateLimitAdapter(addon));
+
+            rater.register(new TokenRateLimitAdapter(addon, profile.tokenLimit(), TimeUnit.MINUTES.toMillis(1)));
+        }
+
+    }
+
+    /**
+     * The {@link GcMonitor} collects the pauses of all garbage collections which have happened while it was installed.
+     * Concurrent cycles do not pause the application and are not counted.
+     */
+    private static final class GcMonitor implements NotificationListener {
+
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Installs a new {@link GcMonitor} on all garbage collectors.
+         *
+         * @return The installed {@link GcMonitor}.
+         */
+        static GcMonitor install() {
+            GcMonitor monitor = new GcMonitor();
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (!(bean instanceof NotificationEmitter emitter)) continue;
+                emitter.addNotificationListener(monitor, null, null);
+                monitor.emitters.add(emitter);
+            }
+
+            return monitor;
+        }
+
+        /**
+         * Removes this monitor from all garbage collectors.
+         *
+         * @throws Exception If the monitor could not be removed.
+         */
+        void uninstall() throws Exception {
+            for (NotificationEmitter emitter : emitters)
+                emitter.removeNotificationListener(this);
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent")) return;
+
+            long duration = info.getGcInfo().getDuration();
+            count.incrementAndGet();
+            total.addAndGet(duration);
+            max.accumulateAndGet(duration, Math::max);
+        }
+
+        /**
+         * Serializes the collected pauses in milliseconds.
+         *
+         * @return The serialized pauses.
+         */
+        Json serialize() {
+            return Json.empty()
+                    .set("pauses", count.get())
+                    .set("totalMillis", total.get())
+                    .set("maxMillis", max.get());
+        }
+
+    }
+
+}
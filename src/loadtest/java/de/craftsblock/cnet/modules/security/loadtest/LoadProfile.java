@@ -0,0 +1,127 @@
+package de.craftsblock.cnet.modules.security.loadtest;
+
+import de.craftsblock.craftscore.json.Json;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link LoadProfile} describes the simulated traffic of a {@link LoadHarness} run. Every value can be
+ * overridden on the command line using {@code --name=value}, e.g. {@code --ips=2000000 --threads=16}.
+ *
+ * @param threads         The amount of worker threads sending requests.
+ * @param warmup          The warmup period in seconds, which is not measured.
+ * @param duration        The measured period in seconds.
+ * @param ips             The amount of distinct client ips.
+ * @param tokens          The amount of registered tokens.
+ * @param tokenFraction   The fraction of requests which carry a token.
+ * @param invalidFraction The fraction of token requests which carry a wrong secret.
+ * @param burstFraction   The fraction of requests which belong to a burst of a hot client.
+ * @param burstClients    The amount of hot clients sending bursts.
+ * @param burstLength     The amount of consecutive requests of a single burst.
+ * @param bcryptRounds    The log rounds used to hash the secrets of the generated tokens.
+ * @param ipLimit         The amount of requests a single ip may send per minute.
+ * @param tokenLimit      The amount of requests a single token may send per minute.
+ * @param seed            The seed of the random generators.
+ * @param report          The file the report is written to, or {@code -} to print it to the console.
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @since 1.0.0-SNAPSHOT
+ */
+public record LoadProfile(int threads, int warmup, int duration, int ips, int tokens, double tokenFraction,
+                          double invalidFraction, double burstFraction, int burstClients, int burstLength,
+                          int bcryptRounds, int ipLimit, int tokenLimit, long seed, String report) {
+
+    /**
+     * Validates the values of the {@link LoadProfile}.
+     *
+     * @throws IllegalStateException If a value is out of range.
+     */
+    public LoadProfile {
+        if (threads <= 0 || warmup < 0 || duration <= 0)
+            throw new IllegalStateException("The run must use at least one thread for at least one second!");
+        if (ips <= 0 || ips > 1 << 24)
+            throw new IllegalStateException("The population must consist of 1 to 16777216 ips! (Invalid ips: " + ips + ")");
+        if (tokens < 0 || burstClients < 0 || burstClients > ips || burstLength <= 0)
+            throw new IllegalStateException("The token or burst population is out of range!");
+        if (bcryptRounds < 4 || bcryptRounds > 31)
+            throw new IllegalStateException("The bcrypt rounds must be between 4 and 31! (Invalid rounds: " + bcryptRounds + ")");
+        if (ipLimit <= 0 || tokenLimit <= 0)
+            throw new IllegalStateException("The rate limits must be positive! (ip limit: " + ipLimit + ", token limit: " + tokenLimit + ")");
+    }
+
+    /**
+     * Parses a {@link LoadProfile} from command line arguments. Missing values fall back to their defaults.
+     *
+     * @param args The command line arguments.
+     * @return The parsed {@link LoadProfile}.
+     * @throws IllegalStateException If an argument is malformed or unknown.
+     */
+    public static LoadProfile parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator == -1)
+                throw new IllegalStateException("Malformed argument! (Invalid argument: " + arg + ")");
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        LoadProfile profile = new LoadProfile(
+                integer(values, "threads", Runtime.getRuntime().availableProcessors()),
+                integer(values, "warmup", 10),
+                integer(values, "duration", 30),
+                integer(values, "ips", 1_000_000),
+                integer(values, "tokens", 2_000),
+                decimal(values, "tokenFraction", 0.6),
+                decimal(values, "invalidFraction", 0.02),
+                decimal(values, "burstFraction", 0.1),
+                integer(values, "burstClients", 50),
+                integer(values, "burstLength", 200),
+                integer(values, "bcryptRounds", 4),
+                integer(values, "ipLimit", 600),
+                integer(values, "tokenLimit", 3000),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                values.getOrDefault("report", "-")
+        );
+
+        values.keySet().removeAll(java.util.List.of("threads", "warmup", "duration", "ips", "tokens", "tokenFraction",
+                "invalidFraction", "burstFraction", "burstClients", "burstLength", "bcryptRounds", "ipLimit", "tokenLimit", "seed", "report"));
+        if (!values.isEmpty())
+            throw new IllegalStateException("Unknown arguments! (Invalid arguments: " + values.keySet() + ")");
+
+        return profile;
+    }
+
+    /**
+     * Serializes this profile into a {@link Json} object for the report.
+     *
+     * @return The serialized profile.
+     */
+    public Json serialize() {
+        return Json.empty()
+                .set("threads", threads)
+                .set("warmup", warmup)
+                .set("duration", duration)
+                .set("ips", ips)
+                .set("tokens", tokens)
+                .set("tokenFraction", tokenFraction)
+                .set("invalidFraction", invalidFraction)
+                .set("burstFraction", burstFraction)
+                .set("burstClients", burstClients)
+                .set("burstLength", burstLength)
+                .set("bcryptRounds", bcryptRounds)
+                .set("ipLimit", ipLimit)
+                .set("tokenLimit", tokenLimit)
+                .set("seed", seed);
+    }
+
+    private static int integer(Map<String, String> values, String key, int fallback) {
+        return values.containsKey(key) ? Integer.parseInt(values.get(key)) : fallback;
+    }
+
+    private static double decimal(Map<String, String> values, String key, double fallback) {
+        return values.containsKey(key) ? Double.parseDouble(values.get(key)) : fallback;
+    }
+
+}
@@ -0,0 +1,170 @@
+package de.craftsblock.cnet.modules.security.loadtest;
+
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * The {@link LoadWorker} sends simulated requests from a single thread until the run has ended. Requests sent
+ * before the start of the measurement only warm up the pipeline and are not recorded.
+ * <p>
+ * Every request either belongs to a burst of one of the hot clients, or is sent by a random ip of the whole
+ * population. A share of the requests carries the token of a random client, some of them with a wrong secret.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+final class LoadWorker implements Runnable {
+
+    private static final HttpMethod[] METHODS = {HttpMethod.GET, HttpMethod.GET, HttpMethod.GET, HttpMethod.POST};
+    private static final int ROUTES = 16;
+
+    private final LoadProfile profile;
+    private final String[] keys;
+    private final long measureFrom;
+    private final long measureUntil;
+
+    private final StandIns.Client client = new StandIns.Client();
+    private final SplittableRandom random;
+    private final double burstStart;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final long[] outcomes = new long[StandIns.Outcome.values().length];
+    private long errors;
+    private long allocated;
+
+    private int burstRemaining;
+    private String burstIp;
+
+    /**
+     * Constructs a new {@link LoadWorker}.
+     *
+     * @param profile      The {@link LoadProfile} of the run.
+     * @param keys         The keys of all registered tokens.
+     * @param seed         The seed of the random generator of this worker.
+     * @param measureFrom  The {@link System#nanoTime()} at which the measurement starts.
+     * @param measureUntil The {@link System#nanoTime()} at which the run ends.
+     */
+    LoadWorker(LoadProfile profile, String[] keys, long seed, long measureFrom, long measureUntil) {
+        this.profile = profile;
+        this.keys = keys;
+        this.measureFrom = measureFrom;
+        this.measureUntil = measureUntil;
+        this.random = new SplittableRandom(seed);
+
+        // The chance to start a burst, so that the given fraction of all requests belongs to a burst
+        double fraction = Math.min(profile.burstFraction(), 0.99);
+        this.burstStart = profile.burstClients() <= 0 ? 0 : fraction / (profile.burstLength() * (1 - fraction) + fraction);
+    }
+
+    @Override
+    public void run() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedFrom = -1;
+
+        while (true) {
+            prepare();
+
+            long start = System.nanoTime();
+            if (start >= measureUntil) break;
+
+            boolean measured = start >= measureFrom;
+            if (measured && allocatedFrom == -1) allocatedFrom = threads.getCurrentThreadAllocatedBytes();
+
+            StandIns.Outcome outcome;
+            try {
+                outcome = client.send();
+            } catch (Exception e) {
+                if (measured) errors++;
+                continue;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            if (!measured) continue;
+
+            latencies.record(elapsed);
+            outcomes[outcome.ordinal()]++;
+        }
+
+        if (allocatedFrom != -1) allocated = threads.getCurrentThreadAllocatedBytes() - allocatedFrom;
+    }
+
+    /**
+     * Prepares the shape of the next request.
+     */
+    private void prepare() {
+        String ip;
+        if (burstRemaining > 0 || random.nextDouble() < burstStart) {
+            if (burstRemaining <= 0) {
+                burstRemaining = profile.burstLength();
+                burstIp = ip(random.nextInt(profile.burstClients()));
+            }
+
+            burstRemaining--;
+            ip = burstIp;
+        } else ip = ip(random.nextInt(profile.ips()));
+
+        String authorization = null;
+        if (keys.length > 0 && random.nextDouble() < profile.tokenFraction()) {
+            String key = keys[random.nextInt(keys.length)];
+            if (random.nextDouble() < profile.invalidFraction())
+                key = key.substring(0, key.length() - 1) + (key.charAt(key.length() - 1) == 'a' ? 'b' : 'a');
+            authorization = "Bearer " + key;
+        }
+
+        client.prepare(ip, "localhost", "/v1/resources/" + random.nextInt(ROUTES),
+                METHODS[random.nextInt(METHODS.length)], authorization);
+    }
+
+    /**
+     * Maps the index of a client onto an ip address of the private {@code 10.0.0.0/8} range.
+     *
+     * @param index The index of the client.
+     * @return The ip address of the client.
+     */
+    private static String ip(int index) {
+        return "10." + (index >>> 16 & 0xFF) + "." + (index >>> 8 & 0xFF) + "." + (index & 0xFF);
+    }
+
+    /**
+     * Gets the latencies recorded by this worker.
+     *
+     * @return The {@link LatencyHistogram} of this worker.
+     */
+    LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Gets the amount of measured requests with the given outcome.
+     *
+     * @param outcome The {@link StandIns.Outcome}.
+     * @return The amount of requests.
+     */
+    long getOutcomes(StandIns.Outcome outcome) {
+        return outcomes[outcome.ordinal()];
+    }
+
+    /**
+     * Gets the amount of measured requests during which a listener failed.
+     *
+     * @return The amount of failed requests.
+     */
+    long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the amount of bytes this worker allocated during the measurement.
+     *
+     * @return The allocated bytes.
+     */
+    long getAllocated() {
+        return allocated;
+    }
+
+}
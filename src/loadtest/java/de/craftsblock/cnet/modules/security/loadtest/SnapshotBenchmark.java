@@ -0,0 +1,136 @@
+package de.craftsblock.cnet.modules.security.loadtest;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitSnapshotter;
+import de.craftsblock.cnet.modules.security.ratelimit.backend.RateLimitBackend;
+import de.craftsblock.craftscore.json.Json;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link SnapshotBenchmark} measures the size of a rate limit snapshot and the time it takes to write and
+ * restore it. It fills a {@link RateLimitManager} with counters of random IPv4 addresses, writes them with a
+ * {@link RateLimitSnapshotter} and loads them into a fresh manager, repeating both steps a few times.
+ * <p>
+ * The benchmark is run by the {@code snapshotBenchmark} gradle task, e.g.
+ * {@code ./gradlew snapshotBenchmark --args="--entries=1000000 --rounds=5"}. The results are printed as json.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see RateLimitSnapshotter
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class SnapshotBenchmark {
+
+    private SnapshotBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The options {@code --entries=<count>} and {@code --rounds=<count>}.
+     * @throws Exception If the snapshot could not be written or loaded.
+     */
+    public static void main(String[] args) throws Exception {
+        int entries = 1_000_000;
+        int rounds = 5;
+        for (String arg : args)
+            if (arg.startsWith("--entries=")) entries = Integer.parseInt(arg.substring("--entries=".length()));
+            else if (arg.startsWith("--rounds=")) rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+            else throw new IllegalArgumentException("Unknown option " + arg + "!");
+
+        File file = Files.createTempFile("cnet-security-snapshot", ".dat").toFile();
+        file.deleteOnExit();
+
+        RateLimitManager source = manager();
+        fill(source, entries);
+        RateLimitSnapshotter writer = new RateLimitSnapshotter(source, file);
+
+        long[] writes = new long[rounds];
+        long[] loads = new long[rounds];
+        long written = 0, restored = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            written = writer.write();
+            writes[round] = System.nanoTime() - start;
+
+            RateLimitSnapshotter reader = new RateLimitSnapshotter(manager(), file);
+            start = System.nanoTime();
+            restored = reader.load();
+            loads[round] = System.nanoTime() - start;
+        }
+
+        long size = file.length();
+        System.out.println(Json.empty()
+                .set("entries", entries)
+                .set("written", written)
+                .set("restored", restored)
+                .set("bytes", size)
+                .set("bytesPerEntry", written == 0 ? 0 : size / (double) written)
+                .set("writeMillis.min", TimeUnit.NANOSECONDS.toMillis(min(writes)))
+                .set("writeMillis.max", TimeUnit.NANOSECONDS.toMillis(max(writes)))
+                .set("loadMillis.min", TimeUnit.NANOSECONDS.toMillis(min(loads)))
+                .set("loadMillis.max", TimeUnit.NANOSECONDS.toMillis(max(loads)))
+                .toString(true));
+    }
+
+    /**
+     * Creates a new {@link RateLimitManager} with the benchmark adapter registered.
+     *
+     * @return The created {@link RateLimitManager}.
+     */
+    private static RateLimitManager manager() {
+        RateLimitManager manager = new RateLimitManager();
+        manager.register(new RateLimitAdapter("IP", 100, TimeUnit.HOURS.toMillis(1)) {
+            @Override
+            public RateLimitIndex adapt(Request request, SessionStorage storage) {
+                return null;
+            }
+        });
+        return manager;
+    }
+
+    /**
+     * Fills the backend of a {@link RateLimitManager} with counters of distinct random IPv4 addresses.
+     *
+     * @param manager The {@link RateLimitManager} to fill.
+     * @param entries The amount of counters to create.
+     */
+    private static void fill(RateLimitManager manager, int entries) {
+        RateLimitAdapter adapter = manager.getAdapter("IP");
+        RateLimitBackend backend = manager.getBackend();
+        Random random = new Random(42);
+
+        for (int i = 0; i < entries; i++) {
+            int address = i * 0x9E3779B1; // Distinct for every i, spread over the whole address space
+            String ip = (address >>> 24) + "." + (address >>> 16 & 0xFF) + "." + (address >>> 8 & 0xFF) + "." + (address & 0xFF);
+
+            RateLimitIndex index = RateLimitIndex.of(adapter, ip);
+            RateLimitInfo info = backend.resolve(index, adapter);
+            backend.access(index, info, 1 + random.nextInt(50));
+        }
+    }
+
+    private static long min(long[] values) {
+        long min = Long.MAX_VALUE;
+        for (long value : values) min = Math.min(min, value);
+        return min;
+    }
+
+    private static long max(long[] values) {
+        long max = 0;
+        for (long value : values) max = Math.max(max, value);
+        return max;
+    }
+
+}
@@ -0,0 +1,176 @@
+package de.craftsblock.cnet.modules.security.loadtest;
+
+import de.craftsblock.cnet.modules.security.AddonEntrypoint;
+import de.craftsblock.cnet.modules.security.listeners.PreRequestListener;
+import de.craftsblock.craftscore.event.ListenerRegistry;
+import de.craftsblock.craftsnet.CraftsNet;
+import de.craftsblock.craftsnet.api.http.Exchange;
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.http.Response;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import de.craftsblock.craftsnet.events.requests.PostRequestEvent;
+import de.craftsblock.craftsnet.events.requests.PreRequestEvent;
+import de.craftsblock.craftsnet.events.requests.routes.RouteRequestEvent;
+import de.craftsblock.craftsnet.logging.Logger;
+import org.mockito.Answers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * The {@link StandIns} replace the parts of CraftsNet which can only be created by a running server. The
+ * requests, responses and events handed to the listeners are stub only mocks, which do not record their
+ * invocations and therefore do not grow the heap while the harness is running.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+final class StandIns {
+
+    /**
+     * Creates a stand-in for the {@link AddonEntrypoint} whose listener registry swallows all events.
+     *
+     * @param dataFolder The data folder of the addon.
+     * @return The stand-in {@link AddonEntrypoint}.
+     */
+    static AddonEntrypoint addon(File dataFolder) {
+        ListenerRegistry registry = stub(ListenerRegistry.class, Answers.RETURNS_DEFAULTS);
+        Logger logger = stub(Logger.class, Answers.RETURNS_DEFAULTS);
+        CraftsNet craftsNet = stub(CraftsNet.class, invocation -> switch (invocation.getMethod().getName()) {
+            case "listenerRegistry" -> registry;
+            default -> Answers.RETURNS_DEFAULTS.answer(invocation);
+        });
+
+        return stub(AddonEntrypoint.class, invocation -> switch (invocation.getMethod().getName()) {
+            case "craftsNet" -> craftsNet;
+            case "listenerRegistry" -> registry;
+            case "logger" -> logger;
+            case "getDataFolder" -> dataFolder;
+            default -> Answers.RETURNS_DEFAULTS.answer(invocation);
+        });
+    }
+
+    private static <T> T stub(Class<T> type, Answer<?> answer) {
+        return mock(type, withSettings().stubOnly().defaultAnswer(answer));
+    }
+
+    /**
+     * The possible outcomes of a simulated request.
+     */
+    enum Outcome {
+
+        /**
+         * The request passed authentication and rate limiting.
+         */
+        ALLOWED,
+
+        /**
+         * The request was rejected by an authentication chain.
+         */
+        AUTH_FAILED,
+
+        /**
+         * The request was rejected by the rate limiter.
+         */
+        RATE_LIMITED
+
+    }
+
+    /**
+     * A simulated client which belongs to a single worker thread. Its request and events are created once and
+     * answer from the mutable shape of the request currently being sent, so sending a request only allocates
+     * what a real exchange would allocate in the security pipeline.
+     */
+    static final class Client implements Answer<Object> {
+
+        private final PreRequestListener listener = new PreRequestListener();
+
+        private final Request request = stub(Request.class, this);
+        private final Response response = stub(Response.class, Answers.RETURNS_DEFAULTS);
+        private final PreRequestEvent preRequest = stub(PreRequestEvent.class, this);
+        private final RouteRequestEvent routeRequest = stub(RouteRequestEvent.class, this);
+        private final PostRequestEvent postRequest = stub(PostRequestEvent.class, this);
+
+        private String ip;
+        private String domain;
+        private String url;
+        private HttpMethod method;
+        private String authorization;
+
+        private Exchange exchange;
+        private boolean cancelled;
+
+        /**
+         * Sets the shape of the next request.
+         *
+         * @param ip            The ip of the client.
+         * @param domain        The requested domain.
+         * @param url           The requested path.
+         * @param method        The {@link HttpMethod} of the request.
+         * @param authorization The value of the authorization header, or {@code null} if it is not present.
+         */
+        void prepare(String ip, String domain, String url, HttpMethod method, String authorization) {
+            this.ip = ip;
+            this.domain = domain;
+            this.url = url;
+            this.method = method;
+            this.authorization = authorization;
+        }
+
+        /**
+         * Sends the prepared request through the listeners of the security pipeline in the order CraftsNet fires
+         * their events.
+         *
+         * @return The {@link Outcome} of the request.
+         * @throws Exception If a listener fails.
+         */
+        Outcome send() throws Exception {
+            exchange = new Exchange(url, request, response, new SessionStorage());
+            cancelled = false;
+
+            try {
+                listener.handleAuthChains(preRequest);
+                if (cancelled) return Outcome.AUTH_FAILED;
+
+                listener.handleRateLimiter(routeRequest);
+                return cancelled ? Outcome.RATE_LIMITED : Outcome.ALLOWED;
+            } finally {
+                listener.handleRelease(postRequest);
+            }
+        }
+
+        /**
+         * Answers the invocations on the request and the events from the current shape.
+         *
+         * @param invocation The {@link InvocationOnMock} to answer.
+         * @return The answer.
+         * @throws Throwable If the invocation could not be answered.
+         */
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            return switch (invocation.getMethod().getName()) {
+                case "getIp" -> ip;
+                case "getDomain" -> domain;
+                case "getUrl" -> url;
+                case "getHttpMethod" -> method;
+                case "getHeader" -> "Authorization".equalsIgnoreCase(invocation.getArgument(0)) ? authorization : null;
+                case "getExchange" -> exchange;
+                case "isCancelled" -> cancelled;
+                case "setCancelled" -> {
+                    cancelled = invocation.getArgument(0);
+                    yield null;
+                }
+                default -> Answers.RETURNS_DEFAULTS.answer(invocation);
+            };
+        }
+
+    }
+
+}
@@ -4,14 +4,24 @@ import de.craftsblock.cnet.modules.security.auth.AuthChainManager;
 import de.craftsblock.cnet.modules.security.auth.chains.SimpleAuthChain;
 import de.craftsblock.cnet.modules.security.auth.token.TokenAuthAdapter;
 import de.craftsblock.cnet.modules.security.auth.token.TokenManager;
+import de.craftsblock.cnet.modules.security.config.ConfigManager;
 import de.craftsblock.cnet.modules.security.listeners.PreRequestListener;
 import de.craftsblock.cnet.modules.security.listeners.SocketListener;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
 import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.builtin.AuthFailureRateLimitAdapter;
 import de.craftsblock.cnet.modules.security.ratelimit.builtin.IPRateLimitAdapter;
 import de.craftsblock.cnet.modules.security.ratelimit.builtin.TokenRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.quota.QuotaRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.sockets.SocketManager;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
 import de.craftsblock.craftsnet.addon.Addon;
 import de.craftsblock.craftsnet.addon.meta.annotations.Meta;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
 /**
  * The AccessControllerAddon class extends the base {@link Addon} class to provide specific functionality
  * for the access controller module.
@@ -37,10 +47,15 @@ public class AddonEntrypoint extends Addon {
         listenerRegistry().register(new PreRequestListener());
         listenerRegistry().register(new SocketListener());
 
+        // The configuration file is applied once the addon is enabled, only the token store is selected right away
+        ConfigManager config = new ConfigManager(new File(getDataFolder(), "security.json"));
+        CNetSecurity.register(config);
+
         // Set environment variables
         CNetSecurity.register(new AuthChainManager());
-        CNetSecurity.register(new TokenManager());
+        CNetSecurity.register(new TokenManager(config.createTokenStore(getDataFolder())));
         CNetSecurity.register(new RateLimitManager());
+        CNetSecurity.register(new SocketManager());
     }
 
     /**
@@ -63,8 +78,31 @@ public class AddonEntrypoint extends Addon {
         RateLimitManager rater = CNetSecurity.getRateLimitManager();
         if (rater != null) {
             rater.register(new IPRateLimitAdapter(this));
+            rater.register(new AuthFailureRateLimitAdapter(this));
             rater.register(new TokenRateLimitAdapter(this));
+
+            // Clean up expired counters and reclaim timed out permits
+            rater.startSweeping(5, TimeUnit.SECONDS);
         }
+
+        // Apply the configuration file and pick up changes to it at runtime
+        ConfigManager config = CNetSecurity.getConfigManager();
+        try {
+            config.load();
+            config.watch();
+        } catch (IOException | IllegalStateException e) {
+            logger().error(e, "Failed to load the security configuration!");
+        }
+
+        // Restore the counters of the last run and keep them snapshotted, once the adapters
+        // defined by the configuration file have been registered
+        if (rater != null)
+            try {
+                long restored = rater.enableSnapshots(new File(getDataFolder(), "ratelimits.dat"), 30, TimeUnit.SECONDS);
+                logger().debug("Restored " + restored + " rate limit entries from the last snapshot.");
+            } catch (IOException e) {
+                logger().error(e, "Failed to restore the rate limit snapshot!");
+            }
     }
 
     /**
@@ -72,7 +110,34 @@ public class AddonEntrypoint extends Addon {
      */
     @Override
     public void onDisable() {
-        CNetSecurity.getTokenManager().save();
+        TokenManager tokens = CNetSecurity.getTokenManager();
+        tokens.save();
+        tokens.getStore().close();
+
+        try {
+            CNetSecurity.getConfigManager().close();
+        } catch (IOException e) {
+            logger().error(e, "Failed to stop watching the security configuration!");
+        }
+
+        CNetSecurity.getRateLimitManager().stopSweeping();
+        try {
+            CNetSecurity.getRateLimitManager().disableSnapshots();
+        } catch (IOException e) {
+            logger().error(e, "Failed to write the rate limit snapshot!");
+        }
+
+        // Make the consumption of all quotas durable
+        for (RateLimitAdapter adapter : CNetSecurity.getRateLimitManager().getAdapters())
+            if (adapter instanceof QuotaRateLimitAdapter quota)
+                try {
+                    quota.stop();
+                } catch (IOException e) {
+                    logger().error(e, "Failed to flush the quotas of " + quota.getId() + "!");
+                }
+
+        // Stop a background clock, if one has been installed
+        SecurityClock.install(SecurityClock.system());
 
         // Unset the instance
         CNetSecurity.unregister(this);
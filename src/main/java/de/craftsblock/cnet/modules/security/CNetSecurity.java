@@ -3,7 +3,9 @@ package de.craftsblock.cnet.modules.security;
 import de.craftsblock.cnet.modules.security.auth.AuthChainManager;
 import de.craftsblock.cnet.modules.security.auth.chains.SimpleAuthChain;
 import de.craftsblock.cnet.modules.security.auth.token.TokenManager;
+import de.craftsblock.cnet.modules.security.config.ConfigManager;
 import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.sockets.SocketManager;
 import de.craftsblock.craftscore.event.Event;
 import de.craftsblock.craftsnet.logging.Logger;
 import org.jetbrains.annotations.ApiStatus;
@@ -119,6 +121,26 @@ public class CNetSecurity {
         return get(RateLimitManager.class);
     }
 
+    /**
+     * Retrieves the {@link SocketManager} instance that manages websocket connections.
+     *
+     * @return The {@link SocketManager} instance.
+     * @throws IllegalStateException If no instance of {@link SocketManager} is registered.
+     */
+    public static SocketManager getSocketManager() {
+        return get(SocketManager.class);
+    }
+
+    /**
+     * Retrieves the {@link ConfigManager} instance that applies the configuration file.
+     *
+     * @return The {@link ConfigManager} instance.
+     * @throws IllegalStateException If no instance of {@link ConfigManager} is registered.
+     */
+    public static ConfigManager getConfigManager() {
+        return get(ConfigManager.class);
+    }
+
     /**
      * Retrieves the {@link Logger} instance.
      *
@@ -0,0 +1,283 @@
+package de.craftsblock.cnet.modules.security;
+
+import de.craftsblock.cnet.modules.security.auth.AuthResult;
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.cnet.modules.security.auth.token.TokenPermission;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitCharges;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPhase;
+import de.craftsblock.cnet.modules.security.ratelimit.concurrency.ConcurrencyPermits;
+import de.craftsblock.craftsnet.api.http.Exchange;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * The {@link SecurityContext} holds the security state of a single exchange: the authenticated {@link Token},
+ * the {@link TokenPermission} which granted access, the {@link AuthResult} and the rate limit decisions.
+ * <p>
+ * The context is created once per exchange and kept in its session storage under {@link #STORAGE_KEY}.
+ * Instead of looking up and casting several storage entries, adapters and routes fetch the context once
+ * using {@link #of(Exchange)} or {@link #find(SessionStorage)} and read all values from it.
+ * </p>
+ * <p>
+ * The values are set by the security addon while the exchange passes the authentication chains and rate
+ * limits, and should only be read by others.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.3.0
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class SecurityContext {
+
+    /**
+     * The key under which the {@link SecurityContext} of an exchange is stored in its session storage.
+     */
+    public static final String STORAGE_KEY = "security.context";
+
+    private volatile Token token;
+    private volatile TokenPermission permission;
+    private volatile AuthResult authResult;
+
+    private volatile RateLimitPhase limitedIn;
+    private volatile List<RateLimitAdapter> exceeded = List.of();
+    private volatile long retryAt;
+
+    private volatile RateLimitCharges charges;
+    private volatile ConcurrencyPermits permits;
+
+    private volatile String rateLimitPolicyHeader;
+    private volatile String rateLimitHeader;
+
+    /**
+     * Creates a new, empty {@link SecurityContext}.
+     */
+    private SecurityContext() {
+    }
+
+    /**
+     * Gets the {@link SecurityContext} of an exchange, creating it if necessary.
+     *
+     * @param exchange The {@link Exchange}.
+     * @return The {@link SecurityContext} of the exchange.
+     */
+    public static @NotNull SecurityContext of(@NotNull Exchange exchange) {
+        return of(exchange.storage());
+    }
+
+    /**
+     * Gets the {@link SecurityContext} of the exchange owning the given {@link SessionStorage}, creating it
+     * if necessary.
+     *
+     * @param storage The {@link SessionStorage} of the exchange.
+     * @return The {@link SecurityContext} of the exchange.
+     */
+    public static @NotNull SecurityContext of(@NotNull SessionStorage storage) {
+        if (storage.get(STORAGE_KEY) instanceof SecurityContext context) return context;
+
+        SecurityContext created = new SecurityContext();
+        return storage.putIfAbsent(STORAGE_KEY, created) instanceof SecurityContext context ? context : created;
+    }
+
+    /**
+     * Gets the {@link SecurityContext} of the exchange owning the given {@link SessionStorage} without
+     * creating it.
+     *
+     * @param storage The {@link SessionStorage} of the exchange.
+     * @return The {@link SecurityContext} of the exchange, or {@code null} if none has been created yet.
+     */
+    public static @Nullable SecurityContext find(@NotNull SessionStorage storage) {
+        return storage.get(STORAGE_KEY) instanceof SecurityContext context ? context : null;
+    }
+
+    /**
+     * Gets the authenticated {@link Token} of the exchange.
+     *
+     * @return The authenticated {@link Token}, or {@code null} if the exchange has not been authenticated by a token.
+     */
+    public @Nullable Token getToken() {
+        return token;
+    }
+
+    /**
+     * Sets the authenticated {@link Token} of the exchange.
+     *
+     * @param token The authenticated {@link Token}.
+     */
+    public void setToken(@Nullable Token token) {
+        this.token = token;
+    }
+
+    /**
+     * Gets the {@link TokenPermission} of the authenticated token which granted access to the exchange.
+     *
+     * @return The matched {@link TokenPermission}, or {@code null} if the exchange has not been authenticated by a token.
+     */
+    public @Nullable TokenPermission getPermission() {
+        return permission;
+    }
+
+    /**
+     * Sets the {@link TokenPermission} which granted access to the exchange.
+     *
+     * @param permission The matched {@link TokenPermission}.
+     */
+    public void setPermission(@Nullable TokenPermission permission) {
+        this.permission = permission;
+    }
+
+    /**
+     * Gets the {@link AuthResult} of the authentication chains. If a chain has failed, this is the result of
+     * the failed chain.
+     *
+     * @return The {@link AuthResult}, or {@code null} if the exchange has not been authenticated yet.
+     */
+    public @Nullable AuthResult getAuthResult() {
+        return authResult;
+    }
+
+    /**
+     * Sets the {@link AuthResult} of the authentication chains.
+     *
+     * @param authResult The {@link AuthResult}.
+     */
+    public void setAuthResult(@Nullable AuthResult authResult) {
+        this.authResult = authResult;
+    }
+
+    /**
+     * Checks whether the exchange has been authenticated successfully.
+     *
+     * @return {@code true} if the authentication chains have run and passed, {@code false} otherwise.
+     */
+    public boolean isAuthenticated() {
+        AuthResult result = this.authResult;
+        return result != null && result.isSuccess();
+    }
+
+    /**
+     * Gets the {@link RateLimitPhase} in which the exchange has been rate limited.
+     *
+     * @return The {@link RateLimitPhase}, or {@code null} if the exchange has not been rate limited.
+     */
+    public @Nullable RateLimitPhase getLimitedIn() {
+        return limitedIn;
+    }
+
+    /**
+     * Checks whether the exchange has been rate limited.
+     *
+     * @return {@code true} if the exchange has been rate limited, {@code false} otherwise.
+     */
+    public boolean isRateLimited() {
+        return limitedIn != null;
+    }
+
+    /**
+     * Gets the {@link RateLimitAdapter}s whose limits the exchange has exceeded. The list is empty if the
+     * exchange has not been rate limited, or has been rejected by the penalty box before any adapter ran.
+     *
+     * @return An unmodifiable list of the exceeded {@link RateLimitAdapter}s.
+     */
+    public @NotNull List<RateLimitAdapter> getExceeded() {
+        return exceeded;
+    }
+
+    /**
+     * Gets the time at which the client may retry the rate limited exchange, which is the latest reset of
+     * all exceeded limits and the block of the penalty box.
+     *
+     * @return The retry timestamp in milliseconds, or {@code 0} if it is not known.
+     */
+    public long getRetryAt() {
+        return retryAt;
+    }
+
+    /**
+     * Records that the exchange has been rate limited.
+     *
+     * @param phase    The {@link RateLimitPhase} in which the exchange has been rate limited.
+     * @param exceeded The {@link RateLimitAdapter}s whose limits have been exceeded.
+     * @param retryAt  The time in milliseconds at which the client may retry, or {@code 0} if it is not known.
+     */
+    public void setRateLimited(@NotNull RateLimitPhase phase, @NotNull List<RateLimitAdapter> exceeded, long retryAt) {
+        this.exceeded = List.copyOf(exceeded);
+        this.retryAt = retryAt;
+        this.limitedIn = phase;
+    }
+
+    /**
+     * Gets the pending charges of adapters which charge back once the exchange has completed.
+     *
+     * @return The {@link RateLimitCharges}, or {@code null} if there are none.
+     */
+    public @Nullable RateLimitCharges getCharges() {
+        return charges;
+    }
+
+    /**
+     * Sets the pending charges of the exchange. This is managed by the
+     * {@link de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager}.
+     *
+     * @param charges The {@link RateLimitCharges}.
+     */
+    public void setCharges(@Nullable RateLimitCharges charges) {
+        this.charges = charges;
+    }
+
+    /**
+     * Gets the in flight permits which have been acquired for the exchange.
+     *
+     * @return The {@link ConcurrencyPermits}, or {@code null} if there are none.
+     */
+    public @Nullable ConcurrencyPermits getPermits() {
+        return permits;
+    }
+
+    /**
+     * Sets the in flight permits of the exchange. This is managed by the
+     * {@link de.craftsblock.cnet.modules.security.ratelimit.concurrency.ConcurrencyLimitAdapter}s.
+     *
+     * @param permits The {@link ConcurrencyPermits}.
+     */
+    public void setPermits(@Nullable ConcurrencyPermits permits) {
+        this.permits = permits;
+    }
+
+    /**
+     * Gets the value of the combined {@code RateLimit-Policy} header which has been written to the response
+     * of the exchange so far, containing the entries of all rate limit phases checked until now.
+     *
+     * @return The header value, or {@code null} if no combined header has been written.
+     */
+    public @Nullable String getRateLimitPolicyHeader() {
+        return rateLimitPolicyHeader;
+    }
+
+    /**
+     * Gets the value of the combined {@code RateLimit} header which has been written to the response
+     * of the exchange so far, containing the entries of all rate limit phases checked until now.
+     *
+     * @return The header value, or {@code null} if no combined header has been written.
+     */
+    public @Nullable String getRateLimitHeader() {
+        return rateLimitHeader;
+    }
+
+    /**
+     * Sets the values of the combined rate limit headers of the exchange. This is managed by the
+     * {@link de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager}.
+     *
+     * @param policy The value of the {@code RateLimit-Policy} header.
+     * @param limit  The value of the {@code RateLimit} header.
+     */
+    public void setRateLimitHeaders(@Nullable String policy, @Nullable String limit) {
+        this.rateLimitPolicyHeader = policy;
+        this.rateLimitHeader = limit;
+    }
+
+}
@@ -1,5 +1,6 @@
 package de.craftsblock.cnet.modules.security.auth;
 
+import de.craftsblock.cnet.modules.security.sockets.SocketConnection;
 import de.craftsblock.craftsnet.api.http.Exchange;
 import de.craftsblock.craftsnet.api.http.Request;
 
@@ -13,7 +14,7 @@ import de.craftsblock.craftsnet.api.http.Request;
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.1.0
  * @since 1.0.0-SNAPSHOT
  */
 public interface AuthAdapter {
@@ -27,6 +28,19 @@ public interface AuthAdapter {
      */
     void authenticate(AuthResult result, Exchange exchange);
 
+    /**
+     * Authenticates a websocket connection during its handshake. The result is pinned to the connection
+     * for its whole lifetime. Adapters which do not support websockets reject every connection, which is
+     * the default, so a chain never lets a connection pass unchecked. Adapters which support websockets
+     * must override this method.
+     *
+     * @param result     The {@link AuthResult} object where the outcome of the authentication process is stored.
+     * @param connection The {@link SocketConnection} which is being opened.
+     */
+    default void authenticate(AuthResult result, SocketConnection connection) {
+        failAuth(result, "Websocket connections are not supported by " + getClass().getSimpleName() + "!");
+    }
+
     /**
      * Marks the authentication process as failed. This method is used to set the failure state
      * in the {@link AuthResult} object, including the reason for the failure.
@@ -2,19 +2,129 @@ package de.craftsblock.cnet.modules.security.auth;
 
 import de.craftsblock.cnet.modules.security.auth.chains.AuthChain;
 import de.craftsblock.cnet.modules.security.utils.Manager;
+import de.craftsblock.cnet.modules.security.utils.PrioritizedArray;
+import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The {@code AuthChainManager} class is a manager for handling multiple {@link AuthChain} instances.
- * It extends {@link ConcurrentLinkedQueue} to provide a thread-safe way to manage and manipulate
- * authentication chains. Each {@link AuthChain} represents a chain of authentication adapters.
+ * Each {@link AuthChain} represents a chain of authentication adapters.
+ * <p>
+ * The chains are stored in a {@link PrioritizedArray}, so authenticating a request walks a plain array
+ * without locking or allocating. Chains with a higher priority are executed first, chains with the same
+ * priority in the order they were added.
+ * </p>
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.2.0
  * @since 1.0.0-SNAPSHOT
  */
-public final class AuthChainManager extends ConcurrentLinkedQueue<AuthChain> implements Manager {
+public final class AuthChainManager implements Manager, Iterable<AuthChain> {
+
+    private final PrioritizedArray<AuthChain> chains = new PrioritizedArray<>(AuthChain[]::new);
+
+    /**
+     * Adds an {@link AuthChain} with the {@link PrioritizedArray#DEFAULT_PRIORITY default priority}.
+     *
+     * @param chain The {@link AuthChain} to add.
+     * @return {@code true} if the chain was added, {@code false} if it is already present.
+     */
+    public boolean add(@NotNull AuthChain chain) {
+        return add(chain, PrioritizedArray.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Adds an {@link AuthChain} with the given priority. Chains with a higher priority are executed first.
+     *
+     * @param chain    The {@link AuthChain} to add.
+     * @param priority The priority of the chain.
+     * @return {@code true} if the chain was added, {@code false} if it is already present.
+     */
+    public boolean add(@NotNull AuthChain chain, int priority) {
+        return chains.add(chain, priority);
+    }
+
+    /**
+     * Removes an {@link AuthChain}.
+     *
+     * @param chain The {@link AuthChain} to remove.
+     * @return {@code true} if the chain was removed, {@code false} if it was not present.
+     */
+    public boolean remove(@NotNull AuthChain chain) {
+        return chains.remove(chain);
+    }
+
+    /**
+     * Removes and adds several {@link AuthChain}s at once, so a request either runs the chains before or
+     * after the whole change, never a mix of them.
+     *
+     * @param removed The {@link AuthChain}s to remove.
+     * @param added   The {@link AuthChain}s to add with their priority, added in the iteration order of the map.
+     */
+    public void replace(@NotNull Collection<? extends AuthChain> removed, @NotNull Map<? extends AuthChain, Integer> added) {
+        chains.replace(removed, added);
+    }
+
+    /**
+     * Checks whether an {@link AuthChain} is present.
+     *
+     * @param chain The {@link AuthChain} to check.
+     * @return {@code true} if the chain is present, {@code false} otherwise.
+     */
+    public boolean contains(@NotNull AuthChain chain) {
+        return chains.contains(chain);
+    }
+
+    /**
+     * Checks whether no {@link AuthChain} is present.
+     *
+     * @return {@code true} if there are no chains, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return chains.isEmpty();
+    }
+
+    /**
+     * Gets the amount of {@link AuthChain}s.
+     *
+     * @return The amount of chains.
+     */
+    public int size() {
+        return chains.size();
+    }
+
+    /**
+     * Gets the current {@link AuthChain}s in execution order. The returned array is shared
+     * and must not be modified.
+     *
+     * @return The current chains.
+     */
+    public @NotNull AuthChain[] getChains() {
+        return chains.array();
+    }
+
+    /**
+     * Gets an unmodifiable list of the current {@link AuthChain}s in execution order.
+     *
+     * @return The current chains.
+     */
+    public @NotNull List<AuthChain> asList() {
+        return chains.asList();
+    }
+
+    /**
+     * Gets an iterator over the {@link AuthChain}s in execution order at the time of the call.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public @NotNull Iterator<AuthChain> iterator() {
+        return chains.iterator();
+    }
 
 }
@@ -2,6 +2,7 @@ package de.craftsblock.cnet.modules.security.auth.chains;
 
 import de.craftsblock.cnet.modules.security.auth.AuthAdapter;
 import de.craftsblock.cnet.modules.security.auth.AuthResult;
+import de.craftsblock.cnet.modules.security.sockets.SocketConnection;
 import de.craftsblock.craftsnet.api.http.Exchange;
 
 /**
@@ -14,7 +15,7 @@ import de.craftsblock.craftsnet.api.http.Exchange;
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.1.0
  * @since 1.0.0-SNAPSHOT
  */
 public abstract class AuthChain {
@@ -29,6 +30,20 @@ public abstract class AuthChain {
      */
     public abstract AuthResult authenticate(Exchange exchange);
 
+    /**
+     * Authenticates a websocket connection during its handshake by passing it through the chain of registered
+     * {@link AuthAdapter} instances. Chains which do not support websockets reject every connection, which is
+     * the default, so custom chains never let websocket connections pass unchecked.
+     *
+     * @param connection The {@link SocketConnection} which is being opened.
+     * @return The {@link AuthResult} object that contains the result of the authentication process.
+     */
+    public AuthResult authenticate(SocketConnection connection) {
+        AuthResult result = new AuthResult();
+        result.cancel("Websocket connections are not supported by " + getClass().getSimpleName() + "!");
+        return result;
+    }
+
     /**
      * Appends a new {@link AuthAdapter} to the authentication chain. The adapter will be used
      * during future authentication attempts.
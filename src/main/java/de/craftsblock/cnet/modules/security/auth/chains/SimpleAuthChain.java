@@ -2,13 +2,14 @@ package de.craftsblock.cnet.modules.security.auth.chains;
 
 import de.craftsblock.cnet.modules.security.auth.AuthAdapter;
 import de.craftsblock.cnet.modules.security.auth.AuthResult;
+import de.craftsblock.cnet.modules.security.sockets.SocketConnection;
+import de.craftsblock.cnet.modules.security.utils.PrioritizedArray;
 import de.craftsblock.craftsnet.api.http.Exchange;
 import de.craftsblock.craftsnet.api.http.Request;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -16,18 +17,21 @@ import java.util.regex.Pattern;
  * using a simple queue-based approach to handle multiple {@link AuthAdapter} instances in sequence.
  * It processes each authentication adapter in the order they were added.
  *
- * <p>Adapters are executed in the order they were appended to the chain, and the chain stops
- * processing if an authentication result is cancelled (i.e., if an adapter denies access).</p>
+ * <p>Adapters are executed by their priority and then in the order they were appended to the chain,
+ * and the chain stops processing if an authentication result is cancelled (i.e., if an adapter denies access).
+ * The adapters are stored in a {@link PrioritizedArray}, so a request walks a plain array without locking.</p>
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.2.0
  * @since 1.0.0-SNAPSHOT
  */
 public class SimpleAuthChain extends AuthChain {
 
-    private final ConcurrentLinkedQueue<AuthAdapter> adapters = new ConcurrentLinkedQueue<>();
+    private final PrioritizedArray<AuthAdapter> adapters = new PrioritizedArray<>(AuthAdapter[]::new);
     private final List<String> excluded = new ArrayList<>();
+    private List<String> configured = List.of();
+    private volatile Pattern exclusions = Pattern.compile("");
 
     /**
      * Authenticates the provided {@link Exchange} by passing it through the chain of
@@ -42,12 +46,10 @@ public class SimpleAuthChain extends AuthChain {
         final Request request = exchange.request();
         final AuthResult result = new AuthResult();
 
-        Pattern pattern = Pattern.compile(String.join("|", excluded));
-        Matcher matcher = pattern.matcher(request.getUrl());
-        if (matcher.matches()) return result;
+        if (exclusions.matcher(request.getUrl()).matches()) return result;
 
         // Iterate over each adapter in the chain and authenticate the request.
-        for (AuthAdapter adapter : adapters) {
+        for (AuthAdapter adapter : adapters.array()) {
             adapter.authenticate(result, exchange);
 
             // Stop processing further adapters if the authentication is cancelled.
@@ -58,16 +60,51 @@ public class SimpleAuthChain extends AuthChain {
     }
 
     /**
-     * Appends a new {@link AuthAdapter} to the chain. If the adapter is already present,
-     * it will not be added again.
+     * Authenticates the provided {@link SocketConnection} during its handshake by passing it through the chain of
+     * registered {@link AuthAdapter} instances. Connections to excluded paths are accepted without authentication.
+     *
+     * @param connection The {@link SocketConnection} which is being opened.
+     * @return The {@link AuthResult} object that contains the result of the authentication process.
+     */
+    @Override
+    public AuthResult authenticate(final SocketConnection connection) {
+        final AuthResult result = new AuthResult();
+        final String path = connection.getClient().getPath();
+
+        if (path != null && exclusions.matcher(path).matches()) return result;
+
+        for (AuthAdapter adapter : adapters.array()) {
+            adapter.authenticate(result, connection);
+
+            // Stop processing further adapters if the authentication is cancelled.
+            if (result.isCancelled()) break;
+        }
+
+        return result;
+    }
+
+    /**
+     * Appends a new {@link AuthAdapter} to the chain with the {@link PrioritizedArray#DEFAULT_PRIORITY default priority}.
+     * If the adapter is already present, it will not be added again.
      *
      * @param adapter The {@link AuthAdapter} to be appended to the chain.
      * @return The instance of {@link SimpleAuthChain} used for chain method calls.
      */
     @Override
     public SimpleAuthChain append(AuthAdapter adapter) {
-        if (!adapters.isEmpty() && adapters.contains(adapter)) return this;
-        adapters.add(adapter);
+        return append(adapter, PrioritizedArray.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Appends a new {@link AuthAdapter} to the chain with the given priority. Adapters with a higher priority
+     * are executed first. If the adapter is already present, it will not be added again.
+     *
+     * @param adapter  The {@link AuthAdapter} to be appended to the chain.
+     * @param priority The priority of the adapter.
+     * @return The instance of {@link SimpleAuthChain} used for chain method calls.
+     */
+    public SimpleAuthChain append(AuthAdapter adapter, int priority) {
+        adapters.add(adapter, priority);
         return this;
     }
 
@@ -91,9 +128,7 @@ public class SimpleAuthChain extends AuthChain {
      */
     @Override
     public SimpleAuthChain removeAll(Class<? extends AuthAdapter> adapter) {
-        adapters.stream()
-                .filter(adapter::isInstance)
-                .forEach(this::remove);
+        adapters.removeIf(adapter::isInstance);
         return this;
     }
 
@@ -103,8 +138,9 @@ public class SimpleAuthChain extends AuthChain {
      * @param pattern The exclusion pattern to add, typically a regex string matching URLs to exclude.
      * @return The instance of {@link SimpleAuthChain} used for chain method calls.
      */
-    public SimpleAuthChain addExclusion(String pattern) {
+    public synchronized SimpleAuthChain addExclusion(String pattern) {
         excluded.add(pattern);
+        compileExclusions();
         return this;
     }
 
@@ -114,9 +150,34 @@ public class SimpleAuthChain extends AuthChain {
      * @param pattern The exclusion pattern to remove.
      * @return The instance of {@link SimpleAuthChain} used for chain method calls.
      */
-    public SimpleAuthChain removeExclusion(String pattern) {
+    public synchronized SimpleAuthChain removeExclusion(String pattern) {
         excluded.remove(pattern);
+        compileExclusions();
+        return this;
+    }
+
+    /**
+     * Replaces the exclusion patterns which are provided by the configuration. They are kept apart from the
+     * patterns added through {@link #addExclusion(String)}, so reloading the configuration does not drop
+     * exclusions which have been added in code. All patterns are swapped in at once.
+     *
+     * @param patterns The configured exclusion patterns.
+     * @return The instance of {@link SimpleAuthChain} used for chain method calls.
+     */
+    public synchronized SimpleAuthChain setConfiguredExclusions(Collection<String> patterns) {
+        configured = List.copyOf(patterns);
+        compileExclusions();
         return this;
     }
 
+    /**
+     * Compiles the exclusion patterns added in code and by the configuration into a single {@link Pattern}
+     * and publishes it to the request path.
+     */
+    private void compileExclusions() {
+        List<String> patterns = new ArrayList<>(excluded);
+        patterns.addAll(configured);
+        exclusions = Pattern.compile(String.join("|", patterns));
+    }
+
 }
@@ -44,7 +44,9 @@ public record Token(long id, String hash, List<TokenPermission> permissions) imp
         Json json = Json.empty();
         json.set("id", id);
         json.set("hash", hash);
-        json.set("permissions", permissions.stream().map(TokenPermission::serialize).map(Json::getObject).toList());
+        synchronized (permissions) {
+            json.set("permissions", permissions.stream().map(TokenPermission::serialize).map(Json::getObject).toList());
+        }
         return json;
     }
 
@@ -1,13 +1,17 @@
 package de.craftsblock.cnet.modules.security.auth.token;
 
 import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.SecurityContext;
 import de.craftsblock.cnet.modules.security.auth.AuthAdapter;
 import de.craftsblock.cnet.modules.security.auth.AuthResult;
 import de.craftsblock.cnet.modules.security.events.auth.token.TokenUsedEvent;
+import de.craftsblock.cnet.modules.security.jfr.TokenVerificationEvent;
+import de.craftsblock.cnet.modules.security.sockets.SocketConnection;
 import de.craftsblock.craftsnet.api.http.Exchange;
 import de.craftsblock.craftsnet.api.http.HttpMethod;
 import de.craftsblock.craftsnet.api.http.Request;
 import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import de.craftsblock.craftsnet.api.websocket.WebSocketClient;
 import org.springframework.security.crypto.bcrypt.BCrypt;
 
 /**
@@ -16,11 +20,13 @@ import org.springframework.security.crypto.bcrypt.BCrypt;
  * <p>
  * This adapter extracts the token from the Authorization header of a http request,
  * validates it, and performs authentication by checking the token's validity
- * against the stored tokens managed by the {@link TokenManager}.
+ * against the stored tokens managed by the {@link TokenManager}. The authenticated token and the permission
+ * granting access are kept in the {@link SecurityContext} of the exchange. Every verification is recorded
+ * as a {@link TokenVerificationEvent}.
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.3.0
  * @since 1.0.0-SNAPSHOT
  */
 public class TokenAuthAdapter implements AuthAdapter {
@@ -42,7 +48,8 @@ public class TokenAuthAdapter implements AuthAdapter {
      * the token format. If the token is valid, it retrieves the corresponding
      * {@link Token} from the {@link CNetSecurity} and verifies the token's
      * secret using BCrypt. If any validation fails, the authentication result is
-     * marked as failed.
+     * marked as failed. Otherwise, the token and the matched permission are stored
+     * in the {@link SecurityContext} of the exchange.
      *
      * @param result   The {@link AuthResult} object where the authentication result will be stored.
      * @param exchange The {@link Exchange} object representing the HTTP request.
@@ -52,20 +59,55 @@ public class TokenAuthAdapter implements AuthAdapter {
         final Request request = exchange.request();
         final SessionStorage storage = exchange.storage();
 
-        // Retrieve the authorization header from the request
-        String auth_header = request.getHeader(AUTH_HEADER);
+        Grant grant = authenticate(result, request.getHeader(AUTH_HEADER), request.getHttpMethod(), request.getDomain(), request.getUrl());
+        if (grant == null) return;
 
+        SecurityContext context = SecurityContext.of(storage);
+        context.setToken(grant.token());
+        context.setPermission(grant.permission());
+
+        // Kept for consumers which still read the token from the session storage
+        storage.put("auth.token", grant.token());
+    }
+
+    /**
+     * Authenticates a websocket connection based on the token in the Authorization header of its handshake.
+     * The handshake is checked as a {@link HttpMethod#GET} request to the path of the connection. If the token
+     * is valid, it is pinned to the connection.
+     *
+     * @param result     The {@link AuthResult} object where the authentication result will be stored.
+     * @param connection The {@link SocketConnection} which is being opened.
+     */
+    @Override
+    public void authenticate(AuthResult result, SocketConnection connection) {
+        final WebSocketClient client = connection.getClient();
+
+        Grant grant = authenticate(result, client.getHeader(AUTH_HEADER), HttpMethod.GET, client.getDomain(), client.getPath());
+        if (grant != null) connection.setToken(grant.token());
+    }
+
+    /**
+     * Validates the token of an Authorization header and checks whether it has access to the given route.
+     *
+     * @param result      The {@link AuthResult} object where the authentication result will be stored.
+     * @param auth_header The value of the Authorization header, may be {@code null}.
+     * @param method      The http method of the route.
+     * @param domain      The domain of the route.
+     * @param url         The path of the route.
+     * @return The {@link Grant} of the authenticated token, or {@code null} if the authentication failed.
+     */
+    private Grant authenticate(AuthResult result, String auth_header, HttpMethod method, String domain, String url) {
         // Check if the header is present
         if (auth_header == null) {
             failAuth(result, "Auth header not present or wrong auth type!");
-            return;
+            return null;
         }
 
         // Split the auth header and check if it has two values and is of the correct type
         String[] header = auth_header.split(" ");
         if (header.length != 2 || !AUTH_TYPE.equalsIgnoreCase(header[0])) {
             failAuth(result, "No valid auth token present!");
-            return;
+            return null;
         }
 
         // Extract the token from the authorization header
@@ -76,43 +118,87 @@ public class TokenAuthAdapter implements AuthAdapter {
         // Validate the number of parts in the token
         if (parts.length != 2) {
             failAuth(result, "No valid auth token present!");
-            return;
+            return null;
+        }
+
+        try {
+            TokenManager manager = CNetSecurity.getTokenManager();
+            Token token = verify(manager, parts[1]);
+
+            // Check the token permissions, repeated routes are answered by the decision cache
+            TokenPermission permission = manager.getDecisionCache().match(token, method, domain, url);
+            if (permission != null) {
+                CNetSecurity.callEvent(new TokenUsedEvent(token));
+                return new Grant(token, permission);
+            }
+
+            failAuth(result, "You do not have access to this ressource!");
+        } catch (NumberFormatException | IllegalStateException e) {
+            failAuth(result, "No valid auth token present!");
+        } catch (Exception e) {
+            failAuth(result, "Failed to verify your token!");
+            CNetSecurity.getAddonEntrypoint().logger().error(e, "Failed to verify the api token!");
         }
 
+        return null;
+    }
+
+    /**
+     * Looks up the token of the given id and secret part and verifies its secret, recording the
+     * verification as a {@link TokenVerificationEvent}.
+     *
+     * @param manager The {@link TokenManager} holding the tokens.
+     * @param part    The part of the token containing the hex encoded id followed by the secret.
+     * @return The verified {@link Token}.
+     * @throws NumberFormatException If the id is not a valid hex number.
+     * @throws IllegalStateException If the token is malformed, unknown or the secret does not match.
+     */
+    private Token verify(TokenManager manager, String part) {
+        TokenVerificationEvent event = new TokenVerificationEvent();
+        event.begin();
+
+        String outcome = TokenVerificationEvent.MALFORMED;
+        Token token = null;
         try {
             // Extract the ID from the token
-            String part = parts[1];
             if (part.length() <= 16) throw new IllegalStateException();
             long id = Long.parseLong(part.substring(0, 16), 16);
+            event.tokenId = id;
 
             // Retrieve the token from the token manager
-            Token token = CNetSecurity.getTokenManager().get(id);
-            if (token == null) throw new IllegalStateException();
+            token = manager.get(id);
+            if (token == null) {
+                outcome = TokenVerificationEvent.UNKNOWN_TOKEN;
+                throw new IllegalStateException();
+            }
 
             // Extract the secret from the token and verify it
-            String secret = part.substring(16);
-            if (!BCrypt.checkpw(secret, token.hash())) throw new IllegalStateException();
-
-            // Check the token permissions
-            String url = request.getUrl();
-            String domain = request.getDomain();
-            HttpMethod method = request.getHttpMethod();
-            for (TokenPermission permission : token.permissions())
-                if (permission.isHttpMethodAllowed(method)
-                        && permission.isDomainAllowed(domain)
-                        && permission.isPathAllowed(url)) {
-                    storage.put("auth.token", token);
-                    CNetSecurity.callEvent(new TokenUsedEvent(token));
-                    return;
-                }
+            outcome = TokenVerificationEvent.INVALID_SECRET;
+            if (!BCrypt.checkpw(part.substring(16), token.hash())) throw new IllegalStateException();
 
-            failAuth(result, "You do not have access to this ressource!");
+            outcome = TokenVerificationEvent.VERIFIED;
+            return token;
         } catch (NumberFormatException | IllegalStateException e) {
-            failAuth(result, "No valid auth token present!");
-        } catch (Exception e) {
-            failAuth(result, "Failed to verify your token!");
-            CNetSecurity.getAddonEntrypoint().logger().error(e, "Failed to verify the api token!");
+            throw e;
+        } catch (RuntimeException e) {
+            outcome = TokenVerificationEvent.ERROR;
+            throw e;
+        } finally {
+            if (event.shouldCommit()) {
+                event.algorithm = token == null ? null : TokenVerificationEvent.algorithmOf(token.hash());
+                event.outcome = outcome;
+                event.commit();
+            }
         }
     }
 
+    /**
+     * An authenticated token together with the permission which granted access.
+     *
+     * @param token      The authenticated {@link Token}.
+     * @param permission The matched {@link TokenPermission}.
+     */
+    private record Grant(Token token, TokenPermission permission) {
+    }
+
 }
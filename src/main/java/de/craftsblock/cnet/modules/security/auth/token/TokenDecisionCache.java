@@ -0,0 +1,195 @@
+package de.craftsblock.cnet.modules.security.auth.token;
+
+import de.craftsblock.cnet.modules.security.jfr.PermissionMatchEvent;
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link TokenDecisionCache} remembers which {@link TokenPermission} allows a {@link Token} to access a route, so repeated
+ * requests of the same client do not evaluate all {@link TokenPermission}s again. A route consists of the
+ * http method, the domain and the path of a request.
+ * <p>
+ * The decisions are stored per token and bound to the exact {@link Token} instance they were computed for.
+ * Every token keeps at most {@link #getCapacity()} routes, if more routes are requested an arbitrary route
+ * is evicted. The decisions of a token are dropped by the {@link TokenManager} whenever the token is replaced,
+ * revoked or its permissions are changed through the manager. If the permission list of a token is modified
+ * directly, {@link TokenManager#invalidate(Token)} must be called.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.2.0
+ * @see TokenManager#getDecisionCache()
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class TokenDecisionCache {
+
+    /**
+     * The default amount of routes remembered per token.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final ConcurrentHashMap<Long, Decisions> tokens = new ConcurrentHashMap<>();
+    private final int capacity;
+
+    /**
+     * Constructs a new {@link TokenDecisionCache} remembering {@link #DEFAULT_CAPACITY} routes per token.
+     */
+    public TokenDecisionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new {@link TokenDecisionCache}.
+     *
+     * @param capacity The amount of routes remembered per token.
+     * @throws IllegalStateException If the capacity is less than one.
+     */
+    public TokenDecisionCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalStateException("The capacity must be at least 1! (Invalid capacity: " + capacity + ")");
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Checks whether the given {@link Token} is allowed to access a route. The decision is taken from
+     * the cache, or computed from the permissions of the token and cached if it is not known yet.
+     *
+     * @param token  The {@link Token} to check.
+     * @param method The http method of the request.
+     * @param domain The domain of the request.
+     * @param path   The path of the request.
+     * @return {@code true} if any permission of the token allows the route, {@code false} otherwise.
+     */
+    public boolean isAllowed(@NotNull Token token, HttpMethod method, String domain, String path) {
+        return match(token, method, domain, path) != null;
+    }
+
+    /**
+     * Gets the first {@link TokenPermission} of the given {@link Token} which allows to access a route. The
+     * decision is taken from the cache, or computed from the permissions of the token and cached if it is not
+     * known yet.
+     *
+     * @param token  The {@link Token} to check.
+     * @param method The http method of the request.
+     * @param domain The domain of the request.
+     * @param path   The path of the request.
+     * @return The matching {@link TokenPermission}, or {@code null} if no permission of the token allows the route.
+     */
+    public @Nullable TokenPermission match(@NotNull Token token, HttpMethod method, String domain, String path) {
+        PermissionMatchEvent event = new PermissionMatchEvent();
+        event.begin();
+
+        Decisions decisions = tokens.get(token.id());
+        if (decisions == null || decisions.token != token) {
+            decisions = new Decisions(token);
+            tokens.put(token.id(), decisions);
+        }
+
+        final Route route = new Route(method, domain, path);
+        Optional<TokenPermission> cached = decisions.routes.get(route);
+        if (cached != null) {
+            event.complete(token, method, domain, path, cached.isPresent(), true);
+            return cached.orElse(null);
+        }
+
+        Optional<TokenPermission> allowed = Optional.ofNullable(evaluate(token, method, domain, path));
+        if (decisions.routes.size() >= capacity) {
+            Iterator<Route> iterator = decisions.routes.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        decisions.routes.put(route, allowed);
+        event.complete(token, method, domain, path, allowed.isPresent(), false);
+        return allowed.orElse(null);
+    }
+
+    /**
+     * Drops all decisions of the token with the given id.
+     *
+     * @param id The id of the token.
+     */
+    public void invalidate(long id) {
+        tokens.remove(id);
+    }
+
+    /**
+     * Drops all decisions.
+     */
+    public void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * Gets the amount of routes remembered per token.
+     *
+     * @return The capacity per token.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Evaluates the permissions of the given {@link Token} against a route. The permissions are matched
+     * against a snapshot, as the permission list may be modified concurrently by the {@link TokenManager}.
+     *
+     * @param token  The {@link Token} to check.
+     * @param method The http method of the request.
+     * @param domain The domain of the request.
+     * @param path   The path of the request.
+     * @return The first {@link TokenPermission} allowing the route, or {@code null} if there is none.
+     */
+    private static TokenPermission evaluate(Token token, HttpMethod method, String domain, String path) {
+        TokenPermission[] permissions;
+        synchronized (token.permissions()) {
+            permissions = token.permissions().toArray(TokenPermission[]::new);
+        }
+
+        for (TokenPermission permission : permissions)
+            if (permission.isHttpMethodAllowed(method)
+                    && permission.isDomainAllowed(domain)
+                    && permission.isPathAllowed(path))
+                return permission;
+
+        return null;
+    }
+
+    /**
+     * The cached decisions of a single {@link Token} instance.
+     */
+    private static final class Decisions {
+
+        private final Token token;
+        private final ConcurrentHashMap<Route, Optional<TokenPermission>> routes = new ConcurrentHashMap<>();
+
+        /**
+         * Constructs new, empty {@link Decisions}.
+         *
+         * @param token The {@link Token} the decisions belong to.
+         */
+        private Decisions(Token token) {
+            this.token = token;
+        }
+
+    }
+
+    /**
+     * A route of a request.
+     *
+     * @param method The http method of the request.
+     * @param domain The domain of the request.
+     * @param path   The path of the request.
+     */
+    private record Route(HttpMethod method, String domain, String path) {
+    }
+
+}
@@ -0,0 +1,224 @@
+package de.craftsblock.cnet.modules.security.auth.token;
+
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The {@link TokenIndex} maintains secondary indexes over the {@link TokenPermission}s of all tokens registered
+ * with a {@link TokenManager}. Tokens are indexed by the domain patterns, the literal prefixes of the path patterns
+ * and the http methods of their permissions.
+ * <p>
+ * The indexes only narrow down the candidates of a {@link TokenQuery}: domain patterns are matched once per
+ * distinct pattern instead of once per token, and path patterns are looked up by the prefixes of the queried
+ * path. The candidates are verified against their permissions afterwards.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see TokenManager#query()
+ * @since 1.0.0-SNAPSHOT
+ */
+final class TokenIndex {
+
+    private final ConcurrentHashMap<String, DomainBucket> domains = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Long>> prefixes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<HttpMethod, Set<Long>> methods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Keys> indexed = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes a token, replacing the entries of a previously indexed token with the same id.
+     *
+     * @param token The {@link Token} to index.
+     */
+    synchronized void index(@NotNull Token token) {
+        unindex(token.id());
+
+        List<TokenPermission> permissions;
+        synchronized (token.permissions()) {
+            permissions = new ArrayList<>(token.permissions());
+        }
+
+        Keys keys = new Keys();
+        for (TokenPermission permission : permissions) {
+            String domain = permission.domain().pattern();
+            if (keys.domains.add(domain))
+                domains.computeIfAbsent(domain, key -> new DomainBucket(permission.domain(), ConcurrentHashMap.newKeySet()))
+                        .ids().add(token.id());
+
+            String prefix = permission.isPathWildcard() ? "" : literalPrefix(permission.path().pattern());
+            if (keys.prefixes.add(prefix))
+                prefixes.computeIfAbsent(prefix, key -> ConcurrentHashMap.newKeySet()).add(token.id());
+
+            for (HttpMethod method : permission.methods())
+                if (keys.methods.add(method))
+                    methods.computeIfAbsent(method, key -> ConcurrentHashMap.newKeySet()).add(token.id());
+        }
+
+        indexed.put(token.id(), keys);
+    }
+
+    /**
+     * Removes all entries of the token with the given id.
+     *
+     * @param id The id of the token.
+     */
+    synchronized void unindex(long id) {
+        Keys keys = indexed.remove(id);
+        if (keys == null) return;
+
+        keys.domains.forEach(domain -> domains.computeIfPresent(domain, (key, bucket) -> {
+            bucket.ids().remove(id);
+            return bucket.ids().isEmpty() ? null : bucket;
+        }));
+        keys.prefixes.forEach(prefix -> prefixes.computeIfPresent(prefix, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        }));
+        keys.methods.forEach(method -> methods.computeIfPresent(method, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        }));
+    }
+
+    /**
+     * Removes all entries.
+     */
+    synchronized void clear() {
+        domains.clear();
+        prefixes.clear();
+        methods.clear();
+        indexed.clear();
+    }
+
+    /**
+     * Collects the ids of all tokens which may allow the given criteria. A criterion which is {@code null} matches
+     * every token. The returned ids are sorted in ascending order and must still be verified.
+     *
+     * @param domain The domain the tokens must have access to.
+     * @param path   The path the tokens must have access to.
+     * @param method The http method the tokens must allow.
+     * @return The sorted ids of the candidates.
+     */
+    long[] candidates(@Nullable String domain, @Nullable String path, @Nullable HttpMethod method) {
+        Set<Long> result = null;
+
+        if (method != null) {
+            Set<Long> ids = new HashSet<>();
+            addAll(ids, methods.get(method));
+            addAll(ids, methods.get(HttpMethod.ALL));
+            addAll(ids, methods.get(HttpMethod.ALL_RAW));
+            result = ids;
+        }
+
+        if (path != null) {
+            Set<Long> ids = new HashSet<>();
+            for (int length = 0; length <= path.length(); length++)
+                addAll(ids, prefixes.get(path.substring(0, length)));
+            result = intersect(result, ids);
+        }
+
+        if (domain != null) {
+            Set<Long> ids = new HashSet<>();
+            for (DomainBucket bucket : domains.values())
+                if (isWildcard(bucket.pattern()) || bucket.pattern().matcher(domain).matches())
+                    addAll(ids, bucket.ids());
+            result = intersect(result, ids);
+        }
+
+        long[] candidates = (result != null ? result.stream() : indexed.keySet().stream())
+                .mapToLong(Long::longValue).toArray();
+        Arrays.sort(candidates);
+        return candidates;
+    }
+
+    /**
+     * Extracts the literal prefix of a regular expression, which every matching string must start with.
+     * Expressions with alternations have no reliable prefix, so an empty prefix is returned for them.
+     *
+     * @param regex The regular expression.
+     * @return The literal prefix of the expression.
+     */
+    static String literalPrefix(String regex) {
+        if (regex.indexOf('|') != -1) return "";
+
+        int start = regex.startsWith("^") ? 1 : 0;
+        StringBuilder prefix = new StringBuilder();
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (".[]{}()*+?^$\\".indexOf(c) != -1) {
+                // A quantifier makes the preceding literal optional
+                if ((c == '?' || c == '*' || c == '{') && !prefix.isEmpty())
+                    prefix.setLength(prefix.length() - 1);
+                break;
+            }
+
+            prefix.append(c);
+        }
+
+        return prefix.toString();
+    }
+
+    /**
+     * Checks if a pattern is a wildcard pattern, see {@link TokenPermission}.
+     *
+     * @param pattern The pattern to check.
+     * @return {@code true} if the pattern is a wildcard, {@code false} otherwise.
+     */
+    private static boolean isWildcard(Pattern pattern) {
+        return pattern.pattern().equals("*") || pattern.pattern().equals(".*");
+    }
+
+    /**
+     * Adds all ids of a possibly missing index entry to the target.
+     *
+     * @param target The target set.
+     * @param ids    The ids to add, may be {@code null}.
+     */
+    private static void addAll(Set<Long> target, @Nullable Set<Long> ids) {
+        if (ids != null) target.addAll(ids);
+    }
+
+    /**
+     * Intersects two sets of ids, where {@code null} stands for all ids.
+     *
+     * @param current The current result, may be {@code null}.
+     * @param ids     The ids to intersect with.
+     * @return The intersection.
+     */
+    private static Set<Long> intersect(@Nullable Set<Long> current, Set<Long> ids) {
+        if (current == null) return ids;
+        current.retainAll(ids);
+        return current;
+    }
+
+    /**
+     * The tokens indexed by a single domain pattern.
+     *
+     * @param pattern The compiled domain pattern.
+     * @param ids     The ids of the tokens.
+     */
+    private record DomainBucket(Pattern pattern, Set<Long> ids) {
+    }
+
+    /**
+     * The index keys a single token has been indexed with.
+     */
+    private static final class Keys {
+
+        private final Set<String> domains = new HashSet<>();
+        private final Set<String> prefixes = new HashSet<>();
+        private final Set<HttpMethod> methods = new HashSet<>();
+
+    }
+
+}
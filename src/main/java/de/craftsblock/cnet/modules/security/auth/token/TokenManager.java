@@ -1,36 +1,91 @@
 package de.craftsblock.cnet.modules.security.auth.token;
 
-import com.google.gson.JsonElement;
 import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.auth.token.store.IndexedTokenStore;
+import de.craftsblock.cnet.modules.security.auth.token.store.JsonTokenStore;
+import de.craftsblock.cnet.modules.security.auth.token.store.TokenStore;
+import de.craftsblock.cnet.modules.security.events.auth.token.TokenBatchCreateEvent;
 import de.craftsblock.cnet.modules.security.events.auth.token.TokenCreateEvent;
 import de.craftsblock.cnet.modules.security.events.auth.token.TokenRevokeEvent;
 import de.craftsblock.cnet.modules.security.utils.Manager;
-import de.craftsblock.craftscore.json.Json;
-import de.craftsblock.craftscore.json.JsonParser;
 import de.craftsblock.craftsnet.utils.Utils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.security.crypto.bcrypt.BCrypt;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Manages a collection of authentication tokens, providing functionality to register, unregister, save,
  * and generate tokens with associated permissions. It extends {@link ConcurrentHashMap} to store tokens
  * by their unique IDs and implements the {@link Manager} interface for managing token-related operations.
+ * <p>
+ * The access decisions of the tokens are cached in a {@link TokenDecisionCache}, and the permissions of all
+ * tokens are kept in secondary indexes which can be searched using {@link #query()}. Both are updated whenever
+ * a token is registered, replaced, removed or its permissions are changed through this manager.
+ * </p>
+ * <p>
+ * The tokens are persisted by a {@link TokenStore}. By default, all tokens are loaded from the file
+ * {@code tokens.json} on startup. If a {@link TokenStore#isLazy() lazy} store like the {@link IndexedTokenStore}
+ * is used instead, this map only holds a bounded set of recently used tokens. Other tokens are loaded from the
+ * store on {@link #get(Object)} and all changes are written through to it, so lookups by id behave the same.
+ * The views of this map, like {@link #values()} and {@link #size()}, only cover the tokens which are currently
+ * held in memory. The secondary indexes are built from the store on the first {@link #query()}, and queries
+ * read tokens which are not held in memory from the store without caching them.
+ * </p>
+ * <p>
+ * Loading, changing and removing a token of a lazy store is serialized per id, so a token which is removed
+ * while another thread loads it is not put back into memory or the store afterwards. The tokens held in memory
+ * are evicted approximately least recently used: every access only records its time, and once the capacity is
+ * exceeded the oldest of a few sampled tokens is evicted, so lookups never wait on a shared lock.
+ * </p>
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.4.0
  * @since 1.0.0-SNAPSHOT
  */
 public final class TokenManager extends ConcurrentHashMap<Long, Token> implements Manager {
 
-    private final File saveFile;
+    /**
+     * The default amount of tokens which are issued, announced and registered together by
+     * {@link #generateTokens(int, List)}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * The default amount of tokens which are held in memory if a lazy {@link TokenStore} is used.
+     */
+    public static final int DEFAULT_RESIDENT_TOKENS = 65536;
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int EVICTION_SAMPLES = 8;
+    private static final int EVICTION_OFFSET = 64;
+
+    private final TokenStore store;
+    private final int capacity;
+    private final ConcurrentHashMap<Long, Long> residency = new ConcurrentHashMap<>();
+    private final TokenDecisionCache decisions = new TokenDecisionCache();
+    private final TokenIndex index = new TokenIndex();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private volatile boolean indexed;
 
     /**
      * Constructs a new {@link TokenManager} and loads tokens from the save file.
@@ -38,14 +93,45 @@ public final class TokenManager extends ConcurrentHashMap<Long, Token> implement
      * If the file contains a valid json array, tokens are deserialized and loaded into the manager.
      */
     public TokenManager() {
-        saveFile = new File(CNetSecurity.getAddonEntrypoint().getDataFolder(), "tokens.json");
-        Json json = JsonParser.parse(saveFile);
-        if (!json.getObject().isJsonArray()) return;
+        this(new JsonTokenStore(new File(CNetSecurity.getAddonEntrypoint().getDataFolder(), "tokens.json")));
+    }
+
+    /**
+     * Constructs a new {@link TokenManager} using the given {@link TokenStore}, which holds at most
+     * {@link #DEFAULT_RESIDENT_TOKENS} in memory if the store is lazy.
+     *
+     * @param store The {@link TokenStore} persisting the tokens.
+     */
+    public TokenManager(@NotNull TokenStore store) {
+        this(store, DEFAULT_RESIDENT_TOKENS);
+    }
+
+    /**
+     * Constructs a new {@link TokenManager} using the given {@link TokenStore}, which is opened first. An eager
+     * store is loaded completely, while a lazy store is only accessed once a token is requested.
+     *
+     * @param store    The {@link TokenStore} persisting the tokens.
+     * @param capacity The maximum amount of tokens held in memory if the store is lazy.
+     * @throws IllegalStateException If the capacity is less than one.
+     * @throws UncheckedIOException  If the store could not be opened.
+     */
+    public TokenManager(@NotNull TokenStore store, int capacity) {
+        if (capacity < 1)
+            throw new IllegalStateException("The token capacity must be positive! (Invalid capacity: " + capacity + ")");
+
+        this.store = store;
+        this.capacity = capacity;
+        this.indexed = !store.isLazy();
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
 
-        for (JsonElement element : json.getObject().getAsJsonArray()) {
-            Token token = Token.of(JsonParser.parse(element));
-            this.put(token.id(), token);
+        try {
+            store.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        if (store.isLazy()) return;
+
+        store.forEach(token -> this.put(token.id(), token));
     }
 
     /**
@@ -91,13 +177,340 @@ public final class TokenManager extends ConcurrentHashMap<Long, Token> implement
     }
 
     /**
-     * Saves the current tokens in the token manager to a json file. The file is stored
-     * in the addon's data folder. All tokens are serialized and saved as a json array.
+     * Grants additional permissions to a token.
+     *
+     * @param token       The {@link Token} to grant the permissions to.
+     * @param permissions The {@link TokenPermission}s to grant.
+     */
+    public void grantPermission(Token token, TokenPermission... permissions) {
+        synchronized (token.permissions()) {
+            token.permissions().addAll(Arrays.asList(permissions));
+        }
+
+        invalidate(token);
+    }
+
+    /**
+     * Revokes a permission from a token.
+     *
+     * @param token      The {@link Token} to revoke the permission from.
+     * @param permission The {@link TokenPermission} to revoke.
+     * @return {@code true} if the token had the permission, {@code false} otherwise.
+     */
+    public boolean revokePermission(Token token, TokenPermission permission) {
+        return revokePermissions(token, permission::equals);
+    }
+
+    /**
+     * Revokes all permissions matching the given filter from a token.
+     *
+     * @param token  The {@link Token} to revoke the permissions from.
+     * @param filter The filter selecting the {@link TokenPermission}s to revoke.
+     * @return {@code true} if any permission was revoked, {@code false} otherwise.
+     */
+    public boolean revokePermissions(Token token, Predicate<TokenPermission> filter) {
+        boolean removed;
+        synchronized (token.permissions()) {
+            removed = token.permissions().removeIf(filter);
+        }
+
+        invalidate(token);
+        return removed;
+    }
+
+    /**
+     * Drops the cached access decisions of a token and updates its index entries. This must be called if
+     * the permission list of a token has been modified without using this manager.
+     *
+     * @param token The {@link Token} whose decisions should be dropped.
+     */
+    public void invalidate(Token token) {
+        decisions.invalidate(token.id());
+        if (!store.isLazy()) {
+            if (super.get(token.id()) == token) index.index(token);
+            return;
+        }
+
+        synchronized (lock(token.id())) {
+            // A token which has been removed in the meantime must not be stored again
+            Token current = this.get(token.id());
+            if (current == null) return;
+
+            // The token may have been evicted and reloaded while it was modified, so the modified instance wins
+            if (current != token) super.put(token.id(), token);
+            store.store(token);
+            index.index(token);
+        }
+    }
+
+    /**
+     * Creates a new {@link TokenQuery} which searches the tokens of this manager using the secondary indexes.
+     *
+     * @return A new {@link TokenQuery} without any criteria.
+     */
+    public TokenQuery query() {
+        ensureIndexed();
+        return new TokenQuery(this, index);
+    }
+
+    /**
+     * Builds the secondary indexes from a lazy {@link TokenStore} the first time they are needed.
+     */
+    private void ensureIndexed() {
+        if (indexed) return;
+
+        synchronized (index) {
+            if (indexed) return;
+
+            store.forEach(index::index);
+            indexed = true;
+        }
+    }
+
+    /**
+     * Gets the {@link TokenStore} which persists the tokens of this manager.
+     *
+     * @return The {@link TokenStore}.
+     */
+    public TokenStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets the {@link TokenDecisionCache} which caches the access decisions of the tokens.
+     *
+     * @return The {@link TokenDecisionCache}.
+     */
+    public TokenDecisionCache getDecisionCache() {
+        return decisions;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If a lazy {@link TokenStore} is used and the token is not held in memory, it is loaded from the store
+     * and may push out a token which has not been used recently.
+     * </p>
+     *
+     * @param key The id of the token.
+     * @return The {@link Token}, or {@code null} if there is none.
+     */
+    @Override
+    public Token get(Object key) {
+        Token token = super.get(key);
+        if (!store.isLazy() || !(key instanceof Long id)) return token;
+
+        if (token == null)
+            synchronized (lock(id)) {
+                // A removal can not run while the token is loaded, so a removed token is not put back
+                token = super.get(id);
+                if (token == null) {
+                    token = store.load(id);
+                    if (token == null) return null;
+                    super.put(id, token);
+                }
+            }
+
+        touch(id);
+        return token;
+    }
+
+    /**
+     * Gets a token without marking it as recently used. If a lazy {@link TokenStore} is used and the token is not
+     * held in memory, it is read from the store without caching it, so scanning many tokens does not evict the
+     * recently used ones.
+     *
+     * @param id The id of the token.
+     * @return The {@link Token}, or {@code null} if there is none.
+     */
+    @Nullable Token peek(long id) {
+        Token token = super.get(id);
+        if (token != null || !store.isLazy()) return token;
+        return store.load(id);
+    }
+
+    /**
+     * Marks a token as recently used and evicts tokens from memory once the capacity is exceeded.
+     *
+     * @param id The id of the token.
+     */
+    private void touch(long id) {
+        residency.put(id, System.nanoTime());
+        if (residency.size() > capacity) evict();
+    }
+
+    /**
+     * Evicts tokens from memory until the capacity is no longer exceeded. Each round samples a few tokens
+     * starting at a random offset and evicts the one which has not been used for the longest time, unless it
+     * has been used again in the meantime. Evicted tokens stay in the store and the secondary indexes.
+     */
+    private void evict() {
+        while (residency.size() > capacity) {
+            int skip = ThreadLocalRandom.current().nextInt(Math.max(1, Math.min(residency.size() - 1, EVICTION_OFFSET)));
+            int sampled = 0;
+            Long victim = null;
+            long oldest = 0;
+
+            for (Map.Entry<Long, Long> entry : residency.entrySet()) {
+                if (skip-- > 0) continue;
+
+                long used = entry.getValue();
+                if (victim == null || used - oldest < 0) {
+                    victim = entry.getKey();
+                    oldest = used;
+                }
+                if (++sampled >= EVICTION_SAMPLES) break;
+            }
+
+            if (victim != null && residency.remove(victim, oldest)) super.remove(victim);
+        }
+    }
+
+    /**
+     * Gets the lock which serializes the loading, changing and removing of a token of a lazy store.
+     *
+     * @param id The id of the token.
+     * @return The lock of the token.
+     */
+    private Object lock(long id) {
+        return locks[Long.hashCode(id) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Forgets the recent use of a token.
+     *
+     * @param id The id of the token.
+     */
+    private void forget(long id) {
+        residency.remove(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The token is indexed, written to the {@link TokenStore}, and replacing a token drops its cached
+     * access decisions.
+     * </p>
+     *
+     * @param key   The id of the token.
+     * @param value The {@link Token}.
+     * @return The previously stored {@link Token}, or {@code null} if there was none.
+     */
+    @Override
+    public Token put(Long key, Token value) {
+        if (!store.isLazy()) return hold(key, value);
+
+        Token previous;
+        synchronized (lock(key)) {
+            previous = hold(key, value);
+            store.store(value);
+        }
+
+        touch(key);
+        return previous;
+    }
+
+    /**
+     * Puts a token into memory, drops its cached access decisions and indexes it.
+     *
+     * @param key   The id of the token.
+     * @param value The {@link Token}.
+     * @return The previously held {@link Token}, or {@code null} if there was none.
+     */
+    private Token hold(Long key, Token value) {
+        Token previous = super.put(key, value);
+        decisions.invalidate(key);
+        index.index(value);
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Removing a token drops its cached access decisions and index entries, and deletes it from the
+     * {@link TokenStore}.
+     * </p>
+     *
+     * @param key The id of the token.
+     * @return The removed {@link Token}, or {@code null} if there was none.
+     */
+    @Override
+    public Token remove(Object key) {
+        if (!store.isLazy() || !(key instanceof Long id)) return unindex(super.remove(key));
+
+        synchronized (lock(id)) {
+            Token removed = super.remove(id);
+            if (removed == null) removed = store.load(id);
+            if (removed != null) store.delete(id);
+            forget(id);
+            return unindex(removed);
+        }
+    }
+
+    /**
+     * Drops the cached access decisions and index entries of a removed token.
+     *
+     * @param removed The removed {@link Token}, or {@code null} if nothing has been removed.
+     * @return The removed {@link Token}.
+     */
+    private Token unindex(@Nullable Token removed) {
+        if (removed == null) return null;
+
+        decisions.invalidate(removed.id());
+        index.unindex(removed.id());
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Removing a token drops its cached access decisions and index entries, and deletes it from the
+     * {@link TokenStore}. If a lazy store is used, only a token which is held in memory can be removed.
+     * </p>
+     *
+     * @param key   The id of the token.
+     * @param value The expected {@link Token}.
+     * @return {@code true} if the token was removed, {@code false} otherwise.
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!(value instanceof Token token)) return super.remove(key, value);
+        if (!store.isLazy()) return super.remove(key, value) && unindex(token) != null;
+
+        synchronized (lock(token.id())) {
+            if (!super.remove(key, value)) return false;
+
+            store.delete(token.id());
+            forget(token.id());
+            return unindex(token) != null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Clearing the manager drops all cached access decisions and index entries. If a lazy {@link TokenStore}
+     * is used, only the tokens held in memory are dropped, the store itself is left untouched.
+     * </p>
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        decisions.clear();
+        index.clear();
+
+        if (!store.isLazy()) return;
+        residency.clear();
+        indexed = false;
+    }
+
+    /**
+     * Saves the tokens using the {@link TokenStore}. By default, all tokens are serialized and saved as a
+     * json array to the file {@code tokens.json} in the addon's data folder. A lazy store has already
+     * received every change and only makes them durable.
      */
     public void save() {
-        Json json = Json.empty();
-        this.values().forEach(token -> json.set("$new", token.serialize()));
-        json.save(saveFile);
+        store.save(this.values());
     }
 
     /**
@@ -119,13 +532,119 @@ public final class TokenManager extends ConcurrentHashMap<Long, Token> implement
      * @return A {@link Map.Entry} containing the plain text secret (as the key) and the generated {@link Token} (as the value).
      */
     public Map.Entry<String, Token> generateToken(List<TokenPermission> permissions) {
+        Map.Entry<String, Token> entry = issueToken(permissions);
+        registerToken(entry.getValue());
+        return entry;
+    }
+
+    /**
+     * Generates many tokens with the provided list of permissions at once, using the common {@link ForkJoinPool}
+     * and batches of {@link #DEFAULT_BATCH_SIZE} tokens.
+     *
+     * @param count       The amount of tokens to generate.
+     * @param permissions A list of {@link TokenPermission} to be associated with every token.
+     * @return A lazy {@link Stream} of entries containing the plain text secret (as the key) and the generated {@link Token} (as the value).
+     * @see #generateTokens(int, List, int, ForkJoinPool)
+     */
+    public Stream<Map.Entry<String, Token>> generateTokens(int count, List<TokenPermission> permissions) {
+        return generateTokens(count, permissions, DEFAULT_BATCH_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates many tokens with the provided list of permissions at once. The secrets are generated and hashed
+     * in parallel on the given {@link ForkJoinPool}, which makes bulk provisioning scale with the available cores.
+     * <p>
+     * The tokens are issued lazily in batches while the returned stream is consumed, so the plain text secrets
+     * of a single batch are held at a time. Every batch is announced by a single {@link TokenBatchCreateEvent}
+     * instead of one {@link TokenCreateEvent} per token, registered at once and saved before the first of its
+     * entries is yielded, so every secret the caller receives belongs to a persisted token. Tokens rejected by a
+     * listener are not registered and not contained in the stream. A caller which stops consuming the stream
+     * early leaves no unsaved tokens behind, only the remaining tokens of the current batch, whose secrets have
+     * not been seen.
+     * </p>
+     *
+     * @param count       The amount of tokens to generate.
+     * @param permissions A list of {@link TokenPermission} to be associated with every token.
+     * @param batchSize   The amount of tokens issued, announced, registered and saved together.
+     * @param pool        The {@link ForkJoinPool} used to generate and hash the secrets.
+     * @return A lazy, sequential {@link Stream} of entries containing the plain text secret (as the key) and the
+     * generated {@link Token} (as the value).
+     * @throws IllegalStateException If the count is negative or the batch size is less than one.
+     */
+    public Stream<Map.Entry<String, Token>> generateTokens(int count, List<TokenPermission> permissions, int batchSize, ForkJoinPool pool) {
+        if (count < 0 || batchSize < 1)
+            throw new IllegalStateException("Invalid token batch! (count: " + count + ", batch size: " + batchSize + ")");
+
+        final int batches = (count + batchSize - 1) / batchSize;
+        return IntStream.range(0, batches)
+                .sequential()
+                .mapToObj(batch -> {
+                    List<Map.Entry<String, Token>> issued = issueTokens(Math.min(batchSize, count - batch * batchSize), permissions, pool);
+
+                    // Persist the batch before any of its secrets is handed out
+                    if (!issued.isEmpty()) save();
+                    return issued;
+                })
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Issues a single batch of tokens: generates and hashes the secrets in parallel, fires one
+     * {@link TokenBatchCreateEvent} and registers all tokens which have not been rejected.
+     *
+     * @param count       The amount of tokens in this batch.
+     * @param permissions A list of {@link TokenPermission} to be associated with every token.
+     * @param pool        The {@link ForkJoinPool} used to generate and hash the secrets.
+     * @return The entries of the registered tokens.
+     */
+    private List<Map.Entry<String, Token>> issueTokens(int count, List<TokenPermission> permissions, ForkJoinPool pool) {
+        List<Map.Entry<String, Token>> issued = pool.submit(() -> IntStream.range(0, count).parallel()
+                .mapToObj(i -> issueToken(permissions))
+                .toList()
+        ).join();
+
+        List<Token> tokens = new ArrayList<>(issued.size());
+        issued.forEach(entry -> tokens.add(entry.getValue()));
+
+        try {
+            TokenBatchCreateEvent event = new TokenBatchCreateEvent(tokens);
+            CNetSecurity.callEvent(event);
+
+            if (event.isCancelled()) {
+                CNetSecurity.getLogger().debug("Token creation of a batch of " + issued.size() + " tokens cancelled!");
+                return List.of();
+            }
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
+        Set<Token> accepted = Collections.newSetFromMap(new IdentityHashMap<>(tokens.size()));
+        accepted.addAll(tokens);
+
+        List<Map.Entry<String, Token>> registered = new ArrayList<>(accepted.size());
+        for (Map.Entry<String, Token> entry : issued) {
+            if (!accepted.contains(entry.getValue())) continue;
+
+            this.put(entry.getValue().id(), entry.getValue());
+            registered.add(entry);
+        }
+
+        return registered;
+    }
+
+    /**
+     * Creates a new token with a random secret and the provided permissions, without registering it.
+     *
+     * @param permissions A list of {@link TokenPermission} to be associated with the token.
+     * @return A {@link Map.Entry} containing the plain text secret (as the key) and the generated {@link Token} (as the value).
+     */
+    private Map.Entry<String, Token> issueToken(List<TokenPermission> permissions) {
         try {
             String secret = Utils.secureRandomPassphrase(45, 70, false);
             String hash = BCrypt.hashpw(secret, BCrypt.gensalt());
 
             Token token = Token.of(hash);
             token.permissions().addAll(permissions);
-            registerToken(token);
 
             return Map.entry("cnet_" + Long.toHexString(token.id()) + secret, token);
         } catch (NoSuchAlgorithmException e) {
@@ -0,0 +1,192 @@
+package de.craftsblock.cnet.modules.security.auth.token;
+
+import de.craftsblock.cnet.modules.security.auth.token.store.TokenStore;
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * The {@link TokenQuery} finds all tokens of a {@link TokenManager} which have access to a combination of
+ * domain, path and http method. Criteria which are not set match every token. A token matches if a single
+ * one of its {@link TokenPermission}s allows all set criteria.
+ * <p>
+ * The candidates are narrowed down using the secondary indexes of the {@link TokenManager}. Every query collects
+ * and sorts the ids of all candidates, which is cheap compared to loading a token, but the tokens themselves are
+ * only loaded and verified while the results are consumed. The results are ordered by the token id.
+ * </p>
+ * <p>
+ * A {@link #page(int, int) page} by number has to verify all candidates of the earlier pages, as it is not known
+ * in advance which of them match. To walk through many results, page by the id of the last returned token using
+ * {@link #after(long, int)} instead, which only loads the candidates following that id.
+ * </p>
+ * <p>
+ * If the {@link TokenManager} uses a {@link TokenStore#isLazy() lazy} store, candidates which are not held in
+ * memory are read from the store for their verification without being cached. A query therefore neither pushes
+ * the recently used tokens out of memory nor grows it, but every such candidate costs a read from the store.
+ * </p>
+ *
+ * <pre>{@code
+ * List<Token> admins = manager.query()
+ *         .method(HttpMethod.DELETE)
+ *         .path("/api/admin")
+ *         .after(lastSeenId, 50);
+ * }</pre>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see TokenManager#query()
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class TokenQuery {
+
+    private final TokenManager manager;
+    private final TokenIndex index;
+
+    private String domain;
+    private String path;
+    private HttpMethod method;
+
+    /**
+     * Constructs a new {@link TokenQuery} without any criteria.
+     *
+     * @param manager The {@link TokenManager} to query.
+     * @param index   The {@link TokenIndex} of the manager.
+     */
+    TokenQuery(TokenManager manager, TokenIndex index) {
+        this.manager = manager;
+        this.index = index;
+    }
+
+    /**
+     * Only matches tokens which have access to the given domain.
+     *
+     * @param domain The domain, or {@code null} to match every domain.
+     * @return The instance of {@link TokenQuery} used for chain method calls.
+     */
+    public TokenQuery domain(@Nullable String domain) {
+        this.domain = domain;
+        return this;
+    }
+
+    /**
+     * Only matches tokens which have access to the given path.
+     *
+     * @param path The path, or {@code null} to match every path.
+     * @return The instance of {@link TokenQuery} used for chain method calls.
+     */
+    public TokenQuery path(@Nullable String path) {
+        this.path = path;
+        return this;
+    }
+
+    /**
+     * Only matches tokens which allow the given http method.
+     *
+     * @param method The {@link HttpMethod}, or {@code null} to match every method.
+     * @return The instance of {@link TokenQuery} used for chain method calls.
+     */
+    public TokenQuery method(@Nullable HttpMethod method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * Gets a lazy {@link Stream} over all matching tokens. The candidates are collected from the indexes
+     * immediately, but every token is only loaded and verified once the stream reaches it.
+     *
+     * @return The matching {@link Token}s, ordered by their id.
+     */
+    public @NotNull Stream<Token> stream() {
+        return stream(index.candidates(domain, path, method), 0);
+    }
+
+    /**
+     * Gets a single page of matching tokens. All candidates of the earlier pages are loaded and verified,
+     * see {@link #after(long, int)} for a page which does not depend on the earlier ones.
+     *
+     * @param page The index of the page, starting at zero.
+     * @param size The amount of tokens per page.
+     * @return The matching {@link Token}s of the page, ordered by their id.
+     * @throws IllegalStateException If the page is negative or the size is less than one.
+     */
+    public @NotNull List<Token> page(int page, int size) {
+        if (page < 0 || size < 1)
+            throw new IllegalStateException("Invalid page! (page: " + page + ", size: " + size + ")");
+
+        return stream().skip((long) page * size).limit(size).toList();
+    }
+
+    /**
+     * Gets the matching tokens following the given token id. Only the candidates with a greater id are loaded
+     * and verified, until the page is full. Passing the id of the last token of a page returns the next page.
+     *
+     * @param id   The id after which the page starts, or {@link Long#MIN_VALUE} for the first page.
+     * @param size The amount of tokens per page.
+     * @return The matching {@link Token}s with an id greater than the given one, ordered by their id.
+     * @throws IllegalStateException If the size is less than one.
+     */
+    public @NotNull List<Token> after(long id, int size) {
+        if (size < 1)
+            throw new IllegalStateException("Invalid page! (after: " + id + ", size: " + size + ")");
+
+        long[] candidates = index.candidates(domain, path, method);
+        int start = Arrays.binarySearch(candidates, id);
+        start = start >= 0 ? start + 1 : -start - 1;
+
+        return stream(candidates, start).limit(size).toList();
+    }
+
+    /**
+     * Gets a lazy {@link Stream} over the matching tokens of the given candidates.
+     *
+     * @param candidates The sorted ids of the candidates.
+     * @param start      The index of the first candidate to consider.
+     * @return The matching {@link Token}s, ordered by their id.
+     */
+    private Stream<Token> stream(long[] candidates, int start) {
+        final String domain = this.domain, path = this.path;
+        final HttpMethod method = this.method;
+
+        return Arrays.stream(candidates, start, candidates.length)
+                .mapToObj(manager::peek)
+                .filter(Objects::nonNull)
+                .filter(token -> matches(token, domain, path, method));
+    }
+
+    /**
+     * Counts all matching tokens. This verifies every candidate.
+     *
+     * @return The amount of matching tokens.
+     */
+    public long count() {
+        return stream().count();
+    }
+
+    /**
+     * Checks whether a single permission of the token allows all given criteria.
+     *
+     * @param token  The {@link Token} to check.
+     * @param domain The domain, or {@code null}.
+     * @param path   The path, or {@code null}.
+     * @param method The {@link HttpMethod}, or {@code null}.
+     * @return {@code true} if the token matches, {@code false} otherwise.
+     */
+    private static boolean matches(Token token, String domain, String path, HttpMethod method) {
+        synchronized (token.permissions()) {
+            for (TokenPermission permission : token.permissions())
+                if ((method == null || permission.isHttpMethodAllowed(method))
+                        && (domain == null || permission.isDomainAllowed(domain))
+                        && (path == null || permission.isPathAllowed(path)))
+                    return true;
+        }
+
+        return false;
+    }
+
+}
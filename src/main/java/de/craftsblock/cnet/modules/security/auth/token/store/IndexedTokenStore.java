@@ -0,0 +1,941 @@
+package de.craftsblock.cnet.modules.security.auth.token.store;
+
+import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.craftscore.json.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * The {@link IndexedTokenStore} is a lazy {@link TokenStore} for deployments with a large amount of tokens.
+ * Instead of loading every token on startup, the tokens are kept in an append only data file and looked up
+ * through an index file, which maps the id of every token to the position of its latest record.
+ * <p>
+ * The index is sorted by id and memory mapped, so a lookup is a binary search which only touches a few pages
+ * of the index and reads a single record of the data file. Tokens which have been written since the index
+ * was last built are found through a small in memory overlay, which is merged into a new index once it
+ * exceeds the reindex threshold or the store is saved or closed.
+ * </p>
+ * <p>
+ * Every record is protected by a checksum. A torn record at the end of the data file is cut off when the
+ * store is opened, and a missing, outdated or corrupt index is rebuilt from the data file. Replaced and
+ * deleted tokens leave their old records behind, which are only dropped by {@link #compact()}. If the
+ * compacted data file can not replace the current one, the current one is opened again, so a failed
+ * compaction never leaves the store closed.
+ * </p>
+ *
+ * <p>The files are laid out as follows, all numbers are big endian:</p>
+ * <ul>
+ *     <li>Data header: {@code int magic, byte version, long generation}</li>
+ *     <li>Record: {@code int length, int crc32, long id, byte type, byte[] payload}</li>
+ *     <li>Index header: {@code int magic, byte version, byte[3] padding, long generation, long count, long covered}</li>
+ *     <li>Index entry: {@code long id, long offset}</li>
+ * </ul>
+ * <p>
+ * The payload of a record is the serialized token as json text. The index is valid for the data file with
+ * the same generation up to the covered length, later records are read when the store is opened.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see TokenStore
+ * @since 1.0.0-SNAPSHOT
+ */
+public class IndexedTokenStore implements TokenStore {
+
+    /**
+     * The default amount of written tokens after which the index is rebuilt on save.
+     */
+    public static final int DEFAULT_REINDEX_THRESHOLD = 4096;
+
+    private static final int DATA_MAGIC = 0x434E5444; // CNTD
+    private static final int INDEX_MAGIC = 0x434E5449; // CNTI
+    private static final byte VERSION = 1;
+    private static final int DATA_HEADER_SIZE = 13;
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int RECORD_PREFIX_SIZE = 9;
+
+    private static final byte TYPE_TOKEN = 0;
+    private static final byte TYPE_DELETED = 1;
+
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final long DELETED = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashMap<Long, Long> overlay = new HashMap<>();
+
+    private final File dataFile;
+    private final File indexFile;
+    private final int reindexThreshold;
+
+    private FileChannel data;
+    private Index index = Index.EMPTY;
+    private long generation;
+    private long end;
+
+    /**
+     * Constructs a new {@link IndexedTokenStore} with the {@link #DEFAULT_REINDEX_THRESHOLD}. The files are
+     * not touched until the store is {@link #open() opened}.
+     *
+     * @param directory The directory containing the files {@code tokens.dat} and {@code tokens.idx}.
+     */
+    public IndexedTokenStore(@NotNull File directory) {
+        this(directory, DEFAULT_REINDEX_THRESHOLD);
+    }
+
+    /**
+     * Constructs a new {@link IndexedTokenStore}. The files are not touched until the store is
+     * {@link #open() opened}.
+     *
+     * @param directory        The directory containing the files {@code tokens.dat} and {@code tokens.idx}.
+     * @param reindexThreshold The amount of written tokens after which the index is rebuilt on save.
+     * @throws IllegalStateException If the threshold is less than one.
+     */
+    public IndexedTokenStore(@NotNull File directory, int reindexThreshold) {
+        if (reindexThreshold < 1)
+            throw new IllegalStateException("The reindex threshold must be positive! (Invalid threshold: " + reindexThreshold + ")");
+
+        this.dataFile = new File(directory, "tokens.dat");
+        this.indexFile = new File(directory, "tokens.idx");
+        this.reindexThreshold = reindexThreshold;
+    }
+
+    /**
+     * Opens the store. A torn record at the end of the data file is cut off, and the index is rebuilt if it
+     * is missing or does not match the data file. Records written after the index are read into the overlay.
+     * An open store is opened again, dropping nothing but the mapped index.
+     *
+     * @throws IOException If the files could not be read or are not a token store.
+     */
+    @Override
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeChannel();
+
+            File parent = dataFile.getAbsoluteFile().getParentFile();
+            if (!parent.exists() && !parent.mkdirs())
+                throw new IOException("Failed to create the directory " + parent.getPath() + "!");
+
+            FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                this.generation = readDataHeader(channel);
+
+                Index index = readIndex(channel.size());
+                boolean rebuild = index == null;
+                if (rebuild) index = Index.EMPTY;
+
+                Map<Long, Long> pending = new HashMap<>();
+                long valid = scan(channel, rebuild ? DATA_HEADER_SIZE : index.covered(),
+                        (offset, id, type, body) -> pending.put(id, type == TYPE_DELETED ? DELETED : offset));
+
+                if (valid < channel.size()) {
+                    warn("Cut off " + (channel.size() - valid) + " bytes of a torn record from the token store " + dataFile.getName() + ".");
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+
+                this.data = channel;
+                this.index = index;
+                this.end = valid;
+                this.overlay.putAll(pending);
+
+                if (rebuild) reindex();
+            } catch (IOException | RuntimeException e) {
+                closeChannel();
+                channel.close();
+                throw e;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the header of the data file, writing a new header with a new generation if the file is empty.
+     *
+     * @param channel The {@link FileChannel} of the data file.
+     * @return The generation of the data file.
+     * @throws IOException If the header could not be read or the file is not a token store.
+     */
+    private long readDataHeader(FileChannel channel) throws IOException {
+        if (channel.size() < DATA_HEADER_SIZE) {
+            long generation = ThreadLocalRandom.current().nextLong();
+            channel.truncate(0);
+            writeFully(channel, dataHeader(generation), 0);
+            channel.force(true);
+            return generation;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt() != DATA_MAGIC || header.get() != VERSION)
+            throw new IOException("The file " + dataFile.getName() + " is not a supported token store!");
+        return header.getLong();
+    }
+
+    /**
+     * Maps the index file if it is valid for the current data file.
+     *
+     * @param size The size of the data file.
+     * @return The mapped {@link Index}, or {@code null} if the index has to be rebuilt.
+     * @throws IOException If the index could not be read.
+     */
+    private Index readIndex(long size) throws IOException {
+        if (!indexFile.isFile()) return null;
+
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < INDEX_HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return invalidIndex();
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != INDEX_MAGIC || buffer.get(4) != VERSION || buffer.getLong(8) != generation)
+                return invalidIndex();
+
+            long count = buffer.getLong(16), covered = buffer.getLong(24);
+            if (count < 0 || INDEX_HEADER_SIZE + count * INDEX_ENTRY_SIZE != channel.size()
+                    || covered < DATA_HEADER_SIZE || covered > size)
+                return invalidIndex();
+
+            return new Index(buffer, (int) count, covered);
+        }
+    }
+
+    /**
+     * Reports an index which does not match the data file.
+     *
+     * @return Always {@code null}.
+     */
+    private Index invalidIndex() {
+        warn("The token index " + indexFile.getName() + " does not match the token store and is rebuilt.");
+        return null;
+    }
+
+    /**
+     * Reports a problem which has been repaired while the store was opened.
+     *
+     * @param message The message describing the repair.
+     */
+    protected void warn(@NotNull String message) {
+        CNetSecurity.getLogger().warning(message);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return Always {@code true}.
+     */
+    @Override
+    public boolean isLazy() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id The id of the token.
+     * @return The {@link Token}, or {@code null} if no token with the id is stored.
+     * @throws UncheckedIOException If the record could not be read.
+     */
+    @Override
+    public @Nullable Token load(long id) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+
+            long offset = locate(id);
+            if (offset == DELETED) return null;
+
+            byte[] body = readRecord(offset);
+            if (ByteBuffer.wrap(body).getLong() != id || body[8] != TYPE_TOKEN)
+                throw new IOException("The record at " + offset + " in the token store " + dataFile.getName() + " does not belong to the token " + id + "!");
+
+            return decode(Arrays.copyOfRange(body, RECORD_PREFIX_SIZE, body.length));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The data file is read sequentially and only the latest record of every token is passed. The action
+     * must not modify this store.
+     * </p>
+     *
+     * @param action The action receiving the tokens.
+     * @throws UncheckedIOException If the data file could not be read.
+     */
+    @Override
+    public void forEach(@NotNull Consumer<Token> action) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            scan(data, DATA_HEADER_SIZE, end, (offset, id, type, body) -> {
+                if (type != TYPE_TOKEN || locate(id) != offset) return;
+                action.accept(decode(Arrays.copyOfRange(body, RECORD_PREFIX_SIZE, body.length)));
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The token is appended as a new record, the record is durable once the store is saved.
+     * </p>
+     *
+     * @param token The {@link Token} to store.
+     * @throws UncheckedIOException If the record could not be written.
+     */
+    @Override
+    public void store(@NotNull Token token) {
+        byte[] payload = encode(token);
+
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            overlay.put(token.id(), append(token.id(), TYPE_TOKEN, payload));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A deletion marker is appended as a new record, the deletion is durable once the store is saved.
+     * </p>
+     *
+     * @param id The id of the token to delete.
+     * @throws UncheckedIOException If the record could not be written.
+     */
+    @Override
+    public void delete(long id) {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            if (locate(id) == DELETED) return;
+
+            append(id, TYPE_DELETED, new byte[0]);
+            overlay.put(id, DELETED);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces all written records to the disk and rebuilds the index once the overlay exceeds the reindex
+     * threshold. The given tokens are ignored, as every change has already been written.
+     *
+     * @param tokens The tokens which are held by the {@link de.craftsblock.cnet.modules.security.auth.token.TokenManager}.
+     * @throws UncheckedIOException If the records or the index could not be written.
+     */
+    @Override
+    public void save(@NotNull Collection<Token> tokens) {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            data.force(false);
+            if (overlay.size() >= reindexThreshold) reindex();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the overlay into a new index file, which atomically replaces the current one.
+     *
+     * @throws IOException If the index could not be written.
+     */
+    private void reindex() throws IOException {
+        data.force(false);
+        writeIndex(indexFile, generation, end, this::forEachEntry);
+        this.index = readIndex(end);
+        if (this.index == null) throw new IOException("The token index " + indexFile.getName() + " could not be written!");
+        overlay.clear();
+    }
+
+    /**
+     * Rewrites the data file with only the latest record of every stored token, dropping the records of
+     * replaced and deleted tokens, and rebuilds the index for it. If the data file could not be replaced,
+     * the store is opened again with the current data file before the failure is thrown.
+     *
+     * @throws IOException If the store is not open or the files could not be rewritten.
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+
+            long generation = ThreadLocalRandom.current().nextLong();
+            File temp = new File(dataFile.getPath() + ".tmp");
+            TreeMap<Long, Long> offsets = new TreeMap<>();
+            long[] cursor = {DATA_HEADER_SIZE};
+
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, dataHeader(generation), 0);
+                forEachEntry((id, offset) -> {
+                    offsets.put(id, cursor[0]);
+                    cursor[0] += writeFully(out, record(readRecord(offset)), cursor[0]);
+                });
+                out.force(true);
+            }
+
+            // An index of the new generation is rebuilt if the data file is not replaced after it
+            writeIndex(indexFile, generation, cursor[0], consumer -> {
+                for (Map.Entry<Long, Long> entry : offsets.entrySet())
+                    consumer.accept(entry.getKey(), entry.getValue());
+            });
+
+            closeChannel();
+            try {
+                Files.move(temp.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // The move is atomic, so the current data file is still intact and its index is rebuilt
+                try {
+                    Files.deleteIfExists(temp.toPath());
+                    open();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            open();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All records are forced to the disk and the overlay is merged into the index before the files are
+     * closed, so the next start does not need to read any record.
+     * </p>
+     *
+     * @throws UncheckedIOException If the store could not be closed cleanly.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (data == null) return;
+            if (!overlay.isEmpty()) reindex();
+            else data.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                closeChannel();
+            } catch (IOException e) {
+                CNetSecurity.getLogger().error(e, "Failed to close the token store " + dataFile.getName() + "!");
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes the data file and drops the mapped index and the overlay.
+     *
+     * @throws IOException If the data file could not be closed.
+     */
+    private void closeChannel() throws IOException {
+        FileChannel channel = this.data;
+        this.data = null;
+        this.index = Index.EMPTY;
+        this.overlay.clear();
+
+        if (channel != null) channel.close();
+    }
+
+    /**
+     * Checks whether the store is open.
+     *
+     * @return {@code true} if the store is open, {@code false} otherwise.
+     */
+    public boolean isOpen() {
+        lock.readLock().lock();
+        try {
+            return data != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies every token of another store into this store, e.g. to migrate from a {@link JsonTokenStore}.
+     *
+     * @param source The {@link TokenStore} to copy the tokens from.
+     * @return The amount of copied tokens.
+     * @throws UncheckedIOException If a token could not be written.
+     */
+    public long importFrom(@NotNull TokenStore source) {
+        long[] count = {0};
+        source.forEach(token -> {
+            store(token);
+            count[0]++;
+        });
+        save(List.of());
+        return count[0];
+    }
+
+    /**
+     * Encodes a token into the payload of its record.
+     *
+     * @param token The {@link Token} to encode.
+     * @return The payload.
+     */
+    protected byte[] encode(@NotNull Token token) {
+        return token.serialize().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a token from the payload of its record.
+     *
+     * @param payload The payload.
+     * @return The decoded {@link Token}.
+     */
+    protected @NotNull Token decode(byte[] payload) {
+        return Token.of(JsonParser.parse(new String(payload, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Gets the offset of the latest record of a token, looking at the overlay before the index.
+     *
+     * @param id The id of the token.
+     * @return The offset of the record, or {@link #DELETED} if the token is not stored.
+     */
+    private long locate(long id) {
+        Long offset = overlay.get(id);
+        return offset != null ? offset : index.search(id);
+    }
+
+    /**
+     * Passes the latest record of every stored token ordered by the id, merging the index and the overlay.
+     *
+     * @param consumer The consumer receiving the id and offset of every record.
+     * @throws IOException If the consumer failed.
+     */
+    private void forEachEntry(EntryConsumer consumer) throws IOException {
+        Iterator<Map.Entry<Long, Long>> changes = new TreeMap<>(overlay).entrySet().iterator();
+        Map.Entry<Long, Long> change = changes.hasNext() ? changes.next() : null;
+
+        final Index index = this.index;
+        int entry = 0;
+        while (entry < index.count() || change != null) {
+            if (change == null || (entry < index.count() && index.id(entry) < change.getKey())) {
+                consumer.accept(index.id(entry), index.offset(entry));
+                entry++;
+                continue;
+            }
+
+            // The overlay replaces the indexed record of the same token
+            if (entry < index.count() && index.id(entry) == change.getKey()) entry++;
+            if (change.getValue() != DELETED) consumer.accept(change.getKey(), change.getValue());
+            change = changes.hasNext() ? changes.next() : null;
+        }
+    }
+
+    /**
+     * Appends a record to the data file. If the record could not be written completely, the data file is
+     * cut back to its previous end.
+     *
+     * @param id      The id of the token.
+     * @param type    The type of the record.
+     * @param payload The payload of the record.
+     * @return The offset of the appended record.
+     * @throws IOException If the record could not be written.
+     */
+    private long append(long id, byte type, byte[] payload) throws IOException {
+        if (RECORD_PREFIX_SIZE + payload.length > MAX_RECORD_SIZE)
+            throw new IOException("The token " + id + " is too large for the token store! (Invalid size: " + payload.length + ")");
+
+        byte[] body = ByteBuffer.allocate(RECORD_PREFIX_SIZE + payload.length)
+                .putLong(id)
+                .put(type)
+                .put(payload)
+                .array();
+
+        long offset = end;
+        try {
+            end += writeFully(data, record(body), offset);
+        } catch (IOException e) {
+            data.truncate(offset);
+            end = offset;
+            throw e;
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the body of a record and verifies its checksum.
+     *
+     * @param offset The offset of the record.
+     * @return The body of the record, starting with the id and type.
+     * @throws IOException If the record could not be read or is corrupt.
+     */
+    private byte[] readRecord(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(data, header, offset);
+
+        int length = header.getInt();
+        int crc = header.getInt();
+        if (length < RECORD_PREFIX_SIZE || length > MAX_RECORD_SIZE || offset + RECORD_HEADER_SIZE + length > end)
+            throw new IOException("Invalid record in the token store " + dataFile.getName() + "! (Invalid offset: " + offset + ")");
+
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(data, body, offset + RECORD_HEADER_SIZE);
+        if (checksum(body.array()) != crc)
+            throw new IOException("Corrupt record in the token store " + dataFile.getName() + "! (Invalid offset: " + offset + ")");
+
+        return body.array();
+    }
+
+    /**
+     * Reads all complete records of the data file from the given offset up to its current size.
+     *
+     * @param channel The {@link FileChannel} of the data file.
+     * @param from    The offset of the first record.
+     * @param visitor The visitor receiving every record.
+     * @return The offset after the last complete record.
+     * @throws IOException If the data file could not be read.
+     */
+    private long scan(FileChannel channel, long from, RecordVisitor visitor) throws IOException {
+        return scan(channel, from, channel.size(), visitor);
+    }
+
+    /**
+     * Reads all complete records of the data file between the given offsets. The file is read using
+     * positional reads, so several scans may run at the same time.
+     *
+     * @param channel The {@link FileChannel} of the data file.
+     * @param from    The offset of the first record.
+     * @param to      The offset at which the scan stops.
+     * @param visitor The visitor receiving every record.
+     * @return The offset after the last complete record.
+     * @throws IOException If the data file could not be read.
+     */
+    private long scan(FileChannel channel, long from, long to, RecordVisitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new PositionalInputStream(channel, from), 1 << 16));
+
+        long position = from;
+        while (position + RECORD_HEADER_SIZE <= to) {
+            int length = in.readInt();
+            int crc = in.readInt();
+            if (length < RECORD_PREFIX_SIZE || length > MAX_RECORD_SIZE || position + RECORD_HEADER_SIZE + length > to) break;
+
+            byte[] body = new byte[length];
+            in.readFully(body);
+            if (checksum(body) != crc) break;
+
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            visitor.visit(position, buffer.getLong(), buffer.get(), body);
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        return position;
+    }
+
+    /**
+     * Writes a new index file next to the given file and atomically moves it into place.
+     *
+     * @param file       The index file.
+     * @param generation The generation of the indexed data file.
+     * @param covered    The length of the data file which is covered by the index.
+     * @param entries    The source of the entries, which must pass them ordered by id.
+     * @throws IOException If the index could not be written.
+     */
+    private static void writeIndex(File file, long generation, long covered, EntrySource entries) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        long[] count = {0};
+
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out.position(INDEX_HEADER_SIZE)), 1 << 16));
+            entries.forEach((id, offset) -> {
+                stream.writeLong(id);
+                stream.writeLong(offset);
+                count[0]++;
+            });
+            stream.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE)
+                    .putInt(INDEX_MAGIC)
+                    .put(VERSION)
+                    .put(new byte[3])
+                    .putLong(generation)
+                    .putLong(count[0])
+                    .putLong(covered)
+                    .flip();
+            writeFully(out, header, 0);
+            out.force(true);
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Ensures that the store is open.
+     *
+     * @throws IOException If the store is not open.
+     */
+    private void ensureOpen() throws IOException {
+        if (data == null) throw new IOException("The token store " + dataFile.getName() + " is not open!");
+    }
+
+    /**
+     * Gets the directory containing the files of this store.
+     *
+     * @return The directory of the store.
+     */
+    public @NotNull File getDirectory() {
+        return dataFile.getAbsoluteFile().getParentFile();
+    }
+
+    /**
+     * Creates the header of a data file.
+     *
+     * @param generation The generation of the data file.
+     * @return The header ready to be written.
+     */
+    private static ByteBuffer dataHeader(long generation) {
+        return ByteBuffer.allocate(DATA_HEADER_SIZE).putInt(DATA_MAGIC).put(VERSION).putLong(generation).flip();
+    }
+
+    /**
+     * Creates a record including its length and checksum.
+     *
+     * @param body The body of the record, starting with the id and type.
+     * @return The record ready to be written.
+     */
+    private static ByteBuffer record(byte[] body) {
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length)
+                .putInt(body.length)
+                .putInt(checksum(body))
+                .put(body)
+                .flip();
+    }
+
+    /**
+     * Calculates the checksum of a record body.
+     *
+     * @param body The body of the record.
+     * @return The crc32 checksum.
+     */
+    private static int checksum(byte[] body) {
+        CRC32 checksum = new CRC32();
+        checksum.update(body);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Writes the whole buffer at the given position.
+     *
+     * @param channel  The {@link FileChannel} to write to.
+     * @param buffer   The buffer to write.
+     * @param position The position to write at.
+     * @return The amount of written bytes.
+     * @throws IOException If the buffer could not be written.
+     */
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining())
+            written += channel.write(buffer, position + written);
+        return written;
+    }
+
+    /**
+     * Fills the whole buffer from the given position and flips it.
+     *
+     * @param channel  The {@link FileChannel} to read from.
+     * @param buffer   The buffer to fill.
+     * @param position The position to read from.
+     * @throws IOException If the buffer could not be filled.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + read);
+            if (n < 0) throw new EOFException();
+            read += n;
+        }
+        buffer.flip();
+    }
+
+    /**
+     * The memory mapped, sorted index of the data file.
+     *
+     * @param buffer  The mapped index file, or {@code null} if the index is empty.
+     * @param count   The amount of entries.
+     * @param covered The length of the data file covered by the index.
+     */
+    private record Index(MappedByteBuffer buffer, int count, long covered) {
+
+        private static final Index EMPTY = new Index(null, 0, DATA_HEADER_SIZE);
+
+        /**
+         * Searches the offset of a token using a binary search.
+         *
+         * @param id The id of the token.
+         * @return The offset of the record, or {@link #DELETED} if the token is not indexed.
+         */
+        long search(long id) {
+            int low = 0, high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long current = id(mid);
+
+                if (current < id) low = mid + 1;
+                else if (current > id) high = mid - 1;
+                else return offset(mid);
+            }
+            return DELETED;
+        }
+
+        /**
+         * Gets the id of an entry.
+         *
+         * @param entry The position of the entry.
+         * @return The id of the token.
+         */
+        long id(int entry) {
+            return buffer.getLong(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE);
+        }
+
+        /**
+         * Gets the offset of an entry.
+         *
+         * @param entry The position of the entry.
+         * @return The offset of the record.
+         */
+        long offset(int entry) {
+            return buffer.getLong(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE + 8);
+        }
+
+    }
+
+    /**
+     * Receives the records of the data file while it is scanned.
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+
+        /**
+         * Visits a single record.
+         *
+         * @param offset The offset of the record.
+         * @param id     The id of the token.
+         * @param type   The type of the record.
+         * @param body   The body of the record, starting with the id and type.
+         * @throws IOException If the record could not be processed.
+         */
+        void visit(long offset, long id, byte type, byte[] body) throws IOException;
+
+    }
+
+    /**
+     * Receives the id and offset of an index entry.
+     */
+    @FunctionalInterface
+    private interface EntryConsumer {
+
+        /**
+         * Accepts a single entry.
+         *
+         * @param id     The id of the token.
+         * @param offset The offset of the record.
+         * @throws IOException If the entry could not be processed.
+         */
+        void accept(long id, long offset) throws IOException;
+
+    }
+
+    /**
+     * Passes index entries ordered by id to an {@link EntryConsumer}.
+     */
+    @FunctionalInterface
+    private interface EntrySource {
+
+        /**
+         * Passes every entry to the consumer.
+         *
+         * @param consumer The {@link EntryConsumer} receiving the entries.
+         * @throws IOException If the entries could not be passed.
+         */
+        void forEach(EntryConsumer consumer) throws IOException;
+
+    }
+
+    /**
+     * An {@link InputStream} reading a {@link FileChannel} with positional reads, which leaves the position
+     * of the channel untouched.
+     */
+    private static final class PositionalInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+
+        /**
+         * Constructs a new {@link PositionalInputStream}.
+         *
+         * @param channel  The {@link FileChannel} to read.
+         * @param position The position to start reading at.
+         */
+        private PositionalInputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (read > 0) position += read;
+            return read;
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+package de.craftsblock.cnet.modules.security.auth.token.store;
+
+import com.google.gson.JsonElement;
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.craftscore.json.Json;
+import de.craftsblock.craftscore.json.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * The {@link JsonTokenStore} is the default, eager {@link TokenStore}. It keeps all tokens as a single json array
+ * in one file, which is read completely on startup and written completely on every save.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see TokenStore
+ * @since 1.0.0-SNAPSHOT
+ */
+public class JsonTokenStore implements TokenStore {
+
+    private final File file;
+
+    /**
+     * Constructs a new {@link JsonTokenStore}.
+     *
+     * @param file The json file containing the tokens.
+     */
+    public JsonTokenStore(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return Always {@code false}.
+     */
+    @Override
+    public boolean isLazy() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id The id of the token.
+     * @return Always {@code null}, as all tokens are held by the manager.
+     */
+    @Override
+    public @Nullable Token load(long id) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the file does not contain a valid json array, no token is passed.
+     * </p>
+     *
+     * @param action The action receiving the tokens.
+     */
+    @Override
+    public void forEach(@NotNull Consumer<Token> action) {
+        Json json = JsonParser.parse(file);
+        if (!json.getObject().isJsonArray()) return;
+
+        for (JsonElement element : json.getObject().getAsJsonArray())
+            action.accept(Token.of(JsonParser.parse(element)));
+    }
+
+    /**
+     * Does nothing, as all tokens are written on save.
+     *
+     * @param token The {@link Token} to store.
+     */
+    @Override
+    public void store(@NotNull Token token) {
+    }
+
+    /**
+     * Does nothing, as all tokens are written on save.
+     *
+     * @param id The id of the token to delete.
+     */
+    @Override
+    public void delete(long id) {
+    }
+
+    /**
+     * Serializes all given tokens into a json array and replaces the content of the file.
+     *
+     * @param tokens The tokens which are held by the {@link de.craftsblock.cnet.modules.security.auth.token.TokenManager}.
+     */
+    @Override
+    public void save(@NotNull Collection<Token> tokens) {
+        Json json = Json.empty();
+        tokens.forEach(token -> json.set("$new", token.serialize()));
+        json.save(file);
+    }
+
+    /**
+     * Does nothing, as the file is only opened while it is read or written.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Gets the json file containing the tokens.
+     *
+     * @return The json file.
+     */
+    public @NotNull File getFile() {
+        return file;
+    }
+
+}
@@ -0,0 +1,95 @@
+package de.craftsblock.cnet.modules.security.auth.token.store;
+
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.cnet.modules.security.auth.token.TokenManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * The {@link TokenStore} defines where the tokens of a {@link TokenManager} are persisted.
+ * <p>
+ * An eager store, like the {@link JsonTokenStore}, hands all of its tokens to the manager on startup, which then
+ * keeps them in memory and writes them back as a whole. A {@link #isLazy() lazy} store, like the
+ * {@link IndexedTokenStore}, keeps the tokens on disk and loads them on demand, while the manager only keeps a
+ * bounded set of recently used tokens in memory. Every change is written through to a lazy store.
+ * </p>
+ * <p>
+ * The {@link TokenManager} {@link #open() opens} its store when it is constructed. Apart from opening the
+ * store, failures to access the underlying storage are thrown as {@link UncheckedIOException}s.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see TokenManager
+ * @since 1.0.0-SNAPSHOT
+ */
+public interface TokenStore {
+
+    /**
+     * Indicates whether this store loads tokens on demand. If {@code false}, all tokens are loaded into the
+     * {@link TokenManager} on startup.
+     *
+     * @return {@code true} if the store is lazy, {@code false} otherwise.
+     */
+    boolean isLazy();
+
+    /**
+     * Opens the store before the {@link TokenManager} accesses it for the first time. Stores which only access
+     * their storage while they are read or written do not need to do anything.
+     *
+     * @throws IOException If the store could not be opened.
+     */
+    default void open() throws IOException {
+    }
+
+    /**
+     * Loads a single token. Eager stores do not need to support this and may always return {@code null}.
+     *
+     * @param id The id of the token.
+     * @return The {@link Token}, or {@code null} if no token with the id is stored.
+     */
+    @Nullable Token load(long id);
+
+    /**
+     * Passes every stored token to the given action. Each call loads the tokens from the storage again.
+     *
+     * @param action The action receiving the tokens.
+     */
+    void forEach(@NotNull Consumer<Token> action);
+
+    /**
+     * Stores a new or changed token. Eager stores may ignore this, as they {@link #save(Collection) save}
+     * all tokens at once.
+     *
+     * @param token The {@link Token} to store.
+     */
+    void store(@NotNull Token token);
+
+    /**
+     * Deletes a token. Eager stores may ignore this, as they {@link #save(Collection) save} all tokens at once.
+     *
+     * @param id The id of the token to delete.
+     */
+    void delete(long id);
+
+    /**
+     * Makes all changes durable. Eager stores replace their content with the given tokens, lazy stores have
+     * already received every change and may ignore them.
+     *
+     * @param tokens The tokens which are held by the {@link TokenManager}.
+     */
+    void save(@NotNull Collection<Token> tokens);
+
+    /**
+     * Releases the resources of this store. Changes which have not been {@link #save(Collection) saved} may
+     * be lost.
+     */
+    void close();
+
+}
@@ -0,0 +1,333 @@
+package de.craftsblock.cnet.modules.security.config;
+
+import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.auth.AuthChainManager;
+import de.craftsblock.cnet.modules.security.auth.chains.AuthChain;
+import de.craftsblock.cnet.modules.security.auth.chains.SimpleAuthChain;
+import de.craftsblock.cnet.modules.security.auth.token.store.TokenStore;
+import de.craftsblock.cnet.modules.security.ratelimit.PenaltyBox;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitHeaderMode;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPolicy;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitRegistry;
+import de.craftsblock.cnet.modules.security.ratelimit.composite.CompositeRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.composite.RateLimitWindow;
+import de.craftsblock.cnet.modules.security.utils.Manager;
+import de.craftsblock.cnet.modules.security.utils.PrioritizedArray;
+import de.craftsblock.craftscore.json.Json;
+import de.craftsblock.craftscore.json.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ConfigManager} applies the security configuration file and reloads it whenever it changes, so limits
+ * and exclusions can be tuned without a restart. The file is described by the {@link SecurityConfig}.
+ * <p>
+ * A reloaded file is parsed and validated completely before anything is applied. The adapters defined by the
+ * file, the {@link RateLimitPolicy policies} and windows of all configured adapters and the header mode are then
+ * compiled into a new {@link RateLimitRegistry}, which replaces the previous one with a single volatile write.
+ * The settings of the {@link PenaltyBox}, the auth chains and the exclusions of the default auth chain are
+ * swapped in the same way. The request path therefore never waits for a reload, and the counters of the
+ * adapters which are kept are not dropped.
+ * If the file is invalid, the previous configuration stays in place.
+ * </p>
+ * <p>
+ * The {@link TokenStore} is the only part of the file which is not reloaded. It is selected once on startup
+ * using {@link #createTokenStore(File)}, before the rest of the file is applied.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.3.0
+ * @see SecurityConfig
+ * @since 1.0.0-SNAPSHOT
+ */
+public class ConfigManager implements Manager {
+
+    private static final long SETTLE_MILLIS = 200;
+
+    private final File file;
+    private volatile SecurityConfig config;
+    private Map<String, RateLimitAdapter> defined = Map.of();
+    private List<AuthChain> chains = List.of();
+    private boolean replacedDefault;
+    private String tokenStore;
+
+    private WatchService watcher;
+
+    /**
+     * Constructs a new {@link ConfigManager}.
+     *
+     * @param file The configuration file.
+     */
+    public ConfigManager(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates the {@link TokenStore} which is selected by the configuration file, or the json store if the file
+     * does not exist yet. Only the token store section of the file is read, so the store can be created before
+     * the managers the rest of the file refers to.
+     *
+     * @param folder The data folder of the addon.
+     * @return The selected {@link TokenStore}, which has not been opened yet.
+     * @throws IllegalStateException If the configured token store is unknown.
+     */
+    public synchronized @NotNull TokenStore createTokenStore(@NotNull File folder) {
+        tokenStore = file.exists() ? SecurityConfig.tokenStore(JsonParser.parse(file)) : SecurityConfig.STORE_JSON;
+        return SecurityConfig.createTokenStore(tokenStore, folder);
+    }
+
+    /**
+     * Applies the configuration file. If the file does not exist yet, it is created with the current defaults.
+     *
+     * @return The applied {@link SecurityConfig}.
+     * @throws IOException           If the default configuration could not be written.
+     * @throws IllegalStateException If the configuration is invalid.
+     */
+    public @NotNull SecurityConfig load() throws IOException {
+        if (!file.exists()) writeDefaults();
+        return reload();
+    }
+
+    /**
+     * Parses, validates and applies the configuration file.
+     *
+     * @return The applied {@link SecurityConfig}.
+     * @throws IOException           If the configuration file does not exist.
+     * @throws IllegalStateException If the configuration is invalid.
+     */
+    public synchronized @NotNull SecurityConfig reload() throws IOException {
+        if (!file.exists()) throw new IOException("The configuration file " + file.getPath() + " does not exist!");
+
+        SecurityConfig config = SecurityConfig.of(JsonParser.parse(file));
+        apply(config);
+        return config;
+    }
+
+    /**
+     * Applies a {@link SecurityConfig}. Everything which can fail is done before the first change is published.
+     * <p>
+     * Adapters defined by the configuration are kept across reloads as long as their type does not change, so
+     * their counters survive. Adapters whose definition has been removed are unregistered.
+     * </p>
+     *
+     * @param config The {@link SecurityConfig} to apply.
+     * @throws IllegalStateException If the configuration is invalid, refers to an unknown adapter, or defines an
+     *                               adapter whose id is already taken by an adapter registered in code.
+     */
+    public synchronized void apply(@NotNull SecurityConfig config) {
+        RateLimitManager rater = CNetSecurity.getRateLimitManager();
+        RateLimitRegistry registry = rater.getRegistry();
+
+        Map<String, RateLimitAdapter> defined = new HashMap<>();
+        for (String id : config.definitions()) {
+            RateLimitAdapter previous = this.defined.get(id);
+            RateLimitAdapter present = registry.getAdapter(id);
+            if (present != null && present != previous)
+                throw new IllegalStateException("A rate limit adapter with this id is already registered! (Invalid id: " + id +
+                        ", registered by: " + present.getClass().getName() + ")");
+
+            defined.put(id, previous != null && config.matches(id, previous) ? previous : config.createAdapter(id));
+        }
+
+        List<RateLimitAdapter> removed = new ArrayList<>();
+        for (RateLimitAdapter adapter : this.defined.values())
+            if (defined.get(adapter.getId()) != adapter) removed.add(adapter);
+        List<RateLimitAdapter> added = new ArrayList<>();
+        for (RateLimitAdapter adapter : defined.values())
+            if (this.defined.get(adapter.getId()) != adapter) added.add(adapter);
+
+        List<RateLimitAdapter> adapters = new ArrayList<>(registry.getAdapters());
+        adapters.removeAll(removed);
+        adapters.addAll(added);
+
+        Map<RateLimitAdapter, RateLimitPolicy> policies = config.compile(adapters);
+        Map<CompositeRateLimitAdapter, List<RateLimitWindow>> windows = config.compileWindows(adapters);
+        Set<RateLimitAdapter> disabled = config.disabled(adapters);
+        Map<AuthChain, Integer> chains = config.compileChains();
+
+        rater.update(current -> {
+            RateLimitRegistry next = current;
+            for (RateLimitAdapter adapter : removed) next = next.without(adapter);
+            for (RateLimitAdapter adapter : added) next = next.with(adapter, PrioritizedArray.DEFAULT_PRIORITY);
+
+            RateLimitHeaderMode headerMode = config.headerMode();
+            return next.configure(headerMode != null ? headerMode : current.getHeaderMode(), policies, windows, disabled);
+        });
+
+        SecurityConfig.Penalty penalty = config.penalty();
+        PenaltyBox box = rater.getPenaltyBox();
+        if (penalty != null)
+            box.configure(penalty.enabled(), penalty.threshold(), penalty.base(), penalty.max(), penalty.decay(), TimeUnit.MILLISECONDS);
+        else box.setEnabled(false);
+
+        applyChains(chains);
+
+        SimpleAuthChain chain = CNetSecurity.getDefaultAuthChain();
+        if (chain != null) chain.setConfiguredExclusions(config.exclusions());
+
+        this.defined = Map.copyOf(defined);
+        this.config = config;
+
+        if (tokenStore != null && !tokenStore.equals(config.tokenStore()))
+            CNetSecurity.getLogger().warning("The token store can only be changed by a restart! (Selected store: " + tokenStore + ")");
+    }
+
+    /**
+     * Replaces the auth chains of the previous configuration with the given ones at once. While chains are
+     * configured, they replace the default auth chain, which is restored once no chains are configured anymore.
+     *
+     * @param chains The configured {@link AuthChain}s with their priority, or {@code null} to use the default auth chain.
+     */
+    private void applyChains(@Nullable Map<AuthChain, Integer> chains) {
+        AuthChainManager manager = CNetSecurity.getAuthChainManager();
+        if (manager == null) return;
+
+        SimpleAuthChain fallback = CNetSecurity.getDefaultAuthChain();
+        List<AuthChain> removed = new ArrayList<>(this.chains);
+        Map<AuthChain, Integer> added = new LinkedHashMap<>();
+        if (chains != null) {
+            added.putAll(chains);
+            if (fallback != null && manager.contains(fallback)) {
+                removed.add(fallback);
+                replacedDefault = true;
+            }
+        } else if (fallback != null && replacedDefault) {
+            added.put(fallback, PrioritizedArray.DEFAULT_PRIORITY);
+            replacedDefault = false;
+        }
+
+        manager.replace(removed, added);
+        this.chains = chains == null ? List.of() : List.copyOf(chains.keySet());
+    }
+
+    /**
+     * Starts watching the configuration file in the background. Changes are applied once the file has settled,
+     * failures are logged and keep the previous configuration.
+     *
+     * @throws IOException If the directory of the configuration file could not be watched.
+     */
+    public synchronized void watch() throws IOException {
+        if (watcher != null) return;
+
+        Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        WatchService watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(() -> watch(watcher), "CNetSecurity-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        this.watcher = watcher;
+    }
+
+    /**
+     * Stops watching the configuration file. The current configuration stays in place.
+     *
+     * @throws IOException If the underlying {@link WatchService} could not be closed.
+     */
+    public synchronized void close() throws IOException {
+        if (watcher == null) return;
+
+        WatchService watcher = this.watcher;
+        this.watcher = null;
+        watcher.close();
+    }
+
+    /**
+     * Waits for changes of the configuration file and applies them until the {@link WatchService} is closed.
+     *
+     * @param watcher The {@link WatchService} watching the directory of the configuration file.
+     */
+    private void watch(WatchService watcher) {
+        final Path name = file.toPath().getFileName();
+
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents())
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+                key.reset();
+
+                if (!changed) continue;
+
+                // Editors often write a file in several steps, so wait until it has settled
+                Thread.sleep(SETTLE_MILLIS);
+                for (WatchKey pending; (pending = watcher.poll()) != null; ) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+
+                try {
+                    reload();
+                    CNetSecurity.getLogger().info("Reloaded the security configuration.");
+                } catch (Exception e) {
+                    CNetSecurity.getLogger().error(e, "Failed to reload the security configuration, keeping the previous one!");
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    /**
+     * Writes the current defaults of all registered adapters into the configuration file.
+     *
+     * @throws IOException If the parent directory could not be created.
+     */
+    private void writeDefaults() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs())
+            throw new IOException("Failed to create the directory " + parent.getPath() + "!");
+
+        RateLimitManager rater = CNetSecurity.getRateLimitManager();
+        Json json = Json.empty();
+        json.set("headers", rater.getHeaderMode().name());
+        for (RateLimitAdapter adapter : rater.getAdapters()) {
+            json.set("ratelimits." + adapter.getId(), adapter.getDefaultPolicy().serialize().getObject());
+            if (adapter instanceof CompositeRateLimitAdapter composite)
+                json.set("ratelimits." + adapter.getId() + ".windows", composite.getDefaultWindows().stream()
+                        .map(window -> window.serialize().getObject()).toList());
+        }
+        json.set("exclusions", List.of());
+        json.set("tokens.store", (tokenStore != null ? tokenStore : SecurityConfig.STORE_JSON).toLowerCase());
+        json.save(file);
+    }
+
+    /**
+     * Gets the currently applied configuration.
+     *
+     * @return The applied {@link SecurityConfig}, or {@code null} if no configuration has been applied yet.
+     */
+    public @Nullable SecurityConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Gets the configuration file.
+     *
+     * @return The configuration file.
+     */
+    public @NotNull File getFile() {
+        return file;
+    }
+
+}
@@ -0,0 +1,401 @@
+package de.craftsblock.cnet.modules.security.config;
+
+import de.craftsblock.cnet.modules.security.auth.chains.AuthChain;
+import de.craftsblock.cnet.modules.security.auth.chains.SimpleAuthChain;
+import de.craftsblock.cnet.modules.security.auth.token.TokenAuthAdapter;
+import de.craftsblock.cnet.modules.security.auth.token.store.IndexedTokenStore;
+import de.craftsblock.cnet.modules.security.auth.token.store.JsonTokenStore;
+import de.craftsblock.cnet.modules.security.auth.token.store.TokenStore;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitHeaderMode;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPolicy;
+import de.craftsblock.cnet.modules.security.ratelimit.builtin.IPRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.builtin.TokenRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.composite.CompositeRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.composite.RateLimitWindow;
+import de.craftsblock.craftscore.json.Json;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The {@link SecurityConfig} is an immutable snapshot of the security configuration file. It is fully validated
+ * when it is parsed, so applying it can not fail half way through.
+ * <p>The configuration file consists of the following optional keys:</p>
+ * <ul>
+ *     <li>{@code headers}: The name of the {@link RateLimitHeaderMode}.</li>
+ *     <li>{@code ratelimits}: An object mapping adapter ids to their {@code max}, {@code window} in
+ *     milliseconds and {@code headers}. Composite adapters take a list of {@code windows}, each with a
+ *     {@code max} and a {@code window}, instead. Setting {@code enabled} to {@code false} stops checking an
+ *     adapter without dropping its counters. Adapters which are not listed use their own limits. An entry with a
+ *     {@code type} of {@code ip} or {@code token} defines a new adapter, which is removed again once the entry
+ *     is removed. Every other entry must belong to a registered adapter.</li>
+ *     <li>{@code penalty}: The {@code enabled} flag, the {@code threshold} and the {@code base}, {@code max}
+ *     and {@code decay} durations in milliseconds of the penalty box, which stays disabled without this section.</li>
+ *     <li>{@code exclusions}: A list of url patterns which are excluded from the default auth chain.</li>
+ *     <li>{@code chains}: A list of auth chains, each with a list of auth {@code adapters}, an optional
+ *     {@code priority} and optional {@code exclusions}. If present, the chains replace the default auth chain.
+ *     The only auth adapter is {@code token}.</li>
+ *     <li>{@code tokens}: The {@code store} of the tokens, either {@code json} or {@code indexed}. The store is
+ *     selected on startup, so changing it requires a restart.</li>
+ * </ul>
+ *
+ * @param headerMode The configured {@link RateLimitHeaderMode}, or {@code null} if it is not configured.
+ * @param ratelimits The configured limits by the id of their adapter.
+ * @param penalty    The configuration of the penalty box, or {@code null} if it is not configured.
+ * @param exclusions The configured exclusion patterns of the default auth chain.
+ * @param chains     The configured auth chains, or {@code null} if the default auth chain is used.
+ * @param tokenStore The type of the configured token store.
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.3.0
+ * @see ConfigManager
+ * @since 1.0.0-SNAPSHOT
+ */
+public record SecurityConfig(@Nullable RateLimitHeaderMode headerMode, @NotNull Map<String, Json> ratelimits,
+                             @Nullable Penalty penalty, @NotNull List<String> exclusions, @Nullable List<Chain> chains,
+                             @NotNull String tokenStore) {
+
+    /**
+     * The type of adapters limiting the client address.
+     */
+    public static final String TYPE_IP = "IP";
+
+    /**
+     * The type of adapters limiting the authenticated token.
+     */
+    public static final String TYPE_TOKEN = "TOKEN";
+
+    /**
+     * The type of the token store keeping all tokens in a single json file.
+     */
+    public static final String STORE_JSON = "JSON";
+
+    /**
+     * The type of the token store loading tokens on demand from an indexed data file.
+     */
+    public static final String STORE_INDEXED = "INDEXED";
+
+    /**
+     * Parses and validates a {@link SecurityConfig} from a {@link Json} object.
+     *
+     * @param json The {@link Json} object containing the configuration.
+     * @return The parsed {@link SecurityConfig}.
+     * @throws IllegalStateException If the configuration is invalid.
+     */
+    public static @NotNull SecurityConfig of(@NotNull Json json) {
+        RateLimitHeaderMode headerMode = null;
+        if (json.contains("headers")) {
+            String mode = json.getString("headers");
+            try {
+                headerMode = RateLimitHeaderMode.valueOf(mode.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unknown rate limit header mode! (Invalid mode: " + mode + ")");
+            }
+        }
+
+        Map<String, Json> ratelimits = new HashMap<>();
+        if (json.contains("ratelimits"))
+            for (String id : json.keySet("ratelimits")) {
+                Json section = json.getJson("ratelimits." + id);
+                if (section.contains("type")) {
+                    String type = section.getString("type").toUpperCase();
+                    if (!type.equals(TYPE_IP) && !type.equals(TYPE_TOKEN))
+                        throw new IllegalStateException("Unknown rate limit adapter type! (Invalid type: " + type + ", set for: " + id + ")");
+                    if (!RateLimitAdapter.ID_CHECK.matcher(id).matches())
+                        throw new IllegalStateException("Rate limiting adapter IDs may only contain letters! (Invalid ID: '" + id + "')");
+                }
+
+                ratelimits.put(id.toUpperCase(), section);
+            }
+
+        Penalty penalty = null;
+        if (json.contains("penalty")) {
+            Json section = json.getJson("penalty");
+            penalty = new Penalty(
+                    !section.contains("enabled") || section.getBoolean("enabled"),
+                    section.getInt("threshold"), section.getLong("base"),
+                    section.getLong("max"), section.getLong("decay")
+            );
+        }
+
+        List<String> exclusions = json.contains("exclusions") ? List.copyOf(json.getStringList("exclusions")) : List.of();
+        for (String exclusion : exclusions)
+            try {
+                Pattern.compile(exclusion);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalStateException("Invalid exclusion pattern! (Invalid pattern: " + exclusion + ")", e);
+            }
+
+        List<Chain> chains = null;
+        if (json.contains("chains"))
+            chains = json.getJsonList("chains").stream().map(Chain::of).toList();
+
+        return new SecurityConfig(headerMode, Map.copyOf(ratelimits), penalty, exclusions, chains, tokenStore(json));
+    }
+
+    /**
+     * Reads and validates the type of the token store. Only this part of the configuration is read, as the
+     * store is selected on startup before the rest of the configuration is applied.
+     *
+     * @param json The {@link Json} object containing the configuration.
+     * @return The type of the token store, {@link #STORE_JSON} if it is not configured.
+     * @throws IllegalStateException If the type is unknown.
+     */
+    public static @NotNull String tokenStore(@NotNull Json json) {
+        if (!json.contains("tokens.store")) return STORE_JSON;
+
+        String store = json.getString("tokens.store").toUpperCase();
+        if (!store.equals(STORE_JSON) && !store.equals(STORE_INDEXED))
+            throw new IllegalStateException("Unknown token store! (Invalid store: " + store + ")");
+        return store;
+    }
+
+    /**
+     * Creates a token store of the given type. The json store keeps the tokens in the file {@code tokens.json}
+     * and the indexed store in the directory {@code tokens} of the given folder.
+     *
+     * @param type   The type of the token store.
+     * @param folder The data folder of the addon.
+     * @return The new {@link TokenStore}, which has not been opened yet.
+     * @throws IllegalStateException If the type is unknown.
+     */
+    public static @NotNull TokenStore createTokenStore(@NotNull String type, @NotNull File folder) {
+        return switch (type) {
+            case STORE_JSON -> new JsonTokenStore(new File(folder, "tokens.json"));
+            case STORE_INDEXED -> new IndexedTokenStore(new File(folder, "tokens"));
+            default -> throw new IllegalStateException("Unknown token store! (Invalid store: " + type + ")");
+        };
+    }
+
+    /**
+     * Gets the ids of the adapters which are defined by the configuration, rather than registered in code.
+     *
+     * @return The ids of the defined adapters.
+     */
+    public @NotNull Set<String> definitions() {
+        Set<String> ids = new TreeSet<>();
+        ratelimits.forEach((id, json) -> {
+            if (json.contains("type")) ids.add(id);
+        });
+        return Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Checks whether the given adapter has been created for the definition with the given id, so it can be
+     * kept across a reload together with its counters.
+     *
+     * @param id      The id of the definition.
+     * @param adapter The {@link RateLimitAdapter} which has been created for the id before.
+     * @return {@code true} if the adapter matches the definition, {@code false} if a new adapter is required.
+     */
+    public boolean matches(@NotNull String id, @NotNull RateLimitAdapter adapter) {
+        Json json = ratelimits.get(id.toUpperCase());
+        if (json == null || !json.contains("type")) return false;
+
+        return switch (json.getString("type").toUpperCase()) {
+            case TYPE_IP -> adapter.getClass() == IPRateLimitAdapter.class;
+            case TYPE_TOKEN -> adapter.getClass() == TokenRateLimitAdapter.class;
+            default -> false;
+        };
+    }
+
+    /**
+     * Creates the adapter which is defined with the given id. Its limits are the defaults of its type, as the
+     * configured limits are applied by {@link #compile(Collection)} like for any other adapter.
+     *
+     * @param id The id of the definition.
+     * @return The new {@link RateLimitAdapter}.
+     * @throws IllegalStateException If no adapter is defined with the id.
+     */
+    public @NotNull RateLimitAdapter createAdapter(@NotNull String id) {
+        Json json = ratelimits.get(id.toUpperCase());
+        if (json == null || !json.contains("type"))
+            throw new IllegalStateException("No rate limit adapter is defined with this id! (Invalid id: " + id + ")");
+
+        return switch (json.getString("type").toUpperCase()) {
+            case TYPE_IP -> new IPRateLimitAdapter(id, IPRateLimitAdapter.DEFAULT_MAX, IPRateLimitAdapter.DEFAULT_EXPIRE, true);
+            case TYPE_TOKEN -> new TokenRateLimitAdapter(id, TokenRateLimitAdapter.DEFAULT_MAX, TokenRateLimitAdapter.DEFAULT_EXPIRE, true);
+            default -> throw new IllegalStateException("Unknown rate limit adapter type! (Invalid type: " + json.getString("type") + ")");
+        };
+    }
+
+    /**
+     * Compiles the {@link RateLimitPolicy} of every configured adapter. Adapters which are not configured get no
+     * policy, so removing an adapter from the configuration restores its own limits. The policy of a
+     * {@link CompositeRateLimitAdapter} follows its first window.
+     *
+     * @param adapters The registered {@link RateLimitAdapter}s, including the ones defined by the configuration.
+     * @return The compiled policies by their adapter.
+     * @throws IllegalStateException If a configured policy is invalid, or an entry belongs to no adapter.
+     */
+    public @NotNull Map<RateLimitAdapter, RateLimitPolicy> compile(@NotNull Collection<RateLimitAdapter> adapters) {
+        Map<String, RateLimitAdapter> ids = new HashMap<>();
+        for (RateLimitAdapter adapter : adapters) ids.put(adapter.getId(), adapter);
+        for (String id : ratelimits.keySet())
+            if (!ids.containsKey(id))
+                throw new IllegalStateException("The configuration contains limits for an unknown rate limit adapter! (Invalid id: " + id + ")");
+
+        Map<CompositeRateLimitAdapter, List<RateLimitWindow>> windows = compileWindows(adapters);
+        Map<RateLimitAdapter, RateLimitPolicy> policies = new IdentityHashMap<>();
+        for (RateLimitAdapter adapter : adapters) {
+            Json json = ratelimits.get(adapter.getId());
+            if (json == null) continue;
+
+            RateLimitPolicy policy = RateLimitPolicy.of(json, adapter.getDefaultPolicy());
+            if (adapter instanceof CompositeRateLimitAdapter composite) {
+                RateLimitWindow first = windows.get(composite).get(0);
+                policy = new RateLimitPolicy(first.max(), first.expire(), policy.headers());
+            }
+            policies.put(adapter, policy);
+        }
+
+        return policies;
+    }
+
+    /**
+     * Collects the adapters which are disabled by the configuration.
+     *
+     * @param adapters The registered {@link RateLimitAdapter}s, including the ones defined by the configuration.
+     * @return The disabled adapters.
+     */
+    public @NotNull Set<RateLimitAdapter> disabled(@NotNull Collection<RateLimitAdapter> adapters) {
+        Set<RateLimitAdapter> disabled = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (RateLimitAdapter adapter : adapters) {
+            Json json = ratelimits.get(adapter.getId());
+            if (json != null && json.contains("enabled") && !json.getBoolean("enabled")) disabled.add(adapter);
+        }
+
+        return disabled;
+    }
+
+    /**
+     * Compiles the configured auth chains.
+     *
+     * @return The new {@link AuthChain}s with their priority in the configured order, or {@code null} if the
+     * default auth chain is used.
+     */
+    public @Nullable Map<AuthChain, Integer> compileChains() {
+        if (chains == null) return null;
+
+        Map<AuthChain, Integer> compiled = new LinkedHashMap<>();
+        for (Chain chain : chains) compiled.put(chain.compile(), chain.priority());
+        return compiled;
+    }
+
+    /**
+     * Compiles the windows of every configured {@link CompositeRateLimitAdapter}. Adapters whose configuration has
+     * no {@code windows} get their default windows, adapters which are not configured keep their own windows.
+     *
+     * @param adapters The registered {@link RateLimitAdapter}s.
+     * @return The compiled windows by their adapter.
+     * @throws IllegalStateException If a configured window is invalid.
+     */
+    public @NotNull Map<CompositeRateLimitAdapter, List<RateLimitWindow>> compileWindows(@NotNull Collection<RateLimitAdapter> adapters) {
+        Map<CompositeRateLimitAdapter, List<RateLimitWindow>> windows = new IdentityHashMap<>();
+        for (RateLimitAdapter adapter : adapters) {
+            if (!(adapter instanceof CompositeRateLimitAdapter composite)) continue;
+
+            Json json = ratelimits.get(adapter.getId());
+            if (json == null) continue;
+            if (!json.contains("windows")) {
+                windows.put(composite, composite.getDefaultWindows());
+                continue;
+            }
+
+            List<RateLimitWindow> configured = json.getJsonList("windows").stream().map(RateLimitWindow::of).toList();
+            if (configured.isEmpty())
+                throw new IllegalStateException("The composite rate limit adapter " + adapter.getId() + " requires at least one window!");
+            windows.put(composite, configured);
+        }
+
+        return windows;
+    }
+
+    /**
+     * The configuration of an auth chain.
+     *
+     * @param priority   The priority of the chain, chains with a higher priority are executed first.
+     * @param adapters   The names of the auth adapters of the chain, in their order.
+     * @param exclusions The url patterns which are excluded from the chain.
+     */
+    public record Chain(int priority, @NotNull List<String> adapters, @NotNull List<String> exclusions) {
+
+        /**
+         * Parses and validates a {@link Chain} from a {@link Json} object.
+         *
+         * @param json The {@link Json} object containing the chain.
+         * @return The parsed {@link Chain}.
+         * @throws IllegalStateException If the chain is invalid.
+         */
+        public static @NotNull Chain of(@NotNull Json json) {
+            List<String> adapters = json.contains("adapters") ? List.copyOf(json.getStringList("adapters")) : List.of();
+            if (adapters.isEmpty())
+                throw new IllegalStateException("An auth chain requires at least one adapter!");
+            for (String adapter : adapters)
+                if (!adapter.equalsIgnoreCase(TYPE_TOKEN))
+                    throw new IllegalStateException("Unknown auth adapter! (Invalid adapter: " + adapter + ")");
+
+            List<String> exclusions = json.contains("exclusions") ? List.copyOf(json.getStringList("exclusions")) : List.of();
+            for (String exclusion : exclusions)
+                try {
+                    Pattern.compile(exclusion);
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalStateException("Invalid exclusion pattern! (Invalid pattern: " + exclusion + ")", e);
+                }
+
+            return new Chain(json.contains("priority") ? json.getInt("priority") : 0, adapters, exclusions);
+        }
+
+        /**
+         * Creates a new {@link SimpleAuthChain} with the adapters and exclusions of this configuration.
+         *
+         * @return The new {@link SimpleAuthChain}.
+         */
+        public @NotNull SimpleAuthChain compile() {
+            SimpleAuthChain chain = new SimpleAuthChain();
+            for (String adapter : adapters)
+                if (adapter.equalsIgnoreCase(TYPE_TOKEN)) chain.append(new TokenAuthAdapter());
+            chain.setConfiguredExclusions(exclusions);
+            return chain;
+        }
+
+    }
+
+    /**
+     * The configuration of the penalty box.
+     *
+     * @param enabled   Whether the penalty box is enabled.
+     * @param threshold The amount of strikes after which a client is blocked.
+     * @param base      The duration of the first block in milliseconds.
+     * @param max       The maximum duration of a single block in milliseconds.
+     * @param decay     The period without strikes after which the strikes of a client are forgotten in milliseconds.
+     */
+    public record Penalty(boolean enabled, int threshold, long base, long max, long decay) {
+
+        /**
+         * Validates the values of the {@link Penalty}.
+         *
+         * @throws IllegalStateException If any of the values is invalid.
+         */
+        public Penalty {
+            if (threshold < 1 || base < 1 || max < base || decay < 1)
+                throw new IllegalStateException("Invalid penalty box configuration! (threshold: " + threshold + ", base: " + base +
+                        "ms, max: " + max + "ms, decay: " + decay + "ms)");
+        }
+
+    }
+
+}
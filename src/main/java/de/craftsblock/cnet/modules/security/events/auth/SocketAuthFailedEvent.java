@@ -0,0 +1,67 @@
+package de.craftsblock.cnet.modules.security.events.auth;
+
+import de.craftsblock.cnet.modules.security.sockets.SocketConnection;
+import de.craftsblock.craftsnet.api.websocket.WebSocketClient;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents an event triggered when the authentication of a websocket handshake fails.
+ * <p>
+ * This is the websocket counterpart of the {@link AuthFailedEvent}, which is bound to an HTTP exchange.
+ * It provides the {@link SocketConnection} which has been rejected and the reason of the failure.
+ * </p>
+ *
+ * <p>Listeners can use this event to handle authentication failures of websocket connections,
+ * such as logging the attempt.</p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see AuthFailedEvent
+ * @since 1.0.0-SNAPSHOT
+ */
+public class SocketAuthFailedEvent extends GenericAuthEvent {
+
+    private final @NotNull SocketConnection connection;
+    private final @Nullable String reason;
+
+    /**
+     * Constructs a new {@link SocketAuthFailedEvent}.
+     *
+     * @param connection The {@link SocketConnection} whose authentication failed. Must not be null.
+     * @param reason     The reason of the failure, or {@code null} if none has been given.
+     */
+    public SocketAuthFailedEvent(@NotNull SocketConnection connection, @Nullable String reason) {
+        this.connection = connection;
+        this.reason = reason;
+    }
+
+    /**
+     * Gets the websocket connection whose authentication failed.
+     *
+     * @return The rejected {@link SocketConnection}.
+     */
+    public @NotNull SocketConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Gets the client of the websocket connection whose authentication failed.
+     *
+     * @return The rejected {@link WebSocketClient}.
+     */
+    public @NotNull WebSocketClient getClient() {
+        return connection.getClient();
+    }
+
+    /**
+     * Gets the reason why the authentication failed.
+     *
+     * @return The reason of the failure, or {@code null} if none has been given.
+     */
+    public @Nullable String getReason() {
+        return reason;
+    }
+
+}
@@ -0,0 +1,68 @@
+package de.craftsblock.cnet.modules.security.events.auth.token;
+
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.cnet.modules.security.auth.token.TokenManager;
+import de.craftsblock.cnet.modules.security.events.auth.GenericAuthEvent;
+import de.craftsblock.craftscore.event.Cancellable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Event triggered once before a batch of new tokens is created, instead of one {@link TokenCreateEvent} per token.
+ * <p>
+ * Listeners may cancel the whole batch, or remove single tokens from {@link #getTokens()} to prevent only
+ * their creation.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see TokenCreateEvent
+ * @see TokenManager#generateTokens(int, List)
+ * @since 1.0.0-SNAPSHOT
+ */
+public class TokenBatchCreateEvent extends GenericAuthEvent implements Cancellable {
+
+    private final @NotNull List<Token> tokens;
+    private boolean cancelled = false;
+
+    /**
+     * Constructs a new {@link TokenBatchCreateEvent}.
+     *
+     * @param tokens The modifiable list of tokens being created. Must not be null.
+     */
+    public TokenBatchCreateEvent(@NotNull List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Returns the tokens being created. Tokens removed from this list are not created.
+     *
+     * @return The modifiable list of {@link Token}s, never null.
+     */
+    public @NotNull List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Sets the cancellation state of this event.
+     *
+     * @param cancelled {@code true} to cancel the event, {@code false} to allow it to proceed.
+     */
+    @Override
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Checks whether this event has been cancelled.
+     *
+     * @return {@code true} if the event is cancelled, {@code false} otherwise.
+     */
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+}
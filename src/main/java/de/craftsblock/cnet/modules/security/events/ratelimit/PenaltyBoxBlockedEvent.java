@@ -0,0 +1,65 @@
+package de.craftsblock.cnet.modules.security.events.ratelimit;
+
+import de.craftsblock.cnet.modules.security.ratelimit.PenaltyBox;
+import de.craftsblock.craftsnet.api.http.Exchange;
+
+/**
+ * The {@link PenaltyBoxBlockedEvent} is triggered when an HTTP request is rejected because its client is
+ * currently blocked by the {@link PenaltyBox}. Such requests are rejected before any rate limit adapter runs,
+ * so no {@link RateLimitExceededEvent} is fired for them.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see GenericRateLimitEvent
+ * @see PenaltyBox
+ * @see Exchange
+ * @since 1.0.0-SNAPSHOT
+ */
+public class PenaltyBoxBlockedEvent extends GenericRateLimitEvent {
+
+    private final Exchange exchange;
+    private final String client;
+    private final long remaining;
+
+    /**
+     * Constructs a new {@link PenaltyBoxBlockedEvent}.
+     *
+     * @param exchange  The {@link Exchange} representing the HTTP request that has been rejected.
+     * @param client    The blocked client, usually its ip address.
+     * @param remaining The remaining block duration in milliseconds.
+     */
+    public PenaltyBoxBlockedEvent(Exchange exchange, String client, long remaining) {
+        this.exchange = exchange;
+        this.client = client;
+        this.remaining = remaining;
+    }
+
+    /**
+     * Gets the {@link Exchange} associated with this event.
+     *
+     * @return The {@link Exchange} which has been rejected.
+     */
+    public Exchange getExchange() {
+        return exchange;
+    }
+
+    /**
+     * Gets the client which is blocked by the {@link PenaltyBox}.
+     *
+     * @return The blocked client, usually its ip address.
+     */
+    public String getClient() {
+        return client;
+    }
+
+    /**
+     * Gets the remaining duration of the block.
+     *
+     * @return The remaining block duration in milliseconds.
+     */
+    public long getRemaining() {
+        return remaining;
+    }
+
+}
@@ -0,0 +1,70 @@
+package de.craftsblock.cnet.modules.security.jfr;
+
+import de.craftsblock.cnet.modules.security.auth.AuthResult;
+import de.craftsblock.cnet.modules.security.auth.chains.AuthChain;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link AuthChainEvent} is a JDK Flight Recorder event covering the evaluation of a single
+ * {@link AuthChain} for a request or a websocket connection.
+ * <p>
+ * It is enabled through the standard JFR settings under its name {@code de.craftsblock.cnet.security.AuthChain}.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+@Name("de.craftsblock.cnet.security.AuthChain")
+@Label("Auth Chain Evaluation")
+@Category({"CNetSecurity", "Authentication"})
+@Description("Evaluation of an authentication chain")
+@StackTrace(false)
+public final class AuthChainEvent extends SecurityEvent {
+
+    /**
+     * The transport of a http request.
+     */
+    public static final String HTTP = "HTTP";
+
+    /**
+     * The transport of a websocket connection.
+     */
+    public static final String WEBSOCKET = "WEBSOCKET";
+
+    @Label("Chain")
+    public Class<?> chain;
+
+    @Label("Transport")
+    public String transport;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Reason")
+    @Description("The reason why the chain has cancelled the authentication")
+    public String reason;
+
+    /**
+     * Ends the evaluation and commits this event if it is recorded.
+     *
+     * @param chain     The evaluated {@link AuthChain}.
+     * @param transport The transport of the authenticated client, either {@link #HTTP} or {@link #WEBSOCKET}.
+     * @param result    The {@link AuthResult} of the chain.
+     */
+    public void complete(AuthChain chain, String transport, AuthResult result) {
+        if (!shouldCommit()) return;
+
+        this.chain = chain.getClass();
+        this.transport = transport;
+        this.success = result.isSuccess();
+        this.reason = result.getCancelReason();
+        commit();
+    }
+
+}
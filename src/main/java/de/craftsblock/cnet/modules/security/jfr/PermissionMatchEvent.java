@@ -0,0 +1,77 @@
+package de.craftsblock.cnet.modules.security.jfr;
+
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.cnet.modules.security.auth.token.TokenDecisionCache;
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link PermissionMatchEvent} is a JDK Flight Recorder event covering the search for the permission of a
+ * token which allows a route, as done by the {@link TokenDecisionCache}. Decisions which are not cached yet
+ * evaluate the path and domain patterns of every permission of the token.
+ * <p>
+ * As this event is recorded for every authenticated request, it is disabled by default and has to be enabled
+ * under its name {@code de.craftsblock.cnet.security.PermissionMatch}.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+@Name("de.craftsblock.cnet.security.PermissionMatch")
+@Label("Permission Match")
+@Category({"CNetSecurity", "Authentication"})
+@Description("Search for the permission of a token which allows a route")
+@StackTrace(false)
+@Enabled(false)
+public final class PermissionMatchEvent extends SecurityEvent {
+
+    @Label("Token Id")
+    public long tokenId;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Domain")
+    public String domain;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Matched")
+    @Description("Whether a permission of the token allows the route")
+    public boolean matched;
+
+    @Label("Cached")
+    @Description("Whether the decision has been taken from the cache")
+    public boolean cached;
+
+    /**
+     * Ends the search and commits this event if it is recorded.
+     *
+     * @param token   The checked {@link Token}.
+     * @param method  The http method of the route.
+     * @param domain  The domain of the route.
+     * @param path    The path of the route.
+     * @param matched Whether a permission allows the route.
+     * @param cached  Whether the decision has been taken from the cache.
+     */
+    public void complete(Token token, HttpMethod method, String domain, String path, boolean matched, boolean cached) {
+        if (!shouldCommit()) return;
+
+        this.tokenId = token.id();
+        this.method = String.valueOf(method);
+        this.domain = domain;
+        this.path = path;
+        this.matched = matched;
+        this.cached = cached;
+        commit();
+    }
+
+}
@@ -0,0 +1,78 @@
+package de.craftsblock.cnet.modules.security.jfr;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPhase;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link RateLimitDecisionEvent} is a JDK Flight Recorder event covering the decision of a single rate
+ * limit adapter about a request, as taken by the {@link RateLimitManager}.
+ * <p>
+ * As this event is recorded for every adapter of every request, it is disabled by default and has to be
+ * enabled under its name {@code de.craftsblock.cnet.security.RateLimitDecision}.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+@Name("de.craftsblock.cnet.security.RateLimitDecision")
+@Label("Rate Limit Decision")
+@Category({"CNetSecurity", "Rate Limiting"})
+@Description("Decision of a rate limit adapter about a request")
+@StackTrace(false)
+@Enabled(false)
+public final class RateLimitDecisionEvent extends SecurityEvent {
+
+    @Label("Adapter")
+    public String adapter;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Key Class")
+    @Description("The class of the source the request is counted for")
+    public Class<?> keyClass;
+
+    @Label("Cost")
+    public long cost;
+
+    @Label("Remaining")
+    @Description("The remaining budget after the decision, or -1 if the adapter has no countable budget")
+    public long remaining;
+
+    @Label("Limited")
+    public boolean limited;
+
+    /**
+     * Ends the decision and commits this event. Callers should check {@link #shouldCommit()} first if the
+     * remaining budget is expensive to compute.
+     *
+     * @param adapter   The deciding {@link RateLimitAdapter}.
+     * @param phase     The {@link RateLimitPhase} of the decision.
+     * @param index     The {@link RateLimitIndex} the request is counted for.
+     * @param cost      The cost of the request.
+     * @param remaining The remaining budget after the decision, or {@code -1} if there is none.
+     * @param limited   Whether the request has been rate limited.
+     */
+    public void complete(RateLimitAdapter adapter, RateLimitPhase phase, RateLimitIndex index, long cost, long remaining, boolean limited) {
+        if (!shouldCommit()) return;
+
+        this.adapter = adapter.getId();
+        this.phase = phase.name();
+        this.keyClass = index.source().getClass();
+        this.cost = cost;
+        this.remaining = remaining;
+        this.limited = limited;
+        commit();
+    }
+
+}
@@ -0,0 +1,49 @@
+package de.craftsblock.cnet.modules.security.jfr;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link RateLimitSweepEvent} is a JDK Flight Recorder event covering a single sweep of expired rate limit
+ * state, like the entries of the backend or the clients of the penalty box, done by {@link RateLimitManager#tick()}.
+ * <p>
+ * It is enabled through the standard JFR settings under its name {@code de.craftsblock.cnet.security.RateLimitSweep}.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+@Name("de.craftsblock.cnet.security.RateLimitSweep")
+@Label("Rate Limit Sweep")
+@Category({"CNetSecurity", "Rate Limiting"})
+@Description("Sweep of expired rate limit state")
+@StackTrace(false)
+public final class RateLimitSweepEvent extends SecurityEvent {
+
+    @Label("Target")
+    @Description("The swept state, either the backend, the penalty box or the id of an adapter")
+    public String target;
+
+    /**
+     * Runs a sweep and records it, if this event is enabled.
+     *
+     * @param target The swept state, used as the target of the event.
+     * @param sweep  The sweep to run.
+     */
+    public static void record(String target, Runnable sweep) {
+        RateLimitSweepEvent event = new RateLimitSweepEvent();
+        event.begin();
+        sweep.run();
+
+        if (!event.shouldCommit()) return;
+        event.target = target;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,23 @@
+package de.craftsblock.cnet.modules.security.jfr;
+
+import jdk.jfr.Event;
+
+/**
+ * The {@link SecurityEvent} is the base of all JDK Flight Recorder events of this addon. The events make the
+ * work of the addon, like token verification and rate limit decisions, visible in recordings, so its overhead
+ * can be correlated with latency spikes instead of showing up as anonymous hashing and regex frames.
+ * <p>
+ * The events are enabled and configured through the standard JFR settings, e.g. a custom {@code .jfc} file
+ * or {@code -XX:StartFlightRecording}. They are created and begun on the hot path, but only filled and
+ * committed if {@link #shouldCommit()} returns {@code true}, so they cost next to nothing while no recording
+ * is running. High volume events are disabled by default and have to be enabled explicitly.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+abstract class SecurityEvent extends Event {
+
+}
@@ -0,0 +1,82 @@
+package de.craftsblock.cnet.modules.security.jfr;
+
+import de.craftsblock.cnet.modules.security.auth.token.TokenAuthAdapter;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link TokenVerificationEvent} is a JDK Flight Recorder event covering the verification of a bearer
+ * token by the {@link TokenAuthAdapter}, from parsing the header up to checking the hash of the secret.
+ * Its duration is mostly spent hashing the secret.
+ * <p>
+ * Like all events of this addon it is enabled through the standard JFR settings under its name
+ * {@code de.craftsblock.cnet.security.TokenVerification}. While no recording is running, the event is
+ * neither filled nor committed.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @since 1.0.0-SNAPSHOT
+ */
+@Name("de.craftsblock.cnet.security.TokenVerification")
+@Label("Token Verification")
+@Category({"CNetSecurity", "Authentication"})
+@Description("Verification of a bearer token, including the hashing of its secret")
+@StackTrace(false)
+public final class TokenVerificationEvent extends SecurityEvent {
+
+    /**
+     * The outcome of a token whose secret matched its hash.
+     */
+    public static final String VERIFIED = "VERIFIED";
+
+    /**
+     * The outcome of a header which does not contain a valid token.
+     */
+    public static final String MALFORMED = "MALFORMED";
+
+    /**
+     * The outcome of a token id which is not known.
+     */
+    public static final String UNKNOWN_TOKEN = "UNKNOWN_TOKEN";
+
+    /**
+     * The outcome of a token whose secret did not match its hash.
+     */
+    public static final String INVALID_SECRET = "INVALID_SECRET";
+
+    /**
+     * The outcome of a verification which failed with an unexpected error.
+     */
+    public static final String ERROR = "ERROR";
+
+    @Label("Token Id")
+    public long tokenId;
+
+    @Label("Hash Algorithm")
+    @Description("The algorithm of the stored hash, taken from its prefix")
+    public String algorithm;
+
+    @Label("Outcome")
+    public String outcome;
+
+    /**
+     * Gets the hash algorithm of a modular crypt hash, like {@code bcrypt} for hashes starting with
+     * {@code $2a$}, {@code $2b$} or {@code $2y$}.
+     *
+     * @param hash The stored hash.
+     * @return The name of the algorithm, or {@code unknown} if it could not be determined.
+     */
+    public static String algorithmOf(String hash) {
+        if (hash == null || hash.length() < 4 || hash.charAt(0) != '$') return "unknown";
+        if (hash.charAt(1) == '2' && hash.charAt(3) == '$') return "bcrypt";
+
+        int end = hash.indexOf('$', 1);
+        return end > 1 ? hash.substring(1, end) : "unknown";
+    }
+
+}
@@ -1,18 +1,24 @@
 package de.craftsblock.cnet.modules.security.listeners;
 
 import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.SecurityContext;
 import de.craftsblock.cnet.modules.security.auth.AuthResult;
 import de.craftsblock.cnet.modules.security.auth.chains.AuthChain;
 import de.craftsblock.cnet.modules.security.events.auth.AuthFailedEvent;
 import de.craftsblock.cnet.modules.security.events.auth.AuthSuccessEvent;
 import de.craftsblock.cnet.modules.security.events.auth.GenericAuthResultEvent;
+import de.craftsblock.cnet.modules.security.jfr.AuthChainEvent;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPhase;
+import de.craftsblock.cnet.modules.security.ratelimit.concurrency.ConcurrencyLimitAdapter;
+import de.craftsblock.cnet.modules.security.utils.Rejections;
 import de.craftsblock.craftscore.event.EventHandler;
 import de.craftsblock.craftscore.event.EventPriority;
 import de.craftsblock.craftscore.event.ListenerAdapter;
-import de.craftsblock.craftscore.json.Json;
 import de.craftsblock.craftsnet.api.annotations.AutoRegister;
 import de.craftsblock.craftsnet.api.http.Exchange;
 import de.craftsblock.craftsnet.events.EventWithCancelReason;
+import de.craftsblock.craftsnet.events.requests.PostRequestEvent;
 import de.craftsblock.craftsnet.events.requests.PreRequestEvent;
 import de.craftsblock.craftsnet.events.requests.routes.RouteRequestEvent;
 import de.craftsblock.craftsnet.events.requests.shares.ShareRequestEvent;
@@ -23,10 +29,18 @@ import java.lang.reflect.InvocationTargetException;
 /**
  * The PreRequestListener class listens for pre-request events and processes
  * authentication chains to determine if an incoming request should be allowed.
+ * <p>
+ * Rate limit adapters of the {@link RateLimitPhase#PRE_AUTH} phase are checked before the authentication
+ * chains, all other adapters once the request has been routed.
+ * </p>
+ * <p>
+ * The {@link SecurityContext} of every request is created before the authentication chains run, and receives
+ * the {@link AuthResult} of the chains. Rejected requests are answered through {@link Rejections}.
+ * </p>
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.6.0
  * @since 1.0.0-SNAPSHOT
  */
 @AutoRegister
@@ -34,7 +48,9 @@ public class PreRequestListener implements ListenerAdapter {
 
     /**
      * Handles the {@link PreRequestEvent}. This method is triggered when a pre-request
-     * event occurs and processes the authentication chains.
+     * event occurs and processes the authentication chains. Requests which are rejected by
+     * a {@link RateLimitPhase#PRE_AUTH} rate limit are not authenticated at all, and failed
+     * authentications are charged to the rate limits which track them.
      *
      * @param event The {@link PreRequestEvent} containing information about the request.
      * @throws IOException               If an error occurs while processing the request or response.
@@ -44,22 +60,37 @@ public class PreRequestListener implements ListenerAdapter {
     @EventHandler(priority = EventPriority.LOWEST)
     public void handleAuthChains(PreRequestEvent event) throws IOException, InvocationTargetException, IllegalAccessException {
         Exchange exchange = event.getExchange();
+        SecurityContext context = SecurityContext.of(exchange);
+        RateLimitManager rater = CNetSecurity.getRateLimitManager();
+
+        // Reject floods before any credentials are verified
+        if (rater.isRateLimited(exchange, RateLimitPhase.PRE_AUTH)) {
+            event.setCancelled(true);
+            Rejections.rateLimited(exchange, context);
+            return;
+        }
 
         GenericAuthResultEvent authEvent = new AuthSuccessEvent(exchange);
 
         // Iterate through each authentication chain
-        for (AuthChain chain : CNetSecurity.getAuthChainManager()) {
+        for (AuthChain chain : CNetSecurity.getAuthChainManager().getChains()) {
             // Authenticate the incoming request using the current chain
+            AuthChainEvent trace = new AuthChainEvent();
+            trace.begin();
+
             AuthResult result = chain.authenticate(exchange);
+            trace.complete(chain, AuthChainEvent.HTTP, result);
+            context.setAuthResult(result);
 
             // Continue if the authentication was cancelled
             if (!result.isCancelled()) continue;
 
             event.setCancelled(true); // Cancel the event
             authEvent = new AuthFailedEvent(exchange);
+            rater.chargeAuthFailure(exchange);
 
             // Send an error response back to the client
-            exchange.response().print(Json.empty().set("error", result.getCancelReason()));
+            Rejections.authFailed(exchange, result.getCancelReason());
             break;
         }
 
@@ -91,21 +122,69 @@ public class PreRequestListener implements ListenerAdapter {
     }
 
     /**
-     * Processes the rate limit chain.
+     * Processes the rate limit chain of the {@link RateLimitPhase#POST_AUTH} phase.
      *
      * @param event    The {@link EventWithCancelReason} that was fired.
      * @param exchange The {@link Exchange} containing information about the request.
      * @throws IOException If an error occurs while processing the request or response.
      */
     public void handleRateLimiter(EventWithCancelReason event, Exchange exchange) throws IOException {
-        if (CNetSecurity.getRateLimitManager().isRateLimited(exchange)) {
+        if (CNetSecurity.getRateLimitManager().isRateLimited(exchange, RateLimitPhase.POST_AUTH)) {
             // Cancel the event
             event.setCancelled(true);
             event.setCancelReason("RATELIMITED");
 
             // Send an error response back to the client
-            exchange.response().print(Json.empty().set("error", "You have been rate limited!"));
+            Rejections.rateLimited(exchange, SecurityContext.of(exchange));
         }
     }
 
+    /**
+     * Handles the {@link PostRequestEvent}. This method is triggered once a request has been
+     * processed, releases the in flight permits of the concurrency limiters and charges the costs
+     * of rate limit adapters which charge back.
+     *
+     * @param event The {@link PostRequestEvent} containing information about the request.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleRelease(PostRequestEvent event) {
+        CNetSecurity.getRateLimitManager().release(event.getExchange());
+    }
+
+    /**
+     * Handles a cancelled {@link PreRequestEvent}. A cancelled request is not processed and does not
+     * complete, so its in flight permits and pending charges are dropped right away.
+     *
+     * @param event The {@link PreRequestEvent} containing information about the request.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleAbandon(PreRequestEvent event) {
+        if (event.isCancelled()) CNetSecurity.getRateLimitManager().abandon(event.getExchange());
+    }
+
+    /**
+     * Handles a cancelled {@link RouteRequestEvent}. A cancelled request is not processed and does not
+     * complete, so its in flight permits and pending charges are dropped right away.
+     *
+     * @param event The {@link RouteRequestEvent} containing information about the request.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleAbandon(RouteRequestEvent event) {
+        if (event.isCancelled()) CNetSecurity.getRateLimitManager().abandon(event.getExchange());
+    }
+
+    /**
+     * Handles the {@link ShareRequestEvent} once all listeners have seen it. A cancelled share is abandoned.
+     * The completion of an admitted share is not reported, so its in flight permits are released as soon as
+     * it has been admitted, without reporting a latency sample.
+     *
+     * @param event The {@link ShareRequestEvent} containing information about the share request.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleAbandon(ShareRequestEvent event) {
+        Exchange exchange = event.getExchange();
+        if (event.isCancelled()) CNetSecurity.getRateLimitManager().abandon(exchange);
+        else ConcurrencyLimitAdapter.release(exchange.storage(), false);
+    }
+
 }
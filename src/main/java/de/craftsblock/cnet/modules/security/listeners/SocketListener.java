@@ -0,0 +1,124 @@
+package de.craftsblock.cnet.modules.security.listeners;
+
+import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.auth.AuthResult;
+import de.craftsblock.cnet.modules.security.auth.chains.AuthChain;
+import de.craftsblock.cnet.modules.security.events.auth.SocketAuthFailedEvent;
+import de.craftsblock.cnet.modules.security.jfr.AuthChainEvent;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.sockets.SocketConnection;
+import de.craftsblock.cnet.modules.security.sockets.SocketManager;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import de.craftsblock.craftscore.event.EventHandler;
+import de.craftsblock.craftscore.event.EventPriority;
+import de.craftsblock.craftscore.event.ListenerAdapter;
+import de.craftsblock.craftsnet.api.annotations.AutoRegister;
+import de.craftsblock.craftsnet.api.websocket.WebSocketClient;
+import de.craftsblock.craftsnet.events.sockets.ClientConnectEvent;
+import de.craftsblock.craftsnet.events.sockets.ClientDisconnectEvent;
+import de.craftsblock.craftsnet.events.sockets.message.IncomingSocketMessageEvent;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The SocketListener class listens for websocket events. It authenticates connections once during
+ * their handshake using the authentication chains, and limits the amount of incoming frames per
+ * connection and per token.
+ * <p>
+ * Failed handshakes are charged to the failed authentication budget of the client and announced by a
+ * {@link SocketAuthFailedEvent}. Connections are only registered while their connect event has not been
+ * cancelled, so frames of rejected connections are dropped.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see SocketManager
+ * @since 1.0.0-SNAPSHOT
+ */
+@AutoRegister
+public class SocketListener implements ListenerAdapter {
+
+    /**
+     * Handles the {@link ClientConnectEvent}. This method is triggered when a client opens a websocket
+     * connection and processes the authentication chains. Clients which are blocked by the penalty box
+     * of the rate limiter or have exhausted their failed authentication budget are rejected right away.
+     *
+     * @param event The {@link ClientConnectEvent} containing information about the connection.
+     * @throws InvocationTargetException If an error occurs while firing the {@link SocketAuthFailedEvent}.
+     * @throws IllegalAccessException    If an error occurs while firing the {@link SocketAuthFailedEvent}.
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void handleConnect(ClientConnectEvent event) throws InvocationTargetException, IllegalAccessException {
+        if (event.isCancelled()) return;
+
+        final WebSocketClient client = event.getClient();
+        final String ip = client.getIp();
+        final RateLimitManager rater = CNetSecurity.getRateLimitManager();
+        if (ip != null && (rater.getPenaltyBox().isBlocked(ip, SecurityClock.now()) || rater.isAuthFailureLimited(ip))) {
+            event.setCancelled(true);
+            event.setCancelReason("RATELIMITED");
+            return;
+        }
+
+        SocketManager sockets = CNetSecurity.getSocketManager();
+        SocketConnection connection = sockets.create(client);
+
+        // Iterate through each authentication chain
+        for (AuthChain chain : CNetSecurity.getAuthChainManager().getChains()) {
+            AuthChainEvent trace = new AuthChainEvent();
+            trace.begin();
+
+            AuthResult result = chain.authenticate(connection);
+            trace.complete(chain, AuthChainEvent.WEBSOCKET, result);
+
+            // Continue if the authentication was not cancelled
+            if (!result.isCancelled()) continue;
+
+            event.setCancelled(true);
+            event.setCancelReason(result.getCancelReason());
+
+            if (ip != null) rater.chargeAuthFailure(ip);
+            CNetSecurity.callEvent(new SocketAuthFailedEvent(connection, result.getCancelReason()));
+            return;
+        }
+
+        // Pin the result of the handshake to the connection
+        sockets.register(connection);
+    }
+
+    /**
+     * Handles the {@link ClientConnectEvent} after all other listeners. If a later listener has cancelled the
+     * connection after it had been registered, its registration is dropped again.
+     *
+     * @param event The {@link ClientConnectEvent} containing information about the connection.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleConnectResult(ClientConnectEvent event) {
+        if (event.isCancelled()) CNetSecurity.getSocketManager().unregister(event.getClient());
+    }
+
+    /**
+     * Handles the {@link IncomingSocketMessageEvent}. This method is triggered for every incoming frame and
+     * drops frames which exceed the frame limits of their connection or token.
+     *
+     * @param event The {@link IncomingSocketMessageEvent} containing information about the frame.
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void handleMessage(IncomingSocketMessageEvent event) {
+        if (!CNetSecurity.getSocketManager().tryFrame(event.getClient(), SecurityClock.now()))
+            event.setCancelled(true);
+    }
+
+    /**
+     * Handles the {@link ClientDisconnectEvent}. This method is triggered once a websocket connection
+     * has been closed and releases its state.
+     *
+     * @param event The {@link ClientDisconnectEvent} containing information about the connection.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleDisconnect(ClientDisconnectEvent event) {
+        CNetSecurity.getSocketManager().unregister(event.getClient());
+    }
+
+}
@@ -0,0 +1,251 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@link HeavyHitters} track which sources consume the most of the budget of a single {@link RateLimitAdapter}.
+ * The consumption of every source is estimated using a count-min sketch, and the sources with the highest estimates
+ * are kept in a bounded top list. Both have a fixed size, so the memory used does not depend on the amount of
+ * distinct sources.
+ * <p>
+ * Recording an access costs a constant amount of sketch updates. The top list is only locked if the estimate of
+ * the source is high enough to enter it, and recording never waits for that lock: if it is contended, the update
+ * of the top list is skipped, as the next access of the source carries the grown estimate anyway. To reflect the current traffic
+ * instead of all traffic ever seen, all estimates are halved once per half life. The halving of the top list is
+ * deferred to the next holder of the lock if it is contended, so the decay never blocks a request either.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see RateLimitAdapter#getHeavyHitters()
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class HeavyHitters {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final AtomicLongArray sketch;
+    private final int width;
+    private final long halfLife;
+    private final AtomicLong nextDecay = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger pendingDecays = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Object[] sources;
+    private final long[] estimates;
+    private int size;
+    private volatile long floor;
+
+    /**
+     * Constructs new {@link HeavyHitters} which keep the top 32 sources, using a sketch with a width of 1024
+     * and a half life of one minute.
+     */
+    public HeavyHitters() {
+        this(32, 1024, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Constructs new {@link HeavyHitters}.
+     *
+     * @param capacity The amount of top sources to keep.
+     * @param width    The width of every row of the sketch, rounded up to a power of two. Wider sketches
+     *                 estimate more accurately but use more memory.
+     * @param halfLife The period after which all estimates are halved.
+     * @param unit     The {@link TimeUnit} of the half life.
+     * @throws IllegalStateException If any of the values is invalid.
+     */
+    public HeavyHitters(int capacity, int width, long halfLife, @NotNull TimeUnit unit) {
+        if (capacity < 1 || width < 1 || width > 1 << 24 || unit.toMillis(halfLife) < 1)
+            throw new IllegalStateException("Invalid heavy hitter configuration! (capacity: " + capacity + ", width: " + width +
+                    ", half life: " + unit.toMillis(halfLife) + "ms)");
+
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.sketch = new AtomicLongArray(DEPTH * this.width);
+        this.halfLife = unit.toMillis(halfLife);
+
+        this.sources = new Object[capacity];
+        this.estimates = new long[capacity];
+    }
+
+    /**
+     * Records that the given source consumed the given weight.
+     *
+     * @param source The source of the {@link RateLimitIndex}.
+     * @param weight The consumed weight.
+     * @param now    The current time in milliseconds.
+     */
+    public void record(@NotNull Object source, long weight, long now) {
+        if (weight <= 0) return;
+        decayIfDue(now);
+
+        final int hash = source.hashCode();
+        final int mask = width - 1;
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int cell = hash * SEEDS[row];
+            cell ^= cell >>> 16;
+            estimate = Math.min(estimate, sketch.addAndGet(row * width + (cell & mask), weight));
+        }
+
+        if (estimate <= floor || !lock.tryLock()) return;
+        try {
+            applyDecays();
+            offer(source, estimate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the current top sources, ordered by their estimated consumption in descending order.
+     *
+     * @return The top sources.
+     */
+    public @NotNull List<Entry> snapshot() {
+        List<Entry> entries;
+        lock.lock();
+        try {
+            applyDecays();
+            entries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                entries.add(new Entry(sources[i], estimates[i]));
+        } finally {
+            lock.unlock();
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::estimate).reversed());
+        return entries;
+    }
+
+    /**
+     * Forgets all recorded consumption.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            for (int i = 0; i < sketch.length(); i++) sketch.set(i, 0);
+            Arrays.fill(sources, null);
+            Arrays.fill(estimates, 0);
+            size = 0;
+            floor = 0;
+            pendingDecays.set(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Offers a source with its current estimate to the top list. The lock must be held by the caller.
+     *
+     * @param source   The source.
+     * @param estimate The estimated consumption of the source.
+     */
+    private void offer(Object source, long estimate) {
+        int min = -1;
+        for (int i = 0; i < size; i++) {
+            if (sources[i].equals(source)) {
+                estimates[i] = Math.max(estimates[i], estimate);
+                updateFloor();
+                return;
+            }
+
+            if (min == -1 || estimates[i] < estimates[min]) min = i;
+        }
+
+        if (size < sources.length) {
+            sources[size] = source;
+            estimates[size++] = estimate;
+        } else if (estimate > estimates[min]) {
+            sources[min] = source;
+            estimates[min] = estimate;
+        } else return;
+
+        updateFloor();
+    }
+
+    /**
+     * Updates the lowest estimate a source needs to enter the top list. As long as the list is not
+     * filled, every source may enter it.
+     */
+    private void updateFloor() {
+        if (size < sources.length) {
+            floor = 0;
+            return;
+        }
+
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) lowest = Math.min(lowest, estimates[i]);
+        floor = lowest;
+    }
+
+    /**
+     * Halves all estimates if the half life has passed since the last decay. Only one thread performs the decay.
+     * The top list is only halved right away if its lock is free, otherwise the halving is left to the next
+     * thread which acquires the lock.
+     *
+     * @param now The current time in milliseconds.
+     */
+    private void decayIfDue(long now) {
+        long due = nextDecay.get();
+        if (now < due) return;
+        if (!nextDecay.compareAndSet(due, now + halfLife)) return;
+        if (due == Long.MIN_VALUE) return; // First record, only schedules the decay
+
+        for (int i = 0; i < sketch.length(); i++)
+            sketch.getAndUpdate(i, value -> value >>> 1);
+
+        pendingDecays.incrementAndGet();
+        if (!lock.tryLock()) return;
+        try {
+            applyDecays();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies all pending halvings to the top list. The lock must be held by the caller.
+     */
+    private void applyDecays() {
+        final int decays = pendingDecays.getAndSet(0);
+        if (decays == 0) return;
+
+        final int shift = Math.min(decays, Long.SIZE - 1);
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            long estimate = estimates[i] >>> shift;
+            if (estimate == 0) continue;
+
+            sources[kept] = sources[i];
+            estimates[kept++] = estimate;
+        }
+
+        for (int i = kept; i < size; i++) sources[i] = null;
+        size = kept;
+        updateFloor();
+    }
+
+    /**
+     * A single source of the top list.
+     *
+     * @param source   The source of the {@link RateLimitIndex}.
+     * @param estimate The estimated consumption of the source. The estimate never undercounts, but may
+     *                 overcount if other sources share the same sketch cells.
+     */
+    public record Entry(Object source, long estimate) {
+    }
+
+}
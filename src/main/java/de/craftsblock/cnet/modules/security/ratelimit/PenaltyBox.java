@@ -0,0 +1,391 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The {@link PenaltyBox} temporarily blocks clients which repeatedly exceed their rate limits.
+ * Every time a client is rejected by an adapter of the {@link RateLimitPhase#PRE_AUTH} phase it receives a
+ * strike. Once the amount of strikes reaches the threshold, the client is blocked, and every further strike
+ * doubles the block duration up to a maximum. Strikes are forgotten once a client stayed quiet for the decay period.
+ * <p>
+ * The penalty box is checked by the {@link RateLimitManager} before any {@link RateLimitAdapter} runs, so
+ * blocked requests are rejected without resolving indices or building headers. To keep this check cheap, the
+ * clients are stored by a 64 bit hash in an open addressing table made of primitive arrays, which is read
+ * without locking. If no client has any strikes, the check does not even hash the client.
+ * </p>
+ * <p>
+ * The penalty box is disabled by default, as its escalation is only sensible with limits which a well behaving
+ * client never reaches. It has to be enabled explicitly, either through {@link #setEnabled(boolean)} or the
+ * {@code penalty} section of the configuration file. The settings are held by an immutable record which is
+ * replaced as a whole, so a strike never observes a half applied configuration.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.2.0
+ * @see RateLimitManager#getPenaltyBox()
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class PenaltyBox {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private long[] blockedUntil = new long[MIN_CAPACITY];
+    private long[] lastStrike = new long[MIN_CAPACITY];
+    private int[] strikes = new int[MIN_CAPACITY];
+    private volatile int size;
+
+    private volatile Settings settings = new Settings(false, 5, TimeUnit.SECONDS.toMillis(5),
+            TimeUnit.MINUTES.toMillis(15), TimeUnit.MINUTES.toMillis(10));
+
+    /**
+     * Gets the remaining block duration of the given client.
+     *
+     * @param client The client to check, usually its ip address.
+     * @param now    The current time in milliseconds.
+     * @return The remaining block duration in milliseconds, or {@code 0} if the client is not blocked.
+     */
+    public long getRemaining(@NotNull String client, long now) {
+        if (!settings.enabled() || size == 0) return 0;
+
+        final long key = keyOf(client);
+        long stamp = lock.tryOptimisticRead();
+        long until = blockedUntilOf(key);
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                until = blockedUntilOf(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return until > now ? until - now : 0;
+    }
+
+    /**
+     * Checks whether the given client is currently blocked.
+     *
+     * @param client The client to check, usually its ip address.
+     * @param now    The current time in milliseconds.
+     * @return {@code true} if the client is blocked, {@code false} otherwise.
+     */
+    public boolean isBlocked(@NotNull String client, long now) {
+        return getRemaining(client, now) > 0;
+    }
+
+    /**
+     * Gives the client a strike, blocking it if the threshold has been reached.
+     *
+     * @param client The client which exceeded a rate limit, usually its ip address.
+     * @param now    The current time in milliseconds.
+     * @return The duration in milliseconds the client has been blocked for, or {@code 0} if it is not blocked.
+     */
+    public long strike(@NotNull String client, long now) {
+        final Settings settings = this.settings;
+        if (!settings.enabled()) return 0;
+
+        final long key = keyOf(client);
+        final long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(keys, key);
+            if (keys[slot] == 0) {
+                if ((size + 1) * 2 > keys.length) {
+                    resize(keys.length * 2, Long.MIN_VALUE);
+                    slot = slotOf(keys, key);
+                }
+
+                keys[slot] = key;
+                size++;
+            } else if (now - lastStrike[slot] > settings.decay()) strikes[slot] = 0;
+
+            lastStrike[slot] = now;
+            int count = strikes[slot] < Integer.MAX_VALUE ? ++strikes[slot] : strikes[slot];
+            if (count < settings.threshold()) return 0;
+
+            // Double the duration for every strike beyond the threshold without overflowing
+            int escalation = count - settings.threshold();
+            long duration = escalation >= Long.numberOfLeadingZeros(settings.baseDuration()) - 1
+                    ? settings.maxDuration()
+                    : Math.min(settings.baseDuration() << escalation, settings.maxDuration());
+
+            blockedUntil[slot] = Math.max(blockedUntil[slot], now + duration);
+            return duration;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the block and all strikes of the given client.
+     *
+     * @param client The client to pardon, usually its ip address.
+     */
+    public void pardon(@NotNull String client) {
+        final long key = keyOf(client);
+        final long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(keys, key);
+            if (keys[slot] != 0) removeAt(slot);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all clients which are no longer blocked and whose strikes have decayed.
+     *
+     * @param now The current time in milliseconds.
+     */
+    public void sweep(long now) {
+        if (size == 0) return;
+
+        final long stamp = lock.writeLock();
+        try {
+            int capacity = MIN_CAPACITY;
+            int alive = 0;
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] != 0 && isAlive(i, now)) alive++;
+
+            while (alive * 2 > capacity) capacity <<= 1;
+            resize(capacity, now);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all clients from this penalty box.
+     */
+    public void clear() {
+        final long stamp = lock.writeLock();
+        try {
+            keys = new long[MIN_CAPACITY];
+            blockedUntil = new long[MIN_CAPACITY];
+            lastStrike = new long[MIN_CAPACITY];
+            strikes = new int[MIN_CAPACITY];
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Configures how clients are escalated. Whether this penalty box is enabled is kept.
+     *
+     * @param threshold    The amount of strikes after which a client is blocked.
+     * @param baseDuration The duration of the first block, which doubles with every further strike.
+     * @param maxDuration  The maximum duration of a single block.
+     * @param decay        The period without strikes after which the strikes of a client are forgotten.
+     * @param unit         The {@link TimeUnit} of the durations.
+     * @throws IllegalStateException If any of the values is invalid.
+     */
+    public synchronized void configure(int threshold, long baseDuration, long maxDuration, long decay, @NotNull TimeUnit unit) {
+        configure(settings.enabled(), threshold, baseDuration, maxDuration, decay, unit);
+    }
+
+    /**
+     * Configures whether this penalty box is enabled and how clients are escalated. All settings are
+     * swapped in at once.
+     *
+     * @param enabled      {@code true} to enable the penalty box, {@code false} to disable it.
+     * @param threshold    The amount of strikes after which a client is blocked.
+     * @param baseDuration The duration of the first block, which doubles with every further strike.
+     * @param maxDuration  The maximum duration of a single block.
+     * @param decay        The period without strikes after which the strikes of a client are forgotten.
+     * @param unit         The {@link TimeUnit} of the durations.
+     * @throws IllegalStateException If any of the values is invalid.
+     */
+    public synchronized void configure(boolean enabled, int threshold, long baseDuration, long maxDuration, long decay, @NotNull TimeUnit unit) {
+        long base = unit.toMillis(baseDuration), max = unit.toMillis(maxDuration), decayMillis = unit.toMillis(decay);
+        if (threshold < 1 || base < 1 || max < base || decayMillis < 1)
+            throw new IllegalStateException("Invalid penalty box configuration! (threshold: " + threshold + ", base: " + base +
+                    "ms, max: " + max + "ms, decay: " + decayMillis + "ms)");
+
+        this.settings = new Settings(enabled, threshold, base, max, decayMillis);
+    }
+
+    /**
+     * Enables or disables this penalty box. Disabling it does not forget the current clients.
+     *
+     * @param enabled {@code true} to enable the penalty box, {@code false} to disable it.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        Settings settings = this.settings;
+        this.settings = new Settings(enabled, settings.threshold(), settings.baseDuration(), settings.maxDuration(), settings.decay());
+    }
+
+    /**
+     * Checks whether this penalty box is enabled.
+     *
+     * @return {@code true} if this penalty box is enabled, {@code false} otherwise.
+     */
+    public boolean isEnabled() {
+        return settings.enabled();
+    }
+
+    /**
+     * Gets the amount of clients which currently have strikes or are blocked.
+     *
+     * @return The amount of tracked clients.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the end of the block of the given key. This may be called during an optimistic read, so it
+     * must cope with arrays which are replaced concurrently.
+     *
+     * @param key The key of the client.
+     * @return The end of the block in milliseconds, or {@code 0} if the client is unknown.
+     */
+    private long blockedUntilOf(long key) {
+        final long[] keys = this.keys;
+        final long[] blockedUntil = this.blockedUntil;
+        if (keys.length != blockedUntil.length) return 0;
+
+        final int mask = keys.length - 1;
+        for (int i = mix(key) & mask, probes = 0; probes < keys.length; i = (i + 1) & mask, probes++) {
+            long current = keys[i];
+            if (current == key) return blockedUntil[i];
+            if (current == 0) return 0;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Checks whether the entry in the given slot has to be kept.
+     *
+     * @param slot The slot of the entry.
+     * @param now  The current time in milliseconds.
+     * @return {@code true} if the entry is still blocked or has strikes which did not decay yet.
+     */
+    private boolean isAlive(int slot, long now) {
+        return blockedUntil[slot] > now || now - lastStrike[slot] <= settings.decay();
+    }
+
+    /**
+     * Rehashes all entries which are still alive into new arrays of the given capacity.
+     *
+     * @param capacity The new capacity, must be a power of two.
+     * @param now      The current time in milliseconds, or {@link Long#MIN_VALUE} to keep every entry.
+     */
+    private void resize(int capacity, long now) {
+        long[] keys = new long[capacity];
+        long[] blockedUntil = new long[capacity];
+        long[] lastStrike = new long[capacity];
+        int[] strikes = new int[capacity];
+
+        int size = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] == 0) continue;
+            if (now != Long.MIN_VALUE && !isAlive(i, now)) continue;
+
+            int slot = slotOf(keys, this.keys[i]);
+            keys[slot] = this.keys[i];
+            blockedUntil[slot] = this.blockedUntil[i];
+            lastStrike[slot] = this.lastStrike[i];
+            strikes[slot] = this.strikes[i];
+            size++;
+        }
+
+        this.keys = keys;
+        this.blockedUntil = blockedUntil;
+        this.lastStrike = lastStrike;
+        this.strikes = strikes;
+        this.size = size;
+    }
+
+    /**
+     * Removes the entry in the given slot and shifts the following entries of its probe sequence back,
+     * so lookups never stop at the freed slot too early.
+     *
+     * @param slot The slot of the entry to remove.
+     */
+    private void removeAt(int slot) {
+        final int mask = keys.length - 1;
+        int free = slot;
+        for (int i = (slot + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int home = mix(keys[i]) & mask;
+
+            // Only move the entry if the free slot lies between its home slot and its current slot
+            if (((i - home) & mask) < ((i - free) & mask)) continue;
+
+            keys[free] = keys[i];
+            blockedUntil[free] = blockedUntil[i];
+            lastStrike[free] = lastStrike[i];
+            strikes[free] = strikes[i];
+            free = i;
+        }
+
+        keys[free] = 0;
+        blockedUntil[free] = 0;
+        lastStrike[free] = 0;
+        strikes[free] = 0;
+        size--;
+    }
+
+    /**
+     * Finds the slot of the given key, or the free slot it would be inserted into.
+     *
+     * @param keys The key array to search.
+     * @param key  The key.
+     * @return The slot of the key.
+     */
+    private static int slotOf(long[] keys, long key) {
+        final int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * Computes the 64 bit key of a client using FNV-1a. The key {@code 0} marks free slots and is never returned.
+     *
+     * @param client The client.
+     * @return The key of the client.
+     */
+    private static long keyOf(String client) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < client.length(); i++) {
+            hash ^= client.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Spreads the bits of a key to select its first slot.
+     *
+     * @param key The key.
+     * @return The mixed hash of the key.
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * The settings of a {@link PenaltyBox}, with all durations in milliseconds.
+     *
+     * @param enabled      Whether the penalty box is enabled.
+     * @param threshold    The amount of strikes after which a client is blocked.
+     * @param baseDuration The duration of the first block.
+     * @param maxDuration  The maximum duration of a single block.
+     * @param decay        The period without strikes after which the strikes of a client are forgotten.
+     */
+    private record Settings(boolean enabled, int threshold, long baseDuration, long maxDuration, long decay) {
+    }
+
+}
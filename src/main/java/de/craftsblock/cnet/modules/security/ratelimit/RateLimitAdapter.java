@@ -1,9 +1,11 @@
 package de.craftsblock.cnet.modules.security.ratelimit;
 
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
 import de.craftsblock.craftsnet.api.http.Exchange;
 import de.craftsblock.craftsnet.api.http.Request;
 import de.craftsblock.craftsnet.api.http.Response;
 import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.regex.Pattern;
@@ -11,14 +13,16 @@ import java.util.regex.Pattern;
 /**
  * The {@link RateLimitAdapter} is an abstract class that defines the structure for rate limiting logic.
  * It enforces rate limiting policies for incoming {@link Request}s by mapping them to {@link RateLimitIndex} objects.
- * The adapter also manages configuration settings like maximum request count, expiration times, and response headers.
+ * The adapter also manages configuration settings like maximum request count, expiration times, and response headers,
+ * which are held by an immutable {@link RateLimitPolicy} that can be replaced at runtime. Once the adapter is
+ * registered, limits configured in the {@link RateLimitRegistry} of its {@link RateLimitManager} take precedence.
  * <p>
  * Subclasses must implement the {@link #adapt(Request, SessionStorage)} method to define custom rate limiting behavior.
  * </p>
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.6.0
  * @see RateLimitIndex
  * @see RateLimitInfo
  * @see Request
@@ -37,9 +41,10 @@ public abstract class RateLimitAdapter {
     public static final long MAX_EXPIRE_MILLIS = (long) 31 * 24 * 60 * 60 * 1000;
 
     private final String id;
-    private final long max;
-    private final long expire;
-    private final boolean headers;
+    private final RateLimitPolicy defaultPolicy;
+    private volatile RateLimitPolicy policy;
+    private volatile HeavyHitters heavyHitters;
+    private volatile RateLimitManager manager;
 
     /**
      * Constructs a new {@code RateLimitAdapter} with the specified ID and maximum requests.
@@ -75,19 +80,16 @@ public abstract class RateLimitAdapter {
      * @param max     The maximum number of requests allowed within the expiration period.
      * @param expire  The expiration time in milliseconds (must be greater than 0 and less than or equal to {@link #MAX_EXPIRE_MILLIS}).
      * @param headers Whether the rate limiting headers should be included in the response.
-     * @throws IllegalStateException If the ID is invalid.
-     * @throws AssertionError        If the expiration time is not within the allowed range.
+     * @throws IllegalStateException If the ID is invalid or the expiration time is not within the allowed range.
      */
     public RateLimitAdapter(String id, long max, long expire, boolean headers) {
         if (!ID_CHECK.matcher(id).matches())
             throw new IllegalStateException("Rate limiting adapter IDs may only contain letters! (Invalid ID: '" + id +
                     "', set for: " + getClass().getName() + ")");
 
-        assert expire > 0 && expire <= MAX_EXPIRE_MILLIS;
         this.id = id.toUpperCase();
-        this.max = max;
-        this.expire = expire;
-        this.headers = headers;
+        this.defaultPolicy = new RateLimitPolicy(max, expire, headers);
+        this.policy = defaultPolicy;
     }
 
     /**
@@ -100,6 +102,82 @@ public abstract class RateLimitAdapter {
      */
     public abstract @Nullable RateLimitIndex adapt(Request request, SessionStorage storage);
 
+    /**
+     * Computes the cost of a request up front, before it is processed. The cost is charged against the maximum
+     * of this adapter atomically, so a request is only admitted if its whole cost fits into the remaining budget.
+     * <p>
+     * By default every request costs one unit. Adapters can override this to make expensive routes or methods
+     * consume more of the budget than cheap ones, e.g. by returning {@code 1} for {@code HEAD} requests and
+     * {@code 50} for an export endpoint.
+     * </p>
+     * <p>
+     * A cost of {@code 0} does not consume any budget, it only rejects the request once the budget has been
+     * used up completely, e.g. after the maximum amount of failed authentications has been charged.
+     * </p>
+     *
+     * @param request The incoming HTTP request.
+     * @param storage The session storage associated with the request.
+     * @return The cost of the request, must not be negative.
+     */
+    public long cost(Request request, SessionStorage storage) {
+        return 1;
+    }
+
+    /**
+     * Indicates whether this adapter charges additional costs after a request has been processed.
+     * If {@code true}, {@link #chargeBack(Exchange, long)} is called once the exchange has completed.
+     *
+     * @return {@code true} if this adapter charges back, {@code false} otherwise.
+     */
+    public boolean chargesBack() {
+        return false;
+    }
+
+    /**
+     * Computes the cost which is charged after a request has been processed, in addition to the up front
+     * {@link #cost(Request, SessionStorage)}. This allows to charge measured costs, like the handling time.
+     * The returned cost is charged unconditionally and may push the counter beyond its maximum, which causes
+     * the following requests to be rejected until the window resets.
+     * <p>
+     * This method is only called if {@link #chargesBack()} returns {@code true}.
+     * </p>
+     *
+     * @param exchange The completed {@link Exchange}.
+     * @param elapsed  The time in nanoseconds between the rate limit check and the completion of the exchange.
+     * @return The additional cost of the request, values below one are not charged.
+     */
+    public long chargeBack(Exchange exchange, long elapsed) {
+        return 0;
+    }
+
+    /**
+     * Computes the cost which is charged when the authentication of a request fails. The cost is charged
+     * unconditionally, like a {@link #chargeBack(Exchange, long) charge back}, so combined with a
+     * {@link #cost(Request, SessionStorage) cost} of zero an adapter can act as a budget of failed authentications.
+     *
+     * @param request The request whose authentication failed.
+     * @param storage The session storage associated with the request.
+     * @return The cost of the failed authentication, values below one are not charged.
+     */
+    public long authFailureCost(Request request, SessionStorage storage) {
+        return 0;
+    }
+
+    /**
+     * Gets the {@link RateLimitPhase} in which this adapter is checked. Adapters which only depend on the
+     * raw request, like the client address, should be checked {@link RateLimitPhase#PRE_AUTH before the
+     * authentication}, so that floods are rejected before any credentials are verified.
+     * <p>
+     * The phase is read once when the adapter is registered and must not change afterward. By default
+     * adapters are checked {@link RateLimitPhase#POST_AUTH after the authentication}.
+     * </p>
+     *
+     * @return The {@link RateLimitPhase} of this adapter.
+     */
+    public RateLimitPhase getPhase() {
+        return RateLimitPhase.POST_AUTH;
+    }
+
     /**
      * Creates a new {@link RateLimitInfo} instance for this adapter.
      *
@@ -120,13 +198,173 @@ public abstract class RateLimitAdapter {
      *
      * @param exchange The {@link Exchange} representing the current HTTP request and response.
      * @param info     The {@link RateLimitInfo} containing the rate limit details for the current request.
+     * @see #appendToResponse(Exchange, RateLimitInfo, long)
      */
     public void appendToResponse(final Exchange exchange, final RateLimitInfo info) {
+        appendToResponse(exchange, info, SecurityClock.now());
+    }
+
+    /**
+     * Appends rate limit information as HTTP headers to the response of the given {@link Exchange},
+     * using the given timestamp as the current time.
+     *
+     * @param exchange The {@link Exchange} representing the current HTTP request and response.
+     * @param info     The {@link RateLimitInfo} containing the rate limit details for the current request.
+     * @param now      The current time in milliseconds.
+     * @see #appendToResponse(Exchange, RateLimitInfo)
+     */
+    public void appendToResponse(final Exchange exchange, final RateLimitInfo info, final long now) {
+        appendToResponse(exchange, info, getPolicy(), now);
+    }
+
+    /**
+     * Appends rate limit information as HTTP headers to the response of the given {@link Exchange},
+     * using the given {@link RateLimitPolicy} the request has been checked against.
+     *
+     * @param exchange The {@link Exchange} representing the current HTTP request and response.
+     * @param info     The {@link RateLimitInfo} containing the rate limit details for the current request.
+     * @param policy   The {@link RateLimitPolicy} the request has been checked against.
+     * @param now      The current time in milliseconds.
+     * @see #appendToResponse(Exchange, RateLimitInfo, long)
+     */
+    public void appendToResponse(final Exchange exchange, final RateLimitInfo info, final RateLimitPolicy policy, final long now) {
+        appendToResponse(exchange, policy.max(), info.getTimes(), info.getExpiresAt(), now);
+    }
+
+    /**
+     * Appends the given rate limit state as HTTP headers to the response of the given {@link Exchange}.
+     * This allows adapters which keep their state outside a {@link RateLimitInfo} to add the same headers.
+     *
+     * @param exchange  The {@link Exchange} representing the current HTTP request and response.
+     * @param max       The maximum number of requests allowed within the rate limit.
+     * @param times     The number of requests which have been counted.
+     * @param expiresAt The expiration timestamp of the rate limit in milliseconds.
+     * @param now       The current time in milliseconds.
+     * @see #appendToResponse(Exchange, RateLimitInfo, long)
+     */
+    protected void appendToResponse(final Exchange exchange, final long max, final long times, final long expiresAt, final long now) {
         final Response response = exchange.response();
 
-        response.addHeader("X-RateLimit-Limit", getId() + "=" + getMax());
-        response.addHeader("X-RateLimit-Remaining", getId() + "=" + Math.max(0, getMax() - info.times().get()));
-        response.addHeader("X-RateLimit-Reset", getId() + "=" + Math.max(0, info.expiresAt().get() - System.currentTimeMillis()));
+        response.addHeader("X-RateLimit-Limit", RateLimitHeaders.scratch().append(getId()).append('=')
+                .append(max).toString());
+        response.addHeader("X-RateLimit-Remaining", RateLimitHeaders.scratch().append(getId()).append('=')
+                .append(Math.max(0, max - times)).toString());
+        response.addHeader("X-RateLimit-Reset", RateLimitHeaders.scratch().append(getId()).append('=')
+                .append(Math.max(0, expiresAt - now)).toString());
+    }
+
+    /**
+     * Gets the amount of distinct sources this adapter is expected to track at the same time. It is used to
+     * size the table which stores the counters of this adapter. Adapters tracking many sources, like client
+     * addresses, should override this to avoid repeated resizing.
+     *
+     * @return The expected amount of distinct sources.
+     */
+    public int getExpectedSources() {
+        return 64;
+    }
+
+    /**
+     * Gets the {@link HeavyHitters} which track the sources consuming the most of the budget of this adapter.
+     * <p>
+     * The tracking starts with the first call of this method, so adapters whose heavy hitters are never queried
+     * neither allocate a sketch nor pay for recording their accesses. To track an adapter from the start, call this
+     * method once it has been registered.
+     * </p>
+     *
+     * @return The {@link HeavyHitters} of this adapter.
+     */
+    public HeavyHitters getHeavyHitters() {
+        HeavyHitters hitters = heavyHitters;
+        if (hitters != null) return hitters;
+
+        synchronized (this) {
+            if (heavyHitters == null) heavyHitters = new HeavyHitters();
+            return heavyHitters;
+        }
+    }
+
+    /**
+     * Gets the {@link HeavyHitters} of this adapter without starting the tracking.
+     *
+     * @return The {@link HeavyHitters} of this adapter, or {@code null} if they have never been queried.
+     */
+    @Nullable HeavyHitters getTrackedHeavyHitters() {
+        return heavyHitters;
+    }
+
+    /**
+     * Binds this adapter to the {@link RateLimitManager} it has been registered with, so the limits configured
+     * in its {@link RateLimitRegistry} apply.
+     *
+     * @param manager The {@link RateLimitManager}.
+     */
+    void attach(@NotNull RateLimitManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Releases this adapter from the {@link RateLimitManager} it has been unregistered from.
+     *
+     * @param manager The {@link RateLimitManager}.
+     */
+    void detach(@NotNull RateLimitManager manager) {
+        if (this.manager == manager) this.manager = null;
+    }
+
+    /**
+     * Gets the current {@link RateLimitRegistry} of the {@link RateLimitManager} this adapter is registered with.
+     *
+     * @return The current {@link RateLimitRegistry}, or {@code null} if this adapter is not registered.
+     */
+    protected final @Nullable RateLimitRegistry getRegistry() {
+        final RateLimitManager manager = this.manager;
+        return manager == null ? null : manager.getRegistry();
+    }
+
+    /**
+     * Replaces the own limits of this adapter. The counters of the adapter are kept, a changed expiration
+     * period applies to each counter once its current window has expired. Limits which are configured in the
+     * {@link RateLimitRegistry} take precedence over the own limits.
+     *
+     * @param policy The new {@link RateLimitPolicy}.
+     */
+    public void setPolicy(@NotNull RateLimitPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Gets the current limits of this adapter, which are the ones configured in the {@link RateLimitRegistry}
+     * of its {@link RateLimitManager}, or its own limits if it is not configured there.
+     *
+     * @return The current {@link RateLimitPolicy}.
+     */
+    public @NotNull RateLimitPolicy getPolicy() {
+        return getPolicy(getRegistry());
+    }
+
+    /**
+     * Gets the limits of this adapter as configured in the given {@link RateLimitRegistry}, or its own limits
+     * if it is not configured there. The {@link RateLimitManager} resolves the policy of every adapter once per
+     * request from the registry it has read, so a reload while the request is checked can not admit it against
+     * one policy and report the headers or the retry time of another.
+     *
+     * @param registry The {@link RateLimitRegistry} to resolve the policy from, or {@code null} to use the own limits.
+     * @return The {@link RateLimitPolicy} of this adapter.
+     */
+    public @NotNull RateLimitPolicy getPolicy(@Nullable RateLimitRegistry registry) {
+        final RateLimitPolicy configured = registry == null ? null : registry.getPolicy(this);
+        return configured != null ? configured : policy;
+    }
+
+    /**
+     * Gets the limits this adapter has been constructed with. They apply again once the adapter is no
+     * longer configured otherwise.
+     *
+     * @return The default {@link RateLimitPolicy}.
+     */
+    public @NotNull RateLimitPolicy getDefaultPolicy() {
+        return defaultPolicy;
     }
 
     /**
@@ -135,7 +373,7 @@ public abstract class RateLimitAdapter {
      * @return {@code true} if headers should be included, {@code false} otherwise.
      */
     public boolean shouldBeInResponse() {
-        return headers;
+        return getPolicy().headers();
     }
 
     /**
@@ -153,7 +391,7 @@ public abstract class RateLimitAdapter {
      * @return The maximum number of requests.
      */
     public long getMax() {
-        return max;
+        return getPolicy().max();
     }
 
     /**
@@ -162,7 +400,7 @@ public abstract class RateLimitAdapter {
      * @return The expiration time in milliseconds.
      */
     public long getExpireInMilliseconds() {
-        return expire;
+        return getPolicy().expire();
     }
 
 }
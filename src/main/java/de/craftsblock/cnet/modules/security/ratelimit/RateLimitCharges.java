@@ -0,0 +1,77 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.cnet.modules.security.SecurityContext;
+import de.craftsblock.cnet.modules.security.ratelimit.backend.RateLimitBackend;
+import de.craftsblock.craftsnet.api.http.Exchange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link RateLimitCharges} remember all {@link RateLimitAdapter}s of a single exchange which charge
+ * additional costs once the exchange has completed, see {@link RateLimitAdapter#chargeBack(Exchange, long)}.
+ * They are kept in the {@link SecurityContext} of the exchange until the exchange completes.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see RateLimitAdapter#chargesBack()
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class RateLimitCharges {
+
+    private final List<Charge> charges = new ArrayList<>(2);
+    private final long start = System.nanoTime();
+
+    /**
+     * Creates new, empty {@link RateLimitCharges}.
+     */
+    RateLimitCharges() {
+    }
+
+    /**
+     * Remembers an adapter which charges back once the exchange has completed.
+     *
+     * @param adapter The {@link RateLimitAdapter} which charges back.
+     * @param index   The {@link RateLimitIndex} the adapter produced.
+     * @param info    The {@link RateLimitInfo} of the index.
+     */
+    synchronized void add(RateLimitAdapter adapter, RateLimitIndex index, RateLimitInfo info) {
+        charges.add(new Charge(adapter, index, info));
+    }
+
+    /**
+     * Charges the costs of all remembered adapters. Calling this method multiple times has no further effect.
+     *
+     * @param backend  The {@link RateLimitBackend} to charge.
+     * @param exchange The completed {@link Exchange}.
+     */
+    synchronized void apply(RateLimitBackend backend, Exchange exchange) {
+        if (charges.isEmpty()) return;
+
+        final long elapsed = System.nanoTime() - start;
+        for (Charge charge : charges) {
+            long weight = charge.adapter().chargeBack(exchange, elapsed);
+            if (weight > 0) backend.charge(charge.index(), charge.info(), weight);
+        }
+        charges.clear();
+    }
+
+    /**
+     * Drops all remembered adapters without charging them.
+     */
+    synchronized void discard() {
+        charges.clear();
+    }
+
+    /**
+     * A single pending charge.
+     *
+     * @param adapter The {@link RateLimitAdapter} which charges back.
+     * @param index   The {@link RateLimitIndex} the adapter produced.
+     * @param info    The {@link RateLimitInfo} of the index.
+     */
+    private record Charge(RateLimitAdapter adapter, RateLimitIndex index, RateLimitInfo info) {
+    }
+
+}
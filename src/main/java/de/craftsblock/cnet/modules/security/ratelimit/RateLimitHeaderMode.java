@@ -0,0 +1,27 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+/**
+ * The {@link RateLimitHeaderMode} defines how rate limit information is exposed in the response headers.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see RateLimitManager#setHeaderMode(RateLimitHeaderMode)
+ * @since 1.0.0-SNAPSHOT
+ */
+public enum RateLimitHeaderMode {
+
+    /**
+     * Every {@link RateLimitAdapter} adds its own {@code X-RateLimit-Limit}, {@code X-RateLimit-Remaining}
+     * and {@code X-RateLimit-Reset} headers through {@link RateLimitAdapter#appendToResponse}.
+     */
+    LEGACY,
+
+    /**
+     * All {@link RateLimitAdapter}s are combined into a single {@code RateLimit} and a single
+     * {@code RateLimit-Policy} header, as described by the IETF draft
+     * <a href="https://datatracker.ietf.org/doc/draft-ietf-httpapi-ratelimit-headers/">RateLimit header fields for HTTP</a>.
+     */
+    DRAFT
+
+}
@@ -0,0 +1,221 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.cnet.modules.security.SecurityContext;
+import de.craftsblock.craftsnet.api.http.Response;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The {@link RateLimitHeaders} collect the rate limit information of all {@link RateLimitAdapter}s of a request
+ * and write them as combined {@code RateLimit} and {@code RateLimit-Policy} headers, following the IETF draft
+ * <a href="https://datatracker.ietf.org/doc/draft-ietf-httpapi-ratelimit-headers/">RateLimit header fields for HTTP</a>:
+ * <pre>
+ * RateLimit-Policy: "ip";q=1;w=60, "token";q=60;w=60
+ * RateLimit: "ip";r=0;t=42, "token";r=59;t=42
+ * </pre>
+ * <p>
+ * One instance is kept per thread and reused for every request, so the header values are built into
+ * the same {@link StringBuilder}s each time instead of allocating intermediate strings per adapter.
+ * </p>
+ * <p>
+ * A request is checked in several {@link RateLimitPhase}s. The entries of earlier phases are kept in the
+ * {@link SecurityContext} of the request and resumed by the following phase, which replaces the written headers
+ * with the combined ones. Every response therefore carries a single pair of headers containing all adapters,
+ * no matter in which phase the request has been answered.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.2.0
+ * @see RateLimitHeaderMode#DRAFT
+ * @since 1.0.0-SNAPSHOT
+ */
+@ApiStatus.Internal
+public final class RateLimitHeaders {
+
+    /**
+     * The name of the header containing the current state of each policy.
+     */
+    public static final String RATE_LIMIT = "RateLimit";
+
+    /**
+     * The name of the header containing the quota and window of each policy.
+     */
+    public static final String RATE_LIMIT_POLICY = "RateLimit-Policy";
+
+    private static final ThreadLocal<RateLimitHeaders> CURRENT = ThreadLocal.withInitial(RateLimitHeaders::new);
+
+    private final StringBuilder limit = new StringBuilder(128);
+    private final StringBuilder policy = new StringBuilder(128);
+    private int resumed;
+
+    /**
+     * Use {@link #current()} to obtain an instance.
+     */
+    private RateLimitHeaders() {
+    }
+
+    /**
+     * Gets the cleared {@link RateLimitHeaders} of the current thread.
+     *
+     * @return The {@link RateLimitHeaders} of the current thread.
+     */
+    public static RateLimitHeaders current() {
+        RateLimitHeaders headers = CURRENT.get();
+        headers.limit.setLength(0);
+        headers.policy.setLength(0);
+        headers.resumed = 0;
+        return headers;
+    }
+
+    /**
+     * Gets the {@link RateLimitHeaders} of the current thread, containing the entries which earlier phases
+     * of the request have already written.
+     *
+     * @param context The {@link SecurityContext} of the request, or {@code null} to start empty.
+     * @return The {@link RateLimitHeaders} of the current thread.
+     */
+    public static RateLimitHeaders current(@Nullable SecurityContext context) {
+        RateLimitHeaders headers = current();
+        if (context == null) return headers;
+
+        String policy = context.getRateLimitPolicyHeader(), limit = context.getRateLimitHeader();
+        if (policy != null && limit != null) {
+            headers.policy.append(policy);
+            headers.limit.append(limit);
+            headers.resumed = limit.length();
+        }
+        return headers;
+    }
+
+    /**
+     * Gets a cleared, thread local {@link StringBuilder} which can be used to build a single header value.
+     * The builder is shared with the combined headers, so it must not be used between {@link #current()}
+     * and {@link #apply(Response)}.
+     *
+     * @return The cleared {@link StringBuilder} of the current thread.
+     */
+    static StringBuilder scratch() {
+        StringBuilder builder = CURRENT.get().limit;
+        builder.setLength(0);
+        return builder;
+    }
+
+    /**
+     * Appends the state of a {@link RateLimitAdapter} to the combined headers.
+     *
+     * @param adapter The {@link RateLimitAdapter} which has been evaluated.
+     * @param info    The {@link RateLimitInfo} of the current request.
+     * @param now     The current time in milliseconds.
+     */
+    public void append(@NotNull RateLimitAdapter adapter, @NotNull RateLimitInfo info, long now) {
+        append(adapter, adapter.getPolicy(), info, now);
+    }
+
+    /**
+     * Appends the state of a {@link RateLimitAdapter} to the combined headers, as checked against the given
+     * {@link RateLimitPolicy}.
+     *
+     * @param adapter The {@link RateLimitAdapter} which has been evaluated.
+     * @param policy  The {@link RateLimitPolicy} the request has been checked against.
+     * @param info    The {@link RateLimitInfo} of the current request.
+     * @param now     The current time in milliseconds.
+     */
+    public void append(@NotNull RateLimitAdapter adapter, @NotNull RateLimitPolicy policy, @NotNull RateLimitInfo info, long now) {
+        append(adapter, false, policy.max(), policy.expire(), info.getTimes(), info.getExpiresAt(), now);
+    }
+
+    /**
+     * Appends the state of a single window of a {@link RateLimitAdapter} to the combined headers. Adapters
+     * with several windows suffix the policy name with the length of the window in seconds, e.g.
+     * {@code "token-1"} and {@code "token-3600"}, to keep the names unique.
+     *
+     * @param adapter   The {@link RateLimitAdapter} which has been evaluated.
+     * @param suffixed  Whether the policy name should be suffixed with the length of the window.
+     * @param max       The maximum of the window.
+     * @param expire    The length of the window in milliseconds.
+     * @param times     The consumed units of the window.
+     * @param expiresAt The expiration timestamp of the window in milliseconds.
+     * @param now       The current time in milliseconds.
+     */
+    public void append(@NotNull RateLimitAdapter adapter, boolean suffixed, long max, long expire, long times, long expiresAt, long now) {
+        if (!limit.isEmpty()) {
+            limit.append(", ");
+            policy.append(", ");
+        }
+
+        appendName(policy, adapter, suffixed ? expire : -1).append(";q=").append(max)
+                .append(";w=").append(toSeconds(expire));
+        appendName(limit, adapter, suffixed ? expire : -1).append(";r=").append(Math.max(0, max - times))
+                .append(";t=").append(toSeconds(Math.max(0, expiresAt - now)));
+    }
+
+    /**
+     * Writes the combined headers to the {@link Response}, if at least one adapter has been appended.
+     *
+     * @param response The {@link Response} to write the headers to.
+     */
+    public void apply(@NotNull Response response) {
+        if (limit.isEmpty()) return;
+
+        response.addHeader(RATE_LIMIT_POLICY, policy.toString());
+        response.addHeader(RATE_LIMIT, limit.toString());
+    }
+
+    /**
+     * Writes the combined headers to the {@link Response}, replacing the ones written by an earlier phase of
+     * the request, and keeps them in the {@link SecurityContext} so a later phase can resume them.
+     *
+     * @param response The {@link Response} to write the headers to.
+     * @param context  The {@link SecurityContext} of the request.
+     */
+    public void apply(@NotNull Response response, @NotNull SecurityContext context) {
+        if (!store(context)) return;
+
+        response.setHeader(RATE_LIMIT_POLICY, context.getRateLimitPolicyHeader());
+        response.setHeader(RATE_LIMIT, context.getRateLimitHeader());
+    }
+
+    /**
+     * Keeps the combined headers in the {@link SecurityContext} of the request, unless no entry has been
+     * appended since they were resumed.
+     *
+     * @param context The {@link SecurityContext} of the request.
+     * @return {@code true} if the headers have changed and need to be written, {@code false} otherwise.
+     */
+    boolean store(@NotNull SecurityContext context) {
+        if (limit.length() == resumed) return false;
+
+        context.setRateLimitHeaders(policy.toString(), limit.toString());
+        return true;
+    }
+
+    /**
+     * Appends the quoted, lower case policy name of an adapter.
+     *
+     * @param builder The {@link StringBuilder} to append to.
+     * @param adapter The {@link RateLimitAdapter} whose name should be appended.
+     * @param window  The length of the window in milliseconds the name is suffixed with, or {@code -1} for no suffix.
+     * @return The {@link StringBuilder} used for chain method calls.
+     */
+    private static StringBuilder appendName(StringBuilder builder, RateLimitAdapter adapter, long window) {
+        String id = adapter.getId();
+        builder.append('"');
+        for (int i = 0; i < id.length(); i++)
+            builder.append(Character.toLowerCase(id.charAt(i)));
+        if (window >= 0) builder.append('-').append(toSeconds(window));
+        return builder.append('"');
+    }
+
+    /**
+     * Converts milliseconds into seconds, rounding up so that clients never retry too early.
+     *
+     * @param millis The milliseconds to convert.
+     * @return The amount of seconds.
+     */
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+
+}
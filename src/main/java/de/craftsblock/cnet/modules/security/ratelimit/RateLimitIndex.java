@@ -11,12 +11,17 @@ import java.util.Objects;
  * <p>
  * This class is implemented as a record for immutability and concise representation.
  * </p>
+ * <p>
+ * An index is either bound to the {@link RateLimitAdapter} which created it, or global if no adapter is set.
+ * Bound indices are only equal to indices of adapters with the same id, so different adapters with equal sources never
+ * share a counter. Global indices are stored in a dedicated partition and are shared by all adapters.
+ * </p>
  *
  * @param source The object representing the source of the rate limit.
  *               This could be an IP address, user ID, or any other identifier.
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.1.0
  * @see Objects
  * @since 1.0.0-SNAPSHOT
  */
@@ -24,7 +29,8 @@ public record RateLimitIndex(@Nullable RateLimitAdapter adapter, @NotNull Object
 
     /**
      * Compares this {@link RateLimitIndex} with another object for equality.
-     * Two {@link RateLimitIndex} instances are considered equal if their {@link #source} fields are equal.
+     * Two {@link RateLimitIndex} instances are considered equal if they belong to adapters with the same id,
+     * or are both global, and their {@link #source} fields are equal.
      *
      * @param o The object to compare with this {@link RateLimitIndex}.
      * @return {@code true} if the objects are equal, {@code false} otherwise.
@@ -35,16 +41,16 @@ public record RateLimitIndex(@Nullable RateLimitAdapter adapter, @NotNull Object
         if (o == null || getClass() != o.getClass()) return false;
         RateLimitIndex that = (RateLimitIndex) o;
 
-        if (this.isGlobal())
-            if (!that.isGlobal() || !Objects.equals(this.adapter(), that.adapter()))
-                return false;
+        if (this.isGlobal() != that.isGlobal()) return false;
+        if (!this.isGlobal() && !this.adapter().getId().equals(that.adapter().getId())) return false;
 
         return Objects.equals(this.source(), that.source());
     }
 
     /**
      * Computes the hash code for this {@link RateLimitIndex}.
-     * The hash code is derived from the {@link #source} object.
+     * The hash code is derived from the {@link #source} object only, as lookups are already
+     * partitioned by adapter.
      *
      * @return The hash code of this {@link RateLimitIndex}.
      */
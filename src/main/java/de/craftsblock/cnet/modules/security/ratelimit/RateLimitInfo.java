@@ -1,5 +1,10 @@
 package de.craftsblock.cnet.modules.security.ratelimit;
 
+import de.craftsblock.cnet.modules.security.ratelimit.backend.RateLimitBackend;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -7,6 +12,9 @@ import java.util.concurrent.atomic.AtomicLong;
  * It tracks the number of accesses, the expiration time, and provides mechanisms to enforce rate limiting rules.
  * <p>
  * This record is immutable in structure, with thread-safe handling of internal state using {@link AtomicLong}.
+ * A window is reset by marking its expiration as being reset, clearing the access count and only then publishing
+ * the new expiration, so no access is ever checked against the count of an expired window, and no access charged
+ * to the new window is cleared.
  * </p>
  *
  * @param adapter   The {@link RateLimitAdapter} that defines the rate limiting configuration.
@@ -14,53 +22,165 @@ import java.util.concurrent.atomic.AtomicLong;
  * @param expiresAt An {@link AtomicLong} representing the expiration timestamp in milliseconds.
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.3.0
  * @see RateLimitAdapter
  * @see AtomicLong
  * @since 1.0.0-SNAPSHOT
  */
 public record RateLimitInfo(RateLimitAdapter adapter, AtomicLong times, AtomicLong expiresAt) {
 
+    /**
+     * The expiration timestamp which marks a window as being reset.
+     */
+    private static final long RESETTING = Long.MIN_VALUE;
+
     /**
      * Gets the expiration time as a new {@link AtomicLong}.
      * This prevents external modification of the internal expiration timestamp.
+     * Use {@link #getExpiresAt()} to read the value without allocating a copy.
      *
      * @return A new {@link AtomicLong} representing the expiration timestamp.
      */
     public AtomicLong expiresAt() {
-        return new AtomicLong(expiresAt.get());
+        return new AtomicLong(getExpiresAt());
+    }
+
+    /**
+     * Gets the expiration timestamp in milliseconds without creating a defensive copy.
+     *
+     * @return The expiration timestamp in milliseconds.
+     */
+    public long getExpiresAt() {
+        long expiry;
+        while ((expiry = expiresAt.get()) == RESETTING) Thread.onSpinWait();
+        return expiry;
+    }
+
+    /**
+     * Gets the current access count without exposing the underlying {@link AtomicLong}.
+     *
+     * @return The current access count.
+     */
+    public long getTimes() {
+        return times.get();
     }
 
     /**
-     * Attempts to access the resource controlled by this rate limit.
+     * Attempts to access the resource controlled by this rate limit with a weight of one.
+     *
+     * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
+     * @see #access(long)
+     */
+    public boolean access() {
+        return access(1);
+    }
+
+    /**
+     * Attempts to access the resource controlled by this rate limit, charging the given weight.
      * <p>
-     * If the rate limit is expired, it resets the state. If the access count exceeds the maximum allowed,
-     * the method returns {@code true}, indicating the rate limit has been exceeded. Otherwise, it increments
-     * the access count and returns {@code false}.
+     * If the rate limit is expired, it resets the state first. If charging the weight would exceed the
+     * maximum allowed, nothing is charged and the method returns {@code true}, indicating the rate limit
+     * has been exceeded. Otherwise, the weight is added to the access count atomically and the method
+     * returns {@code false}.
+     * </p>
+     * <p>
+     * An access with a weight of {@code 0} does not charge anything, but is still rejected once the access
+     * count has reached the maximum, as the budget has been used up completely.
      * </p>
      *
+     * @param weight The weight of the access, must not be negative.
      * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
      */
-    public boolean access() {
-        if (resetIfExpired()) return false;
-        if (times().get() >= adapter.getMax()) return true;
+    public boolean access(long weight) {
+        return access(weight, adapter.getPolicy());
+    }
+
+    /**
+     * Attempts to access the resource controlled by this rate limit, charging the given weight against the
+     * given {@link RateLimitPolicy}. A window which has expired is renewed with the length of the policy.
+     *
+     * @param weight The weight of the access, must not be negative.
+     * @param policy The {@link RateLimitPolicy} the access is checked against.
+     * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
+     * @see #access(long)
+     */
+    public boolean access(long weight, @NotNull RateLimitPolicy policy) {
+        resetIfExpired(policy);
+
+        final long max = policy.max();
+        long current;
+        do {
+            current = times.get();
+            if (exceeds(current, weight, max)) return true;
+        } while (!times.compareAndSet(current, current + weight));
 
-        times().incrementAndGet();
         return false;
     }
 
+    /**
+     * Checks whether an access with the given weight exceeds the maximum. An access without any weight only
+     * exceeds the maximum once it has been reached, so budgets which are charged separately, like the failed
+     * authentications, reject the next request as soon as they are used up.
+     *
+     * @param current The current access count.
+     * @param weight  The weight of the access.
+     * @param max     The maximum allowed access count.
+     * @return {@code true} if the access exceeds the maximum, {@code false} otherwise.
+     */
+    @ApiStatus.Internal
+    public static boolean exceeds(long current, long weight, long max) {
+        return weight == 0 ? current >= max : current + weight > max;
+    }
+
+    /**
+     * Charges the given weight unconditionally, even if this exceeds the maximum allowed. This is used to
+     * charge costs which are only known after the request has been processed, like its handling time.
+     *
+     * @param weight The weight to charge.
+     */
+    public void charge(long weight) {
+        resetIfExpired();
+        times.addAndGet(weight);
+    }
+
     /**
      * Checks if the rate limit has expired and resets it if necessary.
+     * If multiple threads observe the expiration at the same time, only one of them resets the state, while the
+     * others wait until the new window has been published.
+     * <p>
+     * The access count is cleared while the expiration is marked as being reset, so accesses which are charged
+     * in the meantime belong to the expired window and are cleared with it, and accesses checked against the new
+     * window never see the count of the expired one.
+     * </p>
      *
      * @return {@code true} if the rate limit was expired and has been reset, {@code false} otherwise.
      */
     public boolean resetIfExpired() {
-        if (isExpired()) {
-            reset();
-            return true;
-        }
+        final long now = SecurityClock.now();
+        final long expiry = getExpiresAt();
+        if (expiry > now) return false;
 
-        return false;
+        return resetIfExpired(adapter.getPolicy());
+    }
+
+    /**
+     * Checks if the rate limit has expired and resets it if necessary, renewing the window with the length
+     * of the given {@link RateLimitPolicy}.
+     *
+     * @param policy The {@link RateLimitPolicy} defining the length of a new window.
+     * @return {@code true} if the rate limit was expired and has been reset, {@code false} otherwise.
+     * @see #resetIfExpired()
+     */
+    public boolean resetIfExpired(@NotNull RateLimitPolicy policy) {
+        final long now = SecurityClock.now();
+        final long expiry = getExpiresAt();
+        if (expiry > now) return false;
+
+        if (expiresAt.compareAndSet(expiry, RESETTING)) {
+            times.set(0);
+            expiresAt.set(now + policy.expire());
+        } else getExpiresAt();
+        return true;
     }
 
     /**
@@ -68,16 +188,29 @@ public record RateLimitInfo(RateLimitAdapter adapter, AtomicLong times, AtomicLo
      */
     public void reset() {
         times().set(0);
-        expiresAt.set(System.currentTimeMillis() + adapter().getExpireInMilliseconds());
+        expiresAt.set(SecurityClock.now() + adapter().getExpireInMilliseconds());
+    }
+
+    /**
+     * Overwrites the access count and the expiration timestamp of this rate limit. This is used by
+     * {@link RateLimitBackend}s which keep the authoritative state outside of this record.
+     *
+     * @param count  The new access count.
+     * @param expiry The new expiration timestamp in milliseconds.
+     */
+    @ApiStatus.Internal
+    public void update(long count, long expiry) {
+        times().set(count);
+        expiresAt.set(expiry);
     }
 
     /**
-     * Checks whether the rate limit has expired based on the current system time.
+     * Checks whether the rate limit has expired based on the current time of the {@link SecurityClock}.
      *
      * @return {@code true} if the rate limit has expired, {@code false} otherwise.
      */
     public boolean isExpired() {
-        return expiresAt.get() <= System.currentTimeMillis();
+        return getExpiresAt() <= SecurityClock.now();
     }
 
     /**
@@ -1,53 +1,93 @@
 package de.craftsblock.cnet.modules.security.ratelimit;
 
 import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.SecurityContext;
+import de.craftsblock.cnet.modules.security.events.ratelimit.PenaltyBoxBlockedEvent;
 import de.craftsblock.cnet.modules.security.events.ratelimit.RateLimitExceededEvent;
+import de.craftsblock.cnet.modules.security.jfr.RateLimitDecisionEvent;
+import de.craftsblock.cnet.modules.security.jfr.RateLimitSweepEvent;
+import de.craftsblock.cnet.modules.security.ratelimit.backend.LocalRateLimitBackend;
+import de.craftsblock.cnet.modules.security.ratelimit.backend.RateLimitBackend;
+import de.craftsblock.cnet.modules.security.ratelimit.builtin.AuthFailureRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.composite.CompositeRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.composite.RateLimitWindows;
+import de.craftsblock.cnet.modules.security.ratelimit.concurrency.ConcurrencyLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.quota.QuotaRateLimitAdapter;
 import de.craftsblock.cnet.modules.security.utils.Manager;
+import de.craftsblock.cnet.modules.security.utils.PrioritizedArray;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
 import de.craftsblock.craftsnet.api.http.Exchange;
 import de.craftsblock.craftsnet.api.http.Request;
 import de.craftsblock.craftsnet.api.utils.SessionStorage;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Stream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 /**
  * The {@link RateLimitManager} manages rate limiting adapters and their associated indices.
  * It handles the registration of adapters, checks for rate limiting conditions, and removes expired rate limit entries.
  * <p>
- * This class is thread-safe, using {@link ConcurrentHashMap} to store adapters and indices.
+ * This class is thread-safe. The adapters, their configured limits and the header mode are held by an immutable
+ * {@link RateLimitRegistry}, which is replaced as a whole on every change, so a request iterates the adapters
+ * in a deterministic order without locking or allocating. The indices are stored in the currently installed
+ * {@link RateLimitBackend}, which defaults to the {@link LocalRateLimitBackend}.
+ * </p>
+ * <p>
+ * Adapters are checked in the {@link RateLimitPhase} they declare. Adapters which only depend on the raw request
+ * are checked before the authentication chains run, so floods are rejected before any credentials are verified.
+ * </p>
+ * <p>
+ * {@link ConcurrencyLimitAdapter}s, {@link QuotaRateLimitAdapter}s and {@link CompositeRateLimitAdapter}s keep
+ * their own state and are checked without the backend.
  * </p>
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.10.0
  * @see RateLimitAdapter
  * @see RateLimitIndex
  * @see RateLimitInfo
+ * @see RateLimitBackend
  * @since 1.0.0-SNAPSHOT
  */
 public class RateLimitManager implements Manager {
 
-    private final ConcurrentHashMap<String, RateLimitAdapter> adapters = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<RateLimitIndex, RateLimitInfo> indices = new ConcurrentHashMap<>();
+    private volatile RateLimitRegistry registry = RateLimitRegistry.EMPTY;
+    private volatile RateLimitBackend backend = new LocalRateLimitBackend();
+    private final PenaltyBox penaltyBox = new PenaltyBox();
+    private RateLimitSnapshotter snapshotter;
+    private ScheduledExecutorService sweeper;
 
     /**
-     * Registers a {@link RateLimitAdapter} to this manager.
+     * Registers a {@link RateLimitAdapter} to this manager with the {@link PrioritizedArray#DEFAULT_PRIORITY default priority}.
      *
      * @param adapter The {@link RateLimitAdapter} to register.
      * @throws IllegalStateException If an adapter with the same ID is already registered.
      */
     public void register(@NotNull RateLimitAdapter adapter) {
-        String id = adapter.getId();
-        if (adapters.containsKey(id))
-            throw new IllegalStateException("Tried to register rate limit adapter with id " + id + " for " + adapter.getClass().getName() +
-                    ", but this id is already taken by " + adapters.get(id).getClass().getName() + "!");
+        register(adapter, PrioritizedArray.DEFAULT_PRIORITY);
+    }
 
-        this.adapters.put(id, adapter);
+    /**
+     * Registers a {@link RateLimitAdapter} to this manager with the given priority. Adapters with a higher
+     * priority are checked first, adapters with the same priority in the order they were registered.
+     *
+     * @param adapter  The {@link RateLimitAdapter} to register.
+     * @param priority The priority of the adapter.
+     * @throws IllegalStateException If an adapter with the same ID is already registered.
+     */
+    public synchronized void register(@NotNull RateLimitAdapter adapter, int priority) {
+        this.registry = registry.with(adapter, priority);
+        adapter.attach(this);
     }
 
     /**
@@ -55,8 +95,41 @@ public class RateLimitManager implements Manager {
      *
      * @param adapter The {@link RateLimitAdapter} to unregister.
      */
-    public void unregister(@NotNull RateLimitAdapter adapter) {
-        this.adapters.remove(adapter.getId());
+    public synchronized void unregister(@NotNull RateLimitAdapter adapter) {
+        RateLimitRegistry registry = this.registry;
+        if (!registry.contains(adapter)) return;
+
+        this.registry = registry.without(adapter);
+        adapter.detach(this);
+    }
+
+    /**
+     * Replaces the {@link RateLimitRegistry} with the result of the given function, which may register and
+     * unregister adapters and configure their limits at once. The new registry is published with a single
+     * write, so a request either sees all changes or none of them.
+     *
+     * @param update The function creating the new registry from the current one.
+     * @throws IllegalStateException If the function fails, in which case the current registry is kept.
+     */
+    public synchronized void update(@NotNull UnaryOperator<RateLimitRegistry> update) {
+        final RateLimitRegistry previous = this.registry;
+        final RateLimitRegistry next = update.apply(previous);
+
+        for (RateLimitAdapter adapter : next.getAdapters())
+            if (!previous.contains(adapter)) adapter.attach(this);
+        this.registry = next;
+        for (RateLimitAdapter adapter : previous.getAdapters())
+            if (!next.contains(adapter)) adapter.detach(this);
+    }
+
+    /**
+     * Gets the current {@link RateLimitRegistry}, containing the registered adapters, their configured limits
+     * and the header mode.
+     *
+     * @return The current {@link RateLimitRegistry}.
+     */
+    public @NotNull RateLimitRegistry getRegistry() {
+        return registry;
     }
 
     /**
@@ -66,36 +139,162 @@ public class RateLimitManager implements Manager {
      * @return {@code true} if the adapter is registered, {@code false} otherwise.
      */
     public boolean isRegistered(@NotNull RateLimitAdapter adapter) {
-        return this.adapters.containsKey(adapter.getId());
+        return registry.contains(adapter);
     }
 
     /**
-     * Determines whether the given {@link Exchange} is rate limited by any registered adapter.
-     * If rate limited, the appropriate headers are added to the response.
+     * Gets the {@link RateLimitAdapter} registered with the given id.
+     *
+     * @param id The id of the adapter.
+     * @return The registered {@link RateLimitAdapter}, or {@code null} if no adapter is registered with the id.
+     */
+    public @Nullable RateLimitAdapter getAdapter(@NotNull String id) {
+        return registry.getAdapter(id);
+    }
+
+    /**
+     * Gets the registered {@link RateLimitAdapter}s in the order they are checked.
+     *
+     * @return An unmodifiable list of the registered adapters.
+     */
+    public @NotNull List<RateLimitAdapter> getAdapters() {
+        return registry.getAdapters();
+    }
+
+    /**
+     * Determines whether the given {@link Exchange} is rate limited by any registered adapter, checking
+     * all {@link RateLimitPhase}s at once.
      *
      * @param exchange The {@link Exchange} to check for rate limiting.
      * @return {@code true} if the request is rate limited, {@code false} otherwise.
+     * @see #isRateLimited(Exchange, RateLimitPhase)
      */
     public boolean isRateLimited(@NotNull Exchange exchange) {
-        if (this.adapters.isEmpty()) return false;
+        return isRateLimited(exchange, RateLimitPhase.PRE_AUTH) || isRateLimited(exchange, RateLimitPhase.POST_AUTH);
+    }
 
+    /**
+     * Determines whether the given {@link Exchange} is rate limited by any adapter of the given {@link RateLimitPhase}.
+     * The rate limit headers are added to the response according to the current {@link RateLimitHeaderMode}.
+     * <p>
+     * Clients which are blocked by the {@link PenaltyBox} are rejected in the {@link RateLimitPhase#PRE_AUTH}
+     * phase before any adapter runs. In this case no rate limit headers are added and a
+     * {@link PenaltyBoxBlockedEvent} is fired instead of a {@link RateLimitExceededEvent}. Only rejections of
+     * the {@link RateLimitPhase#PRE_AUTH} phase strike the client, as the adapters of later phases, like token
+     * limits or quotas, limit an authenticated principal rather than a flooding address.
+     * </p>
+     * <p>
+     * If the request is rate limited, the phase, the exceeded adapters and the time at which the client may
+     * retry are recorded in its {@link SecurityContext}.
+     * </p>
+     *
+     * @param exchange The {@link Exchange} to check for rate limiting.
+     * @param phase    The {@link RateLimitPhase} whose adapters should be checked.
+     * @return {@code true} if the request is rate limited, {@code false} otherwise.
+     */
+    public boolean isRateLimited(@NotNull Exchange exchange, @NotNull RateLimitPhase phase) {
         final Request request = exchange.request();
+        final String ip = request.getIp();
+        final long now = SecurityClock.now();
+        if (phase == RateLimitPhase.PRE_AUTH && ip != null) {
+            final long blocked = penaltyBox.getRemaining(ip, now);
+            if (blocked > 0) {
+                SecurityContext.of(exchange).setRateLimited(phase, List.of(), now + blocked);
+
+                try {
+                    CNetSecurity.callEvent(new PenaltyBoxBlockedEvent(exchange, ip, blocked));
+                } catch (InvocationTargetException | IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+                return true;
+            }
+        }
+
+        final RateLimitRegistry registry = this.registry;
+        final RateLimitAdapter[] adapters = registry.getEnabled(phase);
+        if (adapters.length == 0) return false;
+
         final SessionStorage storage = exchange.storage();
+        final SecurityContext context = SecurityContext.of(storage);
+        final RateLimitBackend backend = this.backend;
+        final RateLimitHeaders headers = registry.getHeaderMode() == RateLimitHeaderMode.DRAFT ? RateLimitHeaders.current(context) : null;
 
         List<RateLimitAdapter> exceeded = new ArrayList<>();
-        for (RateLimitAdapter adapter : adapters.values()) {
+        long retryAt = 0;
+        for (RateLimitAdapter adapter : adapters) {
             RateLimitIndex index = adapter.adapt(request, storage);
             if (index == null) continue;
 
-            RateLimitInfo info = indices.computeIfAbsent(index, r -> adapter.createInfo());
-            if (info.access()) exceeded.add(adapter);
+            // Every decision and header of the adapter refers to the same limits, even if they are reloaded meanwhile
+            final RateLimitPolicy policy = adapter.getPolicy(registry);
+            final RateLimitDecisionEvent decision = new RateLimitDecisionEvent();
+            decision.begin();
 
-            if (adapter.shouldBeInResponse())
-                adapter.appendToResponse(exchange, info);
+            if (adapter instanceof ConcurrencyLimitAdapter concurrency) {
+                boolean limited = !concurrency.tryAcquire(index, storage);
+                if (limited) exceeded.add(adapter);
+                decision.complete(adapter, phase, index, 1, -1, limited);
+                continue;
+            }
+
+            final long cost = adapter.cost(request, storage);
+            final HeavyHitters hitters = adapter.getTrackedHeavyHitters();
+            if (hitters != null) hitters.record(index.source(), cost, now);
+
+            if (adapter instanceof CompositeRateLimitAdapter composite) {
+                RateLimitWindows windows = composite.resolve(index);
+                boolean limited = windows.access(cost, now);
+
+                // The windows may have been migrated to new ones while they were accessed
+                windows = windows.latest();
+                if (limited) {
+                    exceeded.add(adapter);
+                    retryAt = Math.max(retryAt, windows.getResetAt(cost));
+                }
+
+                if (decision.shouldCommit())
+                    decision.complete(adapter, phase, index, cost, remainingOf(windows), limited);
+
+                if (!policy.headers()) continue;
+                if (headers != null) composite.appendTo(headers, windows, now);
+                else composite.appendToResponse(exchange, windows, now);
+                continue;
+            }
+
+            RateLimitInfo info;
+            boolean limited;
+            if (adapter instanceof QuotaRateLimitAdapter quota) {
+                info = quota.resolve(index);
+                limited = quota.access(index, info, cost, policy);
+            } else {
+                info = backend.resolve(index, adapter);
+                limited = backend.access(index, info, cost, policy);
+                if (!limited && adapter.chargesBack()) chargesOf(context).add(adapter, index, info);
+            }
+
+            if (limited) {
+                exceeded.add(adapter);
+                retryAt = Math.max(retryAt, info.getExpiresAt());
+            }
+            decision.complete(adapter, phase, index, cost, Math.max(0, policy.max() - info.getTimes()), limited);
+
+            if (!policy.headers()) continue;
+            if (headers != null) headers.append(adapter, policy, info, now);
+            else adapter.appendToResponse(exchange, info, policy, now);
         }
 
+        // Replaces the headers of earlier phases, so the response carries a single combined pair
+        if (headers != null) headers.apply(exchange.response(), context);
+
         if (exceeded.isEmpty()) return false;
 
+        abandon(storage, context);
+        if (phase == RateLimitPhase.PRE_AUTH && ip != null) {
+            penaltyBox.strike(ip, now);
+            retryAt = Math.max(retryAt, now + penaltyBox.getRemaining(ip, now));
+        }
+        context.setRateLimited(phase, exceeded, retryAt);
+
         try {
             CNetSecurity.callEvent(new RateLimitExceededEvent(exchange, exceeded));
         } catch (InvocationTargetException | IllegalAccessException e) {
@@ -106,16 +305,275 @@ public class RateLimitManager implements Manager {
     }
 
     /**
-     * Cleans up expired rate limit entries from the indices map.
-     * This method uses parallel streams if the number of entries exceeds 100 for better performance.
+     * Charges the failed authentication of the given {@link Exchange} to all adapters which define an
+     * {@link RateLimitAdapter#authFailureCost(Request, SessionStorage) auth failure cost}. As the request
+     * will not be processed, the in flight permits and pending charges of earlier phases are dropped.
+     *
+     * @param exchange The {@link Exchange} whose authentication failed.
+     */
+    public void chargeAuthFailure(@NotNull Exchange exchange) {
+        final Request request = exchange.request();
+        final SessionStorage storage = exchange.storage();
+        final RateLimitBackend backend = this.backend;
+
+        for (RateLimitAdapter adapter : registry.getEnabled()) {
+            final long cost = adapter.authFailureCost(request, storage);
+            if (cost <= 0) continue;
+
+            RateLimitIndex index = adapter.adapt(request, storage);
+            if (index == null) continue;
+
+            if (adapter instanceof CompositeRateLimitAdapter composite)
+                composite.resolve(index).charge(cost, SecurityClock.now());
+            else backend.charge(index, backend.resolve(index, adapter), cost);
+        }
+
+        abandon(storage, SecurityContext.find(storage));
+    }
+
+    /**
+     * Charges the failed authentication of a client which did not send an {@link Exchange}, like a websocket
+     * handshake, to all registered {@link AuthFailureRateLimitAdapter}s.
+     *
+     * @param ip The IP address of the client whose authentication failed.
+     */
+    public void chargeAuthFailure(@NotNull String ip) {
+        final RateLimitBackend backend = this.backend;
+        for (RateLimitAdapter adapter : registry.getEnabled()) {
+            if (!(adapter instanceof AuthFailureRateLimitAdapter failures)) continue;
+
+            RateLimitIndex index = failures.adapt(ip);
+            if (index != null) backend.charge(index, backend.resolve(index, adapter), 1);
+        }
+    }
+
+    /**
+     * Checks whether a client which does not send an {@link Exchange}, like a websocket handshake, has exhausted
+     * the budget of failed authentications of any registered {@link AuthFailureRateLimitAdapter}. Such clients
+     * should be rejected without verifying their credentials.
+     *
+     * @param ip The IP address of the client.
+     * @return {@code true} if the client has exhausted its budget, {@code false} otherwise.
+     */
+    public boolean isAuthFailureLimited(@NotNull String ip) {
+        final RateLimitRegistry registry = this.registry;
+        final RateLimitBackend backend = this.backend;
+        for (RateLimitAdapter adapter : registry.getEnabled()) {
+            if (!(adapter instanceof AuthFailureRateLimitAdapter failures)) continue;
+
+            RateLimitIndex index = failures.adapt(ip);
+            if (index == null) continue;
+
+            if (backend.access(index, backend.resolve(index, adapter), 0, adapter.getPolicy(registry))) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Abandons the rate limiting of the given {@link Exchange}, which will not be processed or whose completion
+     * will not be reported, e.g. because it has been cancelled. Its in flight permits are released without
+     * reporting a latency sample and its pending charges are dropped. Calling this method after the exchange
+     * has been {@link #release(Exchange) released} has no effect.
+     *
+     * @param exchange The abandoned {@link Exchange}.
+     */
+    public void abandon(@NotNull Exchange exchange) {
+        final SessionStorage storage = exchange.storage();
+        abandon(storage, SecurityContext.find(storage));
+    }
+
+    /**
+     * Drops the in flight permits and pending charges of a request which will not be processed.
+     *
+     * @param storage The {@link SessionStorage} of the request.
+     * @param context The {@link SecurityContext} of the request, or {@code null} if there is none.
+     */
+    private void abandon(SessionStorage storage, @Nullable SecurityContext context) {
+        if (context == null) return;
+
+        ConcurrencyLimitAdapter.release(storage, false);
+        RateLimitCharges charges = context.getCharges();
+        if (charges != null) charges.discard();
+    }
+
+    /**
+     * Gets the amount of requests which are left in the fullest window.
+     *
+     * @param windows The {@link RateLimitWindows} to check.
+     * @return The smallest remaining amount of all windows.
+     */
+    private static long remainingOf(RateLimitWindows windows) {
+        long remaining = Long.MAX_VALUE;
+        for (int i = 0; i < windows.size(); i++)
+            remaining = Math.min(remaining, windows.getRemaining(i));
+        return remaining;
+    }
+
+    /**
+     * Gets the {@link RateLimitCharges} of an exchange, creating them if necessary.
+     *
+     * @param context The {@link SecurityContext} of the exchange.
+     * @return The {@link RateLimitCharges} of the exchange.
+     */
+    private RateLimitCharges chargesOf(SecurityContext context) {
+        RateLimitCharges charges = context.getCharges();
+        if (charges == null) context.setCharges(charges = new RateLimitCharges());
+        return charges;
+    }
+
+    /**
+     * Completes the rate limiting of the given {@link Exchange}. All in flight permits which have been acquired
+     * by {@link ConcurrencyLimitAdapter}s are released, reporting the latency to their limits, and the costs of
+     * adapters which {@link RateLimitAdapter#chargesBack() charge back} are charged. This must be called once
+     * the exchange has completed.
+     *
+     * @param exchange The completed {@link Exchange}.
+     */
+    public void release(@NotNull Exchange exchange) {
+        final SessionStorage storage = exchange.storage();
+        final SecurityContext context = SecurityContext.find(storage);
+        if (context == null) return;
+
+        ConcurrencyLimitAdapter.release(storage, true);
+        RateLimitCharges charges = context.getCharges();
+        if (charges != null) charges.apply(backend, exchange);
+    }
+
+    /**
+     * Cleans up expired rate limit entries from the installed {@link RateLimitBackend}, idle limiters and
+     * timed out permits of registered {@link ConcurrencyLimitAdapter}s, ended periods of registered
+     * {@link QuotaRateLimitAdapter}s, expired windows of registered {@link CompositeRateLimitAdapter}s and
+     * clients of the {@link PenaltyBox} which are no longer blocked. Every sweep is recorded as a {@link RateLimitSweepEvent}.
      */
     public void tick() {
-        Stream<Map.Entry<RateLimitIndex, RateLimitInfo>> stream;
-        if (indices.size() >= 100) stream = indices.entrySet().parallelStream();
-        else stream = indices.entrySet().stream();
+        final RateLimitBackend backend = this.backend;
+        RateLimitSweepEvent.record("backend", backend::sweep);
+        RateLimitSweepEvent.record("penaltybox", () -> penaltyBox.sweep(SecurityClock.now()));
+
+        for (RateLimitAdapter adapter : registry.getAdapters())
+            if (adapter instanceof ConcurrencyLimitAdapter concurrency) RateLimitSweepEvent.record(adapter.getId(), concurrency::sweep);
+            else if (adapter instanceof QuotaRateLimitAdapter quota) RateLimitSweepEvent.record(adapter.getId(), quota::sweep);
+            else if (adapter instanceof CompositeRateLimitAdapter composite) RateLimitSweepEvent.record(adapter.getId(), composite::sweep);
+    }
+
+    /**
+     * Starts calling {@link #tick()} periodically in the background, so expired entries are cleaned up and
+     * timed out permits are reclaimed. A previously started sweeper is stopped.
+     *
+     * @param period The period between two sweeps.
+     * @param unit   The {@link TimeUnit} of the period.
+     */
+    public synchronized void startSweeping(long period, @NotNull TimeUnit unit) {
+        stopSweeping();
+
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CNetSecurity-RateLimitSweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                CNetSecurity.getLogger().error(e, "Failed to sweep the rate limits!");
+            }
+        }, period, period, unit);
+        this.sweeper = sweeper;
+    }
+
+    /**
+     * Stops calling {@link #tick()} periodically.
+     */
+    public synchronized void stopSweeping() {
+        if (sweeper == null) return;
+
+        sweeper.shutdownNow();
+        sweeper = null;
+    }
+
+    /**
+     * Installs a new {@link RateLimitBackend} which stores the rate limit counters from now on.
+     * The previously installed backend is closed, its counters are not migrated. The quotas of
+     * {@link QuotaRateLimitAdapter}s are kept by the adapters themselves and are not affected.
+     *
+     * @param backend The {@link RateLimitBackend} to install.
+     */
+    public void setBackend(@NotNull RateLimitBackend backend) {
+        RateLimitBackend previous = this.backend;
+        this.backend = backend;
+        if (previous != backend) previous.close();
+    }
+
+    /**
+     * Sets how the rate limit information is exposed in the response headers.
+     *
+     * @param headerMode The {@link RateLimitHeaderMode} to use.
+     */
+    public synchronized void setHeaderMode(@NotNull RateLimitHeaderMode headerMode) {
+        this.registry = registry.withHeaderMode(headerMode);
+    }
+
+    /**
+     * Gets how the rate limit information is exposed in the response headers.
+     *
+     * @return The current {@link RateLimitHeaderMode}.
+     */
+    public @NotNull RateLimitHeaderMode getHeaderMode() {
+        return registry.getHeaderMode();
+    }
+
+    /**
+     * Restores the counters from the given snapshot file and starts writing new snapshots to it periodically
+     * in the background. Adapters must be registered before, as entries of unknown adapters are skipped.
+     *
+     * @param file   The snapshot file.
+     * @param period The period between two snapshots.
+     * @param unit   The {@link TimeUnit} of the period.
+     * @return The amount of entries which have been restored.
+     * @throws IOException If the existing snapshot could not be read.
+     * @see RateLimitSnapshotter
+     */
+    public synchronized long enableSnapshots(@NotNull File file, long period, @NotNull TimeUnit unit) throws IOException {
+        disableSnapshots();
+
+        RateLimitSnapshotter snapshotter = new RateLimitSnapshotter(this, file);
+        long restored = snapshotter.load();
+        snapshotter.start(period, unit);
+
+        this.snapshotter = snapshotter;
+        return restored;
+    }
+
+    /**
+     * Stops writing snapshots periodically. If snapshots were enabled, a final snapshot is written.
+     *
+     * @throws IOException If the final snapshot could not be written.
+     */
+    public synchronized void disableSnapshots() throws IOException {
+        if (snapshotter == null) return;
 
-        stream.filter(entry -> entry.getValue().isExpired())
-                .forEach(entry -> indices.remove(entry.getKey()));
+        RateLimitSnapshotter snapshotter = this.snapshotter;
+        this.snapshotter = null;
+        snapshotter.stop();
+    }
+
+    /**
+     * Gets the {@link PenaltyBox} which blocks clients that repeatedly exceed their rate limits.
+     *
+     * @return The {@link PenaltyBox} of this manager.
+     */
+    public @NotNull PenaltyBox getPenaltyBox() {
+        return penaltyBox;
+    }
+
+    /**
+     * Gets the currently installed {@link RateLimitBackend}.
+     *
+     * @return The installed {@link RateLimitBackend}.
+     */
+    public @NotNull RateLimitBackend getBackend() {
+        return backend;
     }
 
 }
@@ -0,0 +1,27 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+/**
+ * The {@link RateLimitPhase} defines at which point of the request pipeline a {@link RateLimitAdapter} is checked.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see RateLimitAdapter#getPhase()
+ * @see RateLimitManager#isRateLimited(de.craftsblock.craftsnet.api.http.Exchange, RateLimitPhase)
+ * @since 1.0.0-SNAPSHOT
+ */
+public enum RateLimitPhase {
+
+    /**
+     * The adapter is checked before the authentication chains run, so rejected requests never reach the
+     * verification of their credentials. Adapters of this phase must not depend on the result of the
+     * authentication, like the authenticated token in the {@link de.craftsblock.cnet.modules.security.SecurityContext}.
+     */
+    PRE_AUTH,
+
+    /**
+     * The adapter is checked after the request has been authenticated, once it has been routed.
+     */
+    POST_AUTH
+
+}
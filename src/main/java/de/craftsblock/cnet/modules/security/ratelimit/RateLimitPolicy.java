@@ -0,0 +1,64 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.craftscore.json.Json;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@link RateLimitPolicy} is an immutable snapshot of the limits of a {@link RateLimitAdapter}. Changing
+ * the limits of an adapter swaps its policy as a whole, so a request never observes a half applied change,
+ * and the counters of the adapter are kept.
+ *
+ * @param max     The maximum number of requests allowed within the expiration period.
+ * @param expire  The expiration period in milliseconds.
+ * @param headers Whether the rate limiting headers should be included in the response.
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see RateLimitAdapter#setPolicy(RateLimitPolicy)
+ * @since 1.0.0-SNAPSHOT
+ */
+public record RateLimitPolicy(long max, long expire, boolean headers) {
+
+    /**
+     * Validates the values of the {@link RateLimitPolicy}.
+     *
+     * @throws IllegalStateException If the maximum is negative or the expiration period is out of range.
+     */
+    public RateLimitPolicy {
+        if (max < 0)
+            throw new IllegalStateException("The maximum of a rate limit must not be negative! (Invalid max: " + max + ")");
+        if (expire <= 0 || expire > RateLimitAdapter.MAX_EXPIRE_MILLIS)
+            throw new IllegalStateException("The expiration period of a rate limit must be between 1ms and 31 days! (Invalid expire: " + expire + "ms)");
+    }
+
+    /**
+     * Creates a new {@link RateLimitPolicy} from a {@link Json} object. Missing values are taken from the
+     * given fallback policy.
+     *
+     * @param json     The {@link Json} object containing the policy, with the optional keys {@code max},
+     *                 {@code window} and {@code headers}.
+     * @param fallback The {@link RateLimitPolicy} providing the missing values.
+     * @return The new {@link RateLimitPolicy}.
+     * @throws IllegalStateException If a value is out of range.
+     */
+    public static @NotNull RateLimitPolicy of(@NotNull Json json, @NotNull RateLimitPolicy fallback) {
+        return new RateLimitPolicy(
+                json.contains("max") ? json.getLong("max") : fallback.max(),
+                json.contains("window") ? json.getLong("window") : fallback.expire(),
+                json.contains("headers") ? json.getBoolean("headers") : fallback.headers()
+        );
+    }
+
+    /**
+     * Serializes the {@link RateLimitPolicy} into a {@link Json} object.
+     *
+     * @return The serialized policy.
+     */
+    public @NotNull Json serialize() {
+        return Json.empty()
+                .set("max", max)
+                .set("window", expire)
+                .set("headers", headers);
+    }
+
+}
@@ -0,0 +1,298 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.cnet.modules.security.ratelimit.composite.CompositeRateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.composite.RateLimitWindow;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link RateLimitRegistry} is an immutable snapshot of everything the {@link RateLimitManager} checks a
+ * request against: the registered {@link RateLimitAdapter}s in their order, the {@link RateLimitHeaderMode}, and
+ * the limits which have been configured for the adapters.
+ * <p>
+ * Every change, like registering an adapter or applying the configuration file, creates a new registry which is
+ * published with a single volatile write. The request path reads the registry once and never waits for a change,
+ * and the limits of all adapters, their order and the header mode are always switched together.
+ * </p>
+ * <p>
+ * Configured limits override the own {@link RateLimitAdapter#getPolicy() policy} of an adapter and the windows of
+ * a {@link CompositeRateLimitAdapter}. Adapters which are not configured keep their own limits, so dropping an
+ * adapter from the configuration restores the limits it has been constructed or set up with. Disabled adapters
+ * stay registered and keep their counters, but are not checked.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see RateLimitManager#getRegistry()
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class RateLimitRegistry {
+
+    /**
+     * The registry without any adapter.
+     */
+    static final RateLimitRegistry EMPTY = new RateLimitRegistry(new RateLimitAdapter[0], new int[0],
+            RateLimitHeaderMode.LEGACY, Map.of(), Map.of(), Set.of());
+
+    private final RateLimitAdapter[] adapters;
+    private final int[] priorities;
+    private final RateLimitAdapter[] enabled;
+    private final RateLimitAdapter[] preAuth;
+    private final RateLimitAdapter[] postAuth;
+    private final Map<String, RateLimitAdapter> ids;
+    private final RateLimitHeaderMode headerMode;
+    private final Map<RateLimitAdapter, RateLimitPolicy> policies;
+    private final Map<RateLimitAdapter, RateLimitWindow[]> windows;
+    private final Set<RateLimitAdapter> disabled;
+
+    /**
+     * Constructs a new {@link RateLimitRegistry}. The given maps and sets are taken over and must not be
+     * modified afterward.
+     *
+     * @param adapters   The registered adapters, ordered by their priority.
+     * @param priorities The priorities of the registered adapters.
+     * @param headerMode The {@link RateLimitHeaderMode}.
+     * @param policies   The configured policies by their adapter.
+     * @param windows    The configured windows by their composite adapter.
+     * @param disabled   The adapters which are not checked.
+     */
+    private RateLimitRegistry(RateLimitAdapter[] adapters, int[] priorities, RateLimitHeaderMode headerMode,
+                              Map<RateLimitAdapter, RateLimitPolicy> policies, Map<RateLimitAdapter, RateLimitWindow[]> windows,
+                              Set<RateLimitAdapter> disabled) {
+        this.adapters = adapters;
+        this.priorities = priorities;
+        this.headerMode = headerMode;
+        this.policies = policies;
+        this.windows = windows;
+        this.disabled = disabled;
+
+        Map<String, RateLimitAdapter> ids = new HashMap<>();
+        for (RateLimitAdapter adapter : adapters) ids.put(adapter.getId(), adapter);
+        this.ids = Collections.unmodifiableMap(ids);
+
+        this.enabled = Arrays.stream(adapters).filter(adapter -> !disabled.contains(adapter)).toArray(RateLimitAdapter[]::new);
+        this.preAuth = Arrays.stream(enabled).filter(adapter -> adapter.getPhase() == RateLimitPhase.PRE_AUTH).toArray(RateLimitAdapter[]::new);
+        this.postAuth = Arrays.stream(enabled).filter(adapter -> adapter.getPhase() != RateLimitPhase.PRE_AUTH).toArray(RateLimitAdapter[]::new);
+    }
+
+    /**
+     * Creates a new registry which additionally contains the given adapter. Adapters with a higher priority
+     * are checked first, adapters with the same priority in the order they were registered.
+     *
+     * @param adapter  The {@link RateLimitAdapter} to add.
+     * @param priority The priority of the adapter.
+     * @return The new {@link RateLimitRegistry}.
+     * @throws IllegalStateException If an adapter with the same ID is already registered.
+     */
+    public @NotNull RateLimitRegistry with(@NotNull RateLimitAdapter adapter, int priority) {
+        RateLimitAdapter present = ids.get(adapter.getId());
+        if (present != null)
+            throw new IllegalStateException("Tried to register rate limit adapter with id " + adapter.getId() + " for " + adapter.getClass().getName() +
+                    ", but this id is already taken by " + present.getClass().getName() + "!");
+
+        int position = adapters.length;
+        while (position > 0 && priorities[position - 1] < priority) position--;
+
+        RateLimitAdapter[] adapters = new RateLimitAdapter[this.adapters.length + 1];
+        int[] priorities = new int[this.adapters.length + 1];
+        System.arraycopy(this.adapters, 0, adapters, 0, position);
+        System.arraycopy(this.priorities, 0, priorities, 0, position);
+        adapters[position] = adapter;
+        priorities[position] = priority;
+        System.arraycopy(this.adapters, position, adapters, position + 1, this.adapters.length - position);
+        System.arraycopy(this.priorities, position, priorities, position + 1, this.adapters.length - position);
+
+        return new RateLimitRegistry(adapters, priorities, headerMode, policies, windows, disabled);
+    }
+
+    /**
+     * Creates a new registry without the given adapter. The configured limits of the adapter are dropped as well.
+     *
+     * @param adapter The {@link RateLimitAdapter} to remove.
+     * @return The new {@link RateLimitRegistry}, or this registry if the adapter is not registered.
+     */
+    public @NotNull RateLimitRegistry without(@NotNull RateLimitAdapter adapter) {
+        int index = indexOf(adapter);
+        if (index == -1) return this;
+
+        RateLimitAdapter[] adapters = new RateLimitAdapter[this.adapters.length - 1];
+        int[] priorities = new int[this.adapters.length - 1];
+        System.arraycopy(this.adapters, 0, adapters, 0, index);
+        System.arraycopy(this.priorities, 0, priorities, 0, index);
+        System.arraycopy(this.adapters, index + 1, adapters, index, adapters.length - index);
+        System.arraycopy(this.priorities, index + 1, priorities, index, priorities.length - index);
+
+        Map<RateLimitAdapter, RateLimitPolicy> policies = new IdentityHashMap<>(this.policies);
+        Map<RateLimitAdapter, RateLimitWindow[]> windows = new IdentityHashMap<>(this.windows);
+        Set<RateLimitAdapter> disabled = Collections.newSetFromMap(new IdentityHashMap<>());
+        disabled.addAll(this.disabled);
+        policies.remove(adapter);
+        windows.remove(adapter);
+        disabled.remove(adapter);
+
+        return new RateLimitRegistry(adapters, priorities, headerMode, Collections.unmodifiableMap(policies),
+                Collections.unmodifiableMap(windows), Collections.unmodifiableSet(disabled));
+    }
+
+    /**
+     * Creates a new registry using the given {@link RateLimitHeaderMode}.
+     *
+     * @param headerMode The {@link RateLimitHeaderMode} to use.
+     * @return The new {@link RateLimitRegistry}.
+     */
+    public @NotNull RateLimitRegistry withHeaderMode(@NotNull RateLimitHeaderMode headerMode) {
+        return new RateLimitRegistry(adapters, priorities, headerMode, policies, windows, disabled);
+    }
+
+    /**
+     * Creates a new registry with the given configuration, which replaces the configuration of this registry
+     * as a whole. Entries of adapters which are not registered are ignored.
+     *
+     * @param headerMode The {@link RateLimitHeaderMode} to use.
+     * @param policies   The configured policies by their adapter.
+     * @param windows    The configured windows by their composite adapter.
+     * @param disabled   The adapters which should not be checked.
+     * @return The new {@link RateLimitRegistry}.
+     */
+    public @NotNull RateLimitRegistry configure(@NotNull RateLimitHeaderMode headerMode,
+                                                @NotNull Map<? extends RateLimitAdapter, RateLimitPolicy> policies,
+                                                @NotNull Map<? extends CompositeRateLimitAdapter, List<RateLimitWindow>> windows,
+                                                @NotNull Set<? extends RateLimitAdapter> disabled) {
+        Map<RateLimitAdapter, RateLimitPolicy> configuredPolicies = new IdentityHashMap<>();
+        policies.forEach((adapter, policy) -> {
+            if (indexOf(adapter) != -1) configuredPolicies.put(adapter, policy);
+        });
+
+        Map<RateLimitAdapter, RateLimitWindow[]> configuredWindows = new IdentityHashMap<>();
+        windows.forEach((adapter, list) -> {
+            if (indexOf(adapter) == -1) return;
+
+            // Keep the current array if nothing changed, so the counters of the adapter are not migrated
+            RateLimitWindow[] current = this.windows.get(adapter);
+            RateLimitWindow[] configured = list.toArray(RateLimitWindow[]::new);
+            configuredWindows.put(adapter, current != null && Arrays.equals(current, configured) ? current : configured);
+        });
+
+        Set<RateLimitAdapter> configuredDisabled = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (RateLimitAdapter adapter : disabled)
+            if (indexOf(adapter) != -1) configuredDisabled.add(adapter);
+
+        return new RateLimitRegistry(adapters, priorities, headerMode, Collections.unmodifiableMap(configuredPolicies),
+                Collections.unmodifiableMap(configuredWindows), Collections.unmodifiableSet(configuredDisabled));
+    }
+
+    /**
+     * Gets the registered {@link RateLimitAdapter}s in the order they are checked, including the disabled ones.
+     *
+     * @return An unmodifiable list of the registered adapters.
+     */
+    public @NotNull List<RateLimitAdapter> getAdapters() {
+        return List.of(adapters);
+    }
+
+    /**
+     * Gets the {@link RateLimitAdapter} registered with the given id.
+     *
+     * @param id The id of the adapter.
+     * @return The registered {@link RateLimitAdapter}, or {@code null} if no adapter is registered with the id.
+     */
+    public @Nullable RateLimitAdapter getAdapter(@NotNull String id) {
+        return ids.get(id.toUpperCase());
+    }
+
+    /**
+     * Checks whether the given {@link RateLimitAdapter} is registered.
+     *
+     * @param adapter The {@link RateLimitAdapter} to check.
+     * @return {@code true} if the adapter is registered, {@code false} otherwise.
+     */
+    public boolean contains(@NotNull RateLimitAdapter adapter) {
+        return indexOf(adapter) != -1;
+    }
+
+    /**
+     * Checks whether the given {@link RateLimitAdapter} is checked, which it is unless it has been disabled.
+     *
+     * @param adapter The {@link RateLimitAdapter} to check.
+     * @return {@code true} if the adapter is registered and enabled, {@code false} otherwise.
+     */
+    public boolean isEnabled(@NotNull RateLimitAdapter adapter) {
+        return contains(adapter) && !disabled.contains(adapter);
+    }
+
+    /**
+     * Gets the enabled adapters in the order they are checked. The returned array is shared and must not be modified.
+     *
+     * @return The enabled adapters.
+     */
+    @ApiStatus.Internal
+    public @NotNull RateLimitAdapter[] getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the enabled adapters of the given {@link RateLimitPhase} in the order they are checked. The returned
+     * array is shared and must not be modified.
+     *
+     * @param phase The {@link RateLimitPhase}.
+     * @return The enabled adapters of the phase.
+     */
+    @ApiStatus.Internal
+    public @NotNull RateLimitAdapter[] getEnabled(@NotNull RateLimitPhase phase) {
+        return phase == RateLimitPhase.PRE_AUTH ? preAuth : postAuth;
+    }
+
+    /**
+     * Gets the {@link RateLimitHeaderMode}.
+     *
+     * @return The {@link RateLimitHeaderMode}.
+     */
+    public @NotNull RateLimitHeaderMode getHeaderMode() {
+        return headerMode;
+    }
+
+    /**
+     * Gets the configured {@link RateLimitPolicy} of the given adapter.
+     *
+     * @param adapter The {@link RateLimitAdapter}.
+     * @return The configured policy, or {@code null} if the adapter is not configured.
+     */
+    public @Nullable RateLimitPolicy getPolicy(@NotNull RateLimitAdapter adapter) {
+        return policies.isEmpty() ? null : policies.get(adapter);
+    }
+
+    /**
+     * Gets the configured windows of the given {@link CompositeRateLimitAdapter}. The array of a composite
+     * adapter stays the same until its windows are changed, and must not be modified.
+     *
+     * @param adapter The {@link CompositeRateLimitAdapter}.
+     * @return The configured windows, or {@code null} if the windows of the adapter are not configured.
+     */
+    @ApiStatus.Internal
+    public @Nullable RateLimitWindow[] getWindows(@NotNull CompositeRateLimitAdapter adapter) {
+        return windows.isEmpty() ? null : windows.get(adapter);
+    }
+
+    /**
+     * Finds the position of the given adapter.
+     *
+     * @param adapter The {@link RateLimitAdapter}.
+     * @return The position of the adapter, or {@code -1} if it is not registered.
+     */
+    private int indexOf(RateLimitAdapter adapter) {
+        for (int i = 0; i < adapters.length; i++)
+            if (adapters[i] == adapter) return i;
+        return -1;
+    }
+
+}
@@ -0,0 +1,290 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.ratelimit.backend.LocalRateLimitBackend;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link RateLimitSnapshotter} periodically writes the live counters of a {@link RateLimitManager} to a
+ * compact binary file and restores them on startup. This prevents clients from getting a fresh budget
+ * every time the instance is restarted.
+ * <p>
+ * Snapshots are written by a background thread, so the request path is never blocked. Only the
+ * {@link LocalRateLimitBackend} is snapshotted, as other backends keep their state outside this instance.
+ * Only indices whose source is a {@link String}, {@link Long} or {@link Integer} can be persisted, all other
+ * indices are skipped.
+ * </p>
+ *
+ * <p>The file is laid out as follows, all numbers are big endian:</p>
+ * <ul>
+ *     <li>Header: {@code int magic, byte version, long baseMillis, short adapterCount, utf[] adapterIds}</li>
+ *     <li>Entry: {@code byte sourceType, byte indexAdapter, byte infoAdapter, source, varlong times, varlong expiresIn}</li>
+ *     <li>Footer: {@code byte END}</li>
+ * </ul>
+ * <p>
+ * The expiration timestamps are stored relative to {@code baseMillis}, which keeps most entries at
+ * around 20 bytes for IPv4 based indices.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see RateLimitManager
+ * @see LocalRateLimitBackend
+ * @since 1.0.0-SNAPSHOT
+ */
+public class RateLimitSnapshotter {
+
+    private static final int MAGIC = 0x434E524C; // CNRL
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte END = -1;
+
+    private static final int GLOBAL = 0xFF;
+
+    private final RateLimitManager manager;
+    private final File file;
+
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> task;
+
+    /**
+     * Constructs a new {@link RateLimitSnapshotter}.
+     *
+     * @param manager The {@link RateLimitManager} whose counters should be snapshotted.
+     * @param file    The file the snapshots are written to.
+     */
+    public RateLimitSnapshotter(@NotNull RateLimitManager manager, @NotNull File file) {
+        this.manager = manager;
+        this.file = file;
+    }
+
+    /**
+     * Starts writing snapshots periodically in the background.
+     *
+     * @param period The period between two snapshots.
+     * @param unit   The {@link TimeUnit} of the period.
+     */
+    public synchronized void start(long period, @NotNull TimeUnit unit) {
+        if (task != null) return;
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CNetSecurity-RateLimitSnapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        task = executor.scheduleWithFixedDelay(() -> {
+            try {
+                write();
+            } catch (IOException e) {
+                CNetSecurity.getLogger().error(e, "Failed to write the rate limit snapshot!");
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops writing snapshots periodically. A final snapshot is written before this method returns.
+     *
+     * @throws IOException If the final snapshot could not be written.
+     */
+    public synchronized void stop() throws IOException {
+        if (task == null) return;
+
+        task.cancel(false);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        task = null;
+        executor = null;
+        write();
+    }
+
+    /**
+     * Writes a snapshot of all live, non expired counters. The snapshot is first written to a temporary
+     * file which then atomically replaces the previous snapshot.
+     *
+     * @return The amount of entries which have been written.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public synchronized long write() throws IOException {
+        if (!(manager.getBackend() instanceof LocalRateLimitBackend backend)) return 0;
+
+        final long base = SecurityClock.now();
+        final Map<RateLimitAdapter, Integer> ids = new HashMap<>();
+        final List<RateLimitAdapter> adapters = new ArrayList<>();
+        backend.forEach((index, info) -> {
+            if (!index.isGlobal()) ids.computeIfAbsent(index.adapter(), a -> register(adapters, a));
+            ids.computeIfAbsent(info.adapter(), a -> register(adapters, a));
+        });
+
+        if (adapters.size() >= GLOBAL)
+            throw new IOException("Too many rate limit adapters to be snapshotted (" + adapters.size() + ")!");
+
+        File temp = new File(file.getPath() + ".tmp");
+        if (file.getParentFile() != null) file.getParentFile().mkdirs();
+
+        final AtomicLong written = new AtomicLong();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(base);
+            out.writeShort(adapters.size());
+            for (RateLimitAdapter adapter : adapters)
+                out.writeUTF(adapter.getId());
+
+            UncheckedIOException[] failure = new UncheckedIOException[1];
+            backend.forEach((index, info) -> {
+                if (failure[0] != null) return;
+
+                long expiresIn = info.getExpiresAt() - base;
+                if (expiresIn <= 0 || !ids.containsKey(info.adapter())) return;
+                if (!index.isGlobal() && !ids.containsKey(index.adapter())) return;
+
+                Object source = index.source();
+                byte type;
+                if (source instanceof String) type = TYPE_STRING;
+                else if (source instanceof Long) type = TYPE_LONG;
+                else if (source instanceof Integer) type = TYPE_INTEGER;
+                else return;
+
+                try {
+                    out.writeByte(type);
+                    out.writeByte(index.isGlobal() ? GLOBAL : ids.get(index.adapter()));
+                    out.writeByte(ids.get(info.adapter()));
+                    switch (type) {
+                        case TYPE_STRING -> out.writeUTF((String) source);
+                        case TYPE_LONG -> out.writeLong((Long) source);
+                        default -> out.writeInt((Integer) source);
+                    }
+                    writeVarLong(out, Math.max(0, info.getTimes()));
+                    writeVarLong(out, expiresIn);
+                    written.incrementAndGet();
+                } catch (IOException e) {
+                    failure[0] = new UncheckedIOException(e);
+                }
+            });
+            if (failure[0] != null) throw failure[0].getCause();
+
+            out.writeByte(END);
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written.get();
+    }
+
+    /**
+     * Loads the last snapshot into the {@link RateLimitManager}. Entries which expired in the meantime,
+     * or whose adapters are no longer registered, are skipped. The expiration timestamps are preserved.
+     *
+     * @return The amount of entries which have been restored.
+     * @throws IOException If the snapshot could not be read.
+     */
+    public synchronized long load() throws IOException {
+        if (!file.exists() || !(manager.getBackend() instanceof LocalRateLimitBackend backend)) return 0;
+
+        final long now = SecurityClock.now();
+        long restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION)
+                throw new IOException("The file " + file.getName() + " is not a supported rate limit snapshot!");
+
+            final long base = in.readLong();
+            final RateLimitAdapter[] adapters = new RateLimitAdapter[in.readUnsignedShort()];
+            for (int i = 0; i < adapters.length; i++)
+                adapters[i] = manager.getAdapter(in.readUTF());
+
+            byte type;
+            while ((type = in.readByte()) != END) {
+                int indexAdapter = in.readUnsignedByte();
+                int infoAdapter = in.readUnsignedByte();
+                Object source = switch (type) {
+                    case TYPE_STRING -> in.readUTF();
+                    case TYPE_LONG -> in.readLong();
+                    case TYPE_INTEGER -> in.readInt();
+                    default -> throw new IOException("Unknown source type " + type + " in rate limit snapshot!");
+                };
+                long times = readVarLong(in);
+                long expiresAt = base + readVarLong(in);
+
+                RateLimitAdapter adapter = adapters[infoAdapter];
+                if (expiresAt <= now || adapter == null) continue;
+
+                RateLimitIndex index;
+                if (indexAdapter == GLOBAL) index = RateLimitIndex.of(source);
+                else if (adapters[indexAdapter] != null) index = RateLimitIndex.of(adapters[indexAdapter], source);
+                else continue;
+
+                backend.restore(index, new RateLimitInfo(adapter, new AtomicLong(times), new AtomicLong(expiresAt)));
+                restored++;
+            }
+        }
+
+        return restored;
+    }
+
+    /**
+     * Assigns the next free snapshot id to a {@link RateLimitAdapter}.
+     *
+     * @param adapters The list of already known adapters.
+     * @param adapter  The {@link RateLimitAdapter} to register.
+     * @return The id of the adapter within the snapshot.
+     */
+    private static int register(List<RateLimitAdapter> adapters, RateLimitAdapter adapter) {
+        adapters.add(adapter);
+        return adapters.size() - 1;
+    }
+
+    /**
+     * Writes a non-negative long using a variable length encoding of 7 bits per byte.
+     *
+     * @param out   The {@link DataOutput} to write to.
+     * @param value The value to write.
+     * @throws IOException If the value could not be written.
+     */
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a long previously written by {@link #writeVarLong(DataOutput, long)}.
+     *
+     * @param in The {@link DataInput} to read from.
+     * @return The value which has been read.
+     * @throws IOException If the value could not be read.
+     */
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed variable length number in rate limit snapshot!");
+    }
+
+}
@@ -0,0 +1,151 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPolicy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The {@link LocalRateLimitBackend} is the default {@link RateLimitBackend}. It keeps all counters
+ * in the heap of the current instance, which means that every instance behind a load balancer
+ * enforces its own limits.
+ * <p>
+ * The counters are partitioned into one {@link RateLimitTable} per {@link RateLimitAdapter} id, plus one
+ * dedicated table for global indices. Adapters with equal sources therefore never share an entry and
+ * do not contend on the same map.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.2.0
+ * @see RateLimitBackend
+ * @see RateLimitTable
+ * @since 1.0.0-SNAPSHOT
+ */
+public class LocalRateLimitBackend implements RateLimitBackend {
+
+    private final ConcurrentHashMap<String, RateLimitTable> tables = new ConcurrentHashMap<>();
+    private final RateLimitTable global = new RateLimitTable(null, 16);
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index   The {@link RateLimitIndex} to resolve.
+     * @param adapter The {@link RateLimitAdapter} which produced the index.
+     * @return The {@link RateLimitInfo} associated with the index.
+     */
+    @Override
+    public @NotNull RateLimitInfo resolve(@NotNull RateLimitIndex index, @NotNull RateLimitAdapter adapter) {
+        return tableOf(index).resolve(index.source(), adapter);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index  The {@link RateLimitIndex} which is accessed.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight of the access.
+     * @param policy The {@link RateLimitPolicy} the access is checked against.
+     * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
+     */
+    @Override
+    public boolean access(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight, @NotNull RateLimitPolicy policy) {
+        return info.access(weight, policy);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index  The {@link RateLimitIndex} which is charged.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight to charge.
+     */
+    @Override
+    public void charge(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight) {
+        info.charge(weight);
+    }
+
+    /**
+     * Cleans up expired rate limit entries from all tables.
+     */
+    @Override
+    public void sweep() {
+        global.sweep();
+        tables.values().forEach(RateLimitTable::sweep);
+    }
+
+    /**
+     * Performs the given action for every entry which is currently stored in this backend. The indices are
+     * rebuilt with the adapter owning their partition, not the adapter of their {@link RateLimitInfo}.
+     * The iteration is weakly consistent and does not block concurrent accesses.
+     *
+     * @param action The action to perform for each index and its {@link RateLimitInfo}.
+     */
+    public void forEach(@NotNull BiConsumer<RateLimitIndex, RateLimitInfo> action) {
+        global.forEach((source, info) -> action.accept(RateLimitIndex.of(source), info));
+        tables.values().forEach(table -> table.forEach((source, info) ->
+                action.accept(RateLimitIndex.of(table.getOwner(), source), info)));
+    }
+
+    /**
+     * Restores a previously stored entry. Entries which are already known to this backend are kept.
+     *
+     * @param index The {@link RateLimitIndex} to restore.
+     * @param info  The {@link RateLimitInfo} holding the restored state.
+     */
+    public void restore(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info) {
+        tableOf(index).restore(index.source(), info);
+    }
+
+    /**
+     * Gets the {@link RateLimitTable} which stores the entries of the given {@link RateLimitAdapter}.
+     *
+     * @param adapter The {@link RateLimitAdapter} to look up.
+     * @return The {@link RateLimitTable} of the adapter, or {@code null} if it has not stored any entries yet.
+     */
+    public @Nullable RateLimitTable getTable(@NotNull RateLimitAdapter adapter) {
+        return tables.get(adapter.getId());
+    }
+
+    /**
+     * Gets the {@link RateLimitTable} which stores the entries of global indices.
+     *
+     * @return The global {@link RateLimitTable}.
+     */
+    public @NotNull RateLimitTable getGlobalTable() {
+        return global;
+    }
+
+    /**
+     * Gets an unmodifiable view of all adapter tables, keyed by the adapter id.
+     *
+     * @return The adapter tables.
+     */
+    public @NotNull Map<String, RateLimitTable> getTables() {
+        return Collections.unmodifiableMap(tables);
+    }
+
+    /**
+     * Gets the {@link RateLimitTable} an index belongs to, creating it if necessary.
+     *
+     * @param index The {@link RateLimitIndex}.
+     * @return The {@link RateLimitTable} of the index.
+     */
+    private RateLimitTable tableOf(RateLimitIndex index) {
+        if (index.isGlobal()) return global;
+
+        RateLimitAdapter owner = index.adapter();
+        RateLimitTable table = tables.get(owner.getId());
+        if (table != null) return table;
+
+        return tables.computeIfAbsent(owner.getId(), id -> new RateLimitTable(owner, owner.getExpectedSources()));
+    }
+
+}
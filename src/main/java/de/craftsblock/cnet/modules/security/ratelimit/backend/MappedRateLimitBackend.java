@@ -0,0 +1,470 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPolicy;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link MappedRateLimitBackend} is a {@link RateLimitBackend} which keeps its counters in a memory mapped file.
+ * All processes on the same host which map the same file share exact counters at memory speed, without a network
+ * round trip or a broker. This makes the configured limits apply to all instances behind a local proxy instead of
+ * every single one of them.
+ * <p>
+ * The file holds a fixed size open addressing table. Every slot stores the 64 bit hash of an index together with
+ * its counter and the expiration of its window, which are updated with atomic compare and set operations through
+ * a {@link VarHandle}. Slots are never freed, instead the slot of an expired window is taken over by a new index
+ * once the probe sequence of that index is full. If no slot can be found, the access is counted locally only.
+ * </p>
+ * <p>
+ * The counter carries a tag of the key and the window it belongs to. Only the process which starts a new window
+ * resets the counter to the new tag, and all other processes only update a counter whose tag matches their own
+ * key and window. A counter of an old window or of a previous owner of the slot is therefore never charged nor
+ * used to reject an access. If a process dies before it has reset the counter, the others count locally until
+ * the window expires again.
+ * </p>
+ *
+ * <p>The file is laid out as follows, all numbers are in the native byte order of the host:</p>
+ * <ul>
+ *     <li>Header: {@code int magic, int version, int capacity}, padded to {@value #HEADER_SIZE} bytes</li>
+ *     <li>Slot: {@code long key, long times, long expiresAt, long reserved}</li>
+ *     <li>Times: the upper {@value #TAG_BITS} bits hold the tag, the lower {@value #COUNT_BITS} bits the count</li>
+ * </ul>
+ * <p>
+ * The windows expire by the wall clock, so the clocks of all processes sharing the file must agree. As the
+ * file outlives the processes, the counters also survive restarts.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.2.0
+ * @see RateLimitBackend
+ * @since 1.0.0-SNAPSHOT
+ */
+public class MappedRateLimitBackend implements RateLimitBackend {
+
+    /**
+     * The default amount of slots of a new file.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * The maximum amount of slots of a file, which keeps the mapping below one gigabyte.
+     */
+    public static final int MAX_CAPACITY = 1 << 25;
+
+    private static final int MAGIC = 0x434E524D; // CNRM
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 32;
+    private static final int KEY = 0;
+    private static final int TIMES = 8;
+    private static final int EXPIRES_AT = 16;
+
+    private static final int TAG_BITS = 24;
+    private static final int COUNT_BITS = 64 - TAG_BITS;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private static final int MAX_PROBES = 32;
+    private static final int MAX_SPINS = 1024;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ConcurrentHashMap<RateLimitIndex, Entry> entries = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * Constructs a new {@link MappedRateLimitBackend} using the {@link #DEFAULT_CAPACITY}.
+     *
+     * @param file The file which is shared by all processes.
+     * @throws IOException If the file could not be created or mapped.
+     */
+    public MappedRateLimitBackend(@NotNull File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new {@link MappedRateLimitBackend}. If the file already exists, the capacity it has been
+     * created with is used instead of the given one.
+     *
+     * @param file     The file which is shared by all processes.
+     * @param capacity The amount of slots of a new file, must be a power of two.
+     * @throws IOException           If the file could not be created or mapped.
+     * @throws IllegalStateException If the capacity is invalid or the file is not a rate limit table.
+     */
+    public MappedRateLimitBackend(@NotNull File file, int capacity) throws IOException {
+        if (capacity < MAX_PROBES || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1)
+            throw new IllegalStateException("The capacity must be a power of two between " + MAX_PROBES + " and " +
+                    MAX_CAPACITY + "! (Invalid capacity: " + capacity + ")");
+
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            // Only one process may initialize the header
+            try (FileLock ignored = channel.lock()) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                header.order(ByteOrder.nativeOrder());
+                if (header.getInt(0) == 0) {
+                    header.putInt(4, VERSION);
+                    header.putInt(8, capacity);
+                    header.putInt(0, MAGIC);
+                    header.force();
+                }
+
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                    throw new IllegalStateException("The file " + file.getPath() + " is not a rate limit table of version " + VERSION + "!");
+
+                this.capacity = header.getInt(8);
+                if (this.capacity < MAX_PROBES || this.capacity > MAX_CAPACITY || Integer.bitCount(this.capacity) != 1)
+                    throw new IllegalStateException("The file " + file.getPath() + " has an invalid capacity! (Invalid capacity: " + this.capacity + ")");
+            }
+
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.capacity * SLOT_SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index   The {@link RateLimitIndex} to resolve.
+     * @param adapter The {@link RateLimitAdapter} which produced the index.
+     * @return The {@link RateLimitInfo} associated with the index.
+     */
+    @Override
+    public @NotNull RateLimitInfo resolve(@NotNull RateLimitIndex index, @NotNull RateLimitAdapter adapter) {
+        return entries.computeIfAbsent(index, i -> new Entry(adapter.createInfo(), keyOf(i))).info;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The counter in the shared table is updated, and the passed {@link RateLimitInfo} is updated to reflect it.
+     * </p>
+     *
+     * @param index  The {@link RateLimitIndex} which is accessed.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight of the access.
+     * @param policy The {@link RateLimitPolicy} the access is checked against.
+     * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
+     */
+    @Override
+    public boolean access(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight, @NotNull RateLimitPolicy policy) {
+        final Entry entry = entryOf(index, info);
+        final long max = policy.max();
+
+        for (int spins = 0; entry != null && spins < MAX_SPINS; spins++) {
+            final long now = SecurityClock.now();
+            final int slot = slotOf(entry, now);
+            if (slot == -1) break;
+
+            final long key = entry.key;
+            final long expiresAt = resetIfExpired(slot, key, policy.expire(), now);
+            final long current = (long) LONG.getVolatile(buffer, slot + TIMES);
+            if (expiresAt <= now || !owns(current, key, expiresAt)) {
+                // The window is being reset or the slot has been taken over
+                Thread.onSpinWait();
+                continue;
+            }
+
+            final long times = current & COUNT_MASK;
+            if (RateLimitInfo.exceeds(times, weight, max)) {
+                info.update(times, expiresAt);
+                return true;
+            }
+
+            if (LONG.compareAndSet(buffer, slot + TIMES, current, add(current, weight))) {
+                info.update(times + weight, expiresAt);
+                return false;
+            }
+        }
+
+        return info.access(weight, policy);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index  The {@link RateLimitIndex} which is charged.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight to charge.
+     */
+    @Override
+    public void charge(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight) {
+        final Entry entry = entryOf(index, info);
+        final long expire = info.adapter().getExpireInMilliseconds();
+
+        for (int spins = 0; entry != null && spins < MAX_SPINS; spins++) {
+            final long now = SecurityClock.now();
+            final int slot = slotOf(entry, now);
+            if (slot == -1) break;
+
+            final long key = entry.key;
+            final long expiresAt = resetIfExpired(slot, key, expire, now);
+            final long current = (long) LONG.getVolatile(buffer, slot + TIMES);
+            if (expiresAt <= now || !owns(current, key, expiresAt)) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            final long updated = add(current, weight);
+            if (LONG.compareAndSet(buffer, slot + TIMES, current, updated)) {
+                info.update(updated & COUNT_MASK, expiresAt);
+                return;
+            }
+        }
+
+        info.charge(weight);
+    }
+
+    /**
+     * Starts a new window in the given slot if its current window has expired. Only the process which moves the
+     * expiration forward resets the counter to the tag of the new window. Accesses of the old window which are
+     * still in flight may update the counter in the meantime, so the reset is repeated until the counter carries
+     * the new tag, unless the slot has moved on to another window or key already.
+     *
+     * @param slot   The offset of the slot.
+     * @param key    The key of the slot.
+     * @param expire The length of a new window in milliseconds.
+     * @param now    The current time in milliseconds.
+     * @return The expiration of the current window, which is in the past if another process is starting it or
+     * the slot has been taken over.
+     */
+    private long resetIfExpired(int slot, long key, long expire, long now) {
+        long expiresAt = (long) LONG.getVolatile(buffer, slot + EXPIRES_AT);
+        if (expiresAt > now || (long) LONG.getVolatile(buffer, slot + KEY) != key) return expiresAt;
+
+        long renewed = now + expire;
+        if (!LONG.compareAndSet(buffer, slot + EXPIRES_AT, expiresAt, renewed))
+            return (long) LONG.getVolatile(buffer, slot + EXPIRES_AT);
+
+        long reset = tag(key, renewed);
+        long current;
+        do {
+            current = (long) LONG.getVolatile(buffer, slot + TIMES);
+            if (current == reset || (long) LONG.getVolatile(buffer, slot + KEY) != key
+                    || (long) LONG.getVolatile(buffer, slot + EXPIRES_AT) != renewed)
+                break;
+        } while (!LONG.compareAndSet(buffer, slot + TIMES, current, reset));
+
+        return renewed;
+    }
+
+    /**
+     * Checks whether a counter belongs to the given key and window.
+     *
+     * @param times     The counter read from the slot.
+     * @param key       The key of the slot.
+     * @param expiresAt The expiration of the window.
+     * @return {@code true} if the counter carries the tag of the key and window, {@code false} otherwise.
+     */
+    private static boolean owns(long times, long key, long expiresAt) {
+        return (times & ~COUNT_MASK) == tag(key, expiresAt);
+    }
+
+    /**
+     * Computes the tag of a key and window, which is placed in the upper bits of an empty counter.
+     *
+     * @param key       The key of the slot.
+     * @param expiresAt The expiration of the window.
+     * @return The empty counter of the key and window.
+     */
+    private static long tag(long key, long expiresAt) {
+        return (long) mix(key ^ expiresAt * 0x9e3779b97f4a7c15L) << COUNT_BITS;
+    }
+
+    /**
+     * Adds a weight to the count of a counter, keeping its tag. The count is capped instead of overflowing
+     * into the tag.
+     *
+     * @param times  The counter.
+     * @param weight The weight to add.
+     * @return The updated counter.
+     */
+    private static long add(long times, long weight) {
+        long count = times & COUNT_MASK;
+        return (times & ~COUNT_MASK) | (weight >= COUNT_MASK - count ? COUNT_MASK : count + weight);
+    }
+
+    /**
+     * Gets the local state of an index, as long as it still belongs to the given {@link RateLimitInfo}.
+     *
+     * @param index The {@link RateLimitIndex}.
+     * @param info  The {@link RateLimitInfo} associated with the index.
+     * @return The {@link Entry} of the index, or {@code null} if the index has been swept in the meantime.
+     */
+    private Entry entryOf(RateLimitIndex index, RateLimitInfo info) {
+        Entry entry = entries.get(index);
+        return entry == null || entry.info != info ? null : entry;
+    }
+
+    /**
+     * Gets the offset of the slot of an index, claiming a slot if the index is not yet stored in the table.
+     * The slot is cached, and looked up again if another process has taken it over in the meantime. As the
+     * counter is tagged with the key, a takeover after this check only makes the following update fail.
+     *
+     * @param entry The {@link Entry} of the index.
+     * @param now   The current time in milliseconds.
+     * @return The offset of the slot, or {@code -1} if no slot is available.
+     */
+    private int slotOf(Entry entry, long now) {
+        int slot = entry.slot;
+        if (slot != -1 && (long) LONG.getVolatile(buffer, slot + KEY) == entry.key) return slot;
+
+        slot = claim(entry.key, now);
+        entry.slot = slot;
+        return slot;
+    }
+
+    /**
+     * Finds or claims the slot of a key. The probe sequence ends at the first free slot, as slots are never
+     * freed. If the probe sequence is full, the first slot whose window has expired is taken over.
+     *
+     * @param key The key to find.
+     * @param now The current time in milliseconds.
+     * @return The offset of the slot, or {@code -1} if no slot is available.
+     */
+    private int claim(long key, long now) {
+        final int mask = capacity - 1;
+        int expired = -1;
+
+        for (int probe = 0, i = mix(key) & mask; probe < MAX_PROBES; probe++, i = (i + 1) & mask) {
+            final int slot = HEADER_SIZE + i * SLOT_SIZE;
+            long current = (long) LONG.getVolatile(buffer, slot + KEY);
+            if (current == key) return slot;
+
+            if (current == 0) {
+                if (LONG.compareAndSet(buffer, slot + KEY, 0L, key)) return slot;
+
+                // Another process claimed the slot at the same time
+                current = (long) LONG.getVolatile(buffer, slot + KEY);
+                if (current == key) return slot;
+            }
+
+            if (expired == -1 && (long) LONG.getVolatile(buffer, slot + EXPIRES_AT) <= now) expired = slot;
+        }
+
+        if (expired == -1) return -1;
+
+        // The expiration is cleared first, so a process which renews the window of the previous key at the same
+        // time fails, and cleared again afterwards, so the new key always starts a window with its own tag
+        long expiresAt = (long) LONG.getVolatile(buffer, expired + EXPIRES_AT);
+        long previous = (long) LONG.getVolatile(buffer, expired + KEY);
+        if (expiresAt > now || !LONG.compareAndSet(buffer, expired + EXPIRES_AT, expiresAt, 0L)) return -1;
+        if (!LONG.compareAndSet(buffer, expired + KEY, previous, key)) return -1;
+
+        LONG.setVolatile(buffer, expired + EXPIRES_AT, 0L);
+        return expired;
+    }
+
+    /**
+     * Removes all local entries whose windows have expired. The slots in the shared table are kept, as
+     * they may still be used by other processes, and are taken over once they are needed.
+     */
+    @Override
+    public void sweep() {
+        for (RateLimitIndex index : entries.keySet())
+            entries.computeIfPresent(index, (i, entry) -> entry.info.isExpired() ? null : entry);
+    }
+
+    /**
+     * Closes the file. The mapping itself is released once it is garbage collected.
+     */
+    @Override
+    public void close() {
+        entries.clear();
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Gets the amount of slots of the shared table.
+     *
+     * @return The capacity of the table.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the file which is shared by all processes.
+     *
+     * @return The file of the table.
+     */
+    public @NotNull File getFile() {
+        return file;
+    }
+
+    /**
+     * Computes the 64 bit key of an index from its adapter id and source using FNV-1a. Processes agree on the
+     * key as long as the sources have the same string representation. The key {@code 0} marks free slots and
+     * is never returned.
+     *
+     * @param index The {@link RateLimitIndex}.
+     * @return The key of the index.
+     */
+    private static long keyOf(RateLimitIndex index) {
+        String name = (index.isGlobal() ? "*" : index.adapter().getId()) + ":" + index.source();
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Spreads the bits of a key to select its first slot.
+     *
+     * @param key The key.
+     * @return The mixed hash of the key.
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * The local state of an index.
+     */
+    private static final class Entry {
+
+        private final RateLimitInfo info;
+        private final long key;
+        private volatile int slot = -1;
+
+        private Entry(RateLimitInfo info, long key) {
+            this.info = info;
+            this.key = key;
+        }
+
+    }
+
+}
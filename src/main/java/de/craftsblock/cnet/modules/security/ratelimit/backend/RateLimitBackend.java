@@ -0,0 +1,103 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPolicy;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@link RateLimitBackend} defines where the counter state of the {@link RateLimitManager} lives.
+ * It is responsible for resolving the {@link RateLimitInfo} of a {@link RateLimitIndex} and for
+ * deciding whether an access to that index exceeds the configured limit.
+ * <p>
+ * The default backend is the {@link LocalRateLimitBackend}, which keeps every counter in the heap of the
+ * current instance. Implementations which share their state between multiple instances, like the
+ * {@link RemoteRateLimitBackend} or the {@link MappedRateLimitBackend} for processes on the same host, can be
+ * installed using {@link RateLimitManager#setBackend(RateLimitBackend)}.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see LocalRateLimitBackend
+ * @see RemoteRateLimitBackend
+ * @see MappedRateLimitBackend
+ * @since 1.0.0-SNAPSHOT
+ */
+public interface RateLimitBackend {
+
+    /**
+     * Resolves the {@link RateLimitInfo} for the given {@link RateLimitIndex}, creating it
+     * through {@link RateLimitAdapter#createInfo()} if it is not yet known to this backend.
+     *
+     * @param index   The {@link RateLimitIndex} to resolve.
+     * @param adapter The {@link RateLimitAdapter} which produced the index.
+     * @return The {@link RateLimitInfo} associated with the index.
+     */
+    @NotNull RateLimitInfo resolve(@NotNull RateLimitIndex index, @NotNull RateLimitAdapter adapter);
+
+    /**
+     * Accesses the resource guarded by the given {@link RateLimitIndex} with a weight of one.
+     *
+     * @param index The {@link RateLimitIndex} which is accessed.
+     * @param info  The {@link RateLimitInfo} associated with the index.
+     * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
+     * @see #access(RateLimitIndex, RateLimitInfo, long)
+     */
+    default boolean access(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info) {
+        return access(index, info, 1);
+    }
+
+    /**
+     * Accesses the resource guarded by the given {@link RateLimitIndex}, charging the given weight atomically.
+     * If the weight does not fit into the remaining budget, nothing is charged. The passed {@link RateLimitInfo}
+     * must have been obtained through {@link #resolve(RateLimitIndex, RateLimitAdapter)} of this backend and
+     * reflects the counter state after the access, so it can be used for the response headers.
+     *
+     * @param index  The {@link RateLimitIndex} which is accessed.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight of the access.
+     * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
+     * @see #access(RateLimitIndex, RateLimitInfo, long, RateLimitPolicy)
+     */
+    default boolean access(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight) {
+        return access(index, info, weight, info.adapter().getPolicy());
+    }
+
+    /**
+     * Accesses the resource guarded by the given {@link RateLimitIndex} like {@link #access(RateLimitIndex, RateLimitInfo, long)},
+     * checking it against the given {@link RateLimitPolicy}. The {@link RateLimitManager} resolves the policy once
+     * per request, so the decision and the reported headers always refer to the same limits.
+     *
+     * @param index  The {@link RateLimitIndex} which is accessed.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight of the access.
+     * @param policy The {@link RateLimitPolicy} the access is checked against.
+     * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
+     */
+    boolean access(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight, @NotNull RateLimitPolicy policy);
+
+    /**
+     * Charges the given weight to the {@link RateLimitIndex} unconditionally. This is used for costs which are
+     * only known after the request has been processed and may push the counter beyond its maximum.
+     *
+     * @param index  The {@link RateLimitIndex} which is charged.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight to charge.
+     */
+    void charge(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight);
+
+    /**
+     * Removes all expired entries from this backend.
+     */
+    void sweep();
+
+    /**
+     * Releases all resources held by this backend. The backend must not be used after it was closed.
+     */
+    default void close() {
+    }
+
+}
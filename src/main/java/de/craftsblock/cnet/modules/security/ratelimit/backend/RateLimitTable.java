@@ -0,0 +1,125 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * The {@link RateLimitTable} stores the {@link RateLimitInfo}s of a single partition of the
+ * {@link LocalRateLimitBackend}, which is either one {@link RateLimitAdapter} or the global partition.
+ * Entries are keyed by the plain source of their index, so lookups only hash the source.
+ * <p>
+ * Every table is sized, swept and measured on its own, so adapters with many distinct sources
+ * do not slow down or contend with adapters with only a few.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see LocalRateLimitBackend
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class RateLimitTable {
+
+    private final RateLimitAdapter owner;
+    private final ConcurrentHashMap<Object, RateLimitInfo> entries;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder creations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a new {@link RateLimitTable}.
+     *
+     * @param owner    The {@link RateLimitAdapter} whose partition this table stores, or {@code null} for the global partition.
+     * @param capacity The expected amount of distinct sources.
+     */
+    RateLimitTable(@Nullable RateLimitAdapter owner, int capacity) {
+        this.owner = owner;
+        this.entries = new ConcurrentHashMap<>(Math.max(16, capacity));
+    }
+
+    /**
+     * Gets the {@link RateLimitAdapter} whose partition this table stores. This is the adapter of the indices
+     * of this table, which may differ from the adapters of the stored {@link RateLimitInfo}s.
+     *
+     * @return The owning {@link RateLimitAdapter}, or {@code null} if this is the global partition.
+     */
+    public @Nullable RateLimitAdapter getOwner() {
+        return owner;
+    }
+
+    /**
+     * Resolves the {@link RateLimitInfo} of the given source, creating it if it does not exist yet.
+     *
+     * @param source  The source of the index.
+     * @param adapter The {@link RateLimitAdapter} used to create missing entries.
+     * @return The {@link RateLimitInfo} of the source.
+     */
+    RateLimitInfo resolve(Object source, RateLimitAdapter adapter) {
+        lookups.increment();
+
+        RateLimitInfo info = entries.get(source);
+        if (info != null) return info;
+
+        return entries.computeIfAbsent(source, s -> {
+            creations.increment();
+            return adapter.createInfo();
+        });
+    }
+
+    /**
+     * Restores a previously stored entry. Entries which already exist are kept.
+     *
+     * @param source The source of the index.
+     * @param info   The {@link RateLimitInfo} holding the restored state.
+     */
+    void restore(Object source, RateLimitInfo info) {
+        entries.putIfAbsent(source, info);
+    }
+
+    /**
+     * Removes all expired entries from this table. Large tables are swept in parallel.
+     */
+    void sweep() {
+        if (entries.isEmpty()) return;
+
+        entries.forEach(entries.size() >= 10_000 ? 1024 : Long.MAX_VALUE, (source, info) -> {
+            if (info.isExpired() && entries.remove(source, info)) evictions.increment();
+        });
+    }
+
+    /**
+     * Performs the given action for every entry of this table.
+     *
+     * @param action The action to perform for each source and its {@link RateLimitInfo}.
+     */
+    void forEach(BiConsumer<Object, RateLimitInfo> action) {
+        entries.forEach(action);
+    }
+
+    /**
+     * Gets a point in time view on the statistics of this table.
+     *
+     * @return The current {@link Statistics}.
+     */
+    public @NotNull Statistics getStatistics() {
+        return new Statistics(entries.size(), lookups.sum(), creations.sum(), evictions.sum());
+    }
+
+    /**
+     * The statistics of a {@link RateLimitTable}.
+     *
+     * @param size      The amount of entries currently stored.
+     * @param lookups   The amount of lookups since the table has been created.
+     * @param creations The amount of entries created since the table has been created.
+     * @param evictions The amount of expired entries removed since the table has been created.
+     */
+    public record Statistics(int size, long lookups, long creations, long evictions) {
+    }
+
+}
@@ -0,0 +1,596 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPolicy;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link RemoteRateLimitBackend} is a {@link RateLimitBackend} which shares its counters with other
+ * instances through a {@link RemoteRateLimitServer}. This makes the configured limits apply to the whole
+ * cluster instead of every single instance behind a load balancer.
+ * <p>
+ * To keep network round trips off the hot path, the backend does not ask the server on every access.
+ * Instead, it reserves a lease of up to {@link #getLeaseSize()} permits at once and serves the following
+ * accesses from that lease locally. Only when the lease is used up a new one is requested.
+ * </p>
+ * <p>
+ * The round trips are spread over a small pool of connections, see {@link #DEFAULT_CONNECTIONS}. A lease is
+ * refilled by a single request at a time, which is sent without holding the lease, so accesses of the same
+ * index wait for that refill instead of queuing up their own round trips, and accesses of other indices are
+ * not held up at all.
+ * </p>
+ *
+ * <h2>Accuracy / latency trade-off</h2>
+ * <p>
+ * The lease size is the knob between accuracy and latency. The server never grants more permits than the
+ * configured maximum, so the cluster as a whole is never over-admitted. However, every instance may hold up
+ * to {@code leaseSize - 1} reserved but unused permits per index, which means that up to
+ * {@code instances * (leaseSize - 1)} permits of a window can be unavailable to the instance the client
+ * currently talks to, causing early rejections. On the other hand, only every {@code leaseSize}-th access
+ * of an index needs a round trip. A lease size of {@code 1} is exact but pays a round trip per access.
+ * As a rule of thumb, the lease size should stay well below {@code max / instances}.
+ * </p>
+ * <p>
+ * A server which does not listen on the loopback interface requires a shared secret, which has to be passed
+ * to {@link #RemoteRateLimitBackend(InetSocketAddress, int, int, byte[])}. If the server rejects the secret,
+ * the connection is treated like an unreachable server.
+ * </p>
+ * <p>
+ * If the server can not be reached, the backend falls back to enforcing the limits locally. Lost connections
+ * are reestablished by a background thread after a short delay, so requests never wait for a reconnect.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.5.0
+ * @see RemoteRateLimitServer
+ * @see RateLimitBackend
+ * @since 1.0.0-SNAPSHOT
+ */
+public class RemoteRateLimitBackend implements RateLimitBackend {
+
+    /**
+     * The default amount of permits which are reserved per round trip.
+     */
+    public static final int DEFAULT_LEASE_SIZE = 10;
+
+    /**
+     * The default connect and read timeout in milliseconds.
+     */
+    public static final int DEFAULT_TIMEOUT = 250;
+
+    /**
+     * The default amount of connections to the {@link RemoteRateLimitServer}.
+     */
+    public static final int DEFAULT_CONNECTIONS = 4;
+
+    /**
+     * The delay in milliseconds before a failed connection is retried.
+     */
+    private static final long RETRY_DELAY = 5000;
+
+    private final ConcurrentHashMap<RateLimitIndex, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService connector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CNetSecurity-RateLimitClient-Connector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final InetSocketAddress address;
+    private final int leaseSize;
+    private final int timeout;
+    private final byte[] secret;
+    private final Connection[] connections;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs a new {@link RemoteRateLimitBackend} using the {@link #DEFAULT_LEASE_SIZE}.
+     *
+     * @param address The address of the {@link RemoteRateLimitServer}.
+     */
+    public RemoteRateLimitBackend(InetSocketAddress address) {
+        this(address, DEFAULT_LEASE_SIZE);
+    }
+
+    /**
+     * Constructs a new {@link RemoteRateLimitBackend} using the given lease size.
+     *
+     * @param address   The address of the {@link RemoteRateLimitServer}.
+     * @param leaseSize The amount of permits reserved per round trip, see the class documentation.
+     */
+    public RemoteRateLimitBackend(InetSocketAddress address, int leaseSize) {
+        this(address, leaseSize, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Constructs a new {@link RemoteRateLimitBackend} without a shared secret.
+     *
+     * @param address   The address of the {@link RemoteRateLimitServer}.
+     * @param leaseSize The amount of permits reserved per round trip, see the class documentation.
+     * @param timeout   The connect and read timeout in milliseconds.
+     * @throws IllegalStateException If the lease size is smaller than one.
+     */
+    public RemoteRateLimitBackend(InetSocketAddress address, int leaseSize, int timeout) {
+        this(address, leaseSize, timeout, null);
+    }
+
+    /**
+     * Constructs a new {@link RemoteRateLimitBackend} using {@link #DEFAULT_CONNECTIONS} connections.
+     *
+     * @param address   The address of the {@link RemoteRateLimitServer}.
+     * @param leaseSize The amount of permits reserved per round trip, see the class documentation.
+     * @param timeout   The connect and read timeout in milliseconds.
+     * @param secret    The shared secret of the server, or {@code null} if the server does not require one.
+     * @throws IllegalStateException If the lease size is smaller than one.
+     */
+    public RemoteRateLimitBackend(InetSocketAddress address, int leaseSize, int timeout, @Nullable byte[] secret) {
+        this(address, leaseSize, timeout, secret, DEFAULT_CONNECTIONS);
+    }
+
+    /**
+     * Constructs a new {@link RemoteRateLimitBackend}. The first connection is opened right away, the others
+     * are opened in the background.
+     *
+     * @param address     The address of the {@link RemoteRateLimitServer}.
+     * @param leaseSize   The amount of permits reserved per round trip, see the class documentation.
+     * @param timeout     The connect and read timeout in milliseconds.
+     * @param secret      The shared secret of the server, or {@code null} if the server does not require one.
+     * @param connections The amount of connections to the server.
+     * @throws IllegalStateException If the lease size or the amount of connections is smaller than one.
+     */
+    public RemoteRateLimitBackend(InetSocketAddress address, int leaseSize, int timeout, @Nullable byte[] secret, int connections) {
+        if (leaseSize < 1)
+            throw new IllegalStateException("The lease size must be at least 1! (Invalid lease size: " + leaseSize + ")");
+        if (connections < 1)
+            throw new IllegalStateException("At least one connection is required! (Invalid connections: " + connections + ")");
+
+        this.address = address;
+        this.leaseSize = leaseSize;
+        this.timeout = timeout;
+        this.secret = secret == null ? null : secret.clone();
+        this.connections = new Connection[connections];
+        for (int i = 0; i < connections; i++) this.connections[i] = new Connection();
+
+        reconnect(this.connections[0]);
+        for (int i = 1; i < connections; i++) schedule(this.connections[i], 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index   The {@link RateLimitIndex} to resolve.
+     * @param adapter The {@link RateLimitAdapter} which produced the index.
+     * @return The {@link RateLimitInfo} associated with the index.
+     */
+    @Override
+    public @NotNull RateLimitInfo resolve(@NotNull RateLimitIndex index, @NotNull RateLimitAdapter adapter) {
+        return leases.computeIfAbsent(index, i -> new Lease(adapter.createInfo(), keyOf(i))).info;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The access is served from the local lease if possible. Otherwise, the lease is refilled from the
+     * {@link RemoteRateLimitServer}, or the access waits for a refill which is already in flight.
+     * </p>
+     *
+     * @param index  The {@link RateLimitIndex} which is accessed.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight of the access.
+     * @param policy The {@link RateLimitPolicy} the access is checked against.
+     * @return {@code true} if the rate limit is exceeded, {@code false} otherwise.
+     */
+    @Override
+    public boolean access(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight, @NotNull RateLimitPolicy policy) {
+        Lease lease = leases.get(index);
+        if (lease == null || lease.info != info || lease.key == null) return info.access(weight, policy);
+        if (weight == 0) return isExhausted(lease, policy);
+
+        while (true) {
+            CompletableFuture<Void> pending;
+            CompletableFuture<Void> refill = null;
+            long requested = 0;
+
+            synchronized (lease) {
+                long now = SecurityClock.now();
+                if (lease.expiresAt <= now) lease.permits = 0;
+                else {
+                    if (lease.permits >= weight) {
+                        lease.permits -= weight;
+                        info.times().addAndGet(weight);
+                        return false;
+                    }
+
+                    // The server already told us that the window is used up
+                    if (lease.exhausted) return true;
+                }
+
+                pending = lease.refill;
+                if (pending == null) {
+                    refill = lease.refill = new CompletableFuture<>();
+                    requested = Math.max(leaseSize, weight - lease.permits);
+                }
+            }
+
+            // Another access is refilling the lease already, so its result is awaited and the lease checked again
+            if (refill == null) {
+                pending.join();
+                continue;
+            }
+
+            try {
+                long[] grant;
+                try {
+                    grant = request(RemoteRateLimitServer.OP_ACQUIRE, lease.key, policy, requested);
+                } catch (IOException e) {
+                    return info.access(weight, policy);
+                }
+
+                synchronized (lease) {
+                    long now = SecurityClock.now();
+                    if (lease.expiresAt <= now) lease.permits = 0;
+
+                    long available = lease.permits + grant[0];
+                    boolean exceeded = available < weight;
+
+                    lease.expiresAt = now + grant[2];
+                    lease.exhausted = grant[0] < requested;
+                    lease.permits = exceeded ? available : available - weight;
+                    lease.used = grant[1];
+
+                    info.update(grant[1] - lease.permits, lease.expiresAt);
+                    return exceeded;
+                }
+            } finally {
+                finish(lease, refill);
+            }
+        }
+    }
+
+    /**
+     * Completes the refill of a lease, which lets the waiting accesses check the lease again.
+     *
+     * @param lease  The {@link Lease} which has been refilled.
+     * @param refill The refill which has been in flight.
+     */
+    private void finish(Lease lease, CompletableFuture<Void> refill) {
+        synchronized (lease) {
+            if (lease.refill == refill) lease.refill = null;
+        }
+        refill.complete(null);
+    }
+
+    /**
+     * Checks whether the window of the given lease has been used up, for an access without any weight. As such
+     * an access does not need any permits, no lease is reserved for it. The usage the server reported on the
+     * last round trip is reused until the window expires or a weight is charged locally. Only then the server
+     * is asked for the current usage, so budgets charged by other instances are respected without a round trip
+     * per check.
+     *
+     * @param lease  The {@link Lease} of the index.
+     * @param policy The {@link RateLimitPolicy} the access is checked against.
+     * @return {@code true} if the window has been used up, {@code false} otherwise.
+     */
+    private boolean isExhausted(Lease lease, RateLimitPolicy policy) {
+        synchronized (lease) {
+            if (lease.expiresAt > SecurityClock.now()) {
+                if (lease.exhausted) return true;
+                if (lease.used >= 0) return lease.used >= policy.max();
+            }
+        }
+
+        long[] grant;
+        try {
+            grant = request(RemoteRateLimitServer.OP_ACQUIRE, lease.key, policy, 0);
+        } catch (IOException e) {
+            return lease.info.access(0, policy);
+        }
+
+        synchronized (lease) {
+            long now = SecurityClock.now();
+            if (lease.expiresAt <= now) lease.permits = 0;
+            lease.expiresAt = now + grant[2];
+            lease.exhausted = grant[1] >= policy.max();
+            lease.used = grant[1];
+
+            lease.info.update(grant[1] - lease.permits, lease.expiresAt);
+            return lease.exhausted;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The weight is taken from the local lease first, the remainder is charged on the
+     * {@link RemoteRateLimitServer} directly. Like on every other backend, the remainder is charged in full,
+     * even if this pushes the window beyond its maximum, so the window stays exhausted for all instances.
+     * </p>
+     *
+     * @param index  The {@link RateLimitIndex} which is charged.
+     * @param info   The {@link RateLimitInfo} associated with the index.
+     * @param weight The weight to charge.
+     */
+    @Override
+    public void charge(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long weight) {
+        Lease lease = leases.get(index);
+        if (lease == null || lease.info != info || lease.key == null) {
+            info.charge(weight);
+            return;
+        }
+
+        long remainder;
+        synchronized (lease) {
+            long fromLease = lease.expiresAt > SecurityClock.now() ? Math.min(lease.permits, weight) : 0;
+            lease.permits -= fromLease;
+            lease.used = -1;
+            info.times().addAndGet(fromLease);
+            remainder = weight - fromLease;
+        }
+        if (remainder == 0) return;
+
+        RateLimitPolicy policy = info.adapter().getPolicy();
+        long[] grant;
+        try {
+            grant = request(RemoteRateLimitServer.OP_CHARGE, lease.key, policy, remainder);
+        } catch (IOException e) {
+            info.charge(remainder);
+            return;
+        }
+
+        synchronized (lease) {
+            if (grant[1] >= policy.max()) lease.exhausted = true;
+            lease.used = grant[1];
+            info.update(grant[1] - lease.permits, info.getExpiresAt());
+        }
+    }
+
+    /**
+     * Sends a single operation to the {@link RemoteRateLimitServer} over one of the open connections, either
+     * requesting a new lease or charging permits unconditionally.
+     *
+     * @param op      The operation code, {@link RemoteRateLimitServer#OP_ACQUIRE} or {@link RemoteRateLimitServer#OP_CHARGE}.
+     * @param key     The UTF-8 encoded key of the window.
+     * @param policy  The {@link RateLimitPolicy} defining the maximum and the window length.
+     * @param permits The amount of permits to request or charge.
+     * @return An array containing the granted permits, the used permits of the window
+     * and the remaining lifetime of the window in milliseconds.
+     * @throws IOException If no connection is open or the server could not be reached.
+     */
+    private long[] request(byte op, byte[] key, RateLimitPolicy policy, long permits) throws IOException {
+        Connection connection = connection();
+
+        synchronized (connection) {
+            if (connection.socket == null)
+                throw new IOException("The rate limit server is unavailable!");
+
+            try {
+                DataOutputStream out = connection.out;
+                out.writeByte(op);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(policy.max());
+                out.writeLong(policy.expire());
+                out.writeLong(permits);
+                out.flush();
+
+                DataInputStream in = connection.in;
+                return new long[]{in.readLong(), in.readLong(), in.readLong()};
+            } catch (IOException e) {
+                CNetSecurity.getLogger().error(e, "Lost connection to the rate limit server, falling back to local rate limiting!");
+                disconnect(connection);
+                schedule(connection, RETRY_DELAY);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Picks the next open connection of the pool in a round robin fashion.
+     *
+     * @return An open {@link Connection}.
+     * @throws IOException If no connection is open.
+     */
+    private Connection connection() throws IOException {
+        for (int i = 0; i < connections.length; i++) {
+            Connection connection = connections[Math.floorMod(next.getAndIncrement(), connections.length)];
+            if (connection.socket != null) return connection;
+        }
+
+        throw new IOException("The rate limit server is unavailable!");
+    }
+
+    /**
+     * Schedules a connection to be opened by the background thread.
+     *
+     * @param connection The {@link Connection} to open.
+     * @param delay      The delay in milliseconds.
+     */
+    private void schedule(Connection connection, long delay) {
+        if (closed) return;
+
+        try {
+            connector.schedule(() -> reconnect(connection), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // The backend has been closed in the meantime
+        }
+    }
+
+    /**
+     * Opens a connection unless it is open already, and schedules another attempt if this fails.
+     *
+     * @param connection The {@link Connection} to open.
+     */
+    private void reconnect(Connection connection) {
+        synchronized (connection) {
+            if (closed || connection.socket != null) return;
+
+            try {
+                connect(connection);
+            } catch (IOException e) {
+                schedule(connection, RETRY_DELAY);
+            }
+        }
+    }
+
+    /**
+     * Opens a connection to the {@link RemoteRateLimitServer} and proves the knowledge of the shared secret.
+     * The caller must hold the monitor of the connection.
+     *
+     * @param connection The {@link Connection} to open.
+     * @throws IOException If the connection could not be established or the server rejected the secret.
+     */
+    private void connect(Connection connection) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(timeout);
+            socket.connect(address, timeout);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            byte[] nonce = new byte[RemoteRateLimitServer.HANDSHAKE_LENGTH];
+            in.readFully(nonce);
+            out.write(RemoteRateLimitServer.prove(secret, nonce));
+            out.flush();
+            if (!in.readBoolean()) throw new IOException("The rate limit server rejected the shared secret!");
+
+            connection.in = in;
+            connection.out = out;
+            connection.socket = socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes a connection to the {@link RemoteRateLimitServer}, ignoring any errors. The caller must hold
+     * the monitor of the connection.
+     *
+     * @param connection The {@link Connection} to close.
+     */
+    private void disconnect(Connection connection) {
+        try {
+            if (connection.socket != null) connection.socket.close();
+        } catch (IOException ignored) {
+        } finally {
+            connection.socket = null;
+            connection.in = null;
+            connection.out = null;
+        }
+    }
+
+    /**
+     * Builds the UTF-8 encoded key under which the window of a {@link RateLimitIndex} is stored on the server.
+     *
+     * @param index The {@link RateLimitIndex}.
+     * @return The key of the window, or {@code null} if it is longer than the server accepts.
+     */
+    private byte[] keyOf(RateLimitIndex index) {
+        String key = (index.isGlobal() ? "*" : index.adapter().getId()) + ":" + index.source();
+        byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+        return encoded.length > RemoteRateLimitServer.MAX_KEY_LENGTH ? null : encoded;
+    }
+
+    /**
+     * Removes all leases whose windows have expired.
+     */
+    @Override
+    public void sweep() {
+        final long now = SecurityClock.now();
+        for (RateLimitIndex index : leases.keySet())
+            leases.computeIfPresent(index, (i, lease) -> lease.isExpired(now) ? null : lease);
+    }
+
+    /**
+     * Closes all connections to the {@link RemoteRateLimitServer} and stops reconnecting.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        connector.shutdownNow();
+
+        for (Connection connection : connections)
+            synchronized (connection) {
+                disconnect(connection);
+            }
+    }
+
+    /**
+     * Gets the amount of permits which are reserved per round trip.
+     *
+     * @return The lease size.
+     */
+    public int getLeaseSize() {
+        return leaseSize;
+    }
+
+    /**
+     * Gets the amount of connections to the {@link RemoteRateLimitServer}.
+     *
+     * @return The size of the connection pool.
+     */
+    public int getConnections() {
+        return connections.length;
+    }
+
+    /**
+     * A single connection of the pool. The streams are guarded by the connection itself, which serializes
+     * the round trips over it.
+     */
+    private static final class Connection {
+
+        private volatile Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+
+    }
+
+    /**
+     * The locally held lease of an index. All fields except {@link #info} and {@link #key} are guarded by
+     * the lease itself, which is never held during a round trip. The {@link #used} permits are the usage of
+     * the window the server reported last, or {@code -1} if it is unknown or outdated.
+     */
+    private static final class Lease {
+
+        private final RateLimitInfo info;
+        private final byte[] key;
+
+        private long permits = 0;
+        private long expiresAt = 0;
+        private boolean exhausted = false;
+        private long used = -1;
+        private CompletableFuture<Void> refill;
+
+        private Lease(RateLimitInfo info, byte[] key) {
+            this.info = info;
+            this.key = key;
+        }
+
+        private synchronized boolean isExpired(long now) {
+            return expiresAt <= now && refill == null && info.isExpired();
+        }
+
+    }
+
+}
@@ -0,0 +1,402 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import org.jetbrains.annotations.Nullable;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link RemoteRateLimitServer} holds the authoritative rate limit windows for a group of instances
+ * which use the {@link RemoteRateLimitBackend}. It hands out leases of permits to its clients and makes
+ * sure that the sum of all leases never exceeds the configured maximum of a window.
+ * <p>
+ * The server is small enough to be started in-process, which allows the {@link RemoteRateLimitBackend} to
+ * be exercised without any external infrastructure:
+ * </p>
+ * <pre>{@code
+ * RemoteRateLimitServer server = new RemoteRateLimitServer(0);
+ * server.start();
+ *
+ * rater.setBackend(new RemoteRateLimitBackend(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort())));
+ * }</pre>
+ * <p>
+ * Every client can charge and drain any window, so the server only listens on the loopback interface by
+ * default. Listening on any other address requires a shared secret, which every client has to prove the
+ * knowledge of before it is served. The secret itself is never sent over the wire.
+ * </p>
+ *
+ * <p>The wire protocol is a simple request / response exchange over a persistent tcp connection:</p>
+ * <ul>
+ *     <li>Handshake: the server sends a random {@code byte[32] nonce}, the client answers with the
+ *     {@code byte[32] HmacSHA256(secret, nonce)}, or zeros if it has no secret, and the server confirms
+ *     with {@code byte accepted}.</li>
+ *     <li>Request: {@code byte op, int keyLength, byte[keyLength] key, long max, long window, long permits},
+ *     where the key is UTF-8 encoded and at most {@value #MAX_KEY_LENGTH} bytes long</li>
+ *     <li>Response: {@code long granted, long used, long remainingMillis}</li>
+ * </ul>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.3.0
+ * @see RemoteRateLimitBackend
+ * @since 1.0.0-SNAPSHOT
+ */
+public class RemoteRateLimitServer implements Closeable {
+
+    /**
+     * The operation code used to acquire a lease of permits.
+     */
+    static final byte OP_ACQUIRE = 1;
+
+    /**
+     * The operation code used to charge permits unconditionally, even beyond the maximum of a window.
+     */
+    static final byte OP_CHARGE = 2;
+
+    /**
+     * The length of the handshake nonce and proof in bytes.
+     */
+    static final int HANDSHAKE_LENGTH = 32;
+
+    /**
+     * The maximum length of a key in bytes.
+     */
+    static final int MAX_KEY_LENGTH = 1 << 18;
+
+    /**
+     * The minimum length of a shared secret in bytes.
+     */
+    public static final int MIN_SECRET_LENGTH = 16;
+
+    private static final int HANDSHAKE_TIMEOUT = 5000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final ServerSocket socket;
+    private final byte[] secret;
+
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "CNetSecurity-RateLimitServer-Worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CNetSecurity-RateLimitServer-Sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs a new {@link RemoteRateLimitServer} listening on the loopback interface on the given port.
+     *
+     * @param port The port to listen on, or {@code 0} to pick a free port.
+     * @throws IOException If the server socket could not be opened.
+     */
+    public RemoteRateLimitServer(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), null);
+    }
+
+    /**
+     * Constructs a new {@link RemoteRateLimitServer} listening on the given loopback address.
+     *
+     * @param address The address to listen on.
+     * @throws IOException           If the server socket could not be opened.
+     * @throws IllegalStateException If the address is not a loopback address.
+     */
+    public RemoteRateLimitServer(InetSocketAddress address) throws IOException {
+        this(address, null);
+    }
+
+    /**
+     * Constructs a new {@link RemoteRateLimitServer} listening on the given address. Only clients which know
+     * the shared secret are served.
+     *
+     * @param address The address to listen on.
+     * @param secret  The shared secret of at least {@link #MIN_SECRET_LENGTH} bytes, may only be {@code null}
+     *                if the address is a loopback address.
+     * @throws IOException           If the server socket could not be opened.
+     * @throws IllegalStateException If no secret is given for a non loopback address, or the secret is too short.
+     */
+    public RemoteRateLimitServer(InetSocketAddress address, @Nullable byte[] secret) throws IOException {
+        if (secret == null && (address.getAddress() == null || !address.getAddress().isLoopbackAddress()))
+            throw new IllegalStateException("A rate limit server listening on a non loopback address requires a shared secret! (Invalid address: " + address + ")");
+        if (secret != null && secret.length < MIN_SECRET_LENGTH)
+            throw new IllegalStateException("The shared secret must be at least " + MIN_SECRET_LENGTH + " bytes long! (Invalid length: " + secret.length + ")");
+
+        this.secret = secret == null ? null : secret.clone();
+        this.socket = new ServerSocket();
+        this.socket.bind(address);
+    }
+
+    /**
+     * Starts accepting connections and sweeping expired windows in the background.
+     */
+    public void start() {
+        workers.execute(this::accept);
+        sweeper.scheduleAtFixedRate(this::sweep, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Accepts new client connections until the server is closed.
+     */
+    private void accept() {
+        while (!closed)
+            try {
+                Socket client = socket.accept();
+                client.setTcpNoDelay(true);
+                clients.add(client);
+
+                try {
+                    workers.execute(() -> serve(client));
+                } catch (RejectedExecutionException e) {
+                    // The server has been closed while the client connected
+                    clients.remove(client);
+                    client.close();
+                    return;
+                }
+            } catch (IOException e) {
+                if (closed) return;
+            }
+    }
+
+    /**
+     * Serves the requests of a single client connection until it is closed.
+     *
+     * @param client The {@link Socket} of the client.
+     */
+    private void serve(Socket client) {
+        try (client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()))) {
+            if (!handshake(client, in, out)) return;
+
+            while (!closed) {
+                byte op = in.readByte();
+                long[] result = switch (op) {
+                    case OP_ACQUIRE -> acquire(readKey(in), in.readLong(), in.readLong(), in.readLong());
+                    case OP_CHARGE -> charge(readKey(in), in.readLong(), in.readLong(), in.readLong());
+                    default -> throw new IOException("Unknown operation " + op + "!");
+                };
+                out.writeLong(result[0]);
+                out.writeLong(result[1]);
+                out.writeLong(result[2]);
+                out.flush();
+            }
+        } catch (EOFException | SocketException ignored) {
+            // The client has disconnected
+        } catch (IOException ignored) {
+            // Drop the connection, the client will reconnect
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Reads the length prefixed, UTF-8 encoded key of a request.
+     *
+     * @param in The input stream of the client.
+     * @return The key of the window.
+     * @throws IOException If the key could not be read or is too long.
+     */
+    private static String readKey(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_KEY_LENGTH)
+            throw new IOException("Invalid key length " + length + "!");
+
+        byte[] key = new byte[length];
+        in.readFully(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lets the client prove the knowledge of the shared secret. Without a secret, every client is accepted.
+     *
+     * @param client The {@link Socket} of the client.
+     * @param in     The input stream of the client.
+     * @param out    The output stream of the client.
+     * @return {@code true} if the client has been accepted, {@code false} otherwise.
+     * @throws IOException If the handshake could not be completed.
+     */
+    private boolean handshake(Socket client, DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] nonce = new byte[HANDSHAKE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        out.write(nonce);
+        out.flush();
+
+        byte[] proof = new byte[HANDSHAKE_LENGTH];
+        client.setSoTimeout(HANDSHAKE_TIMEOUT);
+        in.readFully(proof);
+        client.setSoTimeout(0);
+
+        boolean accepted = secret == null || MessageDigest.isEqual(proof, prove(secret, nonce));
+        out.writeBoolean(accepted);
+        out.flush();
+        return accepted;
+    }
+
+    /**
+     * Computes the proof a client sends in response to the nonce of the handshake.
+     *
+     * @param secret The shared secret, or {@code null} if there is none.
+     * @param nonce  The nonce sent by the server.
+     * @return The proof of {@link #HANDSHAKE_LENGTH} bytes.
+     */
+    static byte[] prove(@Nullable byte[] secret, byte[] nonce) {
+        if (secret == null) return new byte[HANDSHAKE_LENGTH];
+
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available!", e);
+        }
+    }
+
+    /**
+     * Acquires up to {@code permits} permits from the window identified by the key.
+     * If the window does not exist yet or is expired, a new window is started.
+     *
+     * @param key     The key of the window.
+     * @param max     The maximum number of permits per window.
+     * @param window  The length of a window in milliseconds.
+     * @param permits The number of permits which should be leased.
+     * @return An array containing the granted permits, the used permits of the window
+     * and the remaining lifetime of the window in milliseconds.
+     */
+    public long[] acquire(String key, long max, long window, long permits) {
+        final long now = SecurityClock.now();
+        final long[] result = new long[3];
+
+        windows.compute(key, (k, current) -> {
+            Window target = current;
+            if (target == null || target.expiresAt <= now) target = new Window(now + window);
+
+            long granted = Math.max(0, Math.min(permits, max - target.used));
+            target.used += granted;
+
+            result[0] = granted;
+            result[1] = target.used;
+            result[2] = target.expiresAt - now;
+            return target;
+        });
+
+        return result;
+    }
+
+    /**
+     * Charges the given amount of permits to the window identified by the key, even if this exceeds the
+     * maximum of the window. This mirrors {@link RateLimitBackend#charge} for costs which are only known
+     * after a request has been processed. If the window does not exist yet or is expired, a new window is started.
+     *
+     * @param key     The key of the window.
+     * @param max     The maximum number of permits per window, only used to keep the signature in line with {@link #acquire}.
+     * @param window  The length of a window in milliseconds.
+     * @param permits The number of permits which should be charged.
+     * @return An array containing the charged permits, the used permits of the window
+     * and the remaining lifetime of the window in milliseconds.
+     */
+    public long[] charge(String key, long max, long window, long permits) {
+        final long now = SecurityClock.now();
+        final long[] result = new long[3];
+
+        windows.compute(key, (k, current) -> {
+            Window target = current;
+            if (target == null || target.expiresAt <= now) target = new Window(now + window);
+
+            target.used += permits;
+
+            result[0] = permits;
+            result[1] = target.used;
+            result[2] = target.expiresAt - now;
+            return target;
+        });
+
+        return result;
+    }
+
+    /**
+     * Removes all expired windows.
+     */
+    public void sweep() {
+        final long now = SecurityClock.now();
+        for (String key : windows.keySet())
+            windows.computeIfPresent(key, (k, window) -> window.expiresAt <= now ? null : window);
+    }
+
+    /**
+     * Gets the port this server is listening on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Stops the server and closes all connections. The background threads are stopped even if a
+     * socket could not be closed, and no connection is accepted anymore once this method returns.
+     *
+     * @throws IOException If the server socket could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            socket.close();
+        } finally {
+            for (Socket client : clients)
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                }
+
+            sweeper.shutdownNow();
+            workers.shutdownNow();
+
+            // A blocked accept defers closing the listening socket until the acceptor has returned
+            try {
+                workers.awaitTermination(HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A single rate limit window. Instances are only mutated while holding the map bin
+     * lock of {@link ConcurrentHashMap#compute(Object, java.util.function.BiFunction)}.
+     */
+    private static final class Window {
+
+        private final long expiresAt;
+        private long used;
+
+        private Window(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package de.craftsblock.cnet.modules.security.ratelimit.builtin;
+
+import de.craftsblock.cnet.modules.security.AddonEntrypoint;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPhase;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The {@link AuthFailureRateLimitAdapter} is a builtin implementation of {@link RateLimitAdapter}.
+ * It limits the amount of failed authentications per client IP address.
+ * <p>
+ * The adapter is checked {@link RateLimitPhase#PRE_AUTH before the authentication}, but only failed
+ * authentications are charged to its budget. Once a client has exceeded its budget, all of its requests
+ * are rejected until the window resets, without verifying any of their credentials.
+ * </p>
+ * <p>
+ * Failed authentications of websocket handshakes are charged to the same budget through
+ * {@link RateLimitManager#chargeAuthFailure(String)}, and exhausted clients cannot open websocket connections.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see RateLimitAdapter
+ * @see RateLimitIndex
+ * @since 1.0.0-SNAPSHOT
+ */
+public class AuthFailureRateLimitAdapter extends RateLimitAdapter {
+
+    /**
+     * Constructs a new {@code AuthFailureRateLimitAdapter} with the default budget of 10 failed
+     * authentications per five minutes.
+     *
+     * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
+     */
+    public AuthFailureRateLimitAdapter(AddonEntrypoint parent) {
+        super("AUTHFAILURE", 10, 1000 * 60 * 5, false);
+    }
+
+    /**
+     * Adapts the given {@link Request} into a {@link RateLimitIndex} based on the client's IP address.
+     *
+     * @param request The {@link Request} to adapt.
+     * @param storage The {@link SessionStorage} associated with the request.
+     * @return A {@link RateLimitIndex} representing the client's IP address, or {@code null} if adaptation fails.
+     */
+    @Override
+    public @Nullable RateLimitIndex adapt(Request request, SessionStorage storage) {
+        return adapt(request.getIp());
+    }
+
+    /**
+     * Adapts the given client IP address into a {@link RateLimitIndex}. This is used for clients which do not
+     * send a {@link Request}, like websocket handshakes.
+     *
+     * @param ip The IP address of the client.
+     * @return A {@link RateLimitIndex} representing the client's IP address, or {@code null} if the address is unknown.
+     */
+    public @Nullable RateLimitIndex adapt(@Nullable String ip) {
+        return ip == null ? null : RateLimitIndex.of(this, ip);
+    }
+
+    /**
+     * Admitting a request does not consume any budget, it only checks whether the budget is exhausted. Once the
+     * maximum amount of failed authentications has been charged, the next request is rejected before its
+     * credentials are verified.
+     *
+     * @param request The incoming HTTP request.
+     * @param storage The session storage associated with the request.
+     * @return Always {@code 0}.
+     */
+    @Override
+    public long cost(Request request, SessionStorage storage) {
+        return 0;
+    }
+
+    /**
+     * Every failed authentication consumes one unit of the budget.
+     *
+     * @param request The request whose authentication failed.
+     * @param storage The session storage associated with the request.
+     * @return Always {@code 1}.
+     */
+    @Override
+    public long authFailureCost(Request request, SessionStorage storage) {
+        return 1;
+    }
+
+    /**
+     * Gets the phase in which this adapter is checked.
+     *
+     * @return Always {@link RateLimitPhase#PRE_AUTH}.
+     */
+    @Override
+    public RateLimitPhase getPhase() {
+        return RateLimitPhase.PRE_AUTH;
+    }
+
+    /**
+     * Gets the amount of distinct client addresses this adapter is expected to track at the same time.
+     *
+     * @return The expected amount of distinct sources.
+     */
+    @Override
+    public int getExpectedSources() {
+        return 4096;
+    }
+
+}
@@ -0,0 +1,63 @@
+package de.craftsblock.cnet.modules.security.ratelimit.builtin;
+
+import de.craftsblock.cnet.modules.security.AddonEntrypoint;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.concurrency.ConcurrencyLimit;
+import de.craftsblock.cnet.modules.security.ratelimit.concurrency.ConcurrencyLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.concurrency.GradientLimit;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * The {@link GlobalConcurrencyLimitAdapter} is a builtin implementation of {@link ConcurrencyLimitAdapter}.
+ * It limits the amount of concurrent in flight requests of all clients together.
+ * <p>
+ * This adapter is not registered by default.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see ConcurrencyLimitAdapter
+ * @since 1.0.0-SNAPSHOT
+ */
+public class GlobalConcurrencyLimitAdapter extends ConcurrencyLimitAdapter {
+
+    private final RateLimitIndex index = RateLimitIndex.of(this, "global");
+
+    /**
+     * Constructs a new {@link GlobalConcurrencyLimitAdapter} using a {@link GradientLimit} which starts
+     * at 20 concurrent requests and may move between 1 and 1000.
+     *
+     * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
+     */
+    public GlobalConcurrencyLimitAdapter(AddonEntrypoint parent) {
+        this(parent, () -> new GradientLimit(20, 1, 1000));
+    }
+
+    /**
+     * Constructs a new {@link GlobalConcurrencyLimitAdapter} using the given {@link ConcurrencyLimit}.
+     *
+     * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
+     * @param limit  A factory creating the {@link ConcurrencyLimit}.
+     */
+    public GlobalConcurrencyLimitAdapter(AddonEntrypoint parent, Supplier<ConcurrencyLimit> limit) {
+        super("CONCURRENCY", limit);
+    }
+
+    /**
+     * Adapts every {@link Request} to the same {@link RateLimitIndex}.
+     *
+     * @param request The {@link Request} to adapt.
+     * @param storage The {@link SessionStorage} associated with the request.
+     * @return The shared {@link RateLimitIndex}.
+     */
+    @Override
+    public @Nullable RateLimitIndex adapt(Request request, SessionStorage storage) {
+        return index;
+    }
+
+}
@@ -3,6 +3,7 @@ package de.craftsblock.cnet.modules.security.ratelimit.builtin;
 import de.craftsblock.cnet.modules.security.AddonEntrypoint;
 import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
 import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPhase;
 import de.craftsblock.craftsnet.api.http.Request;
 import de.craftsblock.craftsnet.api.utils.SessionStorage;
 import org.jetbrains.annotations.Nullable;
@@ -16,7 +17,7 @@ import org.jetbrains.annotations.Nullable;
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.1.0
  * @see RateLimitAdapter
  * @see RateLimitIndex
  * @since 1.0.0-SNAPSHOT
@@ -24,12 +25,50 @@ import org.jetbrains.annotations.Nullable;
 public class IPRateLimitAdapter extends RateLimitAdapter {
 
     /**
-     * Constructs a new {@link IPRateLimitAdapter} with the default rate limit of one request per period.
+     * The default maximum of requests per client address within {@link #DEFAULT_EXPIRE}.
+     * It can be raised through the {@code ratelimits} section of the configuration file.
+     */
+    public static final long DEFAULT_MAX = 1;
+
+    /**
+     * The default period of the rate limit in milliseconds.
+     */
+    public static final long DEFAULT_EXPIRE = 1000 * 60;
+
+    /**
+     * Constructs a new {@link IPRateLimitAdapter} with the default rate limit of {@link #DEFAULT_MAX} requests
+     * per {@link #DEFAULT_EXPIRE}.
      *
      * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
      */
     public IPRateLimitAdapter(AddonEntrypoint parent) {
-        super("IP", 1);
+        this(parent, DEFAULT_MAX, DEFAULT_EXPIRE);
+    }
+
+    /**
+     * Constructs a new {@link IPRateLimitAdapter} with the given default rate limit.
+     *
+     * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
+     * @param max    The maximum number of requests allowed within the expiration period.
+     * @param expire The expiration time in milliseconds.
+     * @throws IllegalStateException If the expiration time is invalid.
+     */
+    public IPRateLimitAdapter(AddonEntrypoint parent, long max, long expire) {
+        this("IP", max, expire, true);
+    }
+
+    /**
+     * Constructs a new {@link IPRateLimitAdapter} with the given id, which allows to limit the client
+     * addresses by several adapters, e.g. ones defined in the configuration file.
+     *
+     * @param id      The ID of the adapter (must contain only alphabetic characters).
+     * @param max     The maximum number of requests allowed within the expiration period.
+     * @param expire  The expiration time in milliseconds.
+     * @param headers Whether the rate limiting headers should be included in the response.
+     * @throws IllegalStateException If the ID or the expiration time is invalid.
+     */
+    public IPRateLimitAdapter(String id, long max, long expire, boolean headers) {
+        super(id, max, expire, headers);
     }
 
     /**
@@ -44,4 +83,25 @@ public class IPRateLimitAdapter extends RateLimitAdapter {
         return RateLimitIndex.of(this, request.getIp());
     }
 
+    /**
+     * Gets the phase in which this adapter is checked. The client address is known before the authentication,
+     * so floods are rejected before any credentials are verified.
+     *
+     * @return Always {@link RateLimitPhase#PRE_AUTH}.
+     */
+    @Override
+    public RateLimitPhase getPhase() {
+        return RateLimitPhase.PRE_AUTH;
+    }
+
+    /**
+     * Gets the amount of distinct client addresses this adapter is expected to track at the same time.
+     *
+     * @return The expected amount of distinct sources.
+     */
+    @Override
+    public int getExpectedSources() {
+        return 4096;
+    }
+
 }
@@ -0,0 +1,67 @@
+package de.craftsblock.cnet.modules.security.ratelimit.builtin;
+
+import de.craftsblock.cnet.modules.security.AddonEntrypoint;
+import de.craftsblock.cnet.modules.security.SecurityContext;
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.quota.QuotaPeriod;
+import de.craftsblock.cnet.modules.security.ratelimit.quota.QuotaRateLimitAdapter;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+/**
+ * The {@link TokenQuotaRateLimitAdapter} is a builtin implementation of {@link QuotaRateLimitAdapter}.
+ * It enforces a long running quota, like a monthly amount of requests, for every authentication token.
+ * <p>
+ * The consumption is kept in the file {@code quotas/tokenquota.journal} within the data folder of the addon.
+ * This adapter is not registered by default. Once it is created, its journal has to be
+ * {@link #load() loaded} and the periodic flushing {@link #start(long, java.util.concurrent.TimeUnit) started}.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see QuotaRateLimitAdapter
+ * @see Token
+ * @since 1.0.0-SNAPSHOT
+ */
+public class TokenQuotaRateLimitAdapter extends QuotaRateLimitAdapter {
+
+    /**
+     * Constructs a new {@code TokenQuotaRateLimitAdapter} with a monthly quota of 100000 requests per token.
+     *
+     * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
+     */
+    public TokenQuotaRateLimitAdapter(AddonEntrypoint parent) {
+        this(parent, 100000, QuotaPeriod.MONTHLY);
+    }
+
+    /**
+     * Constructs a new {@code TokenQuotaRateLimitAdapter} with the given quota per token.
+     *
+     * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
+     * @param max    The maximum amount of requests per token and period.
+     * @param period The {@link QuotaPeriod} of the quota.
+     */
+    public TokenQuotaRateLimitAdapter(AddonEntrypoint parent, long max, QuotaPeriod period) {
+        super("TOKENQUOTA", max, period, new File(parent.getDataFolder(), "quotas/tokenquota.journal"));
+    }
+
+    /**
+     * Adapts the given {@link Request} into a {@link RateLimitIndex} based on the authenticated token of the {@link SecurityContext}.
+     *
+     * @param request The {@link Request} to adapt.
+     * @param storage The {@link SessionStorage} associated with the request, expected to contain the {@link SecurityContext}.
+     * @return A {@link RateLimitIndex} representing the token id, or {@code null} if no token is found.
+     */
+    @Override
+    public @Nullable RateLimitIndex adapt(Request request, SessionStorage storage) {
+        SecurityContext context = SecurityContext.find(storage);
+        Token token = context == null ? null : context.getToken();
+        return token == null ? null : RateLimitIndex.of(this, token.id());
+    }
+
+}
@@ -1,6 +1,7 @@
 package de.craftsblock.cnet.modules.security.ratelimit.builtin;
 
 import de.craftsblock.cnet.modules.security.AddonEntrypoint;
+import de.craftsblock.cnet.modules.security.SecurityContext;
 import de.craftsblock.cnet.modules.security.auth.token.Token;
 import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
 import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
@@ -10,14 +11,14 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * The {@link TokenRateLimitAdapter} is a builtin implementation of {@link RateLimitAdapter}.
- * It enforces rate limiting based on the authentication token stored in the {@link SessionStorage}.
+ * It enforces rate limiting based on the authenticated token of the {@link SecurityContext}.
  * <p>
- * Each unique token is tracked as a {@link RateLimitIndex}, and rate limits are applied individually.
+ * Each unique token is tracked as a {@link RateLimitIndex} by its id, and rate limits are applied individually.
  * </p>
  *
  * @author Philipp Maywald
  * @author CraftsBlock
- * @version 1.0.0
+ * @version 1.2.0
  * @see RateLimitAdapter
  * @see RateLimitIndex
  * @see Token
@@ -26,28 +27,67 @@ import org.jetbrains.annotations.Nullable;
 public class TokenRateLimitAdapter extends RateLimitAdapter {
 
     /**
-     * Constructs a new {@code TokenRateLimitAdapter} with the default rate limit of 60 requests per period.
+     * The default maximum of requests per token within {@link #DEFAULT_EXPIRE}.
+     * It can be raised through the {@code ratelimits} section of the configuration file.
+     */
+    public static final long DEFAULT_MAX = 60;
+
+    /**
+     * The default period of the rate limit in milliseconds.
+     */
+    public static final long DEFAULT_EXPIRE = 1000 * 60;
+
+    /**
+     * Constructs a new {@code TokenRateLimitAdapter} with the default rate limit of {@link #DEFAULT_MAX}
+     * requests per {@link #DEFAULT_EXPIRE}.
      *
      * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
      */
     public TokenRateLimitAdapter(AddonEntrypoint parent) {
-        super("TOKEN", 60);
+        this(parent, DEFAULT_MAX, DEFAULT_EXPIRE);
+    }
+
+    /**
+     * Constructs a new {@code TokenRateLimitAdapter} with the given default rate limit.
+     *
+     * @param parent The {@link AddonEntrypoint} representing the parent addon using this adapter.
+     * @param max    The maximum number of requests allowed within the expiration period.
+     * @param expire The expiration time in milliseconds.
+     * @throws IllegalStateException If the expiration time is invalid.
+     */
+    public TokenRateLimitAdapter(AddonEntrypoint parent, long max, long expire) {
+        this("TOKEN", max, expire, true);
+    }
+
+    /**
+     * Constructs a new {@code TokenRateLimitAdapter} with the given id, which allows to limit the tokens
+     * by several adapters, e.g. ones defined in the configuration file.
+     *
+     * @param id      The ID of the adapter (must contain only alphabetic characters).
+     * @param max     The maximum number of requests allowed within the expiration period.
+     * @param expire  The expiration time in milliseconds.
+     * @param headers Whether the rate limiting headers should be included in the response.
+     * @throws IllegalStateException If the ID or the expiration time is invalid.
+     */
+    public TokenRateLimitAdapter(String id, long max, long expire, boolean headers) {
+        super(id, max, expire, headers);
     }
 
     /**
-     * Adapts the given {@link Request} into a {@link RateLimitIndex} based on the authentication token stored in the {@link SessionStorage}.
+     * Adapts the given {@link Request} into a {@link RateLimitIndex} based on the authenticated token of the {@link SecurityContext}.
      * <p>
      * If the session storage does not contain a valid authentication token, the method returns {@code null}.
      * </p>
      *
      * @param request The {@link Request} to adapt.
-     * @param storage The {@link SessionStorage} associated with the request, expected to contain the authentication token.
-     * @return A {@link RateLimitIndex} representing the token, or {@code null} if no token is found.
+     * @param storage The {@link SessionStorage} associated with the request, expected to contain the {@link SecurityContext}.
+     * @return A {@link RateLimitIndex} representing the token id, or {@code null} if no token is found.
      */
     @Override
     public @Nullable RateLimitIndex adapt(Request request, SessionStorage storage) {
-        if (!storage.containsKey("auth.token")) return null;
-        return RateLimitIndex.of(this, storage.getAsType("auth.token", Token.class));
+        SecurityContext context = SecurityContext.find(storage);
+        Token token = context == null ? null : context.getToken();
+        return token == null ? null : RateLimitIndex.of(this, token.id());
     }
 
 }
@@ -0,0 +1,205 @@
+package de.craftsblock.cnet.modules.security.ratelimit.composite;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitHeaders;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPolicy;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitRegistry;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import de.craftsblock.craftsnet.api.http.Exchange;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link CompositeRateLimitAdapter} is a {@link RateLimitAdapter} which enforces several windows at once,
+ * e.g. 10 requests per second and 1000 requests per hour for the same token. Compared to registering one adapter
+ * per window, a request is adapted only once and all windows of a source share a single {@link RateLimitWindows}
+ * state, which is checked and charged in one pass.
+ * <p>
+ * A request is only admitted if it fits into every window, and is then charged to all of them. A rejected
+ * request is charged to none of them. The windows can be replaced at runtime using
+ * {@link #setWindows(List)}, the counters are kept by the length of their window.
+ * </p>
+ * <p>
+ * The state is kept by the adapter itself and checked by the {@link RateLimitManager} directly, so it is
+ * neither shared through a backend nor snapshotted. {@link #chargesBack() Charge backs} are not supported.
+ * The maximum and expiration of this adapter are the ones of its first window.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.2.0
+ * @see RateLimitWindow
+ * @see RateLimitWindows
+ * @since 1.0.0-SNAPSHOT
+ */
+public abstract class CompositeRateLimitAdapter extends RateLimitAdapter {
+
+    private final ConcurrentHashMap<Object, RateLimitWindows> states = new ConcurrentHashMap<>();
+    private final List<RateLimitWindow> defaultWindows;
+    private volatile RateLimitWindow[] windows;
+
+    /**
+     * Constructs a new {@link CompositeRateLimitAdapter} which includes its headers in the response.
+     *
+     * @param id      The ID of the adapter (must contain only alphabetic characters).
+     * @param windows The {@link RateLimitWindow}s to enforce, at least one.
+     * @throws IllegalStateException If the ID is invalid or no window is given.
+     */
+    public CompositeRateLimitAdapter(String id, RateLimitWindow... windows) {
+        this(id, true, windows);
+    }
+
+    /**
+     * Constructs a new {@link CompositeRateLimitAdapter}.
+     *
+     * @param id      The ID of the adapter (must contain only alphabetic characters).
+     * @param headers Whether the rate limiting headers should be included in the response.
+     * @param windows The {@link RateLimitWindow}s to enforce, at least one.
+     * @throws IllegalStateException If the ID is invalid or no window is given.
+     */
+    public CompositeRateLimitAdapter(String id, boolean headers, RateLimitWindow... windows) {
+        super(id, first(windows).max(), first(windows).expire(), headers);
+        this.defaultWindows = List.of(windows);
+        this.windows = windows.clone();
+    }
+
+    /**
+     * Gets the {@link RateLimitWindows} of an index, creating them if necessary. If the windows of this
+     * adapter have been replaced, the counters are migrated to the new windows.
+     *
+     * @param index The {@link RateLimitIndex} produced by {@link #adapt(Request, SessionStorage)}.
+     * @return The {@link RateLimitWindows} of the index.
+     */
+    public @NotNull RateLimitWindows resolve(@NotNull RateLimitIndex index) {
+        final RateLimitWindow[] windows = current();
+        RateLimitWindows state = states.computeIfAbsent(index.source(), source -> new RateLimitWindows(windows));
+        if (state.counts(windows)) return state;
+
+        // The windows have been replaced since the state has been created
+        return states.compute(index.source(), (source, current) ->
+                current == null ? new RateLimitWindows(windows) : current.counts(windows) ? current : current.migrate(windows));
+    }
+
+    /**
+     * Appends the state of every window to the combined {@code RateLimit} headers.
+     *
+     * @param headers The {@link RateLimitHeaders} of the current request.
+     * @param state   The {@link RateLimitWindows} of the current request.
+     * @param now     The current time in milliseconds.
+     */
+    public void appendTo(@NotNull RateLimitHeaders headers, @NotNull RateLimitWindows state, long now) {
+        state.appendTo(this, headers, now);
+    }
+
+    /**
+     * Appends the state of the window which is closest to being exhausted as {@code X-RateLimit-*} headers.
+     *
+     * @param exchange The {@link Exchange} representing the current HTTP request and response.
+     * @param state    The {@link RateLimitWindows} of the current request.
+     * @param now      The current time in milliseconds.
+     */
+    public void appendToResponse(@NotNull Exchange exchange, @NotNull RateLimitWindows state, long now) {
+        synchronized (state) {
+            int window = state.binding();
+            appendToResponse(exchange, state.getWindow(window).max(), state.getTimes(window), state.getExpiresAt(window), now);
+        }
+    }
+
+    /**
+     * Removes the state of all sources whose windows have all expired.
+     */
+    public void sweep() {
+        final long now = SecurityClock.now();
+        for (Object source : states.keySet())
+            states.computeIfPresent(source, (s, state) -> state.isExpired(now) ? null : state);
+    }
+
+    /**
+     * Composite adapters are checked by the {@link RateLimitManager} directly and do not support charge backs.
+     *
+     * @return Always {@code false}.
+     */
+    @Override
+    public final boolean chargesBack() {
+        return false;
+    }
+
+    /**
+     * Replaces the own windows of this adapter, which apply unless windows are configured in the
+     * {@link RateLimitRegistry}. The counters of every source are kept by the length of their
+     * window, and the maximum and expiration of this adapter follow the first window.
+     *
+     * @param windows The new {@link RateLimitWindow}s, at least one.
+     * @throws IllegalStateException If no window is given.
+     */
+    public void setWindows(@NotNull List<RateLimitWindow> windows) {
+        RateLimitWindow[] replaced = windows.toArray(RateLimitWindow[]::new);
+        RateLimitWindow first = first(replaced);
+
+        this.windows = replaced;
+        super.setPolicy(new RateLimitPolicy(first.max(), first.expire(), shouldBeInResponse()));
+    }
+
+    /**
+     * Replaces the limits of this adapter. Only the header flag is taken over, as the limits are given by
+     * the windows of this adapter.
+     *
+     * @param policy The new {@link RateLimitPolicy}.
+     * @see #setWindows(List)
+     */
+    @Override
+    public void setPolicy(@NotNull RateLimitPolicy policy) {
+        RateLimitWindow first = this.windows[0];
+        super.setPolicy(new RateLimitPolicy(first.max(), first.expire(), policy.headers()));
+    }
+
+    /**
+     * Gets the current windows of this adapter, which are the ones configured in the {@link RateLimitRegistry}
+     * of its {@link RateLimitManager}, or its own windows if they are not configured there.
+     *
+     * @return An unmodifiable list of the current {@link RateLimitWindow}s.
+     */
+    public @NotNull List<RateLimitWindow> getWindows() {
+        return List.of(current());
+    }
+
+    /**
+     * Gets the array of the current windows of this adapter, which stays the same until the windows change.
+     *
+     * @return The current {@link RateLimitWindow}s.
+     */
+    private RateLimitWindow[] current() {
+        final RateLimitRegistry registry = getRegistry();
+        final RateLimitWindow[] configured = registry == null ? null : registry.getWindows(this);
+        return configured != null ? configured : windows;
+    }
+
+    /**
+     * Gets the windows this adapter has been constructed with.
+     *
+     * @return An unmodifiable list of the default {@link RateLimitWindow}s.
+     */
+    public @NotNull List<RateLimitWindow> getDefaultWindows() {
+        return defaultWindows;
+    }
+
+    /**
+     * Gets the first window of the given windows.
+     *
+     * @param windows The windows.
+     * @return The first window.
+     * @throws IllegalStateException If no window is given.
+     */
+    private static RateLimitWindow first(RateLimitWindow[] windows) {
+        if (windows == null || windows.length == 0)
+            throw new IllegalStateException("A composite rate limit adapter requires at least one window!");
+        return windows[0];
+    }
+
+}
@@ -0,0 +1,57 @@
+package de.craftsblock.cnet.modules.security.ratelimit.composite;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.craftscore.json.Json;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@link RateLimitWindow} is a single window of a {@link CompositeRateLimitAdapter}, e.g. 10 requests per
+ * second or 1000 requests per hour.
+ *
+ * @param max    The maximum number of requests allowed within the window.
+ * @param expire The length of the window in milliseconds.
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see CompositeRateLimitAdapter
+ * @since 1.0.0-SNAPSHOT
+ */
+public record RateLimitWindow(long max, long expire) {
+
+    /**
+     * Validates the values of the {@link RateLimitWindow}.
+     *
+     * @throws IllegalStateException If the maximum is negative or the length is out of range.
+     */
+    public RateLimitWindow {
+        if (max < 0)
+            throw new IllegalStateException("The maximum of a rate limit window must not be negative! (Invalid max: " + max + ")");
+        if (expire <= 0 || expire > RateLimitAdapter.MAX_EXPIRE_MILLIS)
+            throw new IllegalStateException("The length of a rate limit window must be between 1ms and 31 days! (Invalid window: " + expire + "ms)");
+    }
+
+    /**
+     * Creates a new {@link RateLimitWindow} from a {@link Json} object.
+     *
+     * @param json The {@link Json} object containing the keys {@code max} and {@code window}.
+     * @return The new {@link RateLimitWindow}.
+     * @throws IllegalStateException If a key is missing or a value is out of range.
+     */
+    public static @NotNull RateLimitWindow of(@NotNull Json json) {
+        if (!json.contains("max") || !json.contains("window"))
+            throw new IllegalStateException("A rate limit window requires a max and a window!");
+        return new RateLimitWindow(json.getLong("max"), json.getLong("window"));
+    }
+
+    /**
+     * Serializes the {@link RateLimitWindow} into a {@link Json} object.
+     *
+     * @return The serialized window.
+     */
+    public @NotNull Json serialize() {
+        return Json.empty()
+                .set("max", max)
+                .set("window", expire);
+    }
+
+}
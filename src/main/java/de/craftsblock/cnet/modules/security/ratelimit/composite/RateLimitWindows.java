@@ -0,0 +1,259 @@
+package de.craftsblock.cnet.modules.security.ratelimit.composite;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitHeaders;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * The {@link RateLimitWindows} hold the counters of all windows of a {@link CompositeRateLimitAdapter} for a
+ * single source. The counters and expiration timestamps of all windows are kept next to each other in one
+ * array, so a request checks and commits every window in a single pass.
+ * <p>
+ * A request is only counted if it fits into every window. If a single window rejects it, none of the windows
+ * is charged, so a request rejected by an hourly window does not consume the budget of a per second window.
+ * </p>
+ * <p>
+ * If the windows of the adapter are replaced, the counters are {@link #migrate(RateLimitWindow[]) migrated} to
+ * new {@link RateLimitWindows}. Requests which still hold the previous ones are charged to the new ones, so no
+ * request is lost while the windows are replaced.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.2.0
+ * @see CompositeRateLimitAdapter
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class RateLimitWindows {
+
+    private static final int TIMES = 0;
+    private static final int EXPIRES_AT = 1;
+
+    private final RateLimitWindow[] windows;
+    private final long[] state;
+    private RateLimitWindows successor;
+
+    /**
+     * Constructs new {@link RateLimitWindows} whose windows all start with the first access.
+     *
+     * @param windows The {@link RateLimitWindow}s to count.
+     */
+    RateLimitWindows(RateLimitWindow[] windows) {
+        this.windows = windows;
+        this.state = new long[windows.length * 2];
+    }
+
+    /**
+     * Creates new {@link RateLimitWindows} counting the given windows. A new window keeps the counter of the
+     * previous window with the same length, while windows of a new length start over. From now on, these
+     * windows charge every request to the new ones.
+     *
+     * @param windows The {@link RateLimitWindow}s to count from now on.
+     * @return The new {@link RateLimitWindows}.
+     */
+    synchronized RateLimitWindows migrate(RateLimitWindow[] windows) {
+        if (successor != null) return successor.migrate(windows);
+
+        RateLimitWindows migrated = new RateLimitWindows(windows);
+        boolean[] taken = new boolean[this.windows.length];
+        for (int i = 0; i < windows.length; i++)
+            for (int j = 0; j < this.windows.length; j++) {
+                if (taken[j] || this.windows[j].expire() != windows[i].expire()) continue;
+
+                taken[j] = true;
+                migrated.state[i * 2 + TIMES] = state[j * 2 + TIMES];
+                migrated.state[i * 2 + EXPIRES_AT] = state[j * 2 + EXPIRES_AT];
+                break;
+            }
+
+        successor = migrated;
+        return migrated;
+    }
+
+    /**
+     * Gets the {@link RateLimitWindows} which currently count the requests of this source. These are the
+     * windows themselves, unless they have been migrated since they were resolved.
+     *
+     * @return The current {@link RateLimitWindows}.
+     */
+    public synchronized @NotNull RateLimitWindows latest() {
+        return successor == null ? this : successor.latest();
+    }
+
+    /**
+     * Charges the given cost to every window if it fits into all of them. Expired windows are started over
+     * before they are checked. If these windows have been migrated, the cost is charged to the new ones.
+     *
+     * @param cost The cost of the request.
+     * @param now  The current time in milliseconds.
+     * @return {@code true} if any window is exceeded, {@code false} otherwise.
+     */
+    public synchronized boolean access(long cost, long now) {
+        if (successor != null) return successor.access(cost, now);
+        renew(now);
+
+        for (int i = 0; i < windows.length; i++)
+            if (state[i * 2 + TIMES] + cost > windows[i].max()) return true;
+
+        for (int i = 0; i < windows.length; i++)
+            state[i * 2 + TIMES] += cost;
+        return false;
+    }
+
+    /**
+     * Charges the given cost to every window unconditionally, even if this exceeds their maximum. If these
+     * windows have been migrated, the cost is charged to the new ones.
+     *
+     * @param cost The cost to charge.
+     * @param now  The current time in milliseconds.
+     */
+    public synchronized void charge(long cost, long now) {
+        if (successor != null) {
+            successor.charge(cost, now);
+            return;
+        }
+        renew(now);
+
+        for (int i = 0; i < windows.length; i++)
+            state[i * 2 + TIMES] += cost;
+    }
+
+    /**
+     * Starts over every window which has expired.
+     *
+     * @param now The current time in milliseconds.
+     */
+    private void renew(long now) {
+        for (int i = 0; i < windows.length; i++) {
+            if (state[i * 2 + EXPIRES_AT] > now) continue;
+
+            state[i * 2 + TIMES] = 0;
+            state[i * 2 + EXPIRES_AT] = now + windows[i].expire();
+        }
+    }
+
+    /**
+     * Gets the time at which a request of the given cost fits into every window again, which is the latest
+     * reset of all windows which are too full for it.
+     *
+     * @param cost The cost of the request.
+     * @return The reset timestamp in milliseconds, or {@code 0} if the request fits into every window.
+     */
+    public synchronized long getResetAt(long cost) {
+        long resetAt = 0;
+        for (int i = 0; i < windows.length; i++)
+            if (state[i * 2 + TIMES] + cost > windows[i].max())
+                resetAt = Math.max(resetAt, state[i * 2 + EXPIRES_AT]);
+        return resetAt;
+    }
+
+    /**
+     * Appends the state of every window to the combined headers.
+     *
+     * @param adapter The {@link CompositeRateLimitAdapter} owning these windows.
+     * @param headers The {@link RateLimitHeaders} of the current request.
+     * @param now     The current time in milliseconds.
+     */
+    synchronized void appendTo(CompositeRateLimitAdapter adapter, RateLimitHeaders headers, long now) {
+        for (int i = 0; i < windows.length; i++)
+            headers.append(adapter, true, windows[i].max(), windows[i].expire(), state[i * 2 + TIMES], state[i * 2 + EXPIRES_AT], now);
+    }
+
+    /**
+     * Gets the window which is closest to being exhausted. If several windows have the same amount of
+     * requests left, the one which resets last is chosen.
+     *
+     * @return The index of the window.
+     */
+    synchronized int binding() {
+        int binding = 0;
+        for (int i = 1; i < windows.length; i++) {
+            long remaining = getRemaining(i), best = getRemaining(binding);
+            if (remaining < best || (remaining == best && state[i * 2 + EXPIRES_AT] > state[binding * 2 + EXPIRES_AT]))
+                binding = i;
+        }
+        return binding;
+    }
+
+    /**
+     * Checks whether every window has expired.
+     *
+     * @param now The current time in milliseconds.
+     * @return {@code true} if every window has expired, {@code false} otherwise.
+     */
+    synchronized boolean isExpired(long now) {
+        for (int i = 0; i < windows.length; i++)
+            if (state[i * 2 + EXPIRES_AT] > now) return false;
+        return true;
+    }
+
+    /**
+     * Gets the amount of requests which are left in a window.
+     *
+     * @param window The index of the window.
+     * @return The amount of requests left.
+     */
+    public synchronized long getRemaining(int window) {
+        return Math.max(0, windows[window].max() - state[window * 2 + TIMES]);
+    }
+
+    /**
+     * Gets the amount of requests which have been counted in a window.
+     *
+     * @param window The index of the window.
+     * @return The amount of counted requests.
+     */
+    public synchronized long getTimes(int window) {
+        return state[window * 2 + TIMES];
+    }
+
+    /**
+     * Gets the expiration timestamp of a window.
+     *
+     * @param window The index of the window.
+     * @return The expiration timestamp in milliseconds.
+     */
+    public synchronized long getExpiresAt(int window) {
+        return state[window * 2 + EXPIRES_AT];
+    }
+
+    /**
+     * Checks whether these windows count exactly the given array of windows.
+     *
+     * @param windows The array of {@link RateLimitWindow}s.
+     * @return {@code true} if the given array is counted, {@code false} otherwise.
+     */
+    boolean counts(RateLimitWindow[] windows) {
+        return this.windows == windows;
+    }
+
+    /**
+     * Gets a single {@link RateLimitWindow} counted by these windows.
+     *
+     * @param window The index of the window.
+     * @return The {@link RateLimitWindow}.
+     */
+    public @NotNull RateLimitWindow getWindow(int window) {
+        return windows[window];
+    }
+
+    /**
+     * Gets the {@link RateLimitWindow}s counted by these windows.
+     *
+     * @return An unmodifiable list of the counted {@link RateLimitWindow}s.
+     */
+    public @NotNull List<RateLimitWindow> getWindows() {
+        return List.of(windows);
+    }
+
+    /**
+     * Gets the amount of windows.
+     *
+     * @return The amount of windows.
+     */
+    public int size() {
+        return windows.length;
+    }
+
+}
@@ -0,0 +1,89 @@
+package de.craftsblock.cnet.modules.security.ratelimit.concurrency;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link AimdLimit} is a loss based {@link ConcurrencyLimit} using additive increase / multiplicative decrease.
+ * <p>
+ * As long as requests complete faster than the configured latency threshold and the limit is actually used,
+ * the limit grows by one. As soon as a request takes longer than the threshold, the limit is multiplied
+ * with the backoff ratio. This reacts quickly to overload, but needs a sensible threshold for the protected routes.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see ConcurrencyLimit
+ * @since 1.0.0-SNAPSHOT
+ */
+public class AimdLimit implements ConcurrencyLimit {
+
+    private final int min;
+    private final int max;
+    private final long thresholdNanos;
+    private final double backoffRatio;
+
+    private volatile int limit;
+
+    /**
+     * Constructs a new {@link AimdLimit} with a backoff ratio of {@code 0.9}.
+     *
+     * @param initial   The initial limit.
+     * @param min       The lowest limit.
+     * @param max       The highest limit.
+     * @param threshold The latency above which a request counts as overloaded.
+     * @param unit      The {@link TimeUnit} of the threshold.
+     */
+    public AimdLimit(int initial, int min, int max, long threshold, TimeUnit unit) {
+        this(initial, min, max, threshold, unit, 0.9);
+    }
+
+    /**
+     * Constructs a new {@link AimdLimit}.
+     *
+     * @param initial      The initial limit.
+     * @param min          The lowest limit.
+     * @param max          The highest limit.
+     * @param threshold    The latency above which a request counts as overloaded.
+     * @param unit         The {@link TimeUnit} of the threshold.
+     * @param backoffRatio The ratio the limit is multiplied with on overload (between 0 and 1).
+     * @throws IllegalStateException If the limits or the backoff ratio are invalid.
+     */
+    public AimdLimit(int initial, int min, int max, long threshold, TimeUnit unit, double backoffRatio) {
+        if (min < 1 || min > max || initial < min || initial > max)
+            throw new IllegalStateException("Invalid concurrency limits! (initial: " + initial + ", min: " + min + ", max: " + max + ")");
+        if (backoffRatio <= 0 || backoffRatio >= 1)
+            throw new IllegalStateException("The backoff ratio must be between 0 and 1! (Invalid ratio: " + backoffRatio + ")");
+
+        this.limit = initial;
+        this.min = min;
+        this.max = max;
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return The current limit.
+     */
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param rttNanos The time the request took in nanoseconds.
+     * @param inflight The amount of requests which were in flight when the request completed, including itself.
+     */
+    @Override
+    public synchronized void onSample(long rttNanos, int inflight) {
+        if (rttNanos > thresholdNanos)
+            limit = Math.max(min, (int) (limit * backoffRatio));
+        else if (inflight * 2 >= limit)
+            limit = Math.min(max, limit + 1);
+    }
+
+}
@@ -0,0 +1,35 @@
+package de.craftsblock.cnet.modules.security.ratelimit.concurrency;
+
+/**
+ * A {@link ConcurrencyLimit} is the algorithm which decides how many requests may be in flight at the same time.
+ * It is fed with the latency of every completed request and adjusts its limit accordingly.
+ * <p>
+ * Implementations must be thread-safe, as samples are reported concurrently by all request threads.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see AimdLimit
+ * @see GradientLimit
+ * @see ConcurrencyLimitAdapter
+ * @since 1.0.0-SNAPSHOT
+ */
+public interface ConcurrencyLimit {
+
+    /**
+     * Gets the current limit of concurrent in flight requests.
+     *
+     * @return The current limit.
+     */
+    int getLimit();
+
+    /**
+     * Reports the latency of a completed request.
+     *
+     * @param rttNanos The time the request took in nanoseconds.
+     * @param inflight The amount of requests which were in flight when the request completed, including itself.
+     */
+    void onSample(long rttNanos, int inflight);
+
+}
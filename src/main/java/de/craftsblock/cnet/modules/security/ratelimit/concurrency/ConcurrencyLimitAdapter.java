@@ -0,0 +1,262 @@
+package de.craftsblock.cnet.modules.security.ratelimit.concurrency;
+
+import de.craftsblock.cnet.modules.security.SecurityContext;
+import de.craftsblock.cnet.modules.security.events.ratelimit.RateLimitExceededEvent;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The {@link ConcurrencyLimitAdapter} is a {@link RateLimitAdapter} which does not count requests per window,
+ * but limits the amount of requests which are in flight at the same time. The limit is not fixed, it is adjusted
+ * by a {@link ConcurrencyLimit} based on the observed latency of completed requests, e.g. an {@link AimdLimit}
+ * or a {@link GradientLimit}.
+ * <p>
+ * Like every other adapter, {@link #adapt(Request, SessionStorage)} decides which requests share a limit. A global
+ * {@link RateLimitIndex} limits all requests together, a per client index limits each client on its own.
+ * Requests exceeding the limit are rejected by the {@link RateLimitManager} with a {@link RateLimitExceededEvent},
+ * before they reach the backend. The acquired permits are released through {@link RateLimitManager#release}
+ * once the exchange completes, or through {@link RateLimitManager#abandon} if it is rejected or cancelled.
+ * </p>
+ * <p>
+ * Permits are leases: an exchange which never reports its completion, e.g. because a handler failed, would
+ * otherwise hold its permit forever and lock the client out. Every {@link #sweep() sweep} therefore reclaims
+ * the permits which have been held for longer than the lease timeout, without reporting a latency sample.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.2.0
+ * @see ConcurrencyLimit
+ * @see ConcurrencyPermits
+ * @since 1.0.0-SNAPSHOT
+ */
+public abstract class ConcurrencyLimitAdapter extends RateLimitAdapter {
+
+    /**
+     * The key under which the {@link ConcurrencyPermits} of an exchange have been stored in its {@link SessionStorage}.
+     *
+     * @deprecated The permits are kept in the {@link SecurityContext} of the exchange, see {@link SecurityContext#getPermits()}.
+     */
+    @Deprecated
+    public static final String PERMITS_KEY = "ratelimit.concurrency";
+
+    private final ConcurrentHashMap<Object, Limiter> limiters = new ConcurrentHashMap<>();
+    private final Supplier<ConcurrencyLimit> limits;
+    private final long leaseTimeout;
+
+    /**
+     * Constructs a new {@link ConcurrencyLimitAdapter} whose idle limiters are removed after 60 seconds.
+     *
+     * @param id     The ID of the adapter (must contain only alphabetic characters).
+     * @param limits A factory creating a new {@link ConcurrencyLimit} for every distinct index.
+     * @throws IllegalStateException If the ID is invalid.
+     */
+    public ConcurrencyLimitAdapter(String id, Supplier<ConcurrencyLimit> limits) {
+        this(id, limits, 1000 * 60);
+    }
+
+    /**
+     * Constructs a new {@link ConcurrencyLimitAdapter} whose permits are reclaimed after five minutes.
+     *
+     * @param id     The ID of the adapter (must contain only alphabetic characters).
+     * @param limits A factory creating a new {@link ConcurrencyLimit} for every distinct index.
+     * @param idle   The time in milliseconds after which an unused limiter is removed.
+     * @throws IllegalStateException If the ID is invalid.
+     */
+    public ConcurrencyLimitAdapter(String id, Supplier<ConcurrencyLimit> limits, long idle) {
+        this(id, limits, idle, 1000 * 60 * 5);
+    }
+
+    /**
+     * Constructs a new {@link ConcurrencyLimitAdapter}. The maximum of this adapter is unbounded, as the
+     * effective limit is provided by the {@link ConcurrencyLimit}, and no headers are added to the response.
+     *
+     * @param id           The ID of the adapter (must contain only alphabetic characters).
+     * @param limits       A factory creating a new {@link ConcurrencyLimit} for every distinct index.
+     * @param idle         The time in milliseconds after which an unused limiter is removed.
+     * @param leaseTimeout The time in milliseconds after which a permit which has not been released is reclaimed.
+     * @throws IllegalStateException If the ID or the lease timeout is invalid.
+     */
+    public ConcurrencyLimitAdapter(String id, Supplier<ConcurrencyLimit> limits, long idle, long leaseTimeout) {
+        super(id, Integer.MAX_VALUE, idle, false);
+        if (leaseTimeout < 1)
+            throw new IllegalStateException("The lease timeout must be positive! (Invalid timeout: " + leaseTimeout + ")");
+
+        this.limits = limits;
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * Tries to acquire an in flight permit for the given {@link RateLimitIndex}. On success, the permit is
+     * stored in the {@link ConcurrencyPermits} of the {@link SecurityContext} until it is released.
+     *
+     * @param index   The {@link RateLimitIndex} produced by {@link #adapt(Request, SessionStorage)}.
+     * @param storage The {@link SessionStorage} of the exchange.
+     * @return {@code true} if a permit has been acquired, {@code false} if the limit is reached.
+     */
+    public boolean tryAcquire(@NotNull RateLimitIndex index, @NotNull SessionStorage storage) {
+        Limiter limiter = limiters.computeIfAbsent(index.source(), source -> new Limiter(limits.get()));
+        Permit permit = limiter.tryAcquire();
+        if (permit == null) return false;
+
+        SecurityContext context = SecurityContext.of(storage);
+        synchronized (context) {
+            ConcurrencyPermits permits = context.getPermits();
+            if (permits == null) context.setPermits(permits = new ConcurrencyPermits());
+            permits.add(permit);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the current limit for the given {@link RateLimitIndex}.
+     *
+     * @param index The {@link RateLimitIndex} to look up.
+     * @return The current limit, or {@code -1} if the index has not been seen yet.
+     */
+    public int getLimit(@NotNull RateLimitIndex index) {
+        Limiter limiter = limiters.get(index.source());
+        return limiter == null ? -1 : limiter.limit.getLimit();
+    }
+
+    /**
+     * Gets the amount of permits which are currently held for the given {@link RateLimitIndex}.
+     *
+     * @param index The {@link RateLimitIndex} to look up.
+     * @return The amount of held permits, or {@code 0} if the index has not been seen yet.
+     */
+    public int getInflight(@NotNull RateLimitIndex index) {
+        Limiter limiter = limiters.get(index.source());
+        return limiter == null ? 0 : limiter.inflight.get();
+    }
+
+    /**
+     * Reclaims all permits which have been held for longer than the lease timeout, and removes all limiters
+     * which have no request in flight and have not been used within the idle time.
+     *
+     * @return The amount of reclaimed permits.
+     */
+    public int sweep() {
+        final long leasedBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(leaseTimeout);
+        int reclaimed = 0;
+        for (Limiter limiter : limiters.values())
+            for (Permit permit : limiter.leases)
+                if (permit.start - leasedBefore < 0 && permit.release(-1)) reclaimed++;
+
+        final long threshold = SecurityClock.now() - getExpireInMilliseconds();
+        for (Object source : limiters.keySet())
+            limiters.computeIfPresent(source, (s, limiter) ->
+                    limiter.inflight.get() == 0 && limiter.lastUsed < threshold ? null : limiter);
+        return reclaimed;
+    }
+
+    /**
+     * Gets the time after which a permit which has not been released is reclaimed.
+     *
+     * @return The lease timeout in milliseconds.
+     */
+    public long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /**
+     * Releases all permits which have been acquired for the exchange owning the given {@link SessionStorage}.
+     *
+     * @param storage The {@link SessionStorage} of the exchange.
+     * @param sample  Whether the latency of the exchange should be reported to the limits.
+     */
+    public static void release(@NotNull SessionStorage storage, boolean sample) {
+        SecurityContext context = SecurityContext.find(storage);
+        ConcurrencyPermits permits = context == null ? null : context.getPermits();
+        if (permits != null) permits.release(sample);
+    }
+
+    /**
+     * The in flight state of a single index.
+     */
+    static final class Limiter {
+
+        private final ConcurrencyLimit limit;
+        private final AtomicInteger inflight = new AtomicInteger();
+        private final Set<Permit> leases = ConcurrentHashMap.newKeySet();
+        private volatile long lastUsed = SecurityClock.now();
+
+        private Limiter(ConcurrencyLimit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Acquires a permit if the current limit has not been reached yet.
+         *
+         * @return The acquired {@link Permit}, or {@code null} if the limit has been reached.
+         */
+        private Permit tryAcquire() {
+            lastUsed = SecurityClock.now();
+
+            int current;
+            do {
+                current = inflight.get();
+                if (current >= limit.getLimit()) return null;
+            } while (!inflight.compareAndSet(current, current + 1));
+
+            Permit permit = new Permit(this, System.nanoTime());
+            leases.add(permit);
+            return permit;
+        }
+
+    }
+
+    /**
+     * A single in flight permit, which is released exactly once: by the exchange, or by a sweep once its
+     * lease has timed out.
+     */
+    static final class Permit {
+
+        private final Limiter limiter;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Limiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+
+        /**
+         * Releases this permit and reports its latency to the {@link ConcurrencyLimit}.
+         *
+         * @param rttNanos The latency of the exchange in nanoseconds, or a negative value to skip the sample.
+         * @return {@code true} if the permit has been released by this call, {@code false} if it had already been released.
+         */
+        boolean release(long rttNanos) {
+            if (!released.compareAndSet(false, true)) return false;
+
+            limiter.leases.remove(this);
+            int current = limiter.inflight.getAndDecrement();
+            if (rttNanos >= 0) limiter.limit.onSample(rttNanos, current);
+            return true;
+        }
+
+        /**
+         * Gets the time this permit has been acquired at.
+         *
+         * @return The acquisition time in nanoseconds, see {@link System#nanoTime()}.
+         */
+        long getStart() {
+            return start;
+        }
+
+    }
+
+}
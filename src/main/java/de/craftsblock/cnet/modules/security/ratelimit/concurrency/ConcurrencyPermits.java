@@ -0,0 +1,54 @@
+package de.craftsblock.cnet.modules.security.ratelimit.concurrency;
+
+import de.craftsblock.cnet.modules.security.SecurityContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link ConcurrencyPermits} hold all in flight permits acquired by {@link ConcurrencyLimitAdapter}s for a
+ * single exchange. They are kept in the {@link SecurityContext} of the exchange until the exchange completes.
+ * Every permit is released only once, so releasing an exchange twice, or after its permits have been
+ * reclaimed by a sweep, does not free permits of other exchanges.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see ConcurrencyLimitAdapter
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class ConcurrencyPermits {
+
+    private final List<ConcurrencyLimitAdapter.Permit> permits = new ArrayList<>(2);
+
+    /**
+     * Creates a new, empty {@link ConcurrencyPermits} instance.
+     */
+    ConcurrencyPermits() {
+    }
+
+    /**
+     * Adds a newly acquired permit.
+     *
+     * @param permit The acquired {@link ConcurrencyLimitAdapter.Permit}.
+     */
+    synchronized void add(ConcurrencyLimitAdapter.Permit permit) {
+        permits.add(permit);
+    }
+
+    /**
+     * Releases all held permits. Calling this method multiple times has no further effect.
+     *
+     * @param sample Whether the latency of the exchange should be reported to the limits. This should be
+     *               {@code false} if the exchange has not been processed, e.g. because it has been rejected.
+     */
+    public synchronized void release(boolean sample) {
+        if (permits.isEmpty()) return;
+
+        final long now = System.nanoTime();
+        for (ConcurrencyLimitAdapter.Permit permit : permits)
+            permit.release(sample ? now - permit.getStart() : -1);
+        permits.clear();
+    }
+
+}
@@ -0,0 +1,106 @@
+package de.craftsblock.cnet.modules.security.ratelimit.concurrency;
+
+/**
+ * The {@link GradientLimit} is a delay based {@link ConcurrencyLimit} which compares the short term latency
+ * with the long term (no load) latency.
+ * <p>
+ * The ratio between both latencies, the gradient, is {@code 1} as long as requests do not queue up. As soon as
+ * the backend slows down, the short term latency rises above the long term latency and the limit is reduced
+ * proportionally, even if only a few requests are in flight. A small queue allowance of {@code sqrt(limit)} lets
+ * the limit grow while the backend is healthy and the limit is actually used.
+ * Unlike the {@link AimdLimit}, no latency threshold has to be configured.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see ConcurrencyLimit
+ * @since 1.0.0-SNAPSHOT
+ */
+public class GradientLimit implements ConcurrencyLimit {
+
+    private static final double SHORT_WINDOW = 0.1;
+    private static final double LONG_WINDOW = 0.01;
+
+    private final int min;
+    private final int max;
+    private final double smoothing;
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private double shortRtt = -1;
+    private double longRtt = -1;
+
+    /**
+     * Constructs a new {@link GradientLimit} with a smoothing of {@code 0.2}.
+     *
+     * @param initial The initial limit.
+     * @param min     The lowest limit.
+     * @param max     The highest limit.
+     */
+    public GradientLimit(int initial, int min, int max) {
+        this(initial, min, max, 0.2);
+    }
+
+    /**
+     * Constructs a new {@link GradientLimit}.
+     *
+     * @param initial   The initial limit.
+     * @param min       The lowest limit.
+     * @param max       The highest limit.
+     * @param smoothing How fast the limit follows the estimated limit (between 0 and 1).
+     * @throws IllegalStateException If the limits or the smoothing are invalid.
+     */
+    public GradientLimit(int initial, int min, int max, double smoothing) {
+        if (min < 1 || min > max || initial < min || initial > max)
+            throw new IllegalStateException("Invalid concurrency limits! (initial: " + initial + ", min: " + min + ", max: " + max + ")");
+        if (smoothing <= 0 || smoothing > 1)
+            throw new IllegalStateException("The smoothing must be between 0 and 1! (Invalid smoothing: " + smoothing + ")");
+
+        this.limit = initial;
+        this.estimatedLimit = initial;
+        this.min = min;
+        this.max = max;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return The current limit.
+     */
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param rttNanos The time the request took in nanoseconds.
+     * @param inflight The amount of requests which were in flight when the request completed, including itself.
+     */
+    @Override
+    public synchronized void onSample(long rttNanos, int inflight) {
+        if (shortRtt < 0) {
+            shortRtt = longRtt = rttNanos;
+            return;
+        }
+
+        shortRtt += (rttNanos - shortRtt) * SHORT_WINDOW;
+        longRtt += (rttNanos - longRtt) * LONG_WINDOW;
+
+        // Let the long term latency recover quickly after an overload has passed
+        if (longRtt > shortRtt * 2) longRtt = shortRtt;
+
+        // Do not grow the limit if it is not used, but still shrink it once the latency rises
+        boolean underused = inflight * 2 < estimatedLimit;
+        double gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+        if (underused && gradient >= 1.0) return;
+
+        double target = estimatedLimit * gradient + (underused ? 0 : Math.sqrt(estimatedLimit));
+        estimatedLimit = Math.max(min, Math.min(max, estimatedLimit * (1 - smoothing) + target * smoothing));
+        limit = (int) estimatedLimit;
+    }
+
+}
@@ -0,0 +1,380 @@
+package de.craftsblock.cnet.modules.security.ratelimit.quota;
+
+import de.craftsblock.cnet.modules.security.CNetSecurity;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The {@link QuotaJournal} is the durable store of a {@link QuotaRateLimitAdapter}. Instead of writing every
+ * single request, the adapter appends the consumption of all quotas since the last flush as one batch, which
+ * is forced to the disk before the batch counts as durable.
+ * <p>
+ * Every batch is protected by a checksum. If the process dies while a batch is written, the torn batch is
+ * detected and cut off the next time the journal is opened, so the journal always ends with the last
+ * complete batch. The journal is compacted into a single batch of totals once it grows too large. If the
+ * compaction fails after the journal has been released, it is reopened, at the latest by the next batch, so
+ * a failed compaction never leaves the journal closed.
+ * </p>
+ *
+ * <p>The file is laid out as follows, all numbers are big endian:</p>
+ * <ul>
+ *     <li>Header: {@code int magic, byte version}</li>
+ *     <li>Batch: {@code int length, int crc32, varint count, entry[] entries}</li>
+ *     <li>Entry: {@code byte sourceType, source, long periodStart, varlong units}</li>
+ * </ul>
+ * <p>
+ * Only sources which are a {@link String}, {@link Long} or {@link Integer} can be stored, like in the
+ * rate limit snapshots.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see QuotaRateLimitAdapter
+ * @since 1.0.0-SNAPSHOT
+ */
+public class QuotaJournal {
+
+    private static final int MAGIC = 0x434E514A; // CNQJ
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_INTEGER = 2;
+
+    private static final int MAX_BATCH_SIZE = 64 * 1024 * 1024;
+
+    private final File file;
+    private FileChannel channel;
+    private boolean open;
+
+    /**
+     * Constructs a new {@link QuotaJournal}. The file is not touched until the journal is {@link #open() opened}.
+     *
+     * @param file The file of the journal.
+     */
+    public QuotaJournal(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the journal for appending and replays all complete batches. A torn batch at the end of the
+     * journal is cut off.
+     *
+     * @return The summed up units of every source and period found in the journal.
+     * @throws IOException If the journal could not be read or is not a quota journal.
+     */
+    public synchronized @NotNull Map<Key, Long> open() throws IOException {
+        close();
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs())
+            throw new IOException("Failed to create the directory " + parent.getPath() + "!");
+
+        Map<Key, Long> totals = new HashMap<>();
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long valid = replay(channel, totals);
+            if (valid < channel.size()) {
+                CNetSecurity.getLogger().warning("Cut off " + (channel.size() - valid) + " bytes of a torn batch from the quota journal " + file.getName() + ".");
+                channel.truncate(valid);
+                channel.force(true);
+            }
+            channel.position(channel.size());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        this.channel = channel;
+        this.open = true;
+        return totals;
+    }
+
+    /**
+     * Reads the journal from the beginning, adding up the units of every complete batch. A new journal gets
+     * its header written.
+     *
+     * @param channel The {@link FileChannel} of the journal.
+     * @param totals  The map receiving the summed up units.
+     * @return The position after the last complete batch.
+     * @throws IOException If the journal could not be read or is not a quota journal.
+     */
+    private long replay(FileChannel channel, Map<Key, Long> totals) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(true);
+            return HEADER_SIZE;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION)
+            throw new IOException("The file " + file.getName() + " is not a supported quota journal!");
+
+        final long size = channel.size();
+        long position = HEADER_SIZE;
+        while (position + 8 <= size) {
+            int length = in.readInt();
+            int crc = in.readInt();
+            if (length <= 0 || length > MAX_BATCH_SIZE || position + 8 + length > size) break;
+
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+
+            CRC32 checksum = new CRC32();
+            checksum.update(payload);
+            if ((int) checksum.getValue() != crc) break;
+
+            DataInputStream batch = new DataInputStream(new ByteArrayInputStream(payload));
+            for (long i = 0, count = readVarLong(batch); i < count; i++) {
+                byte type = batch.readByte();
+                Object source = switch (type) {
+                    case TYPE_STRING -> batch.readUTF();
+                    case TYPE_LONG -> batch.readLong();
+                    case TYPE_INTEGER -> batch.readInt();
+                    default -> throw new IOException("Unknown source type " + type + " in quota journal!");
+                };
+                totals.merge(new Key(source, batch.readLong()), readVarLong(batch), Long::sum);
+            }
+
+            position += 8 + length;
+        }
+
+        return position;
+    }
+
+    /**
+     * Appends a batch to the journal and forces it to the disk. If the batch could not be written completely,
+     * the journal is cut back to its previous end, so the batch can be retried.
+     *
+     * @param units The units to add by their source and period. Sources which can not be stored are skipped.
+     * @throws IOException If the batch could not be written.
+     */
+    public synchronized void append(@NotNull Map<Key, Long> units) throws IOException {
+        ByteBuffer batch = encode(units);
+        if (batch == null) return;
+
+        FileChannel channel = channel();
+        final long end = channel.size();
+        try {
+            channel.position(end);
+            while (batch.hasRemaining()) channel.write(batch);
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(end);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the whole journal with a single batch of totals. The compacted journal is first written to a
+     * temporary file which then atomically replaces the journal.
+     *
+     * @param totals The units of every source and period which should be kept.
+     * @throws IOException If the journal could not be compacted.
+     */
+    public synchronized void compact(@NotNull Map<Key, Long> totals) throws IOException {
+        channel();
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION).flip());
+
+            ByteBuffer batch = encode(totals);
+            if (batch != null)
+                while (batch.hasRemaining()) out.write(batch);
+
+            out.force(true);
+        }
+
+        // Some platforms can not replace a file which is still open
+        FileChannel channel = this.channel;
+        this.channel = null;
+        channel.close();
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // The move is atomic, so the journal is either the previous or the compacted one
+            temp.delete();
+            try {
+                channel();
+            } catch (IOException ignored) {
+                // Retried by the next batch
+            }
+        }
+    }
+
+    /**
+     * Gets the channel of the journal, reopening it if it has been released by a failed compaction.
+     *
+     * @return The {@link FileChannel} of the journal, positioned at its end.
+     * @throws IOException If the journal is not open or could not be reopened.
+     */
+    private FileChannel channel() throws IOException {
+        if (!open) throw new IOException("The quota journal " + file.getName() + " is not open!");
+        if (channel != null) return channel;
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return this.channel = channel;
+    }
+
+    /**
+     * Encodes a batch including its length and checksum.
+     *
+     * @param units The units to encode by their source and period.
+     * @return The encoded batch ready to be written, or {@code null} if there is nothing to encode.
+     * @throws IOException If the batch could not be encoded.
+     */
+    private static ByteBuffer encode(Map<Key, Long> units) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        long count = 0;
+        for (Map.Entry<Key, Long> entry : units.entrySet())
+            if (entry.getValue() > 0 && isSupported(entry.getKey().source())) count++;
+        if (count == 0) return null;
+
+        writeVarLong(out, count);
+        for (Map.Entry<Key, Long> entry : units.entrySet()) {
+            Object source = entry.getKey().source();
+            if (entry.getValue() <= 0 || !isSupported(source)) continue;
+
+            if (source instanceof String string) {
+                out.writeByte(TYPE_STRING);
+                out.writeUTF(string);
+            } else if (source instanceof Long number) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(number);
+            } else {
+                out.writeByte(TYPE_INTEGER);
+                out.writeInt((Integer) source);
+            }
+            out.writeLong(entry.getKey().period());
+            writeVarLong(out, entry.getValue());
+        }
+
+        byte[] payload = bytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length)
+                .putInt((int) checksum.getValue())
+                .put(payload)
+                .flip();
+    }
+
+    /**
+     * Closes the journal. Batches which have been appended are already durable.
+     *
+     * @throws IOException If the journal could not be closed.
+     */
+    public synchronized void close() throws IOException {
+        open = false;
+        if (channel == null) return;
+
+        FileChannel channel = this.channel;
+        this.channel = null;
+        channel.close();
+    }
+
+    /**
+     * Checks whether the journal is open for appending.
+     *
+     * @return {@code true} if the journal is open, {@code false} otherwise.
+     */
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Gets the current size of the journal.
+     *
+     * @return The size of the journal in bytes, or {@code 0} if it is not open.
+     * @throws IOException If the size could not be determined.
+     */
+    public synchronized long size() throws IOException {
+        return open ? channel().size() : 0;
+    }
+
+    /**
+     * Gets the file of the journal.
+     *
+     * @return The file of the journal.
+     */
+    public @NotNull File getFile() {
+        return file;
+    }
+
+    /**
+     * Checks whether a source can be stored in the journal.
+     *
+     * @param source The source to check.
+     * @return {@code true} if the source can be stored, {@code false} otherwise.
+     */
+    public static boolean isSupported(Object source) {
+        return source instanceof String || source instanceof Long || source instanceof Integer;
+    }
+
+    /**
+     * Writes a non-negative long using a variable length encoding of 7 bits per byte.
+     *
+     * @param out   The {@link DataOutput} to write to.
+     * @param value The value to write.
+     * @throws IOException If the value could not be written.
+     */
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a long previously written by {@link #writeVarLong(DataOutput, long)}.
+     *
+     * @param in The {@link DataInput} to read from.
+     * @return The value which has been read.
+     * @throws IOException If the value could not be read.
+     */
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed variable length number in quota journal!");
+    }
+
+    /**
+     * The key of the units of a single source within a single period.
+     *
+     * @param source The source of the {@link de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex}.
+     * @param period The start of the period in milliseconds.
+     */
+    public record Key(@NotNull Object source, long period) {
+    }
+
+}
@@ -0,0 +1,109 @@
+package de.craftsblock.cnet.modules.security.ratelimit.quota;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * The {@link QuotaPeriod} defines the calendar aligned windows of a {@link QuotaRateLimitAdapter}. Unlike the
+ * sliding windows of a regular rate limit, which start with the first request, every quota starts over at the
+ * same instant, e.g. at midnight or on the first day of the month. All periods are aligned to UTC.
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see QuotaRateLimitAdapter
+ * @since 1.0.0-SNAPSHOT
+ */
+public enum QuotaPeriod {
+
+    /**
+     * A quota which starts over every day at midnight.
+     */
+    DAILY(24L * 60 * 60 * 1000),
+
+    /**
+     * A quota which starts over every monday at midnight.
+     */
+    WEEKLY(7L * 24 * 60 * 60 * 1000),
+
+    /**
+     * A quota which starts over on the first day of every month at midnight.
+     */
+    MONTHLY(31L * 24 * 60 * 60 * 1000);
+
+    private final long maxLength;
+
+    /**
+     * Constructs a new {@link QuotaPeriod}.
+     *
+     * @param maxLength The maximum length of a single period in milliseconds.
+     */
+    QuotaPeriod(long maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Gets the start of the period containing the given time.
+     *
+     * @param now The time in milliseconds.
+     * @return The start of the period in milliseconds.
+     */
+    public long start(long now) {
+        return toMillis(startDate(now));
+    }
+
+    /**
+     * Gets the end of the period containing the given time, which is the start of the following period.
+     *
+     * @param now The time in milliseconds.
+     * @return The end of the period in milliseconds.
+     */
+    public long end(long now) {
+        LocalDate start = startDate(now);
+        return toMillis(switch (this) {
+            case DAILY -> start.plusDays(1);
+            case WEEKLY -> start.plusWeeks(1);
+            case MONTHLY -> start.plusMonths(1);
+        });
+    }
+
+    /**
+     * Gets the maximum length of a single period.
+     *
+     * @return The maximum length in milliseconds.
+     */
+    public long getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Gets the first day of the period containing the given time.
+     *
+     * @param now The time in milliseconds.
+     * @return The first day of the period.
+     */
+    private @NotNull LocalDate startDate(long now) {
+        LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(now), ZoneOffset.UTC);
+        return switch (this) {
+            case DAILY -> date;
+            case WEEKLY -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHLY -> date.withDayOfMonth(1);
+        };
+    }
+
+    /**
+     * Converts the start of a day into milliseconds.
+     *
+     * @param date The day.
+     * @return The start of the day in milliseconds.
+     */
+    private static long toMillis(@NotNull LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+}
@@ -0,0 +1,458 @@
+package de.craftsblock.cnet.modules.security.ratelimit.quota;
+
+import de.craftsblock.cnet.modules.security.CNetSecurity;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitPolicy;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import de.craftsblock.craftsnet.api.http.Exchange;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link QuotaRateLimitAdapter} is a {@link RateLimitAdapter} for long running quotas, like a monthly amount
+ * of requests per token. The windows of a quota are aligned to its {@link QuotaPeriod}, and the consumption is
+ * kept in a {@link QuotaJournal}, so a restart does not hand out a fresh quota.
+ * <p>
+ * Requests are admitted in memory, exactly like a regular rate limit. A background thread appends the units
+ * consumed since its last run to the journal in a single batch, so the disk is never touched on the request
+ * path. The units which are admitted but not yet durable are bounded per source by {@link #getMaxUnflushed()}.
+ * A source which reaches this bound is rejected until the next flush has completed, which is requested early
+ * in this case. If the journal can not be written, quotas therefore fail closed once the bound is used up.
+ * </p>
+ * <p>
+ * The bound also holds if the adapter has not been {@link #start(long, TimeUnit) started}. As there is no
+ * background thread in this case, the request which reaches the bound flushes the journal itself, and is
+ * rejected if this fails, for example because the journal has not been {@link #load() loaded}.
+ * </p>
+ * <p>
+ * <b>Crash behavior:</b> If the process dies, the units which were not durable yet are lost. After a restart
+ * every source can therefore exceed its quota by at most {@link #getMaxUnflushed()} units within the period of
+ * the crash. The quota is never reduced by a crash. Units of a period which has already ended are discarded.
+ * Sources which can not be stored in the {@link QuotaJournal} are only counted in memory.
+ * </p>
+ * <p>
+ * The maximum of a quota can be replaced at runtime like the one of any other adapter, while the window is
+ * always given by the {@link QuotaPeriod}. Quotas are checked by the {@link RateLimitManager} directly and do
+ * not support {@link #chargesBack() charge backs} or {@link #authFailureCost(Request, SessionStorage) auth
+ * failure costs}.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see QuotaPeriod
+ * @see QuotaJournal
+ * @since 1.0.0-SNAPSHOT
+ */
+public abstract class QuotaRateLimitAdapter extends RateLimitAdapter {
+
+    private static final long COMPACT_THRESHOLD = 4L * 1024 * 1024;
+
+    private final ConcurrentHashMap<Object, Quota> quotas = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final QuotaPeriod period;
+    private final QuotaJournal journal;
+    private volatile long maxUnflushed;
+
+    private volatile ScheduledExecutorService executor;
+    private ScheduledFuture<?> task;
+
+    /**
+     * Constructs a new {@link QuotaRateLimitAdapter} which allows one percent of the maximum, but at least one
+     * unit, to be lost in a crash.
+     *
+     * @param id     The ID of the adapter (must contain only alphabetic characters).
+     * @param max    The maximum amount of units per period.
+     * @param period The {@link QuotaPeriod} of the quota.
+     * @param file   The file of the {@link QuotaJournal}.
+     * @throws IllegalStateException If the ID is invalid.
+     */
+    public QuotaRateLimitAdapter(String id, long max, QuotaPeriod period, File file) {
+        this(id, max, period, file, Math.max(1, max / 100));
+    }
+
+    /**
+     * Constructs a new {@link QuotaRateLimitAdapter}.
+     *
+     * @param id           The ID of the adapter (must contain only alphabetic characters).
+     * @param max          The maximum amount of units per period.
+     * @param period       The {@link QuotaPeriod} of the quota.
+     * @param file         The file of the {@link QuotaJournal}.
+     * @param maxUnflushed The maximum amount of units per source which may be admitted before they are durable.
+     * @throws IllegalStateException If the ID or the maximum amount of unflushed units is invalid.
+     */
+    public QuotaRateLimitAdapter(String id, long max, QuotaPeriod period, File file, long maxUnflushed) {
+        super(id, max, period.getMaxLength());
+        this.period = period;
+        this.journal = new QuotaJournal(file);
+        setMaxUnflushed(maxUnflushed);
+    }
+
+    /**
+     * Restores the consumption of the current period from the journal. This must be called before the adapter
+     * admits its first request.
+     *
+     * @return The amount of sources which have been restored.
+     * @throws IOException If the journal could not be read.
+     */
+    public synchronized long load() throws IOException {
+        final long now = SecurityClock.now();
+        final long start = period.start(now);
+        final long end = period.end(now);
+
+        long restored = 0;
+        for (Map.Entry<QuotaJournal.Key, Long> entry : journal.open().entrySet()) {
+            if (entry.getKey().period() != start) continue;
+
+            long units = entry.getValue();
+            quotas.put(entry.getKey().source(), new Quota(this, entry.getKey().source(), start, end, units));
+            restored++;
+        }
+
+        return restored;
+    }
+
+    /**
+     * Starts flushing the consumption to the journal periodically in the background. The period bounds how
+     * long admitted units stay in memory only.
+     *
+     * @param period The period between two flushes.
+     * @param unit   The {@link TimeUnit} of the period.
+     */
+    public synchronized void start(long period, @NotNull TimeUnit unit) {
+        if (task != null) return;
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CNetSecurity-QuotaFlusher-" + getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+        task = executor.scheduleWithFixedDelay(this::flushQuietly, period, period, unit);
+        this.executor = executor;
+    }
+
+    /**
+     * Stops flushing periodically. A final flush is written and the journal is compacted and closed before
+     * this method returns.
+     *
+     * @throws IOException If the final flush could not be written.
+     */
+    public void stop() throws IOException {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            if (task != null) task.cancel(false);
+            executor = this.executor;
+            task = null;
+            this.executor = null;
+        }
+
+        // The lock must not be held here, as a running flush needs it to complete
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) executor.shutdownNow();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            if (!journal.isOpen()) return;
+
+            try {
+                flush();
+                compact();
+            } finally {
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * Gets the {@link RateLimitInfo} of the quota of an index, starting a new period if the current one has
+     * ended. The info holds the consumed units and the end of the period.
+     *
+     * @param index The {@link RateLimitIndex} produced by {@link #adapt(Request, SessionStorage)}.
+     * @return The {@link RateLimitInfo} of the quota.
+     */
+    public @NotNull RateLimitInfo resolve(@NotNull RateLimitIndex index) {
+        final long now = SecurityClock.now();
+        Quota quota = quotas.computeIfAbsent(index.source(), source -> new Quota(this, source, period.start(now), period.end(now), 0));
+        quota.rollOver(period, now);
+        return quota.info;
+    }
+
+    /**
+     * Admits a request with the given cost if it fits into the remaining quota and the unflushed units of the
+     * source stay within {@link #getMaxUnflushed()}. Nothing is charged if the request is rejected. If the
+     * adapter has not been started, the request which reaches the bound flushes the journal itself.
+     *
+     * @param index The {@link RateLimitIndex} produced by {@link #adapt(Request, SessionStorage)}.
+     * @param info  The {@link RateLimitInfo} returned by {@link #resolve(RateLimitIndex)}.
+     * @param cost  The cost of the request.
+     * @return {@code true} if the quota is exceeded, {@code false} otherwise.
+     * @see #access(RateLimitIndex, RateLimitInfo, long, RateLimitPolicy)
+     */
+    public boolean access(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long cost) {
+        return access(index, info, cost, getPolicy());
+    }
+
+    /**
+     * Admits a request with the given cost like {@link #access(RateLimitIndex, RateLimitInfo, long)}, checking
+     * it against the maximum of the given {@link RateLimitPolicy}.
+     *
+     * @param index  The {@link RateLimitIndex} produced by {@link #adapt(Request, SessionStorage)}.
+     * @param info   The {@link RateLimitInfo} returned by {@link #resolve(RateLimitIndex)}.
+     * @param cost   The cost of the request.
+     * @param policy The {@link RateLimitPolicy} the request is checked against.
+     * @return {@code true} if the quota is exceeded, {@code false} otherwise.
+     */
+    public boolean access(@NotNull RateLimitIndex index, @NotNull RateLimitInfo info, long cost, @NotNull RateLimitPolicy policy) {
+        final Quota quota = quotas.get(index.source());
+        if (quota == null || quota.info != info) return info.access(cost, policy);
+
+        final long max = policy.max();
+        final AtomicLong times = info.times();
+
+        boolean flushed = false;
+        while (true) {
+            long current = times.get();
+            if (current + cost > max) return true;
+
+            if (quota.persistent && current + cost - quota.durable > maxUnflushed) {
+                // Without a background thread nobody else would flush, so the bound is enforced right here
+                if (flushed || executor != null || !flushQuietly()) {
+                    requestFlush();
+                    return true;
+                }
+
+                flushed = true;
+                continue;
+            }
+
+            if (times.compareAndSet(current, current + cost)) return false;
+        }
+    }
+
+    /**
+     * Appends the units consumed since the last flush to the journal. The units only count as durable once
+     * the batch has been forced to the disk, if this fails they are retried with the next flush.
+     *
+     * @return The amount of sources which have been flushed.
+     * @throws IOException If the batch could not be written.
+     */
+    public synchronized long flush() throws IOException {
+        flushRequested.set(false);
+
+        Map<QuotaJournal.Key, Long> units = new HashMap<>();
+        Map<Quota, long[]> marks = new HashMap<>();
+        quotas.forEach((source, quota) -> {
+            if (!quota.persistent) return;
+
+            synchronized (quota) {
+                long times = quota.info.getTimes();
+                if (times <= quota.durable) return;
+
+                units.put(new QuotaJournal.Key(source, quota.start), times - quota.durable);
+                marks.put(quota, new long[]{quota.start, times});
+            }
+        });
+
+        if (units.isEmpty()) return 0;
+        journal.append(units);
+
+        marks.forEach((quota, mark) -> {
+            synchronized (quota) {
+                if (quota.start == mark[0] && quota.durable < mark[1]) quota.durable = mark[1];
+            }
+        });
+
+        if (journal.size() > COMPACT_THRESHOLD) compact();
+        return units.size();
+    }
+
+    /**
+     * Replaces the journal with the durable units of the current period of every source.
+     *
+     * @throws IOException If the journal could not be compacted.
+     */
+    private synchronized void compact() throws IOException {
+        Map<QuotaJournal.Key, Long> totals = new HashMap<>();
+        quotas.forEach((source, quota) -> {
+            synchronized (quota) {
+                if (quota.durable > 0) totals.put(new QuotaJournal.Key(source, quota.start), quota.durable);
+            }
+        });
+
+        journal.compact(totals);
+    }
+
+    /**
+     * Flushes the journal and logs failures instead of throwing them.
+     *
+     * @return {@code true} if the journal has been flushed, {@code false} otherwise.
+     */
+    private boolean flushQuietly() {
+        try {
+            flush();
+            return true;
+        } catch (IOException e) {
+            CNetSecurity.getLogger().error(e, "Failed to flush the quotas of " + getId() + "!");
+            return false;
+        }
+    }
+
+    /**
+     * Requests an early flush because a source has reached its maximum of unflushed units.
+     */
+    private void requestFlush() {
+        ScheduledExecutorService executor = this.executor;
+        if (executor == null || !flushRequested.compareAndSet(false, true)) return;
+
+        try {
+            executor.execute(this::flushQuietly);
+        } catch (RuntimeException e) {
+            flushRequested.set(false);
+        }
+    }
+
+    /**
+     * Removes the quotas of all sources whose period has ended. Their units are no longer needed, as the
+     * next request of the source starts a new period.
+     */
+    public void sweep() {
+        final long now = SecurityClock.now();
+        for (Object source : quotas.keySet())
+            quotas.computeIfPresent(source, (s, quota) -> quota.info.getExpiresAt() <= now ? null : quota);
+    }
+
+    /**
+     * Quotas are checked by the {@link RateLimitManager} directly and do not support charge backs.
+     *
+     * @return Always {@code false}.
+     */
+    @Override
+    public final boolean chargesBack() {
+        return false;
+    }
+
+    /**
+     * Quotas are checked by the {@link RateLimitManager} directly and do not charge failed authentications.
+     *
+     * @param request The request whose authentication failed.
+     * @param storage The session storage associated with the request.
+     * @return Always {@code 0}.
+     */
+    @Override
+    public final long authFailureCost(Request request, SessionStorage storage) {
+        return 0;
+    }
+
+    /**
+     * Quotas are checked by the {@link RateLimitManager} directly and do not charge back.
+     *
+     * @param exchange The completed {@link Exchange}.
+     * @param elapsed  The time in nanoseconds between the rate limit check and the completion of the exchange.
+     * @return Always {@code 0}.
+     */
+    @Override
+    public final long chargeBack(Exchange exchange, long elapsed) {
+        return 0;
+    }
+
+    /**
+     * Sets the maximum amount of units per source which may be admitted before they are durable. This is
+     * the amount a source can exceed its quota by after a crash.
+     *
+     * @param maxUnflushed The maximum amount of unflushed units, must be positive.
+     * @throws IllegalStateException If the amount is not positive.
+     */
+    public void setMaxUnflushed(long maxUnflushed) {
+        if (maxUnflushed < 1)
+            throw new IllegalStateException("The maximum amount of unflushed units must be positive! (Invalid amount: " + maxUnflushed + ")");
+        this.maxUnflushed = maxUnflushed;
+    }
+
+    /**
+     * Gets the maximum amount of units per source which may be admitted before they are durable.
+     *
+     * @return The maximum amount of unflushed units.
+     */
+    public long getMaxUnflushed() {
+        return maxUnflushed;
+    }
+
+    /**
+     * Gets the {@link QuotaPeriod} of this adapter.
+     *
+     * @return The {@link QuotaPeriod}.
+     */
+    public @NotNull QuotaPeriod getPeriod() {
+        return period;
+    }
+
+    /**
+     * Gets the {@link QuotaJournal} of this adapter.
+     *
+     * @return The {@link QuotaJournal}.
+     */
+    public @NotNull QuotaJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * The quota of a single source within its current period.
+     */
+    private static final class Quota {
+
+        private final RateLimitInfo info;
+        private final boolean persistent;
+        private volatile long start;
+        private volatile long durable;
+
+        private Quota(QuotaRateLimitAdapter adapter, Object source, long start, long end, long units) {
+            this.info = new RateLimitInfo(adapter, new AtomicLong(units), new AtomicLong(end));
+            this.persistent = QuotaJournal.isSupported(source);
+            this.start = start;
+            this.durable = units;
+        }
+
+        /**
+         * Starts a new period if the current one has ended. Units of the previous period which are not
+         * durable yet are discarded, as they no longer count.
+         *
+         * @param period The {@link QuotaPeriod} of the quota.
+         * @param now    The current time in milliseconds.
+         */
+        private void rollOver(QuotaPeriod period, long now) {
+            if (info.getExpiresAt() > now) return;
+
+            synchronized (this) {
+                if (info.getExpiresAt() > now) return;
+
+                start = period.start(now);
+                durable = 0;
+                info.update(0, period.end(now));
+            }
+        }
+
+    }
+
+}
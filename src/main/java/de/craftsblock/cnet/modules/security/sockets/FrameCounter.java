@@ -0,0 +1,111 @@
+package de.craftsblock.cnet.modules.security.sockets;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link FrameCounter} limits the amount of websocket frames within a fixed time window. The current window
+ * and the amount of frames counted in it are packed into a single {@link AtomicLong}, so counting a frame is a
+ * single compare and set without any allocation or map lookup.
+ * <p>
+ * Only the lowest 40 bits of the window number are stored. Consecutive windows therefore still differ, even for
+ * windows of a single millisecond, and a stored window is only mistaken for the current one if the counter has
+ * not been used for {@code 2^40} windows.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see SocketConnection
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class FrameCounter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long WINDOW_MASK = -1L >>> COUNT_BITS;
+
+    /**
+     * The maximum amount of frames per window a {@link FrameCounter} can enforce.
+     */
+    public static final long MAX_LIMIT = COUNT_MASK;
+
+    private final AtomicLong state = new AtomicLong();
+    private final long limit;
+    private final long window;
+
+    /**
+     * Constructs a new {@link FrameCounter}.
+     *
+     * @param limit  The maximum amount of frames per window.
+     * @param window The length of a window in milliseconds.
+     * @throws IllegalStateException If the limit or the window is out of range.
+     */
+    public FrameCounter(long limit, long window) {
+        if (limit < 1 || limit > MAX_LIMIT || window < 1)
+            throw new IllegalStateException("Invalid frame limit! (limit: " + limit + ", window: " + window + "ms)");
+
+        this.limit = limit;
+        this.window = window;
+    }
+
+    /**
+     * Counts a frame if the limit of the current window has not been reached yet.
+     *
+     * @param now The current time in milliseconds.
+     * @return {@code true} if the frame is allowed, {@code false} if the limit has been reached.
+     */
+    public boolean tryAcquire(long now) {
+        final long current = windowOf(now);
+
+        while (true) {
+            long state = this.state.get();
+            if (state >>> COUNT_BITS != current) {
+                if (this.state.compareAndSet(state, current << COUNT_BITS | 1)) return true;
+                continue;
+            }
+
+            if ((state & COUNT_MASK) >= limit) return false;
+            if (this.state.compareAndSet(state, state + 1)) return true;
+        }
+    }
+
+    /**
+     * Gets the amount of frames counted in the window of the given time.
+     *
+     * @param now The current time in milliseconds.
+     * @return The amount of frames counted.
+     */
+    public long getCount(long now) {
+        long state = this.state.get();
+        return state >>> COUNT_BITS == windowOf(now) ? state & COUNT_MASK : 0;
+    }
+
+    /**
+     * Gets the number of the window of the given time, truncated to the bits which are stored in the state.
+     *
+     * @param now The current time in milliseconds.
+     * @return The truncated window number.
+     */
+    private long windowOf(long now) {
+        return (now / window) & WINDOW_MASK;
+    }
+
+    /**
+     * Gets the maximum amount of frames per window.
+     *
+     * @return The limit.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Gets the length of a window in milliseconds.
+     *
+     * @return The window length.
+     */
+    public long getWindow() {
+        return window;
+    }
+
+}
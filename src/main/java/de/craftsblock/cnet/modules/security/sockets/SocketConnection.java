@@ -0,0 +1,119 @@
+package de.craftsblock.cnet.modules.security.sockets;
+
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.craftsnet.api.websocket.WebSocketClient;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The {@link SocketConnection} holds the security state of a single websocket connection. The connection is
+ * authenticated once during the handshake, and the result is pinned to it for the lifetime of the connection.
+ * <p>
+ * Every connection carries its own {@link FrameCounter}, and authenticated connections additionally share the
+ * {@link FrameCounter} of their {@link Token} with all other connections of the same token. Both are resolved once
+ * when the connection is registered, so checking a frame does not look up any rate limit state.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see SocketManager
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class SocketConnection {
+
+    private final WebSocketClient client;
+    private final FrameCounter frames;
+
+    private volatile Token token;
+    private volatile FrameCounter tokenFrames;
+
+    /**
+     * Constructs a new {@link SocketConnection}.
+     *
+     * @param client The {@link WebSocketClient} of the connection.
+     * @param frames The {@link FrameCounter} of the connection.
+     */
+    SocketConnection(@NotNull WebSocketClient client, @NotNull FrameCounter frames) {
+        this.client = client;
+        this.frames = frames;
+    }
+
+    /**
+     * Counts an incoming frame against the limits of this connection and its token.
+     *
+     * @param now The current time in milliseconds.
+     * @return {@code true} if the frame is allowed, {@code false} if a limit has been reached.
+     */
+    public boolean tryFrame(long now) {
+        if (!frames.tryAcquire(now)) return false;
+
+        FrameCounter tokenFrames = this.tokenFrames;
+        return tokenFrames == null || tokenFrames.tryAcquire(now);
+    }
+
+    /**
+     * Pins the {@link Token} the connection has been authenticated with. This is called by auth adapters
+     * during the handshake.
+     *
+     * @param token The authenticated {@link Token}.
+     */
+    public void setToken(@Nullable Token token) {
+        this.token = token;
+    }
+
+    /**
+     * Gets the {@link Token} the connection has been authenticated with.
+     *
+     * @return The authenticated {@link Token}, or {@code null} if the connection is not authenticated by a token.
+     */
+    public @Nullable Token getToken() {
+        return token;
+    }
+
+    /**
+     * Checks whether the connection has been authenticated by a token.
+     *
+     * @return {@code true} if a token has been pinned, {@code false} otherwise.
+     */
+    public boolean isAuthenticated() {
+        return token != null;
+    }
+
+    /**
+     * Gets the {@link WebSocketClient} of the connection.
+     *
+     * @return The {@link WebSocketClient}.
+     */
+    public @NotNull WebSocketClient getClient() {
+        return client;
+    }
+
+    /**
+     * Gets the {@link FrameCounter} of the connection.
+     *
+     * @return The {@link FrameCounter} of the connection.
+     */
+    public @NotNull FrameCounter getFrames() {
+        return frames;
+    }
+
+    /**
+     * Gets the {@link FrameCounter} shared by all connections of the pinned token.
+     *
+     * @return The {@link FrameCounter} of the token, or {@code null} if the connection is not authenticated by a token.
+     */
+    public @Nullable FrameCounter getTokenFrames() {
+        return tokenFrames;
+    }
+
+    /**
+     * Sets the {@link FrameCounter} shared by all connections of the pinned token.
+     *
+     * @param tokenFrames The {@link FrameCounter} of the token.
+     */
+    void setTokenFrames(@Nullable FrameCounter tokenFrames) {
+        this.tokenFrames = tokenFrames;
+    }
+
+}
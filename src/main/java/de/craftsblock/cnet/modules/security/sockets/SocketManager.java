@@ -0,0 +1,184 @@
+package de.craftsblock.cnet.modules.security.sockets;
+
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.cnet.modules.security.utils.Manager;
+import de.craftsblock.craftsnet.api.websocket.WebSocketClient;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link SocketManager} keeps track of all open websocket connections and their {@link SocketConnection}s.
+ * It limits the amount of incoming frames per connection and per {@link Token}.
+ * <p>
+ * The limits are applied to connections when they are registered, changing them does not affect connections
+ * which are already open. By default a connection may send 200 frames per second, and all connections of a
+ * token together may send 1000 frames per second.
+ * </p>
+ * <p>
+ * Frames are only accepted from connections which have been registered after a successful handshake. Frames of
+ * clients which are unknown to this manager, e.g. because their handshake has been rejected, are dropped.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @see SocketConnection
+ * @see FrameCounter
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class SocketManager implements Manager {
+
+    private final ConcurrentHashMap<WebSocketClient, SocketConnection> connections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, TokenFrames> tokens = new ConcurrentHashMap<>();
+
+    private volatile long connectionLimit = 200;
+    private volatile long connectionWindow = 1000;
+    private volatile long tokenLimit = 1000;
+    private volatile long tokenWindow = 1000;
+
+    /**
+     * Creates a new, not yet registered {@link SocketConnection} for a connecting client.
+     *
+     * @param client The connecting {@link WebSocketClient}.
+     * @return The new {@link SocketConnection}.
+     */
+    public @NotNull SocketConnection create(@NotNull WebSocketClient client) {
+        return new SocketConnection(client, new FrameCounter(connectionLimit, connectionWindow));
+    }
+
+    /**
+     * Registers an authenticated {@link SocketConnection}. If a token has been pinned to the connection,
+     * the connection is bound to the {@link FrameCounter} of that token.
+     *
+     * @param connection The {@link SocketConnection} to register.
+     */
+    public void register(@NotNull SocketConnection connection) {
+        Token token = connection.getToken();
+        if (token != null) {
+            TokenFrames frames = tokens.compute(token.id(), (id, current) -> {
+                TokenFrames result = current != null ? current : new TokenFrames(new FrameCounter(tokenLimit, tokenWindow));
+                result.connections().incrementAndGet();
+                return result;
+            });
+            connection.setTokenFrames(frames.counter());
+        }
+
+        SocketConnection previous = connections.put(connection.getClient(), connection);
+        if (previous != null && previous != connection) release(previous);
+    }
+
+    /**
+     * Removes the {@link SocketConnection} of a disconnected client.
+     *
+     * @param client The disconnected {@link WebSocketClient}.
+     */
+    public void unregister(@NotNull WebSocketClient client) {
+        SocketConnection connection = connections.remove(client);
+        if (connection != null) release(connection);
+    }
+
+    /**
+     * Counts an incoming frame of the given client.
+     *
+     * @param client The {@link WebSocketClient} which sent the frame.
+     * @param now    The current time in milliseconds.
+     * @return {@code true} if the frame is allowed, {@code false} if a limit has been reached or the client
+     * is not registered.
+     */
+    public boolean tryFrame(@NotNull WebSocketClient client, long now) {
+        SocketConnection connection = connections.get(client);
+        return connection != null && connection.tryFrame(now);
+    }
+
+    /**
+     * Gets the {@link SocketConnection} of a client.
+     *
+     * @param client The {@link WebSocketClient}.
+     * @return The {@link SocketConnection}, or {@code null} if the client is not registered.
+     */
+    public @Nullable SocketConnection getConnection(@NotNull WebSocketClient client) {
+        return connections.get(client);
+    }
+
+    /**
+     * Gets an unmodifiable view of all registered connections.
+     *
+     * @return The registered {@link SocketConnection}s.
+     */
+    public @NotNull Collection<SocketConnection> getConnections() {
+        return Collections.unmodifiableCollection(connections.values());
+    }
+
+    /**
+     * Sets the amount of frames a single connection may send within a window. This only affects connections
+     * which are created afterward.
+     *
+     * @param limit  The maximum amount of frames per window.
+     * @param window The length of a window.
+     * @param unit   The {@link TimeUnit} of the window.
+     * @throws IllegalStateException If the limit or the window is out of range.
+     */
+    public void setConnectionLimit(long limit, long window, @NotNull TimeUnit unit) {
+        long millis = unit.toMillis(window);
+        new FrameCounter(limit, millis); // Validates the limit
+
+        this.connectionLimit = limit;
+        this.connectionWindow = millis;
+    }
+
+    /**
+     * Sets the amount of frames all connections of a single token may send together within a window.
+     * This only affects tokens which have no open connection yet.
+     *
+     * @param limit  The maximum amount of frames per window.
+     * @param window The length of a window.
+     * @param unit   The {@link TimeUnit} of the window.
+     * @throws IllegalStateException If the limit or the window is out of range.
+     */
+    public void setTokenLimit(long limit, long window, @NotNull TimeUnit unit) {
+        long millis = unit.toMillis(window);
+        new FrameCounter(limit, millis); // Validates the limit
+
+        this.tokenLimit = limit;
+        this.tokenWindow = millis;
+    }
+
+    /**
+     * Releases the token binding of a connection, dropping the token counter once its last connection is gone.
+     *
+     * @param connection The {@link SocketConnection} which has been closed.
+     */
+    private void release(SocketConnection connection) {
+        Token token = connection.getToken();
+        if (token == null || connection.getTokenFrames() == null) return;
+
+        tokens.computeIfPresent(token.id(), (id, frames) -> frames.connections().decrementAndGet() <= 0 ? null : frames);
+        connection.setTokenFrames(null);
+    }
+
+    /**
+     * The {@link FrameCounter} shared by all connections of a token.
+     *
+     * @param counter     The shared {@link FrameCounter}.
+     * @param connections The amount of open connections of the token.
+     */
+    private record TokenFrames(FrameCounter counter, AtomicInteger connections) {
+
+        /**
+         * Constructs new {@link TokenFrames} without any connections.
+         *
+         * @param counter The shared {@link FrameCounter}.
+         */
+        private TokenFrames(FrameCounter counter) {
+            this(counter, new AtomicInteger());
+        }
+
+    }
+
+}
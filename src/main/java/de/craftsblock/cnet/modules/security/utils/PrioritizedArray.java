@@ -0,0 +1,234 @@
+package de.craftsblock.cnet.modules.security.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * The {@link PrioritizedArray} is a copy on write collection for elements which are read on every request
+ * but almost never change, like rate limit adapters or auth chains. Every modification publishes a new
+ * immutable array, so readers can walk {@link #array()} by index without locking or allocating an iterator.
+ * <p>
+ * The elements are ordered by their priority in descending order. Elements with equal priority keep the
+ * order in which they were added, so the order is always deterministic.
+ * </p>
+ *
+ * @param <T> The type of the elements.
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class PrioritizedArray<T> implements Iterable<T> {
+
+    /**
+     * The priority used if no explicit priority is given.
+     */
+    public static final int DEFAULT_PRIORITY = 0;
+
+    private final IntFunction<T[]> generator;
+
+    private volatile T[] elements;
+    private int[] priorities = new int[0];
+
+    /**
+     * Constructs a new, empty {@link PrioritizedArray}.
+     *
+     * @param generator A function creating a new array of the element type with the given length.
+     */
+    public PrioritizedArray(@NotNull IntFunction<T[]> generator) {
+        this.generator = generator;
+        this.elements = generator.apply(0);
+    }
+
+    /**
+     * Adds an element with the given priority. Elements with a higher priority are placed in front of elements
+     * with a lower one, elements with the same priority are placed after the existing ones.
+     *
+     * @param element  The element to add.
+     * @param priority The priority of the element.
+     * @return {@code true} if the element was added, {@code false} if it is already present.
+     */
+    public synchronized boolean add(@NotNull T element, int priority) {
+        final T[] current = this.elements;
+        if (indexOf(current, element) != -1) return false;
+
+        int position = current.length;
+        while (position > 0 && priorities[position - 1] < priority) position--;
+
+        T[] elements = generator.apply(current.length + 1);
+        int[] priorities = new int[current.length + 1];
+
+        System.arraycopy(current, 0, elements, 0, position);
+        System.arraycopy(this.priorities, 0, priorities, 0, position);
+        elements[position] = element;
+        priorities[position] = priority;
+        System.arraycopy(current, position, elements, position + 1, current.length - position);
+        System.arraycopy(this.priorities, position, priorities, position + 1, current.length - position);
+
+        this.priorities = priorities;
+        this.elements = elements;
+        return true;
+    }
+
+    /**
+     * Removes an element.
+     *
+     * @param element The element to remove.
+     * @return {@code true} if the element was removed, {@code false} if it was not present.
+     */
+    public synchronized boolean remove(@NotNull Object element) {
+        int index = indexOf(this.elements, element);
+        if (index == -1) return false;
+
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Removes all elements matching the given filter.
+     *
+     * @param filter The filter selecting the elements to remove.
+     * @return {@code true} if any element was removed, {@code false} otherwise.
+     */
+    public synchronized boolean removeIf(@NotNull Predicate<? super T> filter) {
+        boolean removed = false;
+        for (int i = this.elements.length - 1; i >= 0; i--) {
+            if (!filter.test(this.elements[i])) continue;
+
+            removeAt(i);
+            removed = true;
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes and adds several elements at once. Readers either see the elements before or after the whole
+     * change, never a state in between. Elements which are removed and added again are moved to their new priority.
+     *
+     * @param removed The elements to remove.
+     * @param added   The elements to add with their priority, added in the iteration order of the map.
+     */
+    public synchronized void replace(@NotNull Collection<?> removed, @NotNull Map<? extends T, Integer> added) {
+        final T[] current = this.elements;
+        List<T> elements = new ArrayList<>(current.length + added.size());
+        List<Integer> priorities = new ArrayList<>(current.length + added.size());
+
+        for (int i = 0; i < current.length; i++) {
+            if (removed.contains(current[i]) || added.containsKey(current[i])) continue;
+
+            elements.add(current[i]);
+            priorities.add(this.priorities[i]);
+        }
+
+        added.forEach((element, priority) -> {
+            int position = elements.size();
+            while (position > 0 && priorities.get(position - 1) < priority) position--;
+
+            elements.add(position, element);
+            priorities.add(position, priority);
+        });
+
+        this.priorities = priorities.stream().mapToInt(Integer::intValue).toArray();
+        this.elements = elements.toArray(generator.apply(elements.size()));
+    }
+
+    /**
+     * Checks whether the given element is present.
+     *
+     * @param element The element to check.
+     * @return {@code true} if the element is present, {@code false} otherwise.
+     */
+    public boolean contains(@NotNull Object element) {
+        return indexOf(this.elements, element) != -1;
+    }
+
+    /**
+     * Gets the current array of elements, ordered by priority. The returned array is shared and must not
+     * be modified, later modifications of this collection publish a new array and do not affect it.
+     *
+     * @return The current array of elements.
+     */
+    public @NotNull T[] array() {
+        return elements;
+    }
+
+    /**
+     * Gets the amount of elements.
+     *
+     * @return The amount of elements.
+     */
+    public int size() {
+        return elements.length;
+    }
+
+    /**
+     * Checks whether this collection is empty.
+     *
+     * @return {@code true} if there are no elements, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return elements.length == 0;
+    }
+
+    /**
+     * Gets an unmodifiable list of the current elements. Later modifications of this collection are not reflected.
+     *
+     * @return The current elements, ordered by priority.
+     */
+    public @NotNull List<T> asList() {
+        return List.of(elements);
+    }
+
+    /**
+     * Gets an iterator over the elements at the time of the call.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public @NotNull Iterator<T> iterator() {
+        return Arrays.asList(elements).iterator();
+    }
+
+    /**
+     * Removes the element at the given index. The caller must hold the monitor of this collection.
+     *
+     * @param index The index to remove.
+     */
+    private void removeAt(int index) {
+        final T[] current = this.elements;
+
+        T[] elements = generator.apply(current.length - 1);
+        int[] priorities = new int[current.length - 1];
+
+        System.arraycopy(current, 0, elements, 0, index);
+        System.arraycopy(this.priorities, 0, priorities, 0, index);
+        System.arraycopy(current, index + 1, elements, index, current.length - index - 1);
+        System.arraycopy(this.priorities, index + 1, priorities, index, current.length - index - 1);
+
+        this.priorities = priorities;
+        this.elements = elements;
+    }
+
+    /**
+     * Finds the index of an element.
+     *
+     * @param elements The elements to search.
+     * @param element  The element to find.
+     * @return The index of the element, or {@code -1} if it is not present.
+     */
+    private static int indexOf(Object[] elements, Object element) {
+        for (int i = 0; i < elements.length; i++)
+            if (elements[i].equals(element)) return i;
+        return -1;
+    }
+
+}
@@ -0,0 +1,135 @@
+package de.craftsblock.cnet.modules.security.utils;
+
+import de.craftsblock.cnet.modules.security.SecurityContext;
+import de.craftsblock.craftscore.json.Json;
+import de.craftsblock.craftsnet.api.http.Exchange;
+import de.craftsblock.craftsnet.api.http.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link Rejections} write the responses of requests which are rejected by the rate limits or the
+ * authentication chains. Under a flood, rejected requests easily outnumber the legitimate ones, so their
+ * json bodies are encoded only once and then written as plain byte arrays.
+ * <p>
+ * Rate limited requests are answered with {@code 429 Too Many Requests} and a {@code Retry-After} header
+ * telling the client when the exceeded limits reset, so well behaved clients back off instead of retrying
+ * right away.
+ * </p>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.0.0
+ * @see SecurityContext#getRetryAt()
+ * @since 1.0.0-SNAPSHOT
+ */
+public final class Rejections {
+
+    /**
+     * The http status code of rate limited requests.
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The header telling the client after how many seconds it may retry.
+     */
+    public static final String RETRY_AFTER = "Retry-After";
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String JSON_TYPE = "application/json";
+
+    private static final int MAX_CACHED_REASONS = 256;
+    private static final ConcurrentHashMap<String, byte[]> BODIES = new ConcurrentHashMap<>();
+    private static final byte[] RATE_LIMITED = encode("You have been rate limited!");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Rejections() {
+    }
+
+    /**
+     * Writes the response of a rate limited request, including a {@code Retry-After} header if the time at
+     * which the client may retry is known.
+     *
+     * @param exchange The {@link Exchange} of the rejected request.
+     * @param context  The {@link SecurityContext} of the rejected request.
+     * @throws IOException If the response could not be written.
+     */
+    public static void rateLimited(@NotNull Exchange exchange, @NotNull SecurityContext context) throws IOException {
+        final Response response = exchange.response();
+        response.setCode(TOO_MANY_REQUESTS);
+
+        final long retryAt = context.getRetryAt();
+        if (retryAt > 0)
+            response.setHeader(RETRY_AFTER, Long.toString(retryAfter(retryAt, SecurityClock.now())));
+
+        write(response, RATE_LIMITED);
+    }
+
+    /**
+     * Writes the response of a request whose authentication failed.
+     *
+     * @param exchange The {@link Exchange} of the rejected request.
+     * @param reason   The reason why the authentication failed.
+     * @throws IOException If the response could not be written.
+     */
+    public static void authFailed(@NotNull Exchange exchange, @NotNull String reason) throws IOException {
+        write(exchange.response(), bodyOf(reason));
+    }
+
+    /**
+     * Gets the encoded body of an error, which is cached for the fixed set of reasons used by the
+     * authentication adapters. Once too many different reasons have been seen, further reasons are
+     * encoded on every call.
+     *
+     * @param reason The error reason.
+     * @return The encoded json body.
+     */
+    private static byte[] bodyOf(String reason) {
+        byte[] body = BODIES.get(reason);
+        if (body != null) return body;
+
+        body = encode(reason);
+        if (BODIES.size() < MAX_CACHED_REASONS) BODIES.putIfAbsent(reason, body);
+        return body;
+    }
+
+    /**
+     * Encodes the json body of an error.
+     *
+     * @param reason The error reason.
+     * @return The encoded json body.
+     */
+    private static byte[] encode(String reason) {
+        return Json.empty().set("error", reason).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an encoded json body.
+     *
+     * @param response The {@link Response} to write to.
+     * @param body     The encoded json body.
+     * @throws IOException If the body could not be written.
+     */
+    private static void write(Response response, byte[] body) throws IOException {
+        if (!response.hasHeader(CONTENT_TYPE)) response.setHeader(CONTENT_TYPE, JSON_TYPE);
+        response.print(body);
+    }
+
+    /**
+     * Converts a retry timestamp into the delay of the {@code Retry-After} header. The delay is rounded up
+     * to whole seconds and is at least one second, so clients never retry before the limits have reset.
+     *
+     * @param retryAt The retry timestamp in milliseconds.
+     * @param now     The current time in milliseconds.
+     * @return The delay in seconds.
+     */
+    public static long retryAfter(long retryAt, long now) {
+        return Math.max(1, (retryAt - now + 999) / 1000);
+    }
+
+}
@@ -0,0 +1,213 @@
+package de.craftsblock.cnet.modules.security.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@link SecurityClock} is the millisecond time source shared by the rate limiting code of this addon.
+ * All time based decisions, like window expiration and reset headers, read the current time through
+ * {@link #now()} instead of calling {@link System#currentTimeMillis()} directly.
+ * <p>
+ * By default the {@link #system()} clock is installed, which costs no background thread. A {@link #ticking()}
+ * clock turns every read into a plain volatile read, but is updated by a background thread which wakes up
+ * once per resolution for as long as it is installed, so it only pays off on hosts where reading the system
+ * time is expensive. Tests can install a {@link #manual(long)} clock to move the time forward deterministically
+ * instead of sleeping:
+ * </p>
+ * <pre>{@code
+ * SecurityClock.Manual clock = SecurityClock.manual(0);
+ * SecurityClock.install(clock);
+ *
+ * clock.advance(60, TimeUnit.SECONDS); // Every rate limit window of one minute has now expired
+ * }</pre>
+ *
+ * @author Philipp Maywald
+ * @author CraftsBlock
+ * @version 1.1.0
+ * @since 1.0.0-SNAPSHOT
+ */
+public abstract class SecurityClock {
+
+    private static volatile SecurityClock current = new SystemClock();
+
+    /**
+     * Gets the current time in milliseconds from the installed {@link SecurityClock}.
+     *
+     * @return The current time in milliseconds.
+     */
+    public static long now() {
+        return current.millis();
+    }
+
+    /**
+     * Installs a new {@link SecurityClock}. The previously installed clock is closed.
+     *
+     * @param clock The {@link SecurityClock} to install.
+     */
+    public static void install(@NotNull SecurityClock clock) {
+        SecurityClock previous = current;
+        current = clock;
+        if (previous != clock) previous.close();
+    }
+
+    /**
+     * Gets the currently installed {@link SecurityClock}.
+     *
+     * @return The installed {@link SecurityClock}.
+     */
+    public static @NotNull SecurityClock current() {
+        return current;
+    }
+
+    /**
+     * Creates a {@link SecurityClock} which reads {@link System#currentTimeMillis()} on every call.
+     *
+     * @return A new system {@link SecurityClock}.
+     */
+    public static @NotNull SecurityClock system() {
+        return new SystemClock();
+    }
+
+    /**
+     * The default resolution of a {@link #ticking()} clock in milliseconds.
+     */
+    public static final long DEFAULT_RESOLUTION = 10;
+
+    /**
+     * Creates a {@link SecurityClock} which caches the current time and is updated by a background
+     * thread once per {@link #DEFAULT_RESOLUTION}.
+     *
+     * @return A new ticking {@link SecurityClock}.
+     */
+    public static @NotNull SecurityClock ticking() {
+        return ticking(DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Creates a {@link SecurityClock} which caches the current time and is updated by a background
+     * thread once per resolution. The cached time lags behind by at most the resolution.
+     *
+     * @param resolution The time in milliseconds between two updates.
+     * @return A new ticking {@link SecurityClock}.
+     * @throws IllegalStateException If the resolution is less than one millisecond.
+     */
+    public static @NotNull SecurityClock ticking(long resolution) {
+        if (resolution < 1)
+            throw new IllegalStateException("The resolution must be at least one millisecond! (Invalid resolution: " + resolution + ")");
+        return new TickingClock(resolution);
+    }
+
+    /**
+     * Creates a {@link SecurityClock} which only moves when it is told to.
+     *
+     * @param start The initial time in milliseconds.
+     * @return A new manual {@link SecurityClock}.
+     */
+    public static @NotNull Manual manual(long start) {
+        return new Manual(start);
+    }
+
+    /**
+     * Gets the current time of this clock in milliseconds.
+     *
+     * @return The current time in milliseconds.
+     */
+    public abstract long millis();
+
+    /**
+     * Releases all resources held by this clock, like background threads.
+     */
+    public void close() {
+    }
+
+    /**
+     * A {@link SecurityClock} which delegates to {@link System#currentTimeMillis()}.
+     */
+    private static final class SystemClock extends SecurityClock {
+
+        @Override
+        public long millis() {
+            return System.currentTimeMillis();
+        }
+
+    }
+
+    /**
+     * A {@link SecurityClock} which is updated by a single daemon thread once per resolution.
+     */
+    private static final class TickingClock extends SecurityClock {
+
+        private final Thread ticker;
+        private volatile long millis = System.currentTimeMillis();
+        private volatile boolean running = true;
+
+        private TickingClock(long resolution) {
+            final long nanos = TimeUnit.MILLISECONDS.toNanos(resolution);
+            this.ticker = new Thread(() -> {
+                while (running) {
+                    millis = System.currentTimeMillis();
+                    LockSupport.parkNanos(nanos);
+                }
+            }, "CNetSecurity-Clock");
+            this.ticker.setDaemon(true);
+            this.ticker.start();
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            LockSupport.unpark(ticker);
+        }
+
+    }
+
+    /**
+     * A {@link SecurityClock} which only moves when {@link #advance(long, TimeUnit)} or {@link #set(long)}
+     * is called. It is intended for tests.
+     */
+    public static final class Manual extends SecurityClock {
+
+        private volatile long millis;
+
+        private Manual(long start) {
+            this.millis = start;
+        }
+
+        /**
+         * Moves this clock forward.
+         *
+         * @param amount The amount to move forward.
+         * @param unit   The {@link TimeUnit} of the amount.
+         * @return The instance of {@link Manual} used for chain method calls.
+         */
+        public synchronized Manual advance(long amount, @NotNull TimeUnit unit) {
+            this.millis += unit.toMillis(amount);
+            return this;
+        }
+
+        /**
+         * Sets this clock to the given time.
+         *
+         * @param millis The new time in milliseconds.
+         * @return The instance of {@link Manual} used for chain method calls.
+         */
+        public Manual set(long millis) {
+            this.millis = millis;
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+    }
+
+}
@@ -0,0 +1,54 @@
+package de.craftsblock.cnet.modules.security.auth.chains;
+
+import de.craftsblock.cnet.modules.security.auth.AuthAdapter;
+import de.craftsblock.cnet.modules.security.auth.AuthResult;
+import de.craftsblock.cnet.modules.security.sockets.SocketManager;
+import de.craftsblock.craftsnet.api.http.Exchange;
+import de.craftsblock.craftsnet.api.websocket.WebSocketClient;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimpleAuthChainTest {
+
+    @Test
+    void httpOnlyAdaptersRejectWebsockets() {
+        SimpleAuthChain chain = new SimpleAuthChain();
+        chain.append(new AuthAdapter() {
+            @Override
+            public void authenticate(AuthResult result, Exchange exchange) {
+            }
+        });
+
+        AuthResult result = chain.authenticate(new SocketManager().create(new WebSocketClient()));
+        assertTrue(result.isCancelled());
+    }
+
+    @Test
+    void chainsWithoutWebsocketSupportRejectWebsockets() {
+        AuthChain chain = new AuthChain() {
+            @Override
+            public AuthResult authenticate(Exchange exchange) {
+                return new AuthResult();
+            }
+
+            @Override
+            public AuthChain append(AuthAdapter adapter) {
+                return this;
+            }
+
+            @Override
+            public AuthChain remove(AuthAdapter adapter) {
+                return this;
+            }
+
+            @Override
+            public AuthChain removeAll(Class<? extends AuthAdapter> adapter) {
+                return this;
+            }
+        };
+
+        assertTrue(chain.authenticate(new SocketManager().create(new WebSocketClient())).isCancelled());
+    }
+
+}
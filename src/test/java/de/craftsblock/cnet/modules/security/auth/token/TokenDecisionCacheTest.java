@@ -0,0 +1,50 @@
+package de.craftsblock.cnet.modules.security.auth.token;
+
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenDecisionCacheTest {
+
+    @Test
+    void cachesTheMatchingPermission() {
+        TokenPermission permission = new TokenPermission("/api/.*", ".*", HttpMethod.GET);
+        Token token = Token.of(1, "hash", new ArrayList<>());
+        token.permissions().add(permission);
+
+        TokenDecisionCache cache = new TokenDecisionCache();
+        assertSame(permission, cache.match(token, HttpMethod.GET, "localhost", "/api/users"));
+        assertFalse(cache.isAllowed(token, HttpMethod.GET, "localhost", "/admin"));
+    }
+
+    @Test
+    void evaluatesWhilePermissionsAreModified() throws InterruptedException {
+        Token token = Token.of(1, "hash", new ArrayList<>());
+        TokenDecisionCache cache = new TokenDecisionCache(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread writer = new Thread(() -> {
+            while (running.get())
+                synchronized (token.permissions()) {
+                    if (token.permissions().size() > 64) token.permissions().clear();
+                    token.permissions().add(new TokenPermission("/nothing", ".*", HttpMethod.GET));
+                }
+        });
+        writer.start();
+
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                final String path = "/api/" + i;
+                assertDoesNotThrow(() -> cache.match(token, HttpMethod.GET, "localhost", path));
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+}
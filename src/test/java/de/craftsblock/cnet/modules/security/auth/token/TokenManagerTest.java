@@ -0,0 +1,151 @@
+package de.craftsblock.cnet.modules.security.auth.token;
+
+import de.craftsblock.cnet.modules.security.auth.token.store.TokenStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenManagerTest {
+
+    @Test
+    void lazyStoreIsOpenedByTheManager() {
+        BlockingTokenStore store = new BlockingTokenStore();
+        new TokenManager(store, 2);
+        assertTrue(store.opened);
+    }
+
+    @Test
+    void tokenRemovedWhileLoadingIsNotPutBack() throws Exception {
+        BlockingTokenStore store = new BlockingTokenStore();
+        TokenManager manager = new TokenManager(store, 2);
+        store.tokens.put(1L, Token.of(1, "hash", new ArrayList<>()));
+
+        store.block = true;
+        Thread loader = new Thread(() -> manager.get(1L));
+        loader.start();
+        assertTrue(store.loading.await(5, TimeUnit.SECONDS));
+
+        // The token is revoked while it is read from the store
+        Thread remover = new Thread(() -> manager.remove(1L));
+        remover.start();
+        remover.join(100);
+
+        store.proceed.countDown();
+        loader.join(5000);
+        remover.join(5000);
+
+        assertFalse(store.tokens.containsKey(1L));
+        assertEquals(0, manager.size(), "the revoked token is not held in memory");
+        assertNull(manager.get(1L));
+    }
+
+    @Test
+    void lazyStoreHoldsAtMostTheCapacity() {
+        BlockingTokenStore store = new BlockingTokenStore();
+        TokenManager manager = new TokenManager(store, 4);
+        for (long id = 1; id <= 100; id++) store.tokens.put(id, Token.of(id, "hash", new ArrayList<>()));
+
+        for (long id = 1; id <= 100; id++) {
+            Token token = manager.get(id);
+            assertNotNull(token);
+            assertEquals(id, token.id());
+            assertTrue(manager.size() <= 4, "at most the capacity is held in memory");
+            assertTrue(manager.values().contains(token), "the token which has just been used is held");
+        }
+
+        // Evicted tokens are loaded from the store again
+        assertEquals(1L, manager.get(1L).id());
+        assertEquals(100, store.tokens.size());
+    }
+
+    @Test
+    void concurrentLookupsStayWithinTheCapacity() throws Exception {
+        BlockingTokenStore store = new BlockingTokenStore();
+        TokenManager manager = new TokenManager(store, 16);
+        for (long id = 0; id < 256; id++) store.tokens.put(id, Token.of(id, "hash", new ArrayList<>()));
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final long offset = i;
+            threads[i] = new Thread(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    long id = (n * 31 + offset * 7) % 256;
+                    assertEquals(id, manager.get(id).id());
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join(10_000);
+
+        assertTrue(manager.size() <= 16 + threads.length, "concurrent lookups only overshoot by the racing loads");
+    }
+
+    private static final class BlockingTokenStore implements TokenStore {
+
+        private final Map<Long, Token> tokens = new ConcurrentHashMap<>();
+        private final CountDownLatch loading = new CountDownLatch(1);
+        private final CountDownLatch proceed = new CountDownLatch(1);
+        private volatile boolean block;
+        private volatile boolean opened;
+
+        @Override
+        public boolean isLazy() {
+            return true;
+        }
+
+        @Override
+        public void open() {
+            opened = true;
+        }
+
+        @Override
+        public @Nullable Token load(long id) {
+            Token token = tokens.get(id);
+            if (block) {
+                block = false;
+                loading.countDown();
+                try {
+                    proceed.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return token;
+        }
+
+        @Override
+        public void forEach(@NotNull Consumer<Token> action) {
+            tokens.values().forEach(action);
+        }
+
+        @Override
+        public void store(@NotNull Token token) {
+            tokens.put(token.id(), token);
+        }
+
+        @Override
+        public void delete(long id) {
+            tokens.remove(id);
+        }
+
+        @Override
+        public void save(@NotNull Collection<Token> tokens) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+package de.craftsblock.cnet.modules.security.auth.token;
+
+import de.craftsblock.cnet.modules.security.auth.token.store.TokenStore;
+import de.craftsblock.craftsnet.api.http.HttpMethod;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenQueryTest {
+
+    @Test
+    void afterReturnsTheFollowingPage() {
+        TokenManager manager = new TokenManager(new MemoryTokenStore(false));
+        for (long id = 1; id <= 7; id++)
+            manager.put(id, token(id, id % 2 == 0 ? "/admin/.*" : "/api/.*"));
+
+        TokenQuery query = manager.query().path("/api/users");
+        assertEquals(List.of(1L, 3L), ids(query.after(Long.MIN_VALUE, 2)));
+        assertEquals(List.of(5L, 7L), ids(query.after(3, 2)));
+        assertEquals(List.of(5L, 7L), ids(query.after(4, 2)));
+        assertEquals(List.of(), ids(query.after(7, 2)));
+        assertEquals(ids(query.page(1, 2)), ids(query.after(3, 2)));
+    }
+
+    @Test
+    void queryDoesNotEvictResidentTokensOfALazyStore() {
+        MemoryTokenStore store = new MemoryTokenStore(true);
+        TokenManager manager = new TokenManager(store, 2);
+        for (long id = 1; id <= 5; id++)
+            manager.put(id, token(id, "/api/.*"));
+
+        Token hot = manager.get(5L);
+        assertEquals(5, manager.query().path("/api/users").count());
+
+        assertEquals(2, manager.size());
+        assertTrue(manager.values().contains(hot));
+        assertTrue(store.loads > 0);
+    }
+
+    private static Token token(long id, String path) {
+        Token token = Token.of(id, "hash", new ArrayList<>());
+        token.permissions().add(new TokenPermission(path, ".*", HttpMethod.GET));
+        return token;
+    }
+
+    private static List<Long> ids(List<Token> tokens) {
+        return tokens.stream().map(Token::id).toList();
+    }
+
+    private static final class MemoryTokenStore implements TokenStore {
+
+        private final Map<Long, Token> tokens = new ConcurrentHashMap<>();
+        private final boolean lazy;
+        private int loads;
+
+        private MemoryTokenStore(boolean lazy) {
+            this.lazy = lazy;
+        }
+
+        @Override
+        public boolean isLazy() {
+            return lazy;
+        }
+
+        @Override
+        public @Nullable Token load(long id) {
+            loads++;
+            return tokens.get(id);
+        }
+
+        @Override
+        public void forEach(@NotNull Consumer<Token> action) {
+            tokens.values().forEach(action);
+        }
+
+        @Override
+        public void store(@NotNull Token token) {
+            tokens.put(token.id(), token);
+        }
+
+        @Override
+        public void delete(long id) {
+            tokens.remove(id);
+        }
+
+        @Override
+        public void save(@NotNull Collection<Token> tokens) {
+            if (!lazy) tokens.forEach(this::store);
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
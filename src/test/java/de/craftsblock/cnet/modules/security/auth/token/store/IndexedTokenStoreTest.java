@@ -0,0 +1,146 @@
+package de.craftsblock.cnet.modules.security.auth.token.store;
+
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedTokenStoreTest {
+
+    @TempDir
+    File folder;
+
+    @Test
+    void tornRecordIsCutOffOnOpen() throws IOException {
+        TestStore crashed = open(1000);
+        crashed.store(token(1, "first"));
+        crashed.store(token(2, "second"));
+        crashed.save(List.of());
+
+        // The process dies while a record is appended
+        File data = new File(folder, "tokens.dat");
+        Files.write(data.toPath(), new byte[]{0, 0, 0, 64, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+        long torn = data.length();
+
+        TestStore restarted = open(1000);
+        assertEquals(1, restarted.warnings.size(), "the torn record is reported");
+        assertEquals(torn - 9, data.length());
+        assertEquals("first", restarted.load(1).hash());
+        assertEquals("second", restarted.load(2).hash());
+
+        restarted.store(token(3, "third"));
+        restarted.close();
+
+        TestStore reopened = open(1000);
+        assertTrue(reopened.warnings.isEmpty());
+        assertEquals("third", reopened.load(3).hash());
+        reopened.close();
+    }
+
+    @Test
+    void missingOrCorruptIndexIsRebuilt() throws IOException {
+        TestStore store = open(2);
+        store.store(token(1, "first"));
+        store.store(token(2, "second"));
+        store.store(token(2, "replaced"));
+        store.delete(1);
+        store.save(List.of());
+        store.close();
+
+        File index = new File(folder, "tokens.idx");
+        assertTrue(index.isFile(), "the overlay has been merged into an index");
+
+        assertTrue(index.delete());
+        TestStore rebuilt = open(2);
+        assertNull(rebuilt.load(1), "deleted tokens stay deleted");
+        assertEquals("replaced", rebuilt.load(2).hash());
+        rebuilt.close();
+
+        Files.write(index.toPath(), new byte[]{1, 2, 3, 4});
+        TestStore repaired = open(2);
+        assertEquals(1, repaired.warnings.size(), "the corrupt index is reported");
+        assertEquals("replaced", repaired.load(2).hash());
+        repaired.close();
+    }
+
+    @Test
+    void compactedStoreReplaysAfterACrash() throws IOException {
+        TestStore store = open(1000);
+        for (long id = 1; id <= 10; id++) store.store(token(id, "token" + id));
+        for (long id = 1; id <= 10; id++) store.store(token(id, "changed" + id));
+        for (long id = 6; id <= 10; id++) store.delete(id);
+
+        File data = new File(folder, "tokens.dat");
+        long before = data.length();
+        store.compact();
+        assertTrue(store.isOpen());
+        assertTrue(data.length() < before, "replaced and deleted records are dropped");
+
+        // The process dies after the compaction, leaving a temporary file of the next one behind
+        store.store(token(11, "after"));
+        store.save(List.of());
+        Files.write(new File(folder, "tokens.dat.tmp").toPath(), new byte[]{1, 2, 3});
+
+        TestStore restarted = open(1000);
+        List<Long> ids = new ArrayList<>();
+        restarted.forEach(token -> ids.add(token.id()));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 11L), ids.stream().sorted().toList());
+        assertEquals("changed3", restarted.load(3).hash());
+        assertNull(restarted.load(7));
+
+        restarted.compact();
+        assertEquals("after", restarted.load(11).hash());
+        restarted.close();
+    }
+
+    private TestStore open(int reindexThreshold) throws IOException {
+        TestStore store = new TestStore(folder, reindexThreshold);
+        store.open();
+        return store;
+    }
+
+    private static Token token(long id, String hash) {
+        return new Token(id, hash, new ArrayList<>());
+    }
+
+    /**
+     * Stores the id and hash only and collects the warnings, so the tests do not depend on the json
+     * serialization or a registered logger.
+     */
+    private static final class TestStore extends IndexedTokenStore {
+
+        private final List<String> warnings = new ArrayList<>();
+
+        private TestStore(File directory, int reindexThreshold) {
+            super(directory, reindexThreshold);
+        }
+
+        @Override
+        protected byte[] encode(@NotNull Token token) {
+            return (token.id() + ":" + token.hash()).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected @NotNull Token decode(byte[] payload) {
+            String[] parts = new String(payload, StandardCharsets.UTF_8).split(":", 2);
+            return token(Long.parseLong(parts[0]), parts[1]);
+        }
+
+        @Override
+        protected void warn(@NotNull String message) {
+            warnings.add(message);
+        }
+
+    }
+
+}
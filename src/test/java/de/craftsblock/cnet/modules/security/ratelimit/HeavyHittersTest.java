@@ -0,0 +1,51 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+
+    @Test
+    void topSourcesAreOrderedByConsumption() {
+        HeavyHitters hitters = new HeavyHitters(2, 1024, 1, TimeUnit.MINUTES);
+        hitters.record("small", 1, 0);
+        hitters.record("large", 10, 0);
+        hitters.record("medium", 5, 0);
+
+        List<HeavyHitters.Entry> top = hitters.snapshot();
+        assertEquals(2, top.size());
+        assertEquals("large", top.get(0).source());
+        assertEquals("medium", top.get(1).source());
+    }
+
+    @Test
+    void estimatesAreHalvedOncePerHalfLife() {
+        HeavyHitters hitters = new HeavyHitters(4, 1024, 1, TimeUnit.SECONDS);
+        hitters.record("source", 8, 0);
+        hitters.record("other", 1, 1000);
+
+        assertEquals(4, hitters.snapshot().get(0).estimate());
+    }
+
+    @Test
+    void trackingStartsWhenQueried() {
+        RateLimitAdapter adapter = new RateLimitAdapter("TEST", 5) {
+            @Override
+            public RateLimitIndex adapt(Request request, SessionStorage storage) {
+                return null;
+            }
+        };
+
+        assertNull(adapter.getTrackedHeavyHitters());
+        HeavyHitters hitters = adapter.getHeavyHitters();
+        assertSame(hitters, adapter.getTrackedHeavyHitters());
+        assertSame(hitters, adapter.getHeavyHitters());
+    }
+
+}
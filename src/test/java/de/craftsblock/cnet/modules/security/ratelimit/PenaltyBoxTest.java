@@ -0,0 +1,52 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PenaltyBoxTest {
+
+    @Test
+    void disabledByDefault() {
+        PenaltyBox box = new PenaltyBox();
+        assertFalse(box.isEnabled());
+
+        for (int i = 0; i < 100; i++)
+            assertEquals(0, box.strike("127.0.0.1", 1000));
+        assertFalse(box.isBlocked("127.0.0.1", 1000));
+        assertEquals(0, box.size());
+    }
+
+    @Test
+    void blocksOnceTheThresholdIsReached() {
+        PenaltyBox box = new PenaltyBox();
+        box.configure(3, 5, 60, 600, TimeUnit.SECONDS);
+        box.setEnabled(true);
+
+        assertEquals(0, box.strike("127.0.0.1", 1000));
+        assertEquals(0, box.strike("127.0.0.1", 1000));
+        assertEquals(5000, box.strike("127.0.0.1", 1000));
+        assertEquals(10000, box.strike("127.0.0.1", 1000));
+
+        assertEquals(10000, box.getRemaining("127.0.0.1", 1000));
+        assertFalse(box.isBlocked("127.0.0.2", 1000));
+        assertFalse(box.isBlocked("127.0.0.1", 11000));
+    }
+
+    @Test
+    void disablingStopsBlockingWithoutForgetting() {
+        PenaltyBox box = new PenaltyBox();
+        box.configure(1, 5, 60, 600, TimeUnit.SECONDS);
+        box.setEnabled(true);
+        box.strike("127.0.0.1", 1000);
+
+        box.setEnabled(false);
+        assertFalse(box.isBlocked("127.0.0.1", 1000));
+
+        box.setEnabled(true);
+        assertTrue(box.isBlocked("127.0.0.1", 1000));
+    }
+
+}
@@ -0,0 +1,52 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.cnet.modules.security.SecurityContext;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitHeadersTest {
+
+    private static final long NOW = 1_000_000;
+
+    @Test
+    void phasesAreCombinedIntoASinglePair() {
+        SecurityContext context = SecurityContext.of(new SessionStorage());
+
+        RateLimitHeaders pre = RateLimitHeaders.current(context);
+        pre.append(adapter("IP"), false, 1, 60_000, 0, NOW + 60_000, NOW);
+        assertTrue(pre.store(context));
+
+        RateLimitHeaders post = RateLimitHeaders.current(context);
+        post.append(adapter("TOKEN"), false, 60, 60_000, 1, NOW + 30_000, NOW);
+        assertTrue(post.store(context));
+
+        assertEquals("\"ip\";q=1;w=60, \"token\";q=60;w=60", context.getRateLimitPolicyHeader());
+        assertEquals("\"ip\";r=1;t=60, \"token\";r=59;t=30", context.getRateLimitHeader());
+    }
+
+    @Test
+    void phaseWithoutEntriesKeepsTheWrittenPair() {
+        SecurityContext context = SecurityContext.of(new SessionStorage());
+        assertFalse(RateLimitHeaders.current(context).store(context), "nothing is written without an entry");
+
+        RateLimitHeaders pre = RateLimitHeaders.current(context);
+        pre.append(adapter("IP"), false, 1, 60_000, 0, NOW + 60_000, NOW);
+        assertTrue(pre.store(context));
+
+        assertFalse(RateLimitHeaders.current(context).store(context), "the written pair is not written again");
+        assertEquals("\"ip\";r=1;t=60", context.getRateLimitHeader());
+    }
+
+    private static RateLimitAdapter adapter(String id) {
+        return new RateLimitAdapter(id, 1) {
+            @Override
+            public RateLimitIndex adapt(Request request, SessionStorage storage) {
+                return null;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,104 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitInfoTest {
+
+    private final RateLimitAdapter adapter = new RateLimitAdapter("TEST", 3, TimeUnit.MINUTES.toMillis(1)) {
+        @Override
+        public RateLimitIndex adapt(Request request, SessionStorage storage) {
+            return null;
+        }
+    };
+
+    private SecurityClock.Manual clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = SecurityClock.manual(1_000_000);
+        SecurityClock.install(clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityClock.install(SecurityClock.system());
+    }
+
+    @Test
+    void rejectsOnceTheMaximumIsReached() {
+        RateLimitInfo info = RateLimitInfo.of(adapter);
+        assertFalse(info.access());
+        assertFalse(info.access(2));
+        assertTrue(info.access());
+        assertEquals(3, info.getTimes());
+    }
+
+    @Test
+    void windowResetsOnceExpired() {
+        RateLimitInfo info = RateLimitInfo.of(adapter);
+        assertFalse(info.access(3));
+        assertTrue(info.access());
+
+        clock.advance(59, TimeUnit.SECONDS);
+        assertTrue(info.access(), "the window has not expired yet");
+
+        clock.advance(1, TimeUnit.SECONDS);
+        assertTrue(info.isExpired());
+        assertFalse(info.access());
+        assertEquals(1, info.getTimes());
+        assertEquals(clock.millis() + TimeUnit.MINUTES.toMillis(1), info.getExpiresAt());
+    }
+
+    @Test
+    void chargeExceedsTheMaximum() {
+        RateLimitInfo info = RateLimitInfo.of(adapter);
+        info.charge(10);
+        assertEquals(10, info.getTimes());
+        assertTrue(info.access());
+    }
+
+    @Test
+    void accessWithoutWeightIsRejectedOnceTheBudgetIsUsedUp() {
+        RateLimitInfo info = RateLimitInfo.of(adapter);
+        info.charge(2);
+        assertFalse(info.access(0));
+
+        info.charge(1);
+        assertTrue(info.access(0), "the maximum has been reached");
+        assertEquals(3, info.getTimes());
+    }
+
+    @Test
+    void accessDuringTheResetWaitsForTheNewWindow() throws InterruptedException {
+        AtomicLong times = new AtomicLong(3);
+        AtomicLong expiresAt = new AtomicLong(clock.millis());
+        RateLimitInfo info = new RateLimitInfo(adapter, times, expiresAt);
+
+        // Another thread has claimed the reset of the expired window, but not yet published the new one
+        expiresAt.set(Long.MIN_VALUE);
+        AtomicBoolean rejected = new AtomicBoolean(true);
+        Thread concurrent = new Thread(() -> rejected.set(info.access()));
+        concurrent.start();
+        concurrent.join(100);
+        assertTrue(concurrent.isAlive(), "the access waits for the new window");
+
+        times.set(0);
+        expiresAt.set(clock.millis() + TimeUnit.MINUTES.toMillis(1));
+        concurrent.join(5000);
+
+        assertFalse(rejected.get(), "the access is not checked against the expired window");
+        assertEquals(1, info.getTimes(), "the access is charged to the new window");
+    }
+
+}
@@ -0,0 +1,113 @@
+package de.craftsblock.cnet.modules.security.ratelimit;
+
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitRegistryTest {
+
+    @Test
+    void configuredPoliciesOverrideTheOwnPolicyWhileRegistered() {
+        RateLimitManager manager = new RateLimitManager();
+        RateLimitAdapter first = adapter("FIRST", 10), second = adapter("SECOND", 20);
+        manager.register(first);
+        manager.register(second);
+
+        manager.update(registry -> registry.configure(RateLimitHeaderMode.DRAFT,
+                Map.of(first, new RateLimitPolicy(100, 1000, true), second, new RateLimitPolicy(200, 1000, true)),
+                Map.of(), Set.of()));
+        assertEquals(100, first.getMax());
+        assertEquals(200, second.getMax());
+        assertEquals(RateLimitHeaderMode.DRAFT, manager.getHeaderMode());
+
+        manager.update(registry -> registry.configure(RateLimitHeaderMode.LEGACY, Map.of(), Map.of(), Set.of()));
+        assertEquals(10, first.getMax(), "dropping the configuration restores the own policy");
+
+        manager.update(registry -> registry.configure(RateLimitHeaderMode.LEGACY,
+                Map.of(first, new RateLimitPolicy(100, 1000, true)), Map.of(), Set.of()));
+        manager.unregister(first);
+        assertEquals(10, first.getMax(), "unregistered adapters use their own policy");
+        assertNull(manager.getRegistry().getPolicy(first));
+    }
+
+    @Test
+    void disabledAdaptersStayRegisteredButAreNotChecked() {
+        RateLimitManager manager = new RateLimitManager();
+        RateLimitAdapter first = adapter("FIRST", 10), second = adapter("SECOND", 20);
+        manager.register(first);
+        manager.register(second);
+
+        manager.update(registry -> registry.configure(RateLimitHeaderMode.LEGACY, Map.of(), Map.of(), Set.of(first)));
+        RateLimitRegistry registry = manager.getRegistry();
+        assertTrue(registry.contains(first));
+        assertFalse(registry.isEnabled(first));
+        assertEquals(1, registry.getEnabled(RateLimitPhase.POST_AUTH).length);
+        assertSame(second, registry.getEnabled(RateLimitPhase.POST_AUTH)[0]);
+    }
+
+    @Test
+    void updatesArePublishedAtOnce() {
+        RateLimitManager manager = new RateLimitManager();
+        RateLimitAdapter first = adapter("FIRST", 10), second = adapter("SECOND", 20);
+        manager.register(first);
+        RateLimitRegistry before = manager.getRegistry();
+
+        manager.update(registry -> registry.without(first).with(second, 0)
+                .configure(RateLimitHeaderMode.LEGACY, Map.of(second, new RateLimitPolicy(200, 1000, true)), Map.of(), Set.of()));
+        assertTrue(before.contains(first), "published registries are never modified");
+        assertFalse(manager.isRegistered(first));
+        assertEquals(200, second.getMax());
+
+        assertThrows(IllegalStateException.class, () -> manager.update(registry -> registry.with(adapter("SECOND", 1), 0)));
+        assertEquals(1, manager.getAdapters().size(), "a failed update keeps the current registry");
+    }
+
+    @Test
+    void policyResolvedFromASnapshotSurvivesAReload() {
+        RateLimitManager manager = new RateLimitManager();
+        RateLimitAdapter first = adapter("FIRST", 10);
+        manager.register(first);
+        manager.update(registry -> registry.configure(RateLimitHeaderMode.LEGACY,
+                Map.of(first, new RateLimitPolicy(100, 1000, true)), Map.of(), Set.of()));
+
+        RateLimitRegistry snapshot = manager.getRegistry();
+        RateLimitPolicy policy = first.getPolicy(snapshot);
+        manager.update(registry -> registry.configure(RateLimitHeaderMode.LEGACY,
+                Map.of(first, new RateLimitPolicy(1, 5000, false)), Map.of(), Set.of()));
+
+        RateLimitInfo info = first.createInfo();
+        assertFalse(info.access(50, policy), "the access is checked against the policy of the snapshot");
+        assertEquals(100, first.getPolicy(snapshot).max());
+        assertEquals(1, first.getMax());
+    }
+
+    @Test
+    void adaptersAreOrderedByPriority() {
+        RateLimitRegistry registry = RateLimitRegistry.EMPTY
+                .with(adapter("LOW", 1), -1)
+                .with(adapter("FIRST", 1), 0)
+                .with(adapter("HIGH", 1), 5)
+                .with(adapter("SECOND", 1), 0);
+
+        assertEquals("HIGH", registry.getAdapters().get(0).getId());
+        assertEquals("FIRST", registry.getAdapters().get(1).getId());
+        assertEquals("SECOND", registry.getAdapters().get(2).getId());
+        assertEquals("LOW", registry.getAdapters().get(3).getId());
+        assertEquals("LOW", registry.without(registry.getAdapter("first")).getAdapters().get(2).getId());
+    }
+
+    private static RateLimitAdapter adapter(String id, long max) {
+        return new RateLimitAdapter(id, max, 1000) {
+            @Override
+            public RateLimitIndex adapt(Request request, SessionStorage storage) {
+                return null;
+            }
+        };
+    }
+
+}
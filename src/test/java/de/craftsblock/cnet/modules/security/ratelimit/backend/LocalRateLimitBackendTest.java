@@ -0,0 +1,87 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitManager;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitSnapshotter;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalRateLimitBackendTest {
+
+    @TempDir
+    File folder;
+
+    @Test
+    void forEachRebuildsIndicesWithThePartitionOwner() {
+        RateLimitAdapter owner = adapter("OWNER");
+        RateLimitAdapter limits = adapter("LIMITS");
+        LocalRateLimitBackend backend = new LocalRateLimitBackend();
+
+        RateLimitIndex index = RateLimitIndex.of(owner, "client");
+        backend.access(index, backend.resolve(index, limits), 1);
+
+        Map<RateLimitIndex, RateLimitInfo> entries = collect(backend);
+        assertEquals(1, entries.size());
+
+        RateLimitIndex restored = entries.keySet().iterator().next();
+        assertSame(owner, restored.adapter());
+        assertSame(limits, entries.get(restored).adapter());
+    }
+
+    @Test
+    void snapshotRestoresIntoTheSamePartition() throws IOException {
+        File file = new File(folder, "ratelimits.dat");
+
+        RateLimitManager source = manager();
+        LocalRateLimitBackend backend = (LocalRateLimitBackend) source.getBackend();
+        RateLimitIndex index = RateLimitIndex.of(source.getAdapter("OWNER"), "client");
+        backend.access(index, backend.resolve(index, source.getAdapter("LIMITS")), 3);
+        assertEquals(1, new RateLimitSnapshotter(source, file).write());
+
+        RateLimitManager target = manager();
+        assertEquals(1, new RateLimitSnapshotter(target, file).load());
+
+        LocalRateLimitBackend restored = (LocalRateLimitBackend) target.getBackend();
+        assertNotNull(restored.getTable(target.getAdapter("OWNER")));
+        assertNull(restored.getTable(target.getAdapter("LIMITS")));
+
+        RateLimitInfo info = collect(restored).get(RateLimitIndex.of(target.getAdapter("OWNER"), "client"));
+        assertNotNull(info);
+        assertEquals(3, info.getTimes());
+        assertSame(target.getAdapter("LIMITS"), info.adapter());
+    }
+
+    private static Map<RateLimitIndex, RateLimitInfo> collect(LocalRateLimitBackend backend) {
+        Map<RateLimitIndex, RateLimitInfo> entries = new HashMap<>();
+        backend.forEach(entries::put);
+        return entries;
+    }
+
+    private static RateLimitManager manager() {
+        RateLimitManager manager = new RateLimitManager();
+        manager.register(adapter("OWNER"));
+        manager.register(adapter("LIMITS"));
+        return manager;
+    }
+
+    private static RateLimitAdapter adapter(String id) {
+        return new RateLimitAdapter(id, 10) {
+            @Override
+            public RateLimitIndex adapt(Request request, SessionStorage storage) {
+                return null;
+            }
+        };
+    }
+
+}
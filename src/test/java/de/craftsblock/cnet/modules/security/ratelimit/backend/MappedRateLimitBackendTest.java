@@ -0,0 +1,148 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedRateLimitBackendTest {
+
+    private static final int CAPACITY = 32;
+
+    private final RateLimitAdapter adapter = new RateLimitAdapter("TEST", 5, TimeUnit.SECONDS.toMillis(10)) {
+        @Override
+        public RateLimitIndex adapt(Request request, SessionStorage storage) {
+            return null;
+        }
+    };
+
+    @TempDir
+    File folder;
+
+    private SecurityClock.Manual clock;
+    private MappedRateLimitBackend first;
+    private MappedRateLimitBackend second;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        clock = SecurityClock.manual(1_000_000);
+        SecurityClock.install(clock);
+
+        File file = new File(folder, "ratelimits.bin");
+        first = new MappedRateLimitBackend(file, CAPACITY);
+        second = new MappedRateLimitBackend(file, MappedRateLimitBackend.DEFAULT_CAPACITY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        first.close();
+        second.close();
+        SecurityClock.install(SecurityClock.system());
+    }
+
+    @Test
+    void existingFileKeepsItsCapacity() {
+        assertEquals(CAPACITY, second.getCapacity());
+    }
+
+    @Test
+    void instancesShareTheirCounts() {
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        RateLimitInfo a = first.resolve(index, adapter);
+        RateLimitInfo b = second.resolve(index, adapter);
+
+        for (int i = 0; i < 3; i++) assertFalse(first.access(index, a, 1));
+        for (int i = 0; i < 2; i++) assertFalse(second.access(index, b, 1));
+
+        assertTrue(first.access(index, a, 1), "the budget has been used up by both instances");
+        assertEquals(5, a.getTimes());
+        assertTrue(second.access(index, b, 0));
+        assertEquals(5, b.getTimes());
+    }
+
+    @Test
+    void indicesClaimTheirOwnSlots() {
+        RateLimitIndex one = RateLimitIndex.of(adapter, "one");
+        RateLimitIndex two = RateLimitIndex.of(adapter, "two");
+
+        first.charge(one, first.resolve(one, adapter), 5);
+        RateLimitInfo info = second.resolve(two, adapter);
+        assertFalse(second.access(two, info, 1));
+        assertEquals(1, info.getTimes());
+    }
+
+    @Test
+    void windowStartsOverOnceExpired() {
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        RateLimitInfo a = first.resolve(index, adapter);
+        RateLimitInfo b = second.resolve(index, adapter);
+
+        first.charge(index, a, 5);
+        assertTrue(second.access(index, b, 1));
+
+        clock.advance(10, TimeUnit.SECONDS);
+        assertFalse(second.access(index, b, 1), "the counter of the old window is not used to reject");
+        assertEquals(1, b.getTimes());
+        assertFalse(first.access(index, a, 1));
+        assertEquals(2, a.getTimes());
+    }
+
+    @Test
+    void fullTableCountsLocallyUntilASlotExpires() {
+        fill(first);
+
+        RateLimitIndex index = RateLimitIndex.of(adapter, "overflow");
+        RateLimitInfo a = first.resolve(index, adapter);
+        RateLimitInfo b = second.resolve(index, adapter);
+        first.charge(index, a, 5);
+        assertTrue(first.access(index, a, 1));
+        assertFalse(second.access(index, b, 1), "the local count is not shared");
+
+        // Every window of the table has expired, so the overflowing index takes over a slot
+        clock.advance(10, TimeUnit.SECONDS);
+        first.charge(index, a, 4);
+        assertFalse(second.access(index, b, 1));
+        assertEquals(5, b.getTimes());
+        assertTrue(first.access(index, a, 1));
+    }
+
+    @Test
+    void takenOverSlotIsNotChargedByItsPreviousOwner() {
+        RateLimitInfo[] infos = fill(first);
+
+        clock.advance(10, TimeUnit.SECONDS);
+        RateLimitIndex index = RateLimitIndex.of(adapter, "overflow");
+        RateLimitInfo info = second.resolve(index, adapter);
+        assertFalse(second.access(index, info, 1));
+
+        // The previous owners still have the slots cached and charge their own keys
+        for (int i = 0; i < CAPACITY; i++)
+            first.charge(RateLimitIndex.of(adapter, "source" + i), infos[i], 1);
+
+        assertFalse(second.access(index, info, 0));
+        assertEquals(1, info.getTimes(), "the new owner only sees its own count");
+    }
+
+    private RateLimitInfo[] fill(MappedRateLimitBackend backend) {
+        RateLimitInfo[] infos = new RateLimitInfo[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            RateLimitIndex index = RateLimitIndex.of(adapter, "source" + i);
+            infos[i] = backend.resolve(index, adapter);
+            assertFalse(backend.access(index, infos[i], 1));
+        }
+        return infos;
+    }
+
+}
@@ -0,0 +1,200 @@
+package de.craftsblock.cnet.modules.security.ratelimit.backend;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitAdapter;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteRateLimitBackendTest {
+
+    private static final byte[] SECRET = "a shared secret of the cluster".getBytes(StandardCharsets.UTF_8);
+
+    private final RateLimitAdapter adapter = new RateLimitAdapter("TEST", 5) {
+        @Override
+        public RateLimitIndex adapt(Request request, SessionStorage storage) {
+            return null;
+        }
+    };
+
+    private RemoteRateLimitServer server;
+    private RemoteRateLimitBackend backend;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (backend != null) backend.close();
+        if (server != null) server.close();
+    }
+
+    @Test
+    void leasesNeverExceedTheMaximum() throws IOException {
+        server = start(null);
+        backend = connect(null);
+
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        RateLimitInfo info = backend.resolve(index, adapter);
+        for (int i = 0; i < 5; i++)
+            assertFalse(backend.access(index, info, 1), "access " + i + " should be admitted");
+
+        assertTrue(backend.access(index, info, 1));
+        assertEquals(5, usedOnServer("TEST:client"));
+    }
+
+    @Test
+    void chargeExceedsTheMaximumLikeTheLocalBackend() throws IOException {
+        server = start(null);
+        backend = connect(null);
+
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        RateLimitInfo info = backend.resolve(index, adapter);
+        assertFalse(backend.access(index, info, 1));
+        backend.charge(index, info, 10);
+
+        assertEquals(11, usedOnServer("TEST:client"));
+        assertEquals(11, info.getTimes());
+        assertTrue(backend.access(index, info, 1));
+
+        LocalRateLimitBackend local = new LocalRateLimitBackend();
+        RateLimitInfo reference = local.resolve(index, adapter);
+        assertFalse(local.access(index, reference, 1));
+        local.charge(index, reference, 10);
+        assertEquals(reference.getTimes(), info.getTimes());
+    }
+
+    @Test
+    void accessWithoutWeightReservesNothingAndSeesOtherInstances() throws IOException {
+        server = start(null);
+        backend = connect(null);
+
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        RateLimitInfo info = backend.resolve(index, adapter);
+        assertFalse(backend.access(index, info, 0));
+        assertEquals(0, usedOnServer("TEST:client"));
+
+        server.charge("TEST:client", adapter.getMax(), adapter.getExpireInMilliseconds(), 5);
+        assertFalse(backend.access(index, info, 0), "the usage reported last is reused without a round trip");
+
+        backend.charge(index, info, 1);
+        assertTrue(backend.access(index, info, 0), "the budget has been used up by another instance");
+    }
+
+    @Test
+    void chargeFromTheLeaseRefreshesTheReportedUsage() throws IOException {
+        server = start(null);
+        backend = connect(null);
+
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        RateLimitInfo info = backend.resolve(index, adapter);
+        assertFalse(backend.access(index, info, 1));
+        assertFalse(backend.access(index, info, 0));
+
+        server.charge("TEST:client", adapter.getMax(), adapter.getExpireInMilliseconds(), 3);
+        backend.charge(index, info, 1);
+        assertTrue(backend.access(index, info, 0), "the server is asked again after a local charge");
+    }
+
+    @Test
+    void concurrentAccessesShareTheRefills() throws Exception {
+        server = start(null);
+        backend = connect(null);
+
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        RateLimitInfo info = backend.resolve(index, adapter);
+        AtomicInteger admitted = new AtomicInteger();
+
+        Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                if (!backend.access(index, info, 1)) admitted.incrementAndGet();
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join(5000);
+
+        assertEquals(5, admitted.get());
+        assertEquals(5, usedOnServer("TEST:client"));
+    }
+
+    @Test
+    void keysBeyondTheModifiedUtfLimitAreShared() throws IOException {
+        server = start(null);
+        backend = connect(null);
+
+        String source = "\u00e4".repeat(40_000);
+        RateLimitIndex index = RateLimitIndex.of(adapter, source);
+        assertFalse(backend.access(index, backend.resolve(index, adapter), 1));
+        assertEquals(2, usedOnServer("TEST:" + source));
+    }
+
+    @Test
+    void nonLoopbackAddressRequiresSecret() {
+        assertThrows(IllegalStateException.class, () -> new RemoteRateLimitServer(new InetSocketAddress(0), null));
+        assertThrows(IllegalStateException.class, () -> new RemoteRateLimitServer(new InetSocketAddress(0), new byte[4]));
+    }
+
+    @Test
+    void defaultServerListensOnLoopback() throws IOException {
+        server = new RemoteRateLimitServer(0);
+        server.start();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            assertTrue(socket.isConnected());
+        }
+    }
+
+    @Test
+    void clientWithSecretIsServed() throws IOException {
+        server = start(SECRET);
+        backend = connect(SECRET);
+
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        assertFalse(backend.access(index, backend.resolve(index, adapter), 1));
+        assertTrue(usedOnServer("TEST:client") > 0);
+    }
+
+    @Test
+    void clientWithWrongSecretIsRejected() throws IOException {
+        server = start(SECRET);
+        backend = connect("not the secret of the cluster".getBytes(StandardCharsets.UTF_8));
+
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        assertFalse(backend.access(index, backend.resolve(index, adapter), 1));
+        assertEquals(0, usedOnServer("TEST:client"));
+    }
+
+    @Test
+    void closeStopsAcceptingConnections() throws IOException {
+        server = start(null);
+        int port = server.getPort();
+        server.close();
+
+        assertThrows(IOException.class, () -> new Socket(InetAddress.getLoopbackAddress(), port).close());
+    }
+
+    private RemoteRateLimitServer start(byte[] secret) throws IOException {
+        RemoteRateLimitServer server = new RemoteRateLimitServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), secret);
+        server.start();
+        return server;
+    }
+
+    private RemoteRateLimitBackend connect(byte[] secret) {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+        return new RemoteRateLimitBackend(address, 2, 1000, secret);
+    }
+
+    private long usedOnServer(String key) {
+        return server.acquire(key, adapter.getMax(), adapter.getExpireInMilliseconds(), 0)[1];
+    }
+
+}
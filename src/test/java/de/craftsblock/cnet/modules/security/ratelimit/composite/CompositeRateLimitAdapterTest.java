@@ -0,0 +1,70 @@
+package de.craftsblock.cnet.modules.security.ratelimit.composite;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompositeRateLimitAdapterTest {
+
+    private static final long NOW = 1_000_000;
+
+    private static final RateLimitWindow SECOND = new RateLimitWindow(10, 1000);
+    private static final RateLimitWindow HOUR = new RateLimitWindow(100, 3_600_000);
+
+    @Test
+    void countersFollowTheLengthOfTheirWindow() {
+        CompositeRateLimitAdapter adapter = adapter(SECOND, HOUR);
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        assertFalse(adapter.resolve(index).access(5, NOW));
+
+        adapter.setWindows(List.of(new RateLimitWindow(200, 3_600_000), new RateLimitWindow(50, 60_000)));
+        RateLimitWindows migrated = adapter.resolve(index);
+        assertEquals(5, migrated.getTimes(0), "the hourly window keeps its counter although it moved");
+        assertEquals(0, migrated.getTimes(1), "a window of a new length starts over");
+    }
+
+    @Test
+    void staleWindowsAreChargedToTheMigratedOnes() {
+        CompositeRateLimitAdapter adapter = adapter(SECOND, HOUR);
+        RateLimitIndex index = RateLimitIndex.of(adapter, "client");
+        RateLimitWindows stale = adapter.resolve(index);
+        assertFalse(stale.access(1, NOW));
+
+        adapter.setWindows(List.of(new RateLimitWindow(20, 1000), HOUR));
+        RateLimitWindows migrated = adapter.resolve(index);
+        assertFalse(stale == migrated, "the windows have been migrated");
+        assertSame(migrated, stale.latest());
+
+        // A request which resolved the windows before they were replaced
+        assertFalse(stale.access(1, NOW));
+        stale.charge(2, NOW);
+        assertEquals(4, migrated.getTimes(0));
+        assertEquals(4, migrated.getTimes(1));
+    }
+
+    @Test
+    void rejectedRequestsAreChargedToNoWindow() {
+        CompositeRateLimitAdapter adapter = adapter(SECOND, HOUR);
+        RateLimitWindows windows = adapter.resolve(RateLimitIndex.of(adapter, "client"));
+        assertFalse(windows.access(10, NOW));
+
+        assertTrue(windows.access(1, NOW));
+        assertEquals(10, windows.getTimes(1));
+        assertEquals(NOW + 1000, windows.getResetAt(1));
+    }
+
+    private static CompositeRateLimitAdapter adapter(RateLimitWindow... windows) {
+        return new CompositeRateLimitAdapter("COMPOSITE", windows) {
+            @Override
+            public RateLimitIndex adapt(Request request, SessionStorage storage) {
+                return null;
+            }
+        };
+    }
+
+}
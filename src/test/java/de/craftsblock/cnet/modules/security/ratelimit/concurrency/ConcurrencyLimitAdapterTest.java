@@ -0,0 +1,92 @@
+package de.craftsblock.cnet.modules.security.ratelimit.concurrency;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitAdapterTest {
+
+    @Test
+    void releasingTwiceFreesThePermitOnlyOnce() {
+        TestAdapter adapter = new TestAdapter(60_000);
+        SessionStorage first = new SessionStorage();
+
+        assertTrue(adapter.tryAcquire(adapter.index, first));
+        assertTrue(adapter.tryAcquire(adapter.index, new SessionStorage()));
+        assertFalse(adapter.tryAcquire(adapter.index, new SessionStorage()));
+
+        ConcurrencyLimitAdapter.release(first, false);
+        ConcurrencyLimitAdapter.release(first, false);
+        assertEquals(1, adapter.getInflight(adapter.index));
+
+        assertTrue(adapter.tryAcquire(adapter.index, new SessionStorage()));
+        assertFalse(adapter.tryAcquire(adapter.index, new SessionStorage()));
+    }
+
+    @Test
+    void sweepReclaimsTimedOutPermits() throws InterruptedException {
+        TestAdapter adapter = new TestAdapter(1);
+        SessionStorage leaked = new SessionStorage();
+
+        assertTrue(adapter.tryAcquire(adapter.index, leaked));
+        assertTrue(adapter.tryAcquire(adapter.index, new SessionStorage()));
+        assertFalse(adapter.tryAcquire(adapter.index, new SessionStorage()));
+
+        Thread.sleep(10);
+        assertEquals(2, adapter.sweep());
+        assertEquals(0, adapter.getInflight(adapter.index));
+
+        // A late release of a reclaimed permit must not free the permit of another exchange
+        assertTrue(adapter.tryAcquire(adapter.index, new SessionStorage()));
+        ConcurrencyLimitAdapter.release(leaked, true);
+        assertEquals(1, adapter.getInflight(adapter.index));
+    }
+
+    @Test
+    void sweepKeepsPermitsWithinTheirLease() {
+        TestAdapter adapter = new TestAdapter(60_000);
+        assertTrue(adapter.tryAcquire(adapter.index, new SessionStorage()));
+
+        assertEquals(0, adapter.sweep());
+        assertEquals(1, adapter.getInflight(adapter.index));
+    }
+
+    @Test
+    void gradientLimitShrinksWhileUnderused() {
+        GradientLimit limit = new GradientLimit(100, 1, 1000);
+        limit.onSample(1_000_000, 1);
+        for (int i = 0; i < 50; i++) limit.onSample(1_000_000, 1);
+        assertEquals(100, limit.getLimit(), "an unused limit should neither grow nor shrink while the latency is stable");
+
+        for (int i = 0; i < 50; i++) limit.onSample(20_000_000, 1);
+        assertTrue(limit.getLimit() < 100, "the limit should shrink once the latency rises, was " + limit.getLimit());
+    }
+
+    private static final class TestAdapter extends ConcurrencyLimitAdapter {
+
+        private final RateLimitIndex index = RateLimitIndex.of(this, "client");
+
+        private TestAdapter(long leaseTimeout) {
+            super("TEST", () -> new ConcurrencyLimit() {
+                @Override
+                public int getLimit() {
+                    return 2;
+                }
+
+                @Override
+                public void onSample(long rttNanos, int inflight) {
+                }
+            }, 60_000, leaseTimeout);
+        }
+
+        @Override
+        public RateLimitIndex adapt(Request request, SessionStorage storage) {
+            return index;
+        }
+
+    }
+
+}
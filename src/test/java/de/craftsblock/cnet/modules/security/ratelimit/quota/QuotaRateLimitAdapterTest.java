@@ -0,0 +1,121 @@
+package de.craftsblock.cnet.modules.security.ratelimit.quota;
+
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitIndex;
+import de.craftsblock.cnet.modules.security.ratelimit.RateLimitInfo;
+import de.craftsblock.cnet.modules.security.utils.SecurityClock;
+import de.craftsblock.craftsnet.api.http.Request;
+import de.craftsblock.craftsnet.api.utils.SessionStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuotaRateLimitAdapterTest {
+
+    @TempDir
+    File folder;
+
+    @BeforeEach
+    void setUp() {
+        SecurityClock.install(SecurityClock.manual(1_700_000_000_000L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityClock.install(SecurityClock.system());
+    }
+
+    @Test
+    void crashLosesAtMostTheUnflushedUnits() throws IOException {
+        File file = new File(folder, "quota.journal");
+
+        QuotaRateLimitAdapter crashed = adapter(file);
+        assertEquals(0, crashed.load());
+        assertEquals(25, admit(crashed, 25), "the adapter flushes itself as it has not been started");
+
+        // The process dies without a final flush, in the middle of a compaction
+        crashed.getJournal().close();
+        Files.write(new File(file.getPath() + ".tmp").toPath(), new byte[]{1, 2, 3});
+
+        QuotaRateLimitAdapter restarted = adapter(file);
+        assertEquals(1, restarted.load());
+
+        long restored = restarted.resolve(index(restarted)).getTimes();
+        assertTrue(restored <= 25 && 25 - restored <= restarted.getMaxUnflushed(),
+                "at most the unflushed units are lost (Restored: " + restored + ")");
+        assertEquals(100 - restored, admit(restarted, 200));
+        restarted.stop();
+    }
+
+    @Test
+    void unflushedUnitsStayBoundedWithoutBackgroundThread() throws IOException {
+        File file = new File(folder, "quota.journal");
+
+        QuotaRateLimitAdapter adapter = adapter(file);
+        adapter.load();
+        for (int i = 1; i <= 35; i++) {
+            assertEquals(1, admit(adapter, 1));
+            assertTrue(i - durable(file) <= adapter.getMaxUnflushed(), "the bound holds after " + i + " units");
+        }
+        adapter.stop();
+    }
+
+    @Test
+    void compactedJournalReplaysAndStaysWritable() throws IOException {
+        QuotaJournal journal = new QuotaJournal(new File(folder, "quota.journal"));
+        journal.open();
+
+        long start = QuotaPeriod.MONTHLY.start(SecurityClock.now());
+        QuotaJournal.Key key = new QuotaJournal.Key("client", start);
+        journal.append(Map.of(key, 5L));
+        journal.append(Map.of(key, 7L));
+        journal.compact(Map.of(key, 12L));
+
+        assertTrue(journal.isOpen());
+        journal.append(Map.of(key, 3L));
+        journal.close();
+
+        assertEquals(15, (long) journal.open().get(key));
+        journal.close();
+    }
+
+    private static long admit(QuotaRateLimitAdapter adapter, int requests) {
+        RateLimitIndex index = index(adapter);
+        long admitted = 0;
+        for (int i = 0; i < requests; i++) {
+            RateLimitInfo info = adapter.resolve(index);
+            if (!adapter.access(index, info, 1)) admitted++;
+        }
+        return admitted;
+    }
+
+    private static long durable(File file) throws IOException {
+        QuotaJournal reader = new QuotaJournal(file);
+        try {
+            return reader.open().values().stream().mapToLong(Long::longValue).sum();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static RateLimitIndex index(QuotaRateLimitAdapter adapter) {
+        return RateLimitIndex.of(adapter, "client");
+    }
+
+    private static QuotaRateLimitAdapter adapter(File file) {
+        return new QuotaRateLimitAdapter("QUOTA", 100, QuotaPeriod.MONTHLY, file, 10) {
+            @Override
+            public RateLimitIndex adapt(Request request, SessionStorage storage) {
+                return null;
+            }
+        };
+    }
+
+}
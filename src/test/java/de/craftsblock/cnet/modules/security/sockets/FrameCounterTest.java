@@ -0,0 +1,39 @@
+package de.craftsblock.cnet.modules.security.sockets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameCounterTest {
+
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Test
+    void enforcesTheLimitWithinAWindow() {
+        FrameCounter counter = new FrameCounter(3, 1000);
+        for (int i = 0; i < 3; i++)
+            assertTrue(counter.tryAcquire(NOW));
+
+        assertFalse(counter.tryAcquire(NOW + 999));
+        assertEquals(3, counter.getCount(NOW));
+        assertTrue(counter.tryAcquire(NOW + 1000));
+        assertEquals(1, counter.getCount(NOW + 1000));
+    }
+
+    @Test
+    void enforcesTheLimitOfMillisecondWindows() {
+        FrameCounter counter = new FrameCounter(1, 1);
+        assertTrue(counter.tryAcquire(NOW));
+        assertFalse(counter.tryAcquire(NOW));
+        assertTrue(counter.tryAcquire(NOW + 1));
+        assertFalse(counter.tryAcquire(NOW + 1));
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalStateException.class, () -> new FrameCounter(0, 1000));
+        assertThrows(IllegalStateException.class, () -> new FrameCounter(FrameCounter.MAX_LIMIT + 1, 1000));
+        assertThrows(IllegalStateException.class, () -> new FrameCounter(10, 0));
+    }
+
+}
@@ -0,0 +1,50 @@
+package de.craftsblock.cnet.modules.security.sockets;
+
+import de.craftsblock.cnet.modules.security.auth.token.Token;
+import de.craftsblock.craftsnet.api.websocket.WebSocketClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SocketManagerTest {
+
+    @Test
+    void dropsFramesOfUnknownClients() {
+        SocketManager sockets = new SocketManager();
+        assertFalse(sockets.tryFrame(new WebSocketClient(), 0));
+    }
+
+    @Test
+    void dropsFramesOnceUnregistered() {
+        SocketManager sockets = new SocketManager();
+        WebSocketClient client = new WebSocketClient();
+        sockets.register(sockets.create(client));
+        assertTrue(sockets.tryFrame(client, 0));
+
+        sockets.unregister(client);
+        assertFalse(sockets.tryFrame(client, 0));
+        assertNull(sockets.getConnection(client));
+    }
+
+    @Test
+    void connectionsOfATokenShareItsLimit() {
+        SocketManager sockets = new SocketManager();
+        sockets.setTokenLimit(3, 1, TimeUnit.SECONDS);
+        Token token = Token.of("hash");
+
+        WebSocketClient first = new WebSocketClient(), second = new WebSocketClient();
+        for (WebSocketClient client : new WebSocketClient[]{first, second}) {
+            SocketConnection connection = sockets.create(client);
+            connection.setToken(token);
+            sockets.register(connection);
+        }
+
+        assertTrue(sockets.tryFrame(first, 0));
+        assertTrue(sockets.tryFrame(second, 0));
+        assertTrue(sockets.tryFrame(first, 0));
+        assertFalse(sockets.tryFrame(second, 0));
+    }
+
+}
@@ -0,0 +1,63 @@
+package de.craftsblock.cnet.modules.security.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityClockTest {
+
+    @AfterEach
+    void tearDown() {
+        SecurityClock.install(SecurityClock.system());
+    }
+
+    @Test
+    void manualClockOnlyMovesWhenAdvanced() {
+        SecurityClock.Manual clock = SecurityClock.manual(1_000);
+        SecurityClock.install(clock);
+
+        assertEquals(1_000, SecurityClock.now());
+        assertEquals(1_000, SecurityClock.now());
+
+        clock.advance(2, TimeUnit.SECONDS);
+        assertEquals(3_000, SecurityClock.now());
+
+        clock.set(500);
+        assertEquals(500, SecurityClock.now());
+    }
+
+    @Test
+    void installingClosesThePreviousTickingClock() throws InterruptedException {
+        SecurityClock.install(SecurityClock.ticking(1));
+        assertTrue(isTicking(), "the ticking clock should run a background thread");
+
+        SecurityClock.install(SecurityClock.manual(0));
+        for (int i = 0; i < 100 && isTicking(); i++) Thread.sleep(10);
+        assertFalse(isTicking(), "the ticking clock should stop once it is replaced");
+    }
+
+    @Test
+    void tickingClockFollowsTheSystemTime() throws InterruptedException {
+        SecurityClock clock = SecurityClock.ticking(5);
+        try {
+            Thread.sleep(50);
+            assertTrue(Math.abs(System.currentTimeMillis() - clock.millis()) < 1_000);
+        } finally {
+            clock.close();
+        }
+    }
+
+    @Test
+    void tickingClockRejectsInvalidResolution() {
+        assertThrows(IllegalStateException.class, () -> SecurityClock.ticking(0));
+    }
+
+    private static boolean isTicking() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.isAlive() && thread.getName().equals("CNetSecurity-Clock"));
+    }
+
+}